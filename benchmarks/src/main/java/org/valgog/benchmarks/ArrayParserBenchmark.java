@@ -0,0 +1,54 @@
+package org.valgog.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valgog.utils.PostgresUtils;
+import org.valgog.utils.exceptions.ArrayParserException;
+
+/**
+ * Splitting of the ARRAY text representations with {@link PostgresUtils#postgresArray2StringList(String)}
+ *
+ * @author valgog
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArrayParserBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	int arrayLength;
+
+	private String textArray;
+	private String intArray;
+
+	@Setup
+	public void setUp() {
+		textArray = Payloads.textArray(arrayLength);
+		intArray = Payloads.intArray(arrayLength);
+	}
+
+	@Benchmark
+	public List<String> textElements() throws ArrayParserException {
+		return PostgresUtils.postgresArray2StringList(textArray);
+	}
+
+	@Benchmark
+	public List<String> intElements() throws ArrayParserException {
+		return PostgresUtils.postgresArray2StringList(intArray);
+	}
+}
@@ -0,0 +1,92 @@
+package org.valgog.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.valgog.spring.annotations.DataType;
+import org.valgog.spring.annotations.DatabaseField;
+
+/**
+ * Flat row of the scalar columns, a JavaBean that can be mapped by the BeanPropertyRowMapper as well
+ *
+ * @author valgog
+ */
+public class FlatItem {
+
+	@DatabaseField
+	private long id;
+
+	@DatabaseField
+	private String name;
+
+	@DatabaseField(type = DataType.COMMON_TEXT)
+	private String countryCode;
+
+	@DatabaseField
+	private BigDecimal amount;
+
+	@DatabaseField
+	private Timestamp created;
+
+	@DatabaseField
+	private boolean active;
+
+	@DatabaseField
+	private int quantity;
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getCountryCode() {
+		return countryCode;
+	}
+
+	public void setCountryCode(String countryCode) {
+		this.countryCode = countryCode;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	public void setAmount(BigDecimal amount) {
+		this.amount = amount;
+	}
+
+	public Timestamp getCreated() {
+		return created;
+	}
+
+	public void setCreated(Timestamp created) {
+		this.created = created;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+}
@@ -0,0 +1,57 @@
+package org.valgog.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valgog.utils.postgres.HStore;
+
+/**
+ * Reading of the hstore values by iterating over an {@link HStore} and with {@link HStore#asMap()}.
+ * Every invocation reads a new {@link HStore} of the same text, as the driver creates them for every row.
+ *
+ * @author valgog
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HStoreBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	int size;
+
+	private String rawValue;
+
+	@Setup
+	public void setUp() {
+		rawValue = Payloads.hstore(size).getValue();
+	}
+
+	@Benchmark
+	public int iterate() {
+		int length = 0;
+		for (Map.Entry<String, String> entry : new HStore(rawValue)) {
+			length += entry.getKey().length();
+			if ( entry.getValue() != null ) length += entry.getValue().length();
+		}
+		return length;
+	}
+
+	@Benchmark
+	public Map<String, String> asMap() {
+		return new HStore(rawValue).asMap();
+	}
+}
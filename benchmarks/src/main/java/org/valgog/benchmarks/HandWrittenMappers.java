@@ -0,0 +1,131 @@
+package org.valgog.benchmarks;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.valgog.spring.example.ChildChildClass;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.EmbededObject;
+import org.valgog.spring.example.ParentClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.utils.PostgresUtils;
+import org.valgog.utils.exceptions.ParserException;
+
+/**
+ * {@link RowMapper}s written by hand the way they are usually written with the PostgreSQL driver:
+ * ARRAYs of the scalars are taken with {@link Array#getArray()}, ROW values are split with the {@link PostgresUtils}.
+ * They are the baseline the {@link org.valgog.spring.AnnotatedRowMapper} is compared against.
+ *
+ * @author valgog
+ */
+final class HandWrittenMappers {
+
+	private HandWrittenMappers() {
+	}
+
+	static final RowMapper<FlatItem> FLAT = new RowMapper<FlatItem>() {
+		@Override
+		public FlatItem mapRow(ResultSet rs, int rowNum) throws SQLException {
+			final FlatItem item = new FlatItem();
+			item.setId(rs.getLong("id"));
+			item.setName(rs.getString("name"));
+			final String countryCode = rs.getString("country_code");
+			item.setCountryCode(countryCode == null ? null : countryCode.intern());
+			item.setAmount(rs.getBigDecimal("amount"));
+			item.setCreated(rs.getTimestamp("created"));
+			item.setActive(rs.getBoolean("active"));
+			item.setQuantity(rs.getInt("quantity"));
+			return item;
+		}
+	};
+
+	static final RowMapper<SimpleClass> ARRAYS = new RowMapper<SimpleClass>() {
+		@Override
+		public SimpleClass mapRow(ResultSet rs, int rowNum) throws SQLException {
+			final SimpleClass item = new SimpleClass();
+			final int id = rs.getInt("id");
+			item.setId(rs.wasNull() ? null : Integer.valueOf(id));
+			item.setName(rs.getString("name"));
+			final String countryCode = rs.getString("country_code");
+			item.setCountryCode(countryCode == null ? null : countryCode.intern());
+			final Array lastMarks = rs.getArray("last_marks");
+			if ( lastMarks != null ) {
+				final Integer[] marks = (Integer[]) lastMarks.getArray();
+				final int[] values = new int[marks.length];
+				for (int i = 0; i < marks.length; i++) {
+					values[i] = marks[i] == null ? 0 : marks[i].intValue();
+				}
+				item.setLastMarks(values);
+			}
+			final Array tags = rs.getArray("tags");
+			item.setTags(tags == null ? null : (String[]) tags.getArray());
+			return item;
+		}
+	};
+
+	static final RowMapper<ParentClass> COMPOSITES = new RowMapper<ParentClass>() {
+		@Override
+		public ParentClass mapRow(ResultSet rs, int rowNum) throws SQLException {
+			final ParentClass item = new ParentClass();
+			try {
+				item.setChildren(children(rs.getArray("children"), new ArrayList<ChildClass>()));
+				item.setChildrenSet(children(rs.getArray("set"), new HashSet<ChildClass>()));
+			} catch (ParserException e) {
+				throw new SQLException(e.getMessage(), e);
+			}
+			return item;
+		}
+	};
+
+	static final RowMapper<WithEmbed> EMBEDDED = new RowMapper<WithEmbed>() {
+		@Override
+		public WithEmbed mapRow(ResultSet rs, int rowNum) throws SQLException {
+			final WithEmbed item = new WithEmbed();
+			final EmbededObject embed = new EmbededObject();
+			embed.setX(rs.getInt("x"));
+			embed.setY(rs.getInt("y"));
+			item.setEmbed(embed);
+			item.setZ(rs.getInt("z"));
+			return item;
+		}
+	};
+
+	private static <C extends Collection<ChildClass>> C children(Array array, C children) throws SQLException, ParserException {
+		if ( array == null ) return null;
+		for (String element : (String[]) array.getArray()) {
+			if ( element == null ) {
+				children.add(null);
+				continue;
+			}
+			final List<String> fields = PostgresUtils.postgresROW2StringList(element);
+			final ChildClass child = new ChildClass();
+			child.setId(fields.get(0) == null ? null : Integer.valueOf(fields.get(0)));
+			child.setChild(childChild(fields.get(1)));
+			if ( fields.get(2) != null ) {
+				final List<String> elements = PostgresUtils.postgresArray2StringList(fields.get(2));
+				final List<ChildChildClass> childChildren = new ArrayList<ChildChildClass>(elements.size());
+				for (String childChild : elements) {
+					childChildren.add(childChild(childChild));
+				}
+				child.setChildren(childChildren);
+			}
+			children.add(child);
+		}
+		return children;
+	}
+
+	private static ChildChildClass childChild(String row) throws ParserException {
+		if ( row == null ) return null;
+		final String id = PostgresUtils.postgresROW2StringList(row).get(0);
+		final ChildChildClass childChild = new ChildChildClass();
+		childChild.setId(id == null ? null : Integer.valueOf(id));
+		return childChild;
+	}
+}
@@ -0,0 +1,94 @@
+package org.valgog.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * {@link ResultSet} over the rows held in memory, returning the values the way the PostgreSQL driver returns the text values,
+ * so that the mapping can be measured without a server. Call {@link ResultSet#beforeFirst()} to read the rows again.
+ *
+ * @author valgog
+ */
+final class InMemoryResultSet implements InvocationHandler {
+
+	private final String[] columns;
+	private final Object[][] rows;
+	private int position = -1;
+	private boolean wasNull;
+
+	private InMemoryResultSet(String[] columns, Object[][] rows) {
+		this.columns = columns;
+		this.rows = rows;
+	}
+
+	/**
+	 * @param columns labels of the columns
+	 * @param rows values of the rows, in the order of the columns
+	 */
+	static ResultSet create(String[] columns, Object[][] rows) {
+		final InMemoryResultSet handler = new InMemoryResultSet(columns, rows);
+		return (ResultSet) Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class, ResultSetMetaData.class }, handler);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+		final String name = method.getName();
+		if ( name.equals("next") ) return ++position < rows.length;
+		if ( name.equals("beforeFirst") ) {
+			position = -1;
+			return null;
+		}
+		if ( name.equals("wasNull") ) return wasNull;
+		if ( name.equals("getMetaData") ) return proxy;
+		if ( name.equals("getColumnCount") ) return columns.length;
+		if ( name.equals("getColumnLabel") || name.equals("getColumnName") ) return columns[(Integer) args[0] - 1];
+		if ( name.equals("getColumnType") ) return Types.VARCHAR;
+		if ( name.equals("getColumnTypeName") ) return "text";
+		if ( name.equals("getColumnClassName") ) return String.class.getName();
+		if ( name.equals("isNullable") ) return ResultSetMetaData.columnNullable;
+		if ( name.equals("getPrecision") || name.equals("getScale") ) return 0;
+		if ( name.equals("getStatement") ) return null;
+		if ( name.equals("findColumn") ) {
+			for (int i = 0; i < columns.length; i++) {
+				if ( columns[i].equals(args[0]) ) return i + 1;
+			}
+			throw new SQLException("The column name " + args[0] + " was not found in this ResultSet.");
+		}
+		if ( name.equals("hashCode") ) return System.identityHashCode(proxy);
+		if ( name.equals("equals") ) return proxy == args[0];
+		if ( name.equals("toString") ) return "InMemoryResultSet";
+		if ( name.startsWith("get") && args != null && args.length == 1 ) {
+			final int index = args[0] instanceof Integer ? (Integer) args[0] : (Integer) invoke(proxy, findColumn, args);
+			final Object value = rows[position][index - 1];
+			wasNull = value == null;
+			return convert(name, value);
+		}
+		throw new UnsupportedOperationException(name);
+	}
+
+	private static final Method findColumn;
+	static {
+		try {
+			findColumn = ResultSet.class.getMethod("findColumn", String.class);
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static Object convert(String getter, Object value) {
+		if ( getter.equals("getObject") ) return value;
+		if ( getter.equals("getString") ) return value == null ? null : value.toString();
+		final String s = value == null ? null : value.toString();
+		if ( getter.equals("getInt") ) return s == null ? 0 : Integer.parseInt(s);
+		if ( getter.equals("getLong") ) return s == null ? 0L : Long.parseLong(s);
+		if ( getter.equals("getShort") ) return s == null ? (short) 0 : Short.parseShort(s);
+		if ( getter.equals("getDouble") ) return s == null ? 0d : Double.parseDouble(s);
+		if ( getter.equals("getBoolean") ) return s != null && ( s.equals("t") || s.equals("true") );
+		throw new UnsupportedOperationException(getter);
+	}
+}
@@ -0,0 +1,81 @@
+package org.valgog.benchmarks;
+
+/**
+ * Histogram of the latencies in nanoseconds with the relative error below 3%: values below 64 have their own buckets,
+ * larger values are counted in 32 buckets per power of two. Histograms are not thread safe, every thread records
+ * into its own one and they are merged with {@link #add(LatencyHistogram)} afterwards.
+ *
+ * @author valgog
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+
+	private final long[] counts = new long[LINEAR_BUCKETS + ( 63 - SUB_BUCKET_BITS ) * SUB_BUCKETS];
+	private long totalCount;
+	private long max;
+
+	void record(long nanos) {
+		if ( nanos < 0 ) nanos = 0;
+		counts[bucket(nanos)]++;
+		totalCount++;
+		if ( nanos > max ) max = nanos;
+	}
+
+	/**
+	 * Record the same latency for the given number of the operations, e.g. the average of a batch timed as a whole
+	 */
+	void record(long nanos, long count) {
+		if ( nanos < 0 ) nanos = 0;
+		counts[bucket(nanos)] += count;
+		totalCount += count;
+		if ( nanos > max ) max = nanos;
+	}
+
+	void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		max = Math.max(max, other.max);
+	}
+
+	long getTotalCount() {
+		return totalCount;
+	}
+
+	long getMax() {
+		return max;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return upper bound of the bucket, where the given percentile of the recorded values falls
+	 */
+	long getPercentile(double percentile) {
+		if ( totalCount == 0 ) return 0;
+		final long rank = Math.max(1, (long) Math.ceil(totalCount * percentile / 100d));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if ( seen >= rank ) return Math.min(upperBound(i), max);
+		}
+		return max;
+	}
+
+	private static int bucket(long value) {
+		if ( value < LINEAR_BUCKETS ) return (int) value;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+		return LINEAR_BUCKETS + ( exponent - SUB_BUCKET_BITS - 1 ) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long upperBound(int bucket) {
+		if ( bucket < LINEAR_BUCKETS ) return bucket;
+		final int exponent = ( bucket - LINEAR_BUCKETS ) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		final long subBucket = ( bucket - LINEAR_BUCKETS ) % SUB_BUCKETS;
+		return ( ( SUB_BUCKETS + subBucket + 1 ) << ( exponent - SUB_BUCKET_BITS ) ) - 1;
+	}
+}
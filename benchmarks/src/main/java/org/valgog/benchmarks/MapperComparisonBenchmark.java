@@ -0,0 +1,188 @@
+package org.valgog.benchmarks;
+
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.RowMapper;
+import org.valgog.spring.AnnotatedRowMapper;
+import org.valgog.spring.example.ParentClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.utils.jdbc.RecordedArray;
+import org.valgog.utils.jdbc.RecordedResultSet;
+import org.valgog.utils.jdbc.ResultSetRecorder;
+
+/**
+ * Maps the same datasets with the {@link AnnotatedRowMapper}, Spring's {@link BeanPropertyRowMapper} and the
+ * {@link HandWrittenMappers}, to see the overhead of the annotation mapping against the hand written baseline.
+ * The datasets are replayed by the {@link RecordedResultSet} with the values of the classes the PostgreSQL driver returns:
+ * <ul>
+ * <li><b>flat</b>: scalar columns of the {@link FlatItem}
+ * <li><b>arrays</b>: the {@link SimpleClass} with the ARRAY columns of the given length
+ * <li><b>composites</b>: the {@link ParentClass} with the ARRAYs of the given length of the nested ROW values
+ * <li><b>embedded</b>: the {@link WithEmbed}, some of its columns are mapped into an embedded object
+ * </ul>
+ * The BeanPropertyRowMapper cannot map the ROW values and the embedded objects, so it runs on the first two datasets only,
+ * for the ARRAY columns it unwraps the {@link Array}s the way it is usually done with Spring.
+ * Run it with <code>BenchmarkMain</code> to get the bytes per row (<code>gc.alloc.rate.norm</code>) next to the ns per row.
+ *
+ * @author valgog
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperComparisonBenchmark {
+
+	static final int ROWS = 100;
+
+	@Param({ "10" })
+	int arrayLength;
+
+	private final AnnotatedRowMapper<FlatItem> annotatedFlat = AnnotatedRowMapper.getMapperForClass(FlatItem.class);
+	private final AnnotatedRowMapper<SimpleClass> annotatedArrays = AnnotatedRowMapper.getMapperForClass(SimpleClass.class);
+	private final AnnotatedRowMapper<ParentClass> annotatedComposites = AnnotatedRowMapper.getMapperForClass(ParentClass.class);
+	private final AnnotatedRowMapper<WithEmbed> annotatedEmbedded = AnnotatedRowMapper.getMapperForClass(WithEmbed.class);
+	private final RowMapper<FlatItem> beanPropertyFlat = new BeanPropertyRowMapper<FlatItem>(FlatItem.class);
+	private final RowMapper<SimpleClass> beanPropertyArrays = new ArrayUnwrappingRowMapper<SimpleClass>(SimpleClass.class);
+
+	private ResultSet flat;
+	private ResultSet arrays;
+	private ResultSet composites;
+	private ResultSet embedded;
+
+	/**
+	 * The usual way to map the ARRAY columns with the BeanPropertyRowMapper
+	 */
+	static final class ArrayUnwrappingRowMapper<T> extends BeanPropertyRowMapper<T> {
+		ArrayUnwrappingRowMapper(Class<T> mappedClass) {
+			super(mappedClass);
+		}
+
+		@Override
+		protected Object getColumnValue(ResultSet rs, int index, PropertyDescriptor pd) throws SQLException {
+			final Object value = super.getColumnValue(rs, index, pd);
+			return value instanceof Array ? ((Array) value).getArray() : value;
+		}
+	}
+
+	@Setup
+	public void setUp() throws SQLException, IOException {
+		final Object[][] flatRows = new Object[ROWS][];
+		final Object[][] arrayRows = new Object[ROWS][];
+		final Object[][] compositeRows = new Object[ROWS][];
+		final Object[][] embeddedRows = new Object[ROWS][];
+		for (int i = 0; i < ROWS; i++) {
+			flatRows[i] = new Object[] { Long.valueOf(i), "name " + i, i % 2 == 0 ? "DE" : "FR", new BigDecimal(i + ".50"),
+					new Timestamp(1273123689123L + i * 1000L), Boolean.valueOf(i % 3 == 0), Integer.valueOf(i % 7) };
+			arrayRows[i] = new Object[] { Integer.valueOf(i), "name " + i, i % 2 == 0 ? "DE" : null,
+					new RecordedArray(Payloads.intArray(arrayLength), Types.INTEGER, "int4"),
+					new RecordedArray(Payloads.textArray(arrayLength), Types.VARCHAR, "text") };
+			compositeRows[i] = new Object[] { new RecordedArray(Payloads.childArray(arrayLength), Types.OTHER, "child_type"),
+					new RecordedArray(Payloads.childArray(arrayLength / 2), Types.OTHER, "child_type") };
+			embeddedRows[i] = new Object[] { Integer.valueOf(i), Integer.valueOf(i + 1), Integer.valueOf(i + 2) };
+		}
+		flat = replay(new String[] { "id", "name", "country_code", "amount", "created", "active", "quantity" }, flatRows);
+		arrays = replay(new String[] { "id", "name", "country_code", "last_marks", "tags" }, arrayRows);
+		composites = replay(new String[] { "children", "set" }, compositeRows);
+		embedded = replay(new String[] { "x", "y", "z" }, embeddedRows);
+	}
+
+	private static ResultSet replay(String[] columns, Object[][] rows) throws SQLException, IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultSetRecorder.record(InMemoryResultSet.create(columns, rows), out);
+		return RecordedResultSet.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void flatAnnotated(Blackhole blackhole) throws SQLException {
+		map(annotatedFlat, flat, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void flatBeanProperty(Blackhole blackhole) throws SQLException {
+		map(beanPropertyFlat, flat, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void flatHandWritten(Blackhole blackhole) throws SQLException {
+		map(HandWrittenMappers.FLAT, flat, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void arraysAnnotated(Blackhole blackhole) throws SQLException {
+		map(annotatedArrays, arrays, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void arraysBeanProperty(Blackhole blackhole) throws SQLException {
+		map(beanPropertyArrays, arrays, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void arraysHandWritten(Blackhole blackhole) throws SQLException {
+		map(HandWrittenMappers.ARRAYS, arrays, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void compositesAnnotated(Blackhole blackhole) throws SQLException {
+		map(annotatedComposites, composites, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void compositesHandWritten(Blackhole blackhole) throws SQLException {
+		map(HandWrittenMappers.COMPOSITES, composites, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void embeddedAnnotated(Blackhole blackhole) throws SQLException {
+		map(annotatedEmbedded, embedded, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void embeddedHandWritten(Blackhole blackhole) throws SQLException {
+		map(HandWrittenMappers.EMBEDDED, embedded, blackhole);
+	}
+
+	private static <T> void map(RowMapper<T> mapper, ResultSet rs, Blackhole blackhole) throws SQLException {
+		rs.beforeFirst();
+		for (int rowNum = 0; rs.next(); rowNum++) {
+			blackhole.consume(mapper.mapRow(rs, rowNum));
+		}
+	}
+}
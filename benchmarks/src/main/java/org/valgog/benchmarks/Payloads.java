@@ -0,0 +1,92 @@
+package org.valgog.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.valgog.utils.postgres.HStore;
+
+/**
+ * Text representations of the ARRAY, ROW and hstore values of the given sizes, built the way the server writes them
+ *
+ * @author valgog
+ */
+final class Payloads {
+
+	private Payloads() {
+	}
+
+	/**
+	 * @return ARRAY of the given number of text elements, every fourth of them needs quoting
+	 */
+	static String textArray(int length) {
+		final StringBuilder s = new StringBuilder("{");
+		for (int i = 0; i < length; i++) {
+			if ( i > 0 ) s.append(',');
+			if ( i % 4 == 3 ) {
+				s.append("\"element ").append(i).append(" with \\\"quotes\\\"\"");
+			} else {
+				s.append("element").append(i);
+			}
+		}
+		return s.append('}').toString();
+	}
+
+	/**
+	 * @return ARRAY of the given number of integers
+	 */
+	static String intArray(int length) {
+		final StringBuilder s = new StringBuilder("{");
+		for (int i = 0; i < length; i++) {
+			if ( i > 0 ) s.append(',');
+			s.append(i * 31);
+		}
+		return s.append('}').toString();
+	}
+
+	/**
+	 * @return ROW of three columns, the last of which is a ROW of the depth - 1 (the deepest ROW has a text instead)
+	 */
+	static String nestedRow(int depth) {
+		String row = "(1,\"some text\",last)";
+		for (int i = 1; i < depth; i++) {
+			row = "(" + i + ",\"some text\"," + quote(row) + ")";
+		}
+		return row;
+	}
+
+	/**
+	 * @return ARRAY of the given number of the ROW values of the ChildClass (<code>(id,(id),{(id),..})</code>)
+	 */
+	static String childArray(int length) {
+		final StringBuilder s = new StringBuilder("{");
+		for (int i = 0; i < length; i++) {
+			if ( i > 0 ) s.append(',');
+			s.append(quote("(" + i + "," + quote("(" + ( i + 1 ) + ")") + "," + quote("{\"(" + ( i + 2 ) + ")\",\"(" + ( i + 3 ) + ")\"}") + ")"));
+		}
+		return s.append('}').toString();
+	}
+
+	/**
+	 * @return hstore of the given number of pairs
+	 */
+	static HStore hstore(int size) {
+		final Map<String, String> map = new LinkedHashMap<String, String>();
+		for (int i = 0; i < size; i++) {
+			map.put("key" + i, i % 5 == 4 ? null : "value \"" + i + "\"");
+		}
+		return HStore.valueOf(map);
+	}
+
+	/**
+	 * Quote the given value as an element of a ROW or an ARRAY
+	 */
+	static String quote(String value) {
+		final StringBuilder s = new StringBuilder(value.length() + 8).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char ch = value.charAt(i);
+			if ( ch == '"' || ch == '\\' ) s.append('\\');
+			s.append(ch);
+		}
+		return s.append('"').toString();
+	}
+}
@@ -0,0 +1,79 @@
+package org.valgog.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.valgog.spring.AnnotatedRowMapper;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.utils.jdbc.RecordedResultSet;
+import org.valgog.utils.jdbc.ResultSetRecorder;
+
+/**
+ * Mapping of all the rows of a {@link RecordedResultSet} with {@link AnnotatedRowMapper#mapRow(ResultSet, int)}.
+ * The recording file (recorded with the {@link ResultSetRecorder} from the production shaped data) and the mapped class
+ * are given as the parameters, like <code>-p recording=simple_table.pgrs.gz -p mappedClass=com.example.Item</code>.
+ * Without a recording, the rows of the {@link SimpleClass} with the ARRAY columns of 10 elements are recorded and replayed.
+ * The score is per the whole recording.
+ *
+ * @author valgog
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordedRowMapperBenchmark {
+
+	static final int ROWS = 1000;
+
+	@Param({ "" })
+	String recording;
+
+	@Param({ "org.valgog.spring.example.SimpleClass" })
+	String mappedClass;
+
+	private AnnotatedRowMapper<?> mapper;
+	private ResultSet rows;
+
+	@Setup
+	public void setUp() throws SQLException, IOException, ClassNotFoundException {
+		mapper = AnnotatedRowMapper.getMapperForClass(Class.forName(mappedClass));
+		if ( recording.length() > 0 ) {
+			rows = RecordedResultSet.read(new File(recording));
+		} else {
+			final Object[][] simple = new Object[ROWS][];
+			for (int i = 0; i < ROWS; i++) {
+				simple[i] = new Object[] { String.valueOf(i), "name " + i, i % 2 == 0 ? "DE" : null, Payloads.intArray(10), Payloads.textArray(10) };
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ResultSetRecorder.record(InMemoryResultSet.create(new String[] { "id", "name", "country_code", "last_marks", "tags" }, simple), out);
+			rows = RecordedResultSet.read(new ByteArrayInputStream(out.toByteArray()));
+		}
+	}
+
+	@Benchmark
+	public void mapRecording(Blackhole blackhole) throws SQLException {
+		rows.beforeFirst();
+		for (int rowNum = 0; rows.next(); rowNum++) {
+			blackhole.consume(mapper.mapRow(rows, rowNum));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.valgog.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.valgog.spring.AnnotatedRowMapper;
+import org.valgog.spring.example.ParentClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.utils.jdbc.RecordedResultSet;
+import org.valgog.utils.jdbc.ResultSetRecorder;
+
+/**
+ * Mapping of the rows replayed by a {@link RecordedResultSet} with {@link AnnotatedRowMapper#mapRow(ResultSet, int)}:
+ * flat rows of the {@link SimpleClass} with the ARRAY columns of the given length, and rows of the {@link ParentClass},
+ * that are ARRAYs of the given length of the nested ROW values. The rows are recorded from an {@link InMemoryResultSet},
+ * so that the reflective proxy of it is not measured. The scores are per row.
+ *
+ * @author valgog
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMapperBenchmark {
+
+	static final int ROWS = 100;
+
+	@Param({ "0", "10", "100" })
+	int arrayLength;
+
+	private final AnnotatedRowMapper<SimpleClass> simpleMapper = AnnotatedRowMapper.getMapperForClass(SimpleClass.class);
+	private final AnnotatedRowMapper<ParentClass> parentMapper = AnnotatedRowMapper.getMapperForClass(ParentClass.class);
+
+	private ResultSet simpleRows;
+	private ResultSet parentRows;
+
+	@Setup
+	public void setUp() throws SQLException, IOException {
+		final Object[][] simple = new Object[ROWS][];
+		final Object[][] parent = new Object[ROWS][];
+		for (int i = 0; i < ROWS; i++) {
+			simple[i] = new Object[] { String.valueOf(i), "name " + i, i % 2 == 0 ? "DE" : null, Payloads.intArray(arrayLength), Payloads.textArray(arrayLength) };
+			parent[i] = new Object[] { Payloads.childArray(arrayLength), Payloads.childArray(arrayLength / 2) };
+		}
+		simpleRows = replay(new String[] { "id", "name", "country_code", "last_marks", "tags" }, simple);
+		parentRows = replay(new String[] { "children", "set" }, parent);
+	}
+
+	private static ResultSet replay(String[] columns, Object[][] rows) throws SQLException, IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultSetRecorder.record(InMemoryResultSet.create(columns, rows), out);
+		return RecordedResultSet.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void mapSimple(Blackhole blackhole) throws SQLException {
+		map(simpleMapper, simpleRows, blackhole);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void mapNested(Blackhole blackhole) throws SQLException {
+		map(parentMapper, parentRows, blackhole);
+	}
+
+	private static <T> void map(AnnotatedRowMapper<T> mapper, ResultSet rs, Blackhole blackhole) throws SQLException {
+		rs.beforeFirst();
+		for (int rowNum = 0; rs.next(); rowNum++) {
+			blackhole.consume(mapper.mapRow(rs, rowNum));
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package org.valgog.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valgog.utils.PostgresUtils;
+import org.valgog.utils.exceptions.RowParserException;
+
+/**
+ * Splitting of the nested ROW text representations with {@link PostgresUtils#postgresROW2StringList(String)},
+ * every level of the nesting is split, as a mapper of the nested objects does it
+ *
+ * @author valgog
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowParserBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	int nestingDepth;
+
+	private String row;
+
+	@Setup
+	public void setUp() {
+		row = Payloads.nestedRow(nestingDepth);
+	}
+
+	@Benchmark
+	public int splitAllLevels() throws RowParserException {
+		int elements = 0;
+		String value = row;
+		for (int level = 0; level < nestingDepth; level++) {
+			final List<String> columns = PostgresUtils.postgresROW2StringList(value);
+			elements += columns.size();
+			value = columns.get(2);
+		}
+		return elements;
+	}
+
+	@Benchmark
+	public List<String> splitTopLevel() throws RowParserException {
+		return PostgresUtils.postgresROW2StringList(row);
+	}
+}
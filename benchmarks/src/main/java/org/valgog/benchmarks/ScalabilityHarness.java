@@ -0,0 +1,339 @@
+package org.valgog.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import org.valgog.spring.AnnotatedRowMapper;
+import org.valgog.spring.example.ChildChildClass;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.ExtendedClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.utils.jdbc.RecordedResultSet;
+import org.valgog.utils.jdbc.ResultSetRecorder;
+
+/**
+ * Runs a fixed mapping workload at 1, 2, 4, ... N platform threads and then at the same numbers of virtual threads
+ * (when the JVM supports them), and reports the throughput, the latency percentiles per row and the scaling efficiency
+ * for every step. All the threads share the mapping descriptors of the mapped class, every thread replays its own copy
+ * of the recording and gets the mapper with {@link AnnotatedRowMapper#getMapperForClass(Class)} for every pass
+ * over it, the way a DAO does for every query.
+ * <p>The scaling efficiency is the throughput divided by the single thread throughput multiplied by the number of the
+ * threads, that can run in parallel (the smaller of the thread count and the number of the processors), so that a
+ * mapper free of contention stays close to 1.0 along the whole curve.
+ * <p>With {@code -m descriptors} the threads do not map rows, but only look up the cached mapping descriptors of a few
+ * example classes, which every mapped row does at least once; the lookups are timed in batches of {@value #LOOKUP_BATCH}.
+ * <pre>
+ * java -cp target/benchmarks.jar org.valgog.benchmarks.ScalabilityHarness [options]
+ *     -t threads       maximum number of the threads N, the default is the number of the processors
+ *     -d seconds       duration of every step, 5 by default
+ *     -w seconds       warm up duration before the first step, 10 by default
+ *     -r recording     file recorded with the {@link ResultSetRecorder}, SimpleClass rows are generated by default
+ *     -c class         class to map the recording with
+ *     -e efficiency    exit with 1, if the efficiency of any platform thread step falls below the given value
+ *     -m workload      rows (the default) or descriptors
+ * </pre>
+ * Per row latencies are measured with {@link System#nanoTime()}, which adds some 20-30 nanoseconds to every row.
+ *
+ * @author valgog
+ */
+public final class ScalabilityHarness {
+
+	static final int GENERATED_ROWS = 1000;
+	static final int LOOKUP_BATCH = 64;
+
+	private static final Class<?>[] DESCRIPTOR_CLASSES = { SimpleClass.class, ExtendedClass.class, ChildClass.class, ChildChildClass.class, WithEmbed.class };
+
+	/**
+	 * {@code AnnotatedRowMapper.getFieldMappingDescriptorList(Class)}, which is not public
+	 */
+	private static final MethodHandle DESCRIPTOR_LOOKUP = descriptorLookup();
+
+	private static final String[] COUNTRY_CODES = { "DE", "FR", "NL", "AT", "CH", "IT", "ES", "PL" };
+
+	private final byte[] recording;
+	private final Class<?> mappedClass;
+	private final boolean descriptorLookups;
+	private final int processors = Runtime.getRuntime().availableProcessors();
+
+	ScalabilityHarness(byte[] recording, Class<?> mappedClass, boolean descriptorLookups) {
+		this.recording = recording;
+		this.mappedClass = mappedClass;
+		this.descriptorLookups = descriptorLookups;
+	}
+
+	/**
+	 * Result of a single step of the harness
+	 */
+	static final class StepResult {
+		final String kind;
+		final int threads;
+		final double rowsPerSecond;
+		final LatencyHistogram latencies;
+
+		StepResult(String kind, int threads, double rowsPerSecond, LatencyHistogram latencies) {
+			this.kind = kind;
+			this.threads = threads;
+			this.rowsPerSecond = rowsPerSecond;
+			this.latencies = latencies;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		long stepSeconds = 5;
+		long warmupSeconds = 10;
+		String recordingFile = null;
+		String className = SimpleClass.class.getName();
+		double minEfficiency = 0;
+		String workload = "rows";
+		for (int i = 0; i < args.length; i++) {
+			final String option = args[i];
+			if ( i + 1 == args.length ) throw new IllegalArgumentException("Value of the option " + option + " is missing");
+			final String value = args[++i];
+			if ( option.equals("-t") ) {
+				maxThreads = Integer.parseInt(value);
+			} else if ( option.equals("-d") ) {
+				stepSeconds = Long.parseLong(value);
+			} else if ( option.equals("-w") ) {
+				warmupSeconds = Long.parseLong(value);
+			} else if ( option.equals("-r") ) {
+				recordingFile = value;
+			} else if ( option.equals("-c") ) {
+				className = value;
+			} else if ( option.equals("-e") ) {
+				minEfficiency = Double.parseDouble(value);
+			} else if ( option.equals("-m") ) {
+				if ( !value.equals("rows") && !value.equals("descriptors") ) throw new IllegalArgumentException("Unknown workload " + value);
+				workload = value;
+			} else {
+				throw new IllegalArgumentException("Unknown option " + option);
+			}
+		}
+		final byte[] recording = recordingFile == null ? generatedRecording() : readRecording(new File(recordingFile));
+		final boolean descriptorLookups = workload.equals("descriptors");
+		final ScalabilityHarness harness = new ScalabilityHarness(recording, Class.forName(className), descriptorLookups);
+
+		if ( descriptorLookups ) {
+			System.out.printf("Looking up mapping descriptors with up to %d threads on %d processors%n", maxThreads, harness.processors);
+		} else {
+			System.out.printf("Mapping %s with up to %d threads on %d processors%n", className, maxThreads, harness.processors);
+		}
+		harness.runStep("warmup", platformThreads(), maxThreads, TimeUnit.SECONDS.toNanos(warmupSeconds));
+
+		final List<StepResult> results = new ArrayList<StepResult>();
+		final ThreadFactory virtualThreads = virtualThreads();
+		for (int threads : threadCounts(maxThreads)) {
+			results.add(harness.runStep("platform", platformThreads(), threads, TimeUnit.SECONDS.toNanos(stepSeconds)));
+		}
+		if ( virtualThreads != null ) {
+			for (int threads : threadCounts(maxThreads)) {
+				results.add(harness.runStep("virtual", virtualThreads, threads, TimeUnit.SECONDS.toNanos(stepSeconds)));
+			}
+		} else {
+			System.out.println("Virtual threads are not supported by this JVM, the virtual thread steps are skipped");
+		}
+
+		boolean failed = false;
+		System.out.printf("%-9s %8s %14s %10s %10s %10s %10s %10s%n", "threads", "count", descriptorLookups ? "lookups/s" : "rows/s", "p50 ns", "p99 ns", "p99.9 ns", "max ns", "efficiency");
+		for (StepResult result : results) {
+			final double efficiency = harness.efficiency(results, result);
+			System.out.printf(Locale.US, "%-9s %8d %14.0f %10d %10d %10d %10d %10.2f%n", result.kind, result.threads, result.rowsPerSecond,
+					result.latencies.getPercentile(50), result.latencies.getPercentile(99), result.latencies.getPercentile(99.9),
+					result.latencies.getMax(), efficiency);
+			if ( result.kind.equals("platform") && efficiency < minEfficiency ) failed = true;
+		}
+		if ( failed ) {
+			System.out.printf(Locale.US, "Scaling efficiency fell below %.2f%n", minEfficiency);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return 1, 2, 4, ... up to the given maximum, that is always included
+	 */
+	static List<Integer> threadCounts(int maxThreads) {
+		final List<Integer> counts = new ArrayList<Integer>();
+		for (int threads = 1; threads < maxThreads; threads *= 2) {
+			counts.add(threads);
+		}
+		counts.add(maxThreads);
+		return counts;
+	}
+
+	double efficiency(List<StepResult> results, StepResult result) {
+		for (StepResult single : results) {
+			if ( single.kind.equals(result.kind) && single.threads == 1 ) {
+				return result.rowsPerSecond / ( single.rowsPerSecond * Math.min(result.threads, processors) );
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Map the recording with the given number of the threads for the given time
+	 */
+	StepResult runStep(String kind, ThreadFactory threadFactory, int threads, long durationNanos) throws InterruptedException, IOException {
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Worker[] workers = new Worker[threads];
+		final long[] deadline = new long[1];
+		for (int i = 0; i < threads; i++) {
+			final Worker worker = new Worker(RecordedResultSet.read(new ByteArrayInputStream(recording)));
+			workers[i] = worker;
+			threadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						ready.countDown();
+						start.await();
+						worker.run(deadline[0]);
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		ready.await();
+		final long startTime = System.nanoTime();
+		deadline[0] = startTime + durationNanos;
+		start.countDown();
+		done.await();
+		final long elapsed = System.nanoTime() - startTime;
+		if ( failure.get() != null ) throw new IllegalStateException("Mapping failed in the " + kind + " step with " + threads + " threads", failure.get());
+		final LatencyHistogram latencies = new LatencyHistogram();
+		for (Worker worker : workers) {
+			latencies.add(worker.latencies);
+		}
+		return new StepResult(kind, threads, latencies.getTotalCount() * 1e9 / elapsed, latencies);
+	}
+
+	/**
+	 * Maps its own copy of the recording over and over till the deadline
+	 */
+	private final class Worker {
+		final ResultSet rows;
+		final LatencyHistogram latencies = new LatencyHistogram();
+		Object sink;
+
+		Worker(ResultSet rows) {
+			this.rows = rows;
+		}
+
+		void run(long deadline) throws Throwable {
+			if ( descriptorLookups ) {
+				lookUpDescriptors(deadline);
+				return;
+			}
+			while ( System.nanoTime() < deadline ) {
+				final AnnotatedRowMapper<?> mapper = AnnotatedRowMapper.getMapperForClass(mappedClass);
+				rows.beforeFirst();
+				for (int rowNum = 0; rows.next(); rowNum++) {
+					final long rowStart = System.nanoTime();
+					sink = mapper.mapRow(rows, rowNum);
+					latencies.record(System.nanoTime() - rowStart);
+				}
+			}
+		}
+
+		void lookUpDescriptors(long deadline) throws Throwable {
+			final Class<?>[] classes = DESCRIPTOR_CLASSES;
+			int sizes = 0;
+			while ( System.nanoTime() < deadline ) {
+				final long batchStart = System.nanoTime();
+				for (int i = 0; i < LOOKUP_BATCH; i++) {
+					sizes += ( (List<?>) DESCRIPTOR_LOOKUP.invokeExact(classes[i % classes.length]) ).size();
+				}
+				latencies.record(( System.nanoTime() - batchStart ) / LOOKUP_BATCH, LOOKUP_BATCH);
+			}
+			sink = sizes;
+		}
+	}
+
+	private static MethodHandle descriptorLookup() {
+		try {
+			final Method method = AnnotatedRowMapper.class.getDeclaredMethod("getFieldMappingDescriptorList", Class.class);
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method).asType(MethodType.methodType(List.class, Class.class));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Mapping descriptor lookup is not accessible", e);
+		}
+	}
+
+	private static ThreadFactory platformThreads() {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "mapper-worker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * @return factory of the virtual threads or null, if the JVM does not support them (before Java 21)
+	 */
+	static ThreadFactory virtualThreads() {
+		try {
+			final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			final Object builder = ofVirtual.invoke(null);
+			final Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			// not available or a preview API without --enable-preview
+			return null;
+		}
+	}
+
+	/**
+	 * Rows of the {@link SimpleClass}, with the COMMON_TEXT country codes out of a small set and the ARRAY columns
+	 */
+	static byte[] generatedRecording() throws SQLException, IOException {
+		final Object[][] rows = new Object[GENERATED_ROWS][];
+		for (int i = 0; i < GENERATED_ROWS; i++) {
+			rows[i] = new Object[] { String.valueOf(i), "name " + i, i % 10 == 9 ? null : COUNTRY_CODES[i % COUNTRY_CODES.length],
+					Payloads.intArray(i % 20), Payloads.textArray(i % 10) };
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultSetRecorder.record(InMemoryResultSet.create(new String[] { "id", "name", "country_code", "last_marks", "tags" }, rows), out);
+		return out.toByteArray();
+	}
+
+	private static byte[] readRecording(File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final InputStream stream = file.getName().endsWith(".gz") ? new GZIPInputStream(in) : in;
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			for (int read; ( read = stream.read(buffer) ) > 0;) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+}
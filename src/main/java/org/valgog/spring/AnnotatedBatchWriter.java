@@ -0,0 +1,258 @@
+package org.valgog.spring;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+/**
+ * Writes objects of the classes annotated for the {@link AnnotatedRowMapper} into a table,
+ * binding their {@link DatabaseField} fields to the parameters of an INSERT, UPDATE or UPSERT statement.
+ * <p>The statement and the binding plan (parameter index and binder of every mapped field, including the fields
+ * of the embedded objects) are created once, so that binding an object is a sequence of direct {@code setXXX} calls.
+ * Objects are written in JDBC batches of the configured size. INSERT statements are plain single row
+ * <code>INSERT ... VALUES (...)</code> statements, so that the driver can rewrite the batches into multi row inserts
+ * (<code>reWriteBatchedInserts</code> connection option of the newer drivers).
+ *
+ * <pre>
+ * final AnnotatedBatchWriter&lt;SimpleClass&gt; writer = AnnotatedBatchWriter.insert(SimpleClass.class, "simple_table").withBatchSize(500);
+ * writer.write(connection, items);
+ * </pre>
+ *
+ * Writers are immutable and thread safe.
+ *
+ * @author valgog
+ *
+ * @param <ITEM> type of the written objects
+ */
+public final class AnnotatedBatchWriter<ITEM> {
+
+	static final Logger logger = Logger.getLogger(AnnotatedBatchWriter.class.getName());
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private final Class<ITEM> itemClass;
+	private final String sql;
+	private final ParameterBinder.ColumnBinding[] parameterBindings;
+	private final int batchSize;
+
+	private AnnotatedBatchWriter(Class<ITEM> itemClass, String sql, ParameterBinder.ColumnBinding[] parameterBindings, int batchSize) {
+		this.itemClass = itemClass;
+		this.sql = sql;
+		this.parameterBindings = parameterBindings;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Create the writer inserting the objects of the given class into the given table, all the mapped fields are inserted.
+	 * @param itemClass class of the written objects
+	 * @param tableName name of the table (can be qualified with the schema name)
+	 * @throws FieldDescriptionException if the given class cannot be mapped
+	 */
+	public static final <ITEM> AnnotatedBatchWriter<ITEM> insert(Class<ITEM> itemClass, String tableName) throws SQLException {
+		final List<ParameterBinder.ColumnBinding> bindings = ParameterBinder.ColumnBinding.forClass(itemClass);
+		final StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName);
+		appendInsertColumns(sql, bindings);
+		return create(itemClass, sql.toString(), bindings);
+	}
+
+	/**
+	 * Create the writer updating the rows of the given table, identified by the values of the key columns,
+	 * all the other mapped fields are updated.
+	 * @param itemClass class of the written objects
+	 * @param tableName name of the table (can be qualified with the schema name)
+	 * @param keyColumns names of the columns, identifying the updated rows (database field names of the mapped fields)
+	 * @throws FieldDescriptionException if the given class cannot be mapped, the key columns are not mapped
+	 * or all the mapped columns are key columns, so that there is nothing to update
+	 */
+	public static final <ITEM> AnnotatedBatchWriter<ITEM> update(Class<ITEM> itemClass, String tableName, String... keyColumns) throws SQLException {
+		final List<ParameterBinder.ColumnBinding> bindings = ParameterBinder.ColumnBinding.forClass(itemClass);
+		final List<ParameterBinder.ColumnBinding> keyBindings = extractKeyBindings(itemClass, bindings, keyColumns);
+		if ( bindings.isEmpty() ) {
+			throw new FieldDescriptionException("All the mapped columns of " + itemClass.getName() + " are key columns " + Arrays.toString(keyColumns) + ", there are no columns to update");
+		}
+		final StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+		for (int i = 0; i < bindings.size(); i++) {
+			if ( i > 0 ) sql.append(", ");
+			sql.append(bindings.get(i).columnName).append(" = ?");
+		}
+		sql.append(" WHERE ");
+		for (int i = 0; i < keyBindings.size(); i++) {
+			if ( i > 0 ) sql.append(" AND ");
+			sql.append(keyBindings.get(i).columnName).append(" = ?");
+		}
+		// key columns are bound after the updated ones
+		bindings.addAll(keyBindings);
+		return create(itemClass, sql.toString(), bindings);
+	}
+
+	/**
+	 * Create the writer inserting the objects of the given class into the given table or updating the existing rows
+	 * with the same values of the key columns (<code>INSERT ... ON CONFLICT (...) DO UPDATE</code>, PostgreSQL 9.5 or later).
+	 * @param itemClass class of the written objects
+	 * @param tableName name of the table (can be qualified with the schema name)
+	 * @param keyColumns names of the columns of a unique constraint (database field names of the mapped fields)
+	 * @throws FieldDescriptionException if the given class cannot be mapped or the key columns are not mapped
+	 */
+	public static final <ITEM> AnnotatedBatchWriter<ITEM> upsert(Class<ITEM> itemClass, String tableName, String... keyColumns) throws SQLException {
+		final List<ParameterBinder.ColumnBinding> bindings = ParameterBinder.ColumnBinding.forClass(itemClass);
+		final List<ParameterBinder.ColumnBinding> updatedBindings = new ArrayList<ParameterBinder.ColumnBinding>(bindings);
+		final List<ParameterBinder.ColumnBinding> keyBindings = extractKeyBindings(itemClass, updatedBindings, keyColumns);
+		final StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName);
+		appendInsertColumns(sql, bindings);
+		sql.append(" ON CONFLICT (");
+		for (int i = 0; i < keyBindings.size(); i++) {
+			if ( i > 0 ) sql.append(", ");
+			sql.append(keyBindings.get(i).columnName);
+		}
+		if ( updatedBindings.isEmpty() ) {
+			sql.append(") DO NOTHING");
+		} else {
+			sql.append(") DO UPDATE SET ");
+			for (int i = 0; i < updatedBindings.size(); i++) {
+				if ( i > 0 ) sql.append(", ");
+				final String columnName = updatedBindings.get(i).columnName;
+				sql.append(columnName).append(" = EXCLUDED.").append(columnName);
+			}
+		}
+		return create(itemClass, sql.toString(), bindings);
+	}
+
+	private static final void appendInsertColumns(StringBuilder sql, List<ParameterBinder.ColumnBinding> bindings) {
+		sql.append(" (");
+		for (int i = 0; i < bindings.size(); i++) {
+			if ( i > 0 ) sql.append(", ");
+			sql.append(bindings.get(i).columnName);
+		}
+		sql.append(") VALUES (");
+		for (int i = 0; i < bindings.size(); i++) {
+			sql.append(i > 0 ? ", ?" : "?");
+		}
+		sql.append(')');
+	}
+
+	/**
+	 * Remove the bindings of the key columns from the given list of the bindings
+	 * @return bindings of the key columns in the given order
+	 */
+	private static final List<ParameterBinder.ColumnBinding> extractKeyBindings(Class<?> itemClass, List<ParameterBinder.ColumnBinding> bindings, String[] keyColumns) throws FieldDescriptionException {
+		if ( keyColumns.length == 0 ) {
+			throw new FieldDescriptionException("At least one key column should be given to write " + itemClass.getName());
+		}
+		final List<ParameterBinder.ColumnBinding> keyBindings = new ArrayList<ParameterBinder.ColumnBinding>(keyColumns.length);
+		search:
+		for (String keyColumn : keyColumns) {
+			for (Iterator<ParameterBinder.ColumnBinding> i = bindings.iterator(); i.hasNext();) {
+				final ParameterBinder.ColumnBinding binding = i.next();
+				if ( binding.columnName.equals(keyColumn) ) {
+					keyBindings.add(binding);
+					i.remove();
+					continue search;
+				}
+			}
+			throw new FieldDescriptionException("Key column " + keyColumn + " is not mapped to any field of " + itemClass.getName());
+		}
+		return keyBindings;
+	}
+
+	private static final <ITEM> AnnotatedBatchWriter<ITEM> create(Class<ITEM> itemClass, String sql, List<ParameterBinder.ColumnBinding> parameterBindings) {
+		if ( logger.isLoggable(Level.FINE) ) {
+			logger.fine("Objects of " + itemClass.getName() + " will be written with [" + sql + "]");
+		}
+		return new AnnotatedBatchWriter<ITEM>(itemClass, sql, parameterBindings.toArray(new ParameterBinder.ColumnBinding[parameterBindings.size()]), DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param batchSize number of the objects, that are sent to the database in one batch
+	 * @return writer with the same statement and the given batch size
+	 */
+	public AnnotatedBatchWriter<ITEM> withBatchSize(int batchSize) {
+		if ( batchSize < 1 ) throw new IllegalArgumentException("Batch size should be positive");
+		return new AnnotatedBatchWriter<ITEM>(itemClass, sql, parameterBindings, batchSize);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return SQL statement, that is used to write the objects
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return names of the columns in the order of the statement parameters
+	 */
+	public List<String> getParameterColumns() {
+		final String[] columns = new String[parameterBindings.length];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = parameterBindings[i].columnName;
+		}
+		return Arrays.asList(columns);
+	}
+
+	/**
+	 * Bind the fields of the given object to the parameters of the given statement,
+	 * that should be prepared from {@link #getSql()}
+	 */
+	public void bind(PreparedStatement ps, ITEM item) throws SQLException {
+		for (int i = 0; i < parameterBindings.length; i++) {
+			final ParameterBinder.ColumnBinding binding = parameterBindings[i];
+			binding.binder.bind(ps, i + 1, binding.getValue(item));
+		}
+	}
+
+	/**
+	 * Write all the given objects, sending them to the database in batches of the configured size
+	 * @return number of the written objects
+	 */
+	public int write(Connection connection, Iterable<? extends ITEM> items) throws SQLException {
+		return write(connection, items.iterator());
+	}
+
+	/**
+	 * Write all the objects of the given iterator, sending them to the database in batches of the configured size
+	 * @return number of the written objects
+	 */
+	public int write(Connection connection, Iterator<? extends ITEM> items) throws SQLException {
+		final PreparedStatement ps = connection.prepareStatement(sql);
+		try {
+			return write(ps, items);
+		} finally {
+			ps.close();
+		}
+	}
+
+	/**
+	 * Write all the objects of the given iterator with the given statement, that should be prepared from {@link #getSql()},
+	 * sending them to the database in batches of the configured size
+	 * @return number of the written objects
+	 */
+	public int write(PreparedStatement ps, Iterator<? extends ITEM> items) throws SQLException {
+		int count = 0;
+		int batched = 0;
+		while ( items.hasNext() ) {
+			bind(ps, items.next());
+			ps.addBatch();
+			count++;
+			if ( ++batched == batchSize ) {
+				ps.executeBatch();
+				batched = 0;
+			}
+		}
+		if ( batched > 0 ) {
+			ps.executeBatch();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,497 @@
+package org.valgog.spring;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+/**
+ * Reads the output of <code>COPY ... TO STDOUT</code> in the text or CSV format directly into the objects of the classes
+ * annotated for the {@link AnnotatedRowMapper}, without going through a {@link java.sql.ResultSet}.
+ * <p>The stream is split into the rows and columns in a single pass by a small state machine, that unescapes the values
+ * while it reads them. Values of the columns, that are mapped to {@link DatabaseField} fields, are converted with the converters
+ * of the fields, the same way as the text values of a result set (including ARRAY and ROW values), the other columns are skipped.
+ * Every object is passed to the handler as soon as its row is read, so that the streams of any size are read in a constant memory.
+ *
+ * <pre>
+ * final AnnotatedCopyReader&lt;SimpleClass&gt; reader = AnnotatedCopyReader.forClass(SimpleClass.class, AnnotatedCopyReader.Format.CSV);
+ * reader.copyOut(connection, "simple_table", new ItemHandler&lt;SimpleClass&gt;() {
+ *     public void handleItem(SimpleClass item) { cache.put(item.getId(), item); }
+ * });
+ * </pre>
+ *
+ * Readers are immutable and thread safe.
+ *
+ * @author valgog
+ *
+ * @param <ITEM> type of the read objects
+ */
+public final class AnnotatedCopyReader<ITEM> {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int BLOCK_SIZE = 8192;
+
+	/**
+	 * Formats of the COPY streams
+	 */
+	public static enum Format {
+		/**
+		 * Tab separated values with the backslash escapes and <code>\N</code> for NULL values
+		 */
+		TEXT,
+		/**
+		 * Comma separated values with the quoted values and empty unquoted values for NULL values
+		 */
+		CSV
+	}
+
+	private final Class<ITEM> itemClass;
+	private final Format format;
+	private final boolean header;
+	private final String[] columns;
+	private final boolean[] mappedColumns;
+	private final TextRowPlan<ITEM> plan;
+
+	private AnnotatedCopyReader(Class<ITEM> itemClass, Format format, boolean header, String[] columns, boolean[] mappedColumns, TextRowPlan<ITEM> plan) {
+		this.itemClass = itemClass;
+		this.format = format;
+		this.header = header;
+		this.columns = columns;
+		this.mappedColumns = mappedColumns;
+		this.plan = plan;
+	}
+
+	/**
+	 * Create the reader of the streams, that contain the columns of all the mapped fields of the given class
+	 * (including the fields of the embedded objects) in the order of their declaration
+	 * @param itemClass class of the read objects
+	 * @param format format of the streams
+	 * @throws FieldDescriptionException if the given class cannot be mapped
+	 */
+	public static final <ITEM> AnnotatedCopyReader<ITEM> forClass(Class<ITEM> itemClass, Format format) throws SQLException {
+		final List<ParameterBinder.ColumnBinding> bindings = ParameterBinder.ColumnBinding.forClass(itemClass);
+		final String[] columns = new String[bindings.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = bindings.get(i).columnName;
+		}
+		return forColumns(itemClass, format, columns);
+	}
+
+	/**
+	 * Create the reader of the streams, that contain the given columns
+	 * @param itemClass class of the read objects
+	 * @param format format of the streams
+	 * @param columns names of the columns of the streams in their order, columns, that are not mapped, are skipped
+	 * @throws FieldDescriptionException if the given class cannot be mapped or a not optional field has no column
+	 */
+	public static final <ITEM> AnnotatedCopyReader<ITEM> forColumns(Class<ITEM> itemClass, Format format, String... columns) throws SQLException {
+		final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+		for (int i = 0; i < columns.length; i++) {
+			if ( columnIndexes.put(columns[i], i) != null ) {
+				throw new FieldDescriptionException("Column " + columns[i] + " is given more then once");
+			}
+		}
+		final boolean[] mappedColumns = new boolean[columns.length];
+		final TextRowPlan<ITEM> plan = new TextRowPlan<ITEM>(itemClass, columnIndexes, mappedColumns, true);
+		return new AnnotatedCopyReader<ITEM>(itemClass, format, false, columns.clone(), mappedColumns, plan);
+	}
+
+	/**
+	 * @return reader of the streams, that start with a header line (<code>COPY ... TO STDOUT WITH CSV HEADER</code>)
+	 */
+	public AnnotatedCopyReader<ITEM> withHeader() {
+		return new AnnotatedCopyReader<ITEM>(itemClass, format, true, columns, mappedColumns, plan);
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return names of the columns in the order they are expected in the streams
+	 */
+	public List<String> getColumns() {
+		return Arrays.asList(columns.clone());
+	}
+
+	/**
+	 * Get the COPY statement, that produces the streams of this reader
+	 * @param source name of the table (can be qualified with the schema name) or a query in parentheses
+	 * @return statement like <code>COPY table (a, b) TO STDOUT WITH CSV</code>
+	 */
+	public String getSql(String source) {
+		final StringBuilder sql = new StringBuilder("COPY ").append(source);
+		if ( ! source.startsWith("(") ) {
+			// queries define their columns themselves
+			sql.append(" (");
+			for (int i = 0; i < columns.length; i++) {
+				if ( i > 0 ) sql.append(", ");
+				sql.append(columns[i]);
+			}
+			sql.append(')');
+		}
+		sql.append(" TO STDOUT");
+		if ( format == Format.CSV ) {
+			sql.append(header ? " WITH CSV HEADER" : " WITH CSV");
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Execute the COPY statement returned by {@link #getSql(String)} and pass the objects to the given handler,
+	 * the connection should be a PostgreSQL connection (or wrap one, so that it can be unwrapped into {@link PGConnection})
+	 * @param source name of the table or a query in parentheses
+	 * @return number of the read objects
+	 */
+	public long copyOut(Connection connection, String source, ItemHandler<? super ITEM> handler) throws SQLException {
+		final PGConnection pgConnection = connection instanceof PGConnection ? (PGConnection) connection : connection.unwrap(PGConnection.class);
+		final Parser parser = new Parser(handler);
+		try {
+			pgConnection.getCopyAPI().copyOut(getSql(source), parser);
+			return parser.finish();
+		} catch (HandlerException e) {
+			throw e.getCause();
+		} catch (IOException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Read all the rows of the given stream and pass the objects to the given handler
+	 * @return number of the read objects
+	 */
+	public long read(Reader reader, ItemHandler<? super ITEM> handler) throws SQLException, IOException {
+		final Parser parser = new Parser(handler);
+		final char[] block = new char[BLOCK_SIZE];
+		try {
+			for (int length; ( length = reader.read(block) ) >= 0;) {
+				parser.write(block, 0, length);
+			}
+			return parser.finish();
+		} catch (HandlerException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Read all the rows of the given UTF-8 encoded stream and pass the objects to the given handler
+	 * @return number of the read objects
+	 */
+	public long read(InputStream in, ItemHandler<? super ITEM> handler) throws SQLException, IOException {
+		return read(new InputStreamReader(in, UTF8), handler);
+	}
+
+	/**
+	 * Get the iterator, that reads the given stream lazily, block by block. Errors are thrown as
+	 * {@link UncategorizedSQLException} and {@link UncheckedIOException}.
+	 */
+	public Iterator<ITEM> iterator(Reader reader) {
+		return new ItemIterator(reader);
+	}
+
+	/**
+	 * Passes the exceptions of the handlers through the {@link Writer} methods
+	 */
+	private static final class HandlerException extends IOException {
+		private static final long serialVersionUID = 3326491622340524307L;
+
+		HandlerException(SQLException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized SQLException getCause() {
+			return (SQLException) super.getCause();
+		}
+	}
+
+	/**
+	 * States of the parser
+	 */
+	private static final int FIELD = 0;
+	private static final int ESCAPE = 1;
+	private static final int OCTAL = 2;
+	private static final int HEX = 3;
+	private static final int QUOTED = 4;
+	private static final int QUOTE = 5;
+	private static final int END_OF_DATA = 6;
+
+	/**
+	 * Splits the stream, that is written into it, into the rows and columns
+	 */
+	private final class Parser extends Writer {
+		private final ItemHandler<? super ITEM> handler;
+		private final StringBuilder field = new StringBuilder();
+		private final String[] values = new String[columns.length];
+		private int state = FIELD;
+		private int column;
+		private boolean rowStarted;
+		private boolean quoted;
+		private boolean nullMarker;
+		private int escapeValue;
+		private int escapeDigits;
+		private boolean skipRow = header;
+		private long lines;
+		private long count;
+
+		Parser(ItemHandler<? super ITEM> handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) throws IOException {
+			try {
+				if ( format == Format.TEXT ) {
+					for (int i = offset, end = offset + length; i < end; i++) {
+						text(chars[i]);
+					}
+				} else {
+					for (int i = offset, end = offset + length; i < end; i++) {
+						csv(chars[i]);
+					}
+				}
+			} catch (SQLException e) {
+				throw new HandlerException(e);
+			}
+		}
+
+		private void text(char ch) throws SQLException {
+			switch ( state ) {
+			case FIELD:
+				if ( ch == '\t' ) {
+					endField(nullMarker && field.length() == 0);
+				} else if ( ch == '\n' ) {
+					endField(nullMarker && field.length() == 0);
+					endRow();
+				} else if ( ch == '\\' ) {
+					state = ESCAPE;
+				} else if ( ch != '\r' ) {
+					field.append(ch);
+				}
+				rowStarted = ch != '\n';
+				break;
+			case ESCAPE:
+				state = FIELD;
+				switch ( ch ) {
+				case 'N':
+					if ( field.length() == 0 ) nullMarker = true; else field.append(ch);
+					break;
+				case 'b': field.append('\b'); break;
+				case 'f': field.append('\f'); break;
+				case 'n': field.append('\n'); break;
+				case 'r': field.append('\r'); break;
+				case 't': field.append('\t'); break;
+				case 'v': field.append('\u000B'); break;
+				case 'x':
+					escapeValue = 0;
+					escapeDigits = 0;
+					state = HEX;
+					break;
+				case '.':
+					if ( column == 0 && field.length() == 0 ) {
+						// end of data marker, written by the old servers
+						state = END_OF_DATA;
+						break;
+					}
+					field.append(ch);
+					break;
+				default:
+					if ( ch >= '0' && ch <= '7' ) {
+						escapeValue = ch - '0';
+						escapeDigits = 1;
+						state = OCTAL;
+					} else {
+						field.append(ch);
+					}
+				}
+				break;
+			case OCTAL:
+				if ( ch >= '0' && ch <= '7' && escapeDigits < 3 ) {
+					escapeValue = escapeValue * 8 + ( ch - '0' );
+					if ( ++escapeDigits == 3 ) {
+						field.append((char) escapeValue);
+						state = FIELD;
+					}
+				} else {
+					field.append((char) escapeValue);
+					state = FIELD;
+					text(ch);
+				}
+				break;
+			case HEX:
+				final int digit = Character.digit(ch, 16);
+				if ( digit >= 0 && escapeDigits < 2 ) {
+					escapeValue = escapeValue * 16 + digit;
+					if ( ++escapeDigits == 2 ) {
+						field.append((char) escapeValue);
+						state = FIELD;
+					}
+				} else {
+					// \x without the hex digits is just x
+					field.append(escapeDigits == 0 ? 'x' : (char) escapeValue);
+					state = FIELD;
+					text(ch);
+				}
+				break;
+			default:
+				// nothing is read after the end of data marker
+			}
+		}
+
+		private void csv(char ch) throws SQLException {
+			switch ( state ) {
+			case FIELD:
+				if ( ch == ',' ) {
+					endField(! quoted && field.length() == 0);
+				} else if ( ch == '\n' ) {
+					endField(! quoted && field.length() == 0);
+					endRow();
+				} else if ( ch == '"' && ! quoted && field.length() == 0 ) {
+					quoted = true;
+					state = QUOTED;
+				} else if ( ch != '\r' ) {
+					field.append(ch);
+				}
+				rowStarted = ch != '\n';
+				break;
+			case QUOTED:
+				if ( ch == '"' ) {
+					state = QUOTE;
+				} else {
+					field.append(ch);
+				}
+				break;
+			default:
+				// quote in a quoted value is either an escaped quote or the end of the value
+				if ( ch == '"' ) {
+					field.append(ch);
+					state = QUOTED;
+				} else {
+					state = FIELD;
+					csv(ch);
+				}
+			}
+		}
+
+		private void endField(boolean isNull) {
+			if ( column < values.length && mappedColumns[column] ) {
+				values[column] = isNull ? null : field.toString();
+			}
+			column++;
+			field.setLength(0);
+			quoted = false;
+			nullMarker = false;
+		}
+
+		private void endRow() throws SQLException {
+			lines++;
+			final int columnCount = column;
+			column = 0;
+			rowStarted = false;
+			if ( skipRow ) {
+				skipRow = false;
+				return;
+			}
+			if ( columnCount != values.length ) {
+				throw new SQLException("Line " + lines + " of the COPY data has " + columnCount + " columns, but " + values.length + " columns are expected");
+			}
+			handler.handleItem(plan.createItem(values));
+			count++;
+		}
+
+		/**
+		 * Finish reading the stream, reading the last row, if it is not terminated with a new line
+		 * @return number of the read objects
+		 */
+		long finish() throws SQLException {
+			if ( state == QUOTED || state == ESCAPE ) {
+				throw new SQLException("COPY data ends in the middle of a value");
+			}
+			if ( state == OCTAL || state == HEX || state == QUOTE ) {
+				if ( format == Format.TEXT ) text('\n'); else csv('\n');
+			} else if ( rowStarted ) {
+				if ( format == Format.TEXT ) text('\n'); else csv('\n');
+			}
+			return count;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Reads the stream block by block, when the objects of the previous block are consumed
+	 */
+	private final class ItemIterator implements Iterator<ITEM>, ItemHandler<ITEM> {
+		private final Reader reader;
+		private final Parser parser = new Parser(this);
+		private final ArrayDeque<ITEM> items = new ArrayDeque<ITEM>();
+		private final char[] block = new char[BLOCK_SIZE];
+		private boolean finished;
+
+		ItemIterator(Reader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public void handleItem(ITEM item) {
+			items.add(item);
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				while ( items.isEmpty() && ! finished ) {
+					final int length = reader.read(block);
+					if ( length < 0 ) {
+						finished = true;
+						parser.finish();
+					} else {
+						parser.write(block, 0, length);
+					}
+				}
+			} catch (HandlerException e) {
+				throw new UncategorizedSQLException("Reading COPY data", null, e.getCause());
+			} catch (SQLException e) {
+				throw new UncategorizedSQLException("Reading COPY data", null, e);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return ! items.isEmpty();
+		}
+
+		@Override
+		public ITEM next() {
+			if ( ! hasNext() ) throw new NoSuchElementException();
+			return items.poll();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
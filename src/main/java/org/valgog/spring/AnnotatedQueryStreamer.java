@@ -0,0 +1,167 @@
+package org.valgog.spring;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+
+/**
+ * Executes queries with a server side cursor and returns the items mapped by an {@link AnnotatedRowMapper} lazily,
+ * instead of building the whole list of the items like {@code JdbcTemplate.query()} does.
+ * <p>The PostgreSQL driver reads the rows with a cursor only if the statement is executed with a positive fetch size
+ * in a transaction, otherwise it buffers the whole result on the client. So the queries are executed with the configured
+ * fetch size, and if the connection is in the auto commit mode, the auto commit is switched off until the returned iterator
+ * (or stream) is closed. Connections obtained from a {@link DataSource} take part in the current Spring managed transaction
+ * (as with {@code JdbcTemplate}) and are released, when the iterator is closed.
+ *
+ * <pre>
+ * final AnnotatedQueryStreamer&lt;SimpleClass&gt; streamer = AnnotatedQueryStreamer.forClass(SimpleClass.class).withFetchSize(5000);
+ * try ( Stream&lt;SimpleClass&gt; items = streamer.stream(dataSource, "SELECT * FROM simple_table WHERE country_code = ?", "DE") ) {
+ *     items.forEach(report::add);
+ * }
+ * </pre>
+ *
+ * Streamers are immutable and thread safe, the iterators and streams they return are not.
+ *
+ * @author valgog
+ *
+ * @param <ITEM> type of the mapped items
+ */
+public final class AnnotatedQueryStreamer<ITEM> {
+
+	static final Logger logger = Logger.getLogger(AnnotatedQueryStreamer.class.getName());
+
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+
+	private static final SQLExceptionTranslator DEFAULT_TRANSLATOR = new SQLStateSQLExceptionTranslator();
+
+	private final AnnotatedRowMapper<ITEM> mapper;
+	private final int fetchSize;
+
+	private AnnotatedQueryStreamer(AnnotatedRowMapper<ITEM> mapper, int fetchSize) {
+		this.mapper = mapper;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Create the streamer of the items of the given class
+	 */
+	public static final <ITEM> AnnotatedQueryStreamer<ITEM> forClass(Class<ITEM> itemClass) {
+		return forMapper(AnnotatedRowMapper.getMapperForClass(itemClass));
+	}
+
+	/**
+	 * Create the streamer of the items mapped by the given mapper
+	 */
+	public static final <ITEM> AnnotatedQueryStreamer<ITEM> forMapper(AnnotatedRowMapper<ITEM> mapper) {
+		return new AnnotatedQueryStreamer<ITEM>(mapper, DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * @param fetchSize number of the rows, that are fetched from the cursor at once
+	 * @return streamer with the same mapper and the given fetch size
+	 */
+	public AnnotatedQueryStreamer<ITEM> withFetchSize(int fetchSize) {
+		if ( fetchSize < 1 ) throw new IllegalArgumentException("Fetch size should be positive, otherwise the whole result is fetched at once");
+		return new AnnotatedQueryStreamer<ITEM>(mapper, fetchSize);
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Execute the query with the given connection, the connection is not closed by the returned iterator
+	 * @param sql query to be executed
+	 * @param args arguments of the query, bound the same way {@code JdbcTemplate} binds them
+	 * @return iterator, that should be closed, if it is not read to the end
+	 */
+	public AnnotatedRowIterator<ITEM> iterator(Connection connection, String sql, Object... args) throws SQLException {
+		return execute(connection, null, sql, args, DEFAULT_TRANSLATOR);
+	}
+
+	/**
+	 * Execute the query with a connection of the given data source, that takes part in the current Spring managed transaction
+	 * @param sql query to be executed
+	 * @param args arguments of the query, bound the same way {@code JdbcTemplate} binds them
+	 * @return iterator, that should be closed, if it is not read to the end
+	 */
+	public AnnotatedRowIterator<ITEM> iterator(DataSource dataSource, String sql, Object... args) {
+		final SQLExceptionTranslator translator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+		final Connection connection = DataSourceUtils.getConnection(dataSource);
+		try {
+			return execute(connection, dataSource, sql, args, translator);
+		} catch (SQLException e) {
+			throw translator.translate("Streaming query", sql, e);
+		}
+	}
+
+	/**
+	 * Execute the query with the given connection, the connection is not closed by the returned stream
+	 * @return sequential stream, that should be closed, if it is not consumed to the end
+	 */
+	public Stream<ITEM> stream(Connection connection, String sql, Object... args) throws SQLException {
+		return toStream(iterator(connection, sql, args));
+	}
+
+	/**
+	 * Execute the query with a connection of the given data source, that takes part in the current Spring managed transaction
+	 * @return sequential stream, that should be closed, if it is not consumed to the end
+	 */
+	public Stream<ITEM> stream(DataSource dataSource, String sql, Object... args) {
+		return toStream(iterator(dataSource, sql, args));
+	}
+
+	private static final <ITEM> Stream<ITEM> toStream(final AnnotatedRowIterator<ITEM> iterator) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				iterator.close();
+			}
+		});
+	}
+
+	private AnnotatedRowIterator<ITEM> execute(Connection connection, DataSource dataSource, String sql, Object[] args, SQLExceptionTranslator translator) throws SQLException {
+		boolean restoreAutoCommit = false;
+		PreparedStatement ps = null;
+		try {
+			if ( connection.getAutoCommit() ) {
+				// the driver uses a cursor only inside of a transaction
+				connection.setAutoCommit(false);
+				restoreAutoCommit = true;
+			}
+			ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			for (int i = 0; i < args.length; i++) {
+				StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, args[i]);
+			}
+			if ( logger.isLoggable(Level.FINE) ) {
+				logger.fine("Streaming [" + sql + "] with fetch size " + fetchSize);
+			}
+			final ResultSet rs = ps.executeQuery();
+			return new AnnotatedRowIterator<ITEM>(mapper, sql, translator, connection, dataSource, restoreAutoCommit, ps, rs);
+		} catch (SQLException e) {
+			// let the iterator clean up the statement, the transaction and the connection
+			new AnnotatedRowIterator<ITEM>(mapper, sql, translator, connection, dataSource, restoreAutoCommit, ps, null).closeAfterFailure();
+			throw e;
+		} catch (RuntimeException e) {
+			new AnnotatedRowIterator<ITEM>(mapper, sql, translator, connection, dataSource, restoreAutoCommit, ps, null).closeAfterFailure();
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package org.valgog.spring;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+/**
+ * Iterator over the items mapped from the rows of a query, that is executed with a server side cursor
+ * (see {@link AnnotatedQueryStreamer}). Items are mapped lazily, one row at a time, as the iterator is advanced,
+ * and only the rows of the current fetch are kept by the driver.
+ * <p>The result set and the statement are closed as soon as the last row is read, or when {@link #close()} is called
+ * (iterators, that are not read to the end, should be always closed). If the cursor required switching off the auto commit mode
+ * of the connection, it is switched on again when the iterator is closed. Errors are translated into the Spring
+ * {@link org.springframework.dao.DataAccessException} hierarchy, as the {@link Iterator} methods cannot throw {@link SQLException}.
+ *
+ * @author valgog
+ *
+ * @param <ITEM> type of the mapped items
+ */
+public final class AnnotatedRowIterator<ITEM> implements Iterator<ITEM>, AutoCloseable {
+
+	static final Logger logger = Logger.getLogger(AnnotatedRowIterator.class.getName());
+
+	private final AnnotatedRowMapper<ITEM> mapper;
+	private final String sql;
+	private final SQLExceptionTranslator translator;
+	private final Connection connection;
+	private final DataSource dataSource;
+	private final boolean restoreAutoCommit;
+	private PreparedStatement statement;
+	private ResultSet rs;
+	private ResultSetMappingPlan<ITEM> plan;
+	private ITEM nextItem;
+	private boolean nextFetched;
+	private boolean closed;
+
+	/**
+	 * @param dataSource data source the connection should be released to, when the iterator is closed, or {@code null}
+	 * if the connection is not owned by the iterator
+	 * @param restoreAutoCommit if true, auto commit mode of the connection was switched off for the cursor
+	 * and should be switched on again, when the iterator is closed
+	 */
+	AnnotatedRowIterator(AnnotatedRowMapper<ITEM> mapper, String sql, SQLExceptionTranslator translator, Connection connection, DataSource dataSource,
+			boolean restoreAutoCommit, PreparedStatement statement, ResultSet rs) {
+		this.mapper = mapper;
+		this.sql = sql;
+		this.translator = translator;
+		this.connection = connection;
+		this.dataSource = dataSource;
+		this.restoreAutoCommit = restoreAutoCommit;
+		this.statement = statement;
+		this.rs = rs;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if ( nextFetched ) {
+			return true;
+		}
+		if ( closed ) {
+			return false;
+		}
+		try {
+			if ( rs.next() ) {
+				if ( plan == null ) {
+					// resolved with the first row and used for the whole result set
+					plan = mapper.resolvePlan(rs);
+				}
+				nextItem = mapper.mapRow(rs, plan);
+				nextFetched = true;
+				return true;
+			}
+		} catch (SQLException e) {
+			closeAfterFailure();
+			throw translator.translate("Mapping streamed rows", sql, e);
+		} catch (RuntimeException e) {
+			// a mapper failure leaves the cursor open as well
+			closeAfterFailure();
+			throw e;
+		}
+		// close the cursor as soon as possible
+		close();
+		return false;
+	}
+
+	@Override
+	public ITEM next() {
+		if ( ! hasNext() ) throw new NoSuchElementException();
+		final ITEM item = nextItem;
+		nextItem = null;
+		nextFetched = false;
+		return item;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return true if the result set and the statement are already closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Close the result set and the statement, restore the auto commit mode and release the connection,
+	 * if it was obtained by the iterator. Closing the closed iterator has no effect.
+	 */
+	@Override
+	public void close() {
+		if ( closed ) return;
+		closed = true;
+		try {
+			closeResources(true);
+		} catch (SQLException e) {
+			throw translator.translate("Closing streamed query", sql, e);
+		}
+	}
+
+	/**
+	 * Close everything, rolling back the transaction, that was started for the cursor, the original exception is more important
+	 * then the exceptions thrown while closing
+	 */
+	void closeAfterFailure() {
+		if ( closed ) return;
+		closed = true;
+		try {
+			closeResources(false);
+		} catch (SQLException e) {
+			if ( logger.isLoggable(Level.FINE) ) {
+				logger.log(Level.FINE, "Could not close streamed query [" + sql + "]", e);
+			}
+		}
+	}
+
+	private void closeResources(boolean commit) throws SQLException {
+		try {
+			try {
+				if ( rs != null ) rs.close();
+			} finally {
+				rs = null;
+				try {
+					if ( statement != null ) statement.close();
+				} finally {
+					statement = null;
+				}
+			}
+		} finally {
+			try {
+				if ( restoreAutoCommit ) {
+					try {
+						if ( commit ) connection.commit(); else connection.rollback();
+					} finally {
+						connection.setAutoCommit(true);
+					}
+				}
+			} finally {
+				if ( dataSource != null ) {
+					DataSourceUtils.releaseConnection(connection, dataSource);
+				}
+			}
+		}
+	}
+}
@@ -2,41 +2,36 @@ package org.valgog.spring;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.postgresql.util.PGobject;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.simple.ParameterizedRowMapper;
 import org.valgog.spring.annotations.AllowPrimitiveDefaults;
 import org.valgog.spring.annotations.DataType;
+import org.valgog.spring.annotations.DatabaseConstructor;
 import org.valgog.spring.annotations.DatabaseField;
 import org.valgog.spring.annotations.DatabaseFieldNamePrefix;
 import org.valgog.spring.annotations.Embed;
+import org.valgog.spring.annotations.HStoreMapped;
 import org.valgog.spring.annotations.Optional;
 import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.ClassMappingDescriptor;
 import org.valgog.spring.helpers.DatabaseFieldDescriptor;
 import org.valgog.spring.helpers.MappingOption;
+import org.valgog.spring.helpers.MappingPath;
+import org.valgog.spring.helpers.MappingPathCounter;
+import org.valgog.spring.helpers.TypeConverter;
+import org.valgog.spring.helpers.TypeConverterFactory;
 import org.valgog.spring.helpers.TypeDescriptor;
+import org.valgog.spring.helpers.exceptions.NotConvertable;
 import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
-import org.valgog.utils.PostgresUtils;
-import org.valgog.utils.exceptions.ArrayParserException;
-import org.valgog.utils.exceptions.RowParserException;
 
 /**
  * This class defines a database row mapper to be able to map hierarchy of classes with properties with defined setters, 
@@ -55,7 +50,11 @@ import org.valgog.utils.exceptions.RowParserException;
  *  // setter declarations for these fields
  * </pre> 
  * 
+ * <p>Immutable classes with final fields can be mapped as well, if they define a constructor annotated with 
+ * {@link DatabaseConstructor}, accepting values of all the mapped fields. Records are mapped using their canonical constructors.
+ * 
  * @see DatabaseField
+ * @see DatabaseConstructor
  * @see AllowPrimitiveDefaults
  *  
  * @author valgog
@@ -68,13 +67,17 @@ public class AnnotatedRowMapper<ITEM>
 	
 	private Class<ITEM> itemType;
 
+	private final MappingPlanCache<ITEM> mappingPlanCache;
+
 	private AnnotatedRowMapper( Class<ITEM> itemType ) {
 		this.itemType = itemType; 
+		this.mappingPlanCache = MappingPlanCache.forClass(itemType);
 	}
 	
 	/**
 	 * Factory method to get an instance of the {@link AnnotatedRowMapper}.
 	 * <p>The class, being mapped should define no constructors or, if defines, define a public default constructor.
+	 * Records and classes, that define a constructor annotated with {@link DatabaseConstructor}, are created using that constructor instead.
 	 * @param <ItemTYPE> Class type of the item to be mapped
 	 * @param itemClass Class of the item to be mapped
 	 * @return a new instance of the {@link AnnotatedRowMapper}
@@ -83,14 +86,8 @@ public class AnnotatedRowMapper<ITEM>
 		return new AnnotatedRowMapper<ItemTYPE>(itemClass);
 	}
 	
-	private ITEM newItemInstance() {
-		try {
-			return (ITEM) itemType.newInstance();
-		} catch (InstantiationException e) {
-			throw new RuntimeException("Could not create a new instance of type " + itemType.getName(), e);
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException("Could not create a new instance of type " + itemType.getName(), e);
-		}
+	private ITEM newItemInstance() throws SQLException {
+		return getClassMappingDescriptor(itemType).newInstance();
 	}
 	
 	/**
@@ -103,11 +100,11 @@ public class AnnotatedRowMapper<ITEM>
 	 * @see ResultSet
 	 */
 	protected void fillItem(ResultSet rs, ITEM item) throws SQLException {
-		extractAnnotatedFieldValuesFromResultSet(this.itemType, item, rs);
+		mappingPlanCache.bind(rs).fillItem(rs, item);
 	}
 	
 	
-	private static final String rewriteJavaPropertyNameToLowercaseUnderscoreName(String javaPropertyName) {
+	static final String rewriteJavaPropertyNameToLowercaseUnderscoreName(String javaPropertyName) {
 		
 		if ( javaPropertyName == null ) throw new NullPointerException();
 		final int length = javaPropertyName.length();
@@ -143,11 +140,32 @@ public class AnnotatedRowMapper<ITEM>
 		return r.toString();
 	}
 	
-	private static final ReadWriteLock mappingDescriptorCacheLock = new ReentrantReadWriteLock();
-	private static final Lock cacheReadLock = mappingDescriptorCacheLock.readLock();
-	private static final Lock cacheWriteLock = mappingDescriptorCacheLock.writeLock();
-	
-	private static final Map<Class<?>, List<? extends ClassFieldDescriptor<?, ?>>> mappingDescriptorCache = new HashMap<Class<?>, List<? extends ClassFieldDescriptor<?, ?>>>();
+	/**
+	 * Mapping descriptors are cached per class using {@link ClassValue}, so that reading the cache needs no synchronization 
+	 * and the cached descriptors do not keep the classes (and their class loaders) from being unloaded.
+	 */
+	private static final ClassValue<ClassMappingDescriptor<?>> mappingDescriptorCache = new ClassValue<ClassMappingDescriptor<?>>() {
+		@Override
+		protected ClassMappingDescriptor<?> computeValue(Class<?> type) {
+			try {
+				return createClassMappingDescriptor(type);
+			} catch (FieldDescriptionException e) {
+				// ClassValue does not cache failed computations, so the class will be introspected again on the next access
+				throw new MappingDescriptionFailure(e);
+			}
+		}
+	};
+
+	/**
+	 * Carries the {@link FieldDescriptionException} out of the {@link ClassValue#computeValue(Class)}
+	 */
+	private static final class MappingDescriptionFailure extends RuntimeException {
+		private static final long serialVersionUID = -6001410911862402390L;
+
+		MappingDescriptionFailure(FieldDescriptionException cause) {
+			super(cause);
+		}
+	}
 	
 	/**
 	 * This method can be used to extract the values of the annotated fields. 
@@ -166,82 +184,9 @@ public class AnnotatedRowMapper<ITEM>
 		if ( item == null ) throw new NullPointerException("item should be not null");
 		if ( rs == null ) throw new NullPointerException("rs should be not null");
 
-		// get cached structure
-		final List<? extends ClassFieldDescriptor<ItemTYPE, Object>> descList = getFieldMappingDescriptorList(itemClass);
-		final Connection connection = rs.getStatement().getConnection();
-		// use the cache
-		for( ClassFieldDescriptor<ItemTYPE, Object> desc : descList ) {
-			Object value;
-			if ( DatabaseFieldDescriptor.class.isInstance(desc) ) {
-				DatabaseFieldDescriptor<ItemTYPE, Object> dbFieldDesc = (DatabaseFieldDescriptor<ItemTYPE, Object>) desc;
-				final DataType dataType = dbFieldDesc.getDatabaseFieldType();
-				final String fieldName = dbFieldDesc.getDatabaseFieldName();
-				
-				int databaseFieldIndex = -1;
-				try {
-					databaseFieldIndex = rs.findColumn(fieldName);
-				} catch( SQLException e) {
-					if ( dbFieldDesc.is(MappingOption.OPTIONAL) ) {
-						continue; // skip the optional field if not found in the result set
-					} else {
-						throw e;
-					}
-				}
-				Object rawValue = dataType.extractFieldValueRaw(rs, databaseFieldIndex);
-				value = makeAssignable(connection, dbFieldDesc, rawValue );
-			} else {
-				// if the class field descriptor is not of type DatabaseTypeDescriptor,
-				// we suppose, that it is an embedded field Descriptor
-				// so we get extract fields of this field type 
-				// as if they ware the fields of itemClass
-				value = desc.newInstance();
-				extractAnnotatedFieldValuesFromResultSet( (Class<Object>) desc.getType(), value, rs );
-			}
-			desc.assignFieldValue(item, value);
-		}
-
+		MappingPlanCache.forClass(itemClass).bind(rs).fillItem(rs, item);
 	}
 
-	static final <ItemTYPE> void extractAnnotatedFieldValuesFromList(Class<ItemTYPE> itemClass, ItemTYPE item, List<String> stringList) throws SQLException {
-		if ( itemClass == null ) throw new NullPointerException("itemClass should be not null");
-		if ( item == null ) throw new NullPointerException("item should be not null");
-		if ( stringList == null ) throw new NullPointerException("stringList should be not null");
-
-		// get cached structure
-		final List<? extends ClassFieldDescriptor<ItemTYPE, Object>> descList = getFieldMappingDescriptorList(itemClass);
-		// use the cache
-		for( ClassFieldDescriptor<ItemTYPE, Object> desc : descList ) {
-			Object value;
-			if ( DatabaseFieldDescriptor.class.isInstance(desc) ) {
-				DatabaseFieldDescriptor<ItemTYPE, Object> dbFieldDesc = (DatabaseFieldDescriptor<ItemTYPE, Object>) desc;
-				
-				int databaseFieldIndex = dbFieldDesc.getDatabaseFieldIndex();
-				Object rawValue;
-				try {
-					rawValue = makeAssignable( null, dbFieldDesc, stringList.get(databaseFieldIndex - 1));
-				} catch (IndexOutOfBoundsException e) {
-					if ( dbFieldDesc.is(MappingOption.OPTIONAL) ) {
-						continue; // skip the optional field if not found in the result set
-					} else {
-						throw e;
-					}
-				}
-				value = makeAssignable(null, dbFieldDesc, rawValue );
-			} else {
-				// if the class field descriptor is not of type DatabaseTypeDescriptor,
-				// we suppose, that it is an embedded field Descriptor
-				// so we get extract fields of this field type 
-				// as if they were the fields of itemClass
-				value = desc.newInstance();
-				extractAnnotatedFieldValuesFromList( (Class<Object>) desc.getType(), value, stringList );
-			}
-			desc.assignFieldValue(item, value);
-		}
-
-	}
-	
-	
-	
 	/**
 	 * Get a list of filed mapping descriptors for the given class type
 	 * @param <ItemTYPE> Type of the class, that is being introspected
@@ -249,49 +194,56 @@ public class AnnotatedRowMapper<ITEM>
 	 * @return list of {@link DatabaseFieldDescriptor} objects, defining the given class type
 	 * @throws FieldDescriptionException 
 	 */
+	static final <ItemTYPE> List<ClassFieldDescriptor<ItemTYPE, Object>> getFieldMappingDescriptorList(Class<ItemTYPE> itemClass) throws FieldDescriptionException {
+		return getClassMappingDescriptor(itemClass).getFieldDescriptors();
+	}
+
+	/**
+	 * Get the mapping descriptor for the given class type
+	 * @param <ItemTYPE> Type of the class, that is being introspected
+	 * @param itemClass Class defining the type of the class, that is being introspected
+	 * @return {@link ClassMappingDescriptor} holding field descriptors of the given class type and the way to create its instances
+	 * @throws FieldDescriptionException 
+	 */
 	@SuppressWarnings("unchecked")
-	static final private <ItemTYPE> List<ClassFieldDescriptor<ItemTYPE, Object>> getFieldMappingDescriptorList(Class<ItemTYPE> itemClass) throws FieldDescriptionException {
-		cacheReadLock.lock();
+	static final <ItemTYPE> ClassMappingDescriptor<ItemTYPE> getClassMappingDescriptor(Class<ItemTYPE> itemClass) throws FieldDescriptionException {
 		try {
-			List<? extends ClassFieldDescriptor<?, ?>> descList = mappingDescriptorCache.get(itemClass);
-			if ( descList == null ) {
-				cacheReadLock.unlock();
-				cacheWriteLock.lock();
-				try {
-					// in case some fast competitor managed to fill the cache when we did relock, check once again
-					descList = mappingDescriptorCache.get(itemClass);
-					if ( descList == null ) { 
-						// fill the cache
-						descList = new ArrayList<ClassFieldDescriptor<ItemTYPE, ?>>();
-						extractMappingDescriptorsForClass(itemClass, (List<ClassFieldDescriptor<ItemTYPE, ?>>) descList);
-						mappingDescriptorCache.put(itemClass, descList);
-					}
-				} finally {
-					cacheReadLock.lock();
-					cacheWriteLock.unlock();
-				}
-			}
-			return (List<ClassFieldDescriptor<ItemTYPE, Object>>) descList;
-		} finally {
-			cacheReadLock.unlock();
+			return (ClassMappingDescriptor<ItemTYPE>) mappingDescriptorCache.get(itemClass);
+		} catch (MappingDescriptionFailure e) {
+			throw (FieldDescriptionException) e.getCause();
 		}
 	}
 
+	/**
+	 * Introspect the given class type and create its mapping descriptor
+	 * @param itemClass Class defining the type of the class, that is being introspected
+	 * @return {@link ClassMappingDescriptor} of the given class type
+	 * @throws FieldDescriptionException
+	 */
+	@SuppressWarnings("unchecked")
+	private static final <ItemTYPE> ClassMappingDescriptor<ItemTYPE> createClassMappingDescriptor(Class<ItemTYPE> itemClass) throws FieldDescriptionException {
+		final Constructor<ItemTYPE> creatorConstructor = ClassMappingDescriptor.findCreatorConstructor(itemClass);
+		final List<ClassFieldDescriptor<ItemTYPE, ?>> descList = new ArrayList<ClassFieldDescriptor<ItemTYPE, ?>>();
+		extractMappingDescriptorsForClass(itemClass, descList, creatorConstructor != null);
+		return new ClassMappingDescriptor<ItemTYPE>(itemClass, (List<ClassFieldDescriptor<ItemTYPE, Object>>) (List<?>) descList, creatorConstructor);
+	}
+
 	/**
 	 * This method introspects given {@code itemClass} and fills a list of {@link MappingDesriptor} objects, that define field mappings
 	 * @param <ItemTYPE> source item class type
 	 * @param itemClass source item class
 	 * @param descList List of {@link MappingDesriptor} objects to filled with field mappings
+	 * @param assignedByConstructor if true, the field values are passed to the constructor, so the fields do not need setters
 	 * @throws FieldDescriptionException 
 	 */
-	static final private <ItemTYPE> int extractMappingDescriptorsForClass(Class<? super ItemTYPE> itemClass, List<ClassFieldDescriptor<ItemTYPE, ?>> descList) throws FieldDescriptionException {
+	static final private <ItemTYPE> int extractMappingDescriptorsForClass(Class<? super ItemTYPE> itemClass, List<ClassFieldDescriptor<ItemTYPE, ?>> descList, boolean assignedByConstructor) throws FieldDescriptionException {
 		
 		if ( itemClass == null || Object.class.equals(itemClass) ) { 
 			return 0;
 		}
 		// fill mapping descriptors for class super classes
 		Class<? super ItemTYPE> itemSuperClass = itemClass.getSuperclass();
-		int databaseFieldIndex = extractMappingDescriptorsForClass(itemSuperClass, descList);
+		int databaseFieldIndex = extractMappingDescriptorsForClass(itemSuperClass, descList, assignedByConstructor);
 		
 		Field[] itemFields = itemClass.getDeclaredFields();
 		for (int i = 0, l = itemFields.length ; i < l ; i++ ) {
@@ -305,7 +257,7 @@ public class AnnotatedRowMapper<ITEM>
 				if ( logger.isLoggable(Level.FINE) ) {
 					logger.fine("Embedding property " + itemClass.getName() + '.' + fieldName); 
 				}
-				ClassFieldDescriptor<ItemTYPE, ?> desc = new ClassFieldDescriptor<ItemTYPE, Object>(field);
+				ClassFieldDescriptor<ItemTYPE, ?> desc = new ClassFieldDescriptor<ItemTYPE, Object>(field, assignedByConstructor);
 				descList.add(desc);
 				// to be able to calculate correctly next database field indeces, we have to extract 
 				// mapping descriptors for that embedded type and count processed fields
@@ -350,7 +302,9 @@ public class AnnotatedRowMapper<ITEM>
 					databaseFieldType, 
 					databaseFieldName, 
 					databaseFieldIndex,
-					mappingOptions);
+					mappingOptions,
+					assignedByConstructor,
+					converterFactory);
 			if ( logger.isLoggable(Level.FINE) ) {
 				logger.fine("Property " + itemClass.getName() + '.' + fieldName + " will be filled with the value of the database field [" + String.valueOf( databaseFieldName ) + "] "); 
 			}
@@ -359,243 +313,112 @@ public class AnnotatedRowMapper<ITEM>
 		return databaseFieldIndex;
 	}
 
-	private static final<C, T> T makeAssignable(Connection connection, DatabaseFieldDescriptor<C, T> typeDesc, Object value) throws SQLException {
-		return makeAssignable(connection, typeDesc, value, typeDesc.is(MappingOption.ALLOW_PRIMITIVE_DEFAULTS));
+	/**
+	 * Make the given value assignable to the field described by the given descriptor,
+	 * counting the {@link MappingPath} the conversion takes in the given metrics
+	 * @param timed if the conversion should be timed, see {@link MappingMetrics#isTimed()}
+	 */
+	static final<C, T> T makeAssignable(DatabaseFieldDescriptor<C, T> typeDesc, Object value, MappingMetrics metrics, boolean timed) throws SQLException {
+		if ( ! timed ) {
+			return makeAssignable(typeDesc, value, metrics.pathCounter);
+		}
+		final MappingMetrics.TimedPathCounter counter = new MappingMetrics.TimedPathCounter(metrics);
+		final long start = System.nanoTime();
+		final T result = makeAssignable(typeDesc, value, counter);
+		counter.valueConverted(typeDesc, System.nanoTime() - start);
+		return result;
 	}
-	
+
 	/**
-	 * Make the given value assignable to the expected class type
+	 * Make the given value assignable to the field described by the given descriptor, 
+	 * using the converter resolved for that field
 	 * @param <T> expected class type
-	 * @param expectedType expected class type
+	 * @param typeDesc descriptor of the field the value should be assigned to
 	 * @param value value to be converted
-	 * @param allowPrimitiveDefaults if true, use default primitive values instead of null values
-	 * @return assignable value of type <code>expectedType</code>
+	 * @param counter counter of the path of the conversion
+	 * @return assignable value of the field type
 	 * @throws SQLException
 	 */
-	@SuppressWarnings("unchecked")
-	private static final<T> T makeAssignable(Connection connection, TypeDescriptor<T> typeDesc, Object value, boolean allowPrimitiveDefaults) throws SQLException {
-		Class<T> expectedType = typeDesc.getType();
-		// take care of null values
-		if ( value == null ) { 
-			if ( expectedType.isPrimitive() ) {
-				// primitive types cannot be null, we have to rewrite the value to it's default?
-				if ( allowPrimitiveDefaults ) {
-					if ( logger.isLoggable(Level.FINE) ) logger.fine("Primitive type " + expectedType.getName() + " expected, rewriting NULL to primitive type default");
-					return (T) DataType.primitiveDefaults.get(expectedType);
-				} else {
-					throw new SQLException("NULL value is not possible when filling a primitive type " + expectedType.getName() + ", if NULL values are needed, try to use not primitive wrapper classes as field types" );
-				}
-			} else {
-				return null;
+	static final<C, T> T makeAssignable(DatabaseFieldDescriptor<C, T> typeDesc, Object value, MappingPathCounter counter) throws SQLException {
+		try {
+			return TypeConverterFactory.convertFrom(typeDesc.getConverter(), value, counter);
+		} catch (NotConvertable e) {
+			if ( e.getCause() instanceof SQLException ) {
+				// nested ROW values are reporting their mapping problems with SQLExceptions
+				throw (SQLException) e.getCause();
 			}
+			throw new SQLException(e.getMessage(), e);
 		}
-		
-		if ( expectedType.isInstance(value) ) {
-			// in normal case we should always get here (so the call to that method should not be very expensive)
-			return (T) value;
-		}
+	}
 
-		if ( expectedType.isPrimitive() ) {
-			// TODO: This part should be tested better
-			if ( value instanceof Number ) {
-				return (T) value;
-			} else if ( value instanceof Boolean ) {
-				if ( expectedType == Boolean.TYPE ) return (T) value;
-			} else if ( value instanceof Character ) {
-				if ( expectedType == Character.TYPE ) return (T) value;
+	/**
+	 * Factory of the field value converters, that creates mapped objects from the ROW values 
+	 * using field declaration indexes. ROW values and containers of ROW values are decoded 
+	 * with a {@link NestedValueDecoder} in a single pass. Objects of the {@link HStoreMapped} types
+	 * are filled from hstore values by the {@link HStoreObjectConverter}.
+	 */
+	static final TypeConverterFactory converterFactory = new TypeConverterFactory() {
+		@Override
+		public <D> TypeConverter<Object, D> getFieldValueConverter(TypeDescriptor<D> typeDesc, boolean allowPrimitiveDefaults) {
+			if ( HStoreObjectConverter.isHStoreMapped(typeDesc) ) {
+				return new HStoreObjectConverter<D>(typeDesc.getType());
+			}
+			final TypeConverter<Object, D> converter = super.getFieldValueConverter(typeDesc, allowPrimitiveDefaults);
+			if ( NestedValueDecoder.isNested(typeDesc) ) {
+				return new NestedValueDecoder.NestedValueConverter<D>(typeDesc, converter, allowPrimitiveDefaults);
 			}
+			return converter;
 		}
-		
-		if ( CharSequence.class.isAssignableFrom(expectedType) ) {
-			return (T) value.toString();
+	};
+
+	/**
+	 * Map the current row of the given result set to a new item.
+	 * <p>Items of the classes, that are created by passing all the field values to the constructor 
+	 * (records or classes with a constructor annotated with {@link DatabaseConstructor}), are created at once
+	 * and {@link #fillItem(ResultSet, Object)} is not called for them. 
+	 */
+	public final ITEM mapRow(ResultSet rs, int rowNum) throws SQLException {
+		return mapRow(rs, mappingPlanCache.bind(rs));
+	}
+
+	/**
+	 * Map the current row of the given result set to a new item, using the plan resolved for the result set
+	 */
+	final ITEM mapRow(ResultSet rs, ResultSetMappingPlan<ITEM> plan) throws SQLException {
+		if ( getClassMappingDescriptor(itemType).isConstructorBased() ) {
+			return plan.createItem(rs);
 		}
+		ITEM item = newItemInstance();
+		plan.fillItem(rs, item);
+		return item;
+	}
 
-		// object is not compatible with the fieldType, will try to do something about that
-		// check if we are expecting an array or a collection
-		final Class<Object> componentType = typeDesc.getComponentType();
-		if ( componentType != null ) {
-			final TypeDescriptor<Object> componentTypeDesc = new TypeDescriptor<Object>( componentType );
+	/**
+	 * Get the mapping plan of this mapper for the given result set, that should be passed to {@link #mapRow(ResultSet, ResultSetMappingPlan)}
+	 * for all the rows of the result set
+	 */
+	final ResultSetMappingPlan<ITEM> resolvePlan(ResultSet rs) throws SQLException {
+		return mappingPlanCache.resolve(rs);
+	}
 
-			final Object resultArray;
-			final ArrayList<Object> resultList;
-			if ( value.getClass().isArray() ) {
-				// rewrite it's components into the expectedType components
-				final Object[] originalArray = (Object[]) value;
-				resultArray = java.lang.reflect.Array.newInstance(componentType, originalArray.length );
-				resultList = null;
-				for (int i = 0; i < originalArray.length; i++) {
-					final Object element = originalArray[i];
-					try {
-						java.lang.reflect.Array.set(resultArray, i, makeAssignable(connection, componentTypeDesc, element, allowPrimitiveDefaults) );
-					} catch (IllegalArgumentException e) {
-						// we have a NULL value, that is being assigned to the primitive array element. That is not possible
-						// skipping this assignment will leave an element with a default value.
-						
-						// actually, this should not happen now, as the value will be either substituted by the default value before 
-						// or an exception will be already thrown
-					}
-				}
-			} else if ( value instanceof java.sql.Array ) {
-				// extract JDDB Array and convert it into the expected type
-				java.sql.Array a = (java.sql.Array) value;
-				resultArray = null;
-				resultList = new ArrayList<Object>();
-				ResultSet ars = a.getResultSet();
-				while( ars.next() ) {
-					resultList.add( makeAssignable( connection, componentTypeDesc, ars.getObject(2), allowPrimitiveDefaults ) );
-				}
-			} else if ( value instanceof CharSequence ) {
-				final String stringValue = value.toString();
-				// try to extract the string value as if it were PostgreSQL serialized list
-				resultArray = null;
-				try {
-					List<String> stringList = PostgresUtils.postgresArray2StringList(stringValue);
-					final int z = stringList.size();
-					resultList = new ArrayList<Object>(z);
-					for (int i = 0; i < z; i++) {
-						String element = stringList.get(i);
-						resultList.add(makeAssignable(connection, componentTypeDesc, element, allowPrimitiveDefaults));
-					}
-					
-				} catch (ArrayParserException e) {
-					throw new SQLException(
-							String.format("Could not convert string [%s] to expected array or collection of type %s",
-									stringValue, componentType.getCanonicalName()),
-							e);
-				}
-			} else {
-				throw new SQLException(
-						String.format("Could not convert value of type %s to expected array or collection of type %s",
-								value.getClass().getCanonicalName(), componentType.getCanonicalName())
-						);
-			}
-			// we extracted the value, so if we need an array, return it, if we need a collection, populate it and return it
-			if ( expectedType.isArray() ) {
-				if ( resultArray != null ) {
-					return (T) resultArray;
-				} else {
-					// convert resultList to array
-					Object newArray = java.lang.reflect.Array.newInstance(componentType, resultList.size() );
-					for (int i = 0, j = resultList.size(); i < j; i++ ) {
-						java.lang.reflect.Array.set(newArray, i, resultList.get(i));
-					}
-					return (T) newArray;
-				}
-			} else if ( Collection.class.isAssignableFrom(expectedType) ) {
-				final List<Object> newList;
-				if ( resultArray != null ) {
-					newList = Arrays.asList( (Object[]) resultArray);
-				} else {
-					if ( ArrayList.class.equals(expectedType) ) {
-						// special case optimization here, not to recreate an ArrayList later
-						return (T) resultList;
+	/**
+	 * Get the {@link ResultSetExtractor}, that maps all the rows of a result set into a list of the items.
+	 * <p>The mapping plan is resolved with the first row and is used for all the rows of the result set.
+	 */
+	public final ResultSetExtractor<List<ITEM>> listExtractor() {
+		return new ResultSetExtractor<List<ITEM>>() {
+			@Override
+			public List<ITEM> extractData(ResultSet rs) throws SQLException, DataAccessException {
+				final List<ITEM> items = new ArrayList<ITEM>();
+				ResultSetMappingPlan<ITEM> plan = null;
+				while ( rs.next() ) {
+					if ( plan == null ) {
+						plan = resolvePlan(rs);
 					}
-					newList = resultList;
-				}
-				if ( List.class.equals(expectedType) ) {
-					return (T) newList;
-				} else if ( ArrayList.class.equals(expectedType) ) {
-					// special case optimization here, probably covering most of the use-cases
-					return (T) new ArrayList(newList);
-				} else if ( Set.class.equals(expectedType) || HashSet.class.equals(expectedType) ) {
-					return (T) new HashSet(newList);
-				} else {
-					// general use-case
-					Collection<Object> newExpectedList = (Collection<Object>) typeDesc.newInstance();
-					newExpectedList.addAll(newList);
-					return (T) newExpectedList;
+					items.add(mapRow(rs, plan));
 				}
-			} else {
-				throw new RuntimeException("Should never get here");
-			}
-		} // end if expected type is array or collection
-		
-		// try to map PGObject
-		// this should be probably a ROW type, that we will try to map to some expected type
-		// as field names are not available for abstract ROWs
-		// we will try to map using field indexes
-		if ( value instanceof PGobject ) {
-			// get a string representation of the PGobject (is that really efficient?)
-			String objectType = ((PGobject)value).getType();
-			String objectValue = ((PGobject)value).getValue();
-			// TODO: should implement adaptor based processor for PGobject values
-			try {
-				T newObject = typeDesc.newInstance();
-				// split the received ROW string to array of string representations of the field components
-				// and try to assign them to the expected type fields (using filed declaration index)
-				List<String> elementList = PostgresUtils.postgresROW2StringList(objectValue, 128);
-				extractAnnotatedFieldValuesFromList(expectedType, newObject, elementList);
-				return newObject;
-			} catch (RowParserException e) {
-				throw new SQLException("Could not parse provided PGObject value: " + objectValue, e);
+				return items;
 			}
-		}
-		
-		// if the passed value is a string, try to map it to expected type
-		if ( value instanceof CharSequence ) {
-			
-			final String stringValue = value.toString();
-			
-			if ( expectedType == Boolean.TYPE || expectedType == Boolean.class ) {
-				final String b = stringValue.trim().toLowerCase(Locale.US);
-				if ( b.equals("true") || b.equals("t") || b.equals("1") ) {
-					return (T) Boolean.TRUE;
-				} else if ( b.equals("false") || b.equals("f") || b.equals("0") ) {
-					return (T) Boolean.FALSE;
-				} else {
-					throw new SQLException( String.format("Could not convert given string %s to Boolean", value) );
-				}
-			} else if ( expectedType == Character.TYPE || expectedType == Character.class ) {
-				return (T) Character.valueOf(stringValue.charAt(0));
-			} else if ( expectedType == Byte.TYPE || expectedType == Byte.class ) {
-				return (T) Byte.valueOf(stringValue);
-			} else if ( expectedType == Short.TYPE || expectedType == Short.class ) {
-				return (T) Short.valueOf(stringValue);
-			} else if ( expectedType == Integer.TYPE || expectedType == Integer.class ) {
-				return (T) Integer.valueOf(stringValue);
-			} else if ( expectedType == Long.TYPE || expectedType == Long.class ) {
-				return (T) Long.valueOf(stringValue);
-			} else if ( expectedType == Float.TYPE || expectedType == Float.class ) {
-				return (T) Float.valueOf(stringValue);
-			} else if ( expectedType == Double.TYPE || expectedType == Double.class ) {
-				return (T) Double.valueOf(stringValue);
-			} else {
-				// expected type is some general type here
-				// it is not an array or a collection, as it would be processed before
-				// so we will try to process the given string, as if it was a ROW representation
-				try {
-					T newObject = typeDesc.newInstance();
-					// split the received ROW string to array of string representations of the field components
-					// and try to assign them to the expected type fields (using filed declaration index)
-					List<String> elementList = PostgresUtils.postgresROW2StringList(stringValue, 128);
-					extractAnnotatedFieldValuesFromList(expectedType, newObject, elementList);
-					return newObject;
-				} catch (RowParserException e) {
-					throw new SQLException(
-							String.format("Could not convert recieved string [%s] into expected class %s",
-									stringValue, expectedType.getCanonicalName()), 
-							e);
-				}
-			}
-		}
-		
-		// now try to find a constructor, that will accept the given value (for example Integer(int) )
-		try {
-			Constructor<T> expectedTypeConstructor = expectedType.getDeclaredConstructor(value.getClass());
-			return expectedTypeConstructor.newInstance(value);
-		} catch (Exception ignore) {
-			// Ok, the trick with the constructor did not work out, try the last String trick
-			if ( CharSequence.class.isAssignableFrom(expectedType) ) {
-				// expected type is String compatible, in this case we just convert our value into the string and pass it so
-				return (T) value.toString();
-			} 
-		} 
-		throw new SQLException( String.format( "Can not map recieved object of type %s to expected type %s", value.getClass().getCanonicalName(), expectedType.getCanonicalName()));
-	}
-	
-	public final ITEM mapRow(ResultSet rs, int rowNum) throws SQLException {
-		ITEM item = newItemInstance();
-		fillItem(rs, item);
-		return item;
+		};
 	}
 }
@@ -0,0 +1,275 @@
+package org.valgog.spring;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+/**
+ * Loads objects of the classes annotated for the {@link AnnotatedRowMapper} into a table with a binary
+ * <code>COPY ... FROM STDIN</code>, that is much faster then the batched INSERT statements of the {@link AnnotatedBatchWriter}
+ * for the big number of rows.
+ * <p>The {@link DatabaseField} fields (including the fields of the embedded objects) are encoded in the PostgreSQL binary
+ * COPY format by the encoders resolved once per loader, see {@link BinaryValueEncoder} for the column types the Java types are written as.
+ * Rows are encoded into a buffer, that is sent to the database every time it grows over the chunk size, so that the memory
+ * used by the loader does not depend on the number of the loaded objects.
+ *
+ * <pre>
+ * final BinaryCopyLoader&lt;SimpleClass&gt; loader = BinaryCopyLoader.forTable(connection, SimpleClass.class, "simple_table");
+ * final long rows = loader.load(connection, items);
+ * </pre>
+ *
+ * Loaders are immutable and thread safe.
+ *
+ * @author valgog
+ *
+ * @param <ITEM> type of the loaded objects
+ */
+public final class BinaryCopyLoader<ITEM> {
+
+	static final Logger logger = Logger.getLogger(BinaryCopyLoader.class.getName());
+
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Signature, flags and header extension length of the binary COPY format
+	 */
+	private static final byte[] HEADER = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	private final Class<ITEM> itemClass;
+	private final String sql;
+	private final ParameterBinder.ColumnBinding[] bindings;
+	private final BinaryValueEncoder[] encoders;
+	private final int chunkSize;
+
+	private BinaryCopyLoader(Class<ITEM> itemClass, String sql, ParameterBinder.ColumnBinding[] bindings, BinaryValueEncoder[] encoders, int chunkSize) {
+		this.itemClass = itemClass;
+		this.sql = sql;
+		this.bindings = bindings;
+		this.encoders = encoders;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Create the loader of the objects of the given class into the given table, resolving the OIDs of the composite types
+	 * and hstore with the given connection
+	 * @param connection connection, that is used only to resolve the OIDs of the types
+	 * @param itemClass class of the loaded objects
+	 * @param tableName name of the table (can be qualified with the schema name)
+	 * @throws FieldDescriptionException if the given class cannot be mapped or some of its fields cannot be written in the binary format
+	 */
+	public static final <ITEM> BinaryCopyLoader<ITEM> forTable(Connection connection, Class<ITEM> itemClass, String tableName) throws SQLException {
+		return forTable(itemClass, tableName, new CatalogTypeOidResolver(connection));
+	}
+
+	/**
+	 * Create the loader of the objects of the given class into the given table
+	 * @param itemClass class of the loaded objects
+	 * @param tableName name of the table (can be qualified with the schema name)
+	 * @param resolver resolver of the OIDs of the composite types and hstore, used only while the loader is created
+	 * @throws FieldDescriptionException if the given class cannot be mapped or some of its fields cannot be written in the binary format
+	 */
+	public static final <ITEM> BinaryCopyLoader<ITEM> forTable(Class<ITEM> itemClass, String tableName, TypeOidResolver resolver) throws SQLException {
+		final List<ParameterBinder.ColumnBinding> bindings = ParameterBinder.ColumnBinding.forClass(itemClass);
+		final BinaryValueEncoder[] encoders = new BinaryValueEncoder[bindings.size()];
+		final StringBuilder sql = new StringBuilder("COPY ").append(tableName).append(" (");
+		for (int i = 0; i < encoders.length; i++) {
+			final ParameterBinder.ColumnBinding binding = bindings.get(i);
+			encoders[i] = BinaryValueEncoder.forType(binding.getField(), resolver);
+			if ( i > 0 ) sql.append(", ");
+			sql.append(binding.columnName);
+		}
+		sql.append(") FROM STDIN WITH BINARY");
+		if ( logger.isLoggable(Level.FINE) ) {
+			logger.fine("Objects of " + itemClass.getName() + " will be loaded with [" + sql + "]");
+		}
+		return new BinaryCopyLoader<ITEM>(itemClass, sql.toString(), bindings.toArray(new ParameterBinder.ColumnBinding[encoders.length]), encoders, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize size in bytes of the chunks of the encoded rows, that are sent to the database
+	 * @return loader with the same statement and the given chunk size
+	 */
+	public BinaryCopyLoader<ITEM> withChunkSize(int chunkSize) {
+		if ( chunkSize < 1 ) throw new IllegalArgumentException("Chunk size should be positive");
+		return new BinaryCopyLoader<ITEM>(itemClass, sql, bindings, encoders, chunkSize);
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return COPY statement, that is used to load the objects
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return names of the columns in the order of the fields of the COPY tuples
+	 */
+	public List<String> getColumns() {
+		final String[] columns = new String[bindings.length];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = bindings[i].columnName;
+		}
+		return Arrays.asList(columns);
+	}
+
+	/**
+	 * Load all the given objects
+	 * @return number of the loaded rows
+	 */
+	public long load(Connection connection, Iterable<? extends ITEM> items) throws SQLException {
+		return load(connection, items.iterator());
+	}
+
+	/**
+	 * Load all the objects of the given iterator, the connection should be a PostgreSQL connection
+	 * (or wrap one, so that it can be unwrapped into {@link PGConnection})
+	 * @return number of the loaded rows
+	 */
+	public long load(Connection connection, Iterator<? extends ITEM> items) throws SQLException {
+		final PGConnection pgConnection = connection instanceof PGConnection ? (PGConnection) connection : connection.unwrap(PGConnection.class);
+		final CopyIn copyIn = pgConnection.getCopyAPI().copyIn(sql);
+		try {
+			encode(items, new ChunkSink() {
+				@Override
+				public void write(byte[] data, int length) throws SQLException {
+					copyIn.writeToCopy(data, 0, length);
+				}
+			});
+			return copyIn.endCopy();
+		} catch (IOException e) {
+			// cannot happen, as the data is sent with the COPY API
+			final SQLException failure = new SQLException(e.getMessage(), e);
+			cancelAfterFailure(copyIn, failure);
+			throw failure;
+		} catch (SQLException e) {
+			cancelAfterFailure(copyIn, e);
+			throw e;
+		} catch (RuntimeException e) {
+			cancelAfterFailure(copyIn, e);
+			throw e;
+		} catch (Error e) {
+			cancelAfterFailure(copyIn, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Cancel the COPY, that is still active after the given failure, the failure of the cancelling is added to the original failure
+	 * as a suppressed one, as the original failure is more important
+	 */
+	private static void cancelAfterFailure(CopyIn copyIn, Throwable failure) {
+		try {
+			if ( copyIn.isActive() ) {
+				copyIn.cancelCopy();
+			}
+		} catch (SQLException e) {
+			failure.addSuppressed(e);
+		} catch (RuntimeException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Write the whole COPY stream (header, rows of all the objects of the given iterator and trailer) into the given output stream,
+	 * for example to be loaded later with <code>COPY ... FROM 'file' WITH BINARY</code>
+	 * @return number of the written rows
+	 */
+	public long write(final OutputStream out, Iterator<? extends ITEM> items) throws SQLException, IOException {
+		return encode(items, new ChunkSink() {
+			@Override
+			public void write(byte[] data, int length) throws IOException {
+				out.write(data, 0, length);
+			}
+		});
+	}
+
+	/**
+	 * Encode the COPY stream of the given objects, passing it to the sink in chunks
+	 * @return number of the encoded rows
+	 */
+	private long encode(Iterator<? extends ITEM> items, ChunkSink sink) throws SQLException, IOException {
+		final BinaryValueEncoder.Buffer buffer = new BinaryValueEncoder.Buffer(chunkSize);
+		buffer.writeBytes(HEADER, 0, HEADER.length);
+		long count = 0;
+		while ( items.hasNext() ) {
+			final ITEM item = items.next();
+			buffer.writeShort(encoders.length);
+			for (int i = 0; i < encoders.length; i++) {
+				encoders[i].writeField(buffer, bindings[i].getValue(item));
+			}
+			count++;
+			if ( buffer.length >= chunkSize ) {
+				sink.write(buffer.data, buffer.length);
+				buffer.clear();
+			}
+		}
+		buffer.writeShort(-1);
+		sink.write(buffer.data, buffer.length);
+		return count;
+	}
+
+	/**
+	 * Receiver of the encoded chunks of the COPY stream
+	 */
+	private static interface ChunkSink {
+		void write(byte[] data, int length) throws SQLException, IOException;
+	}
+
+	/**
+	 * Resolves the OIDs of the types with the given connection, every type is resolved only once
+	 */
+	private static final class CatalogTypeOidResolver implements TypeOidResolver {
+		private final Connection connection;
+		private final Map<String, Integer> oids = new HashMap<String, Integer>();
+
+		CatalogTypeOidResolver(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public int getTypeOid(String typeName) throws SQLException {
+			Integer oid = oids.get(typeName);
+			if ( oid == null ) {
+				final PreparedStatement ps = connection.prepareStatement("SELECT to_regtype(?)::oid");
+				try {
+					ps.setString(1, typeName);
+					final ResultSet rs = ps.executeQuery();
+					try {
+						if ( rs.next() ) {
+							final long value = rs.getLong(1);
+							if ( ! rs.wasNull() ) oid = (int) value;
+						}
+					} finally {
+						rs.close();
+					}
+				} finally {
+					ps.close();
+				}
+				if ( oid == null ) {
+					throw new SQLException("Type " + typeName + " does not exist");
+				}
+				oids.put(typeName, oid);
+			}
+			return oid;
+		}
+	}
+}
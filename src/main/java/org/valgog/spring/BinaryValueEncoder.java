@@ -0,0 +1,568 @@
+package org.valgog.spring;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.valgog.spring.annotations.DatabaseType;
+import org.valgog.spring.helpers.TypeDescriptor;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+import org.valgog.utils.PostgresBinaryReader;
+
+/**
+ * Encodes the values of the mapped fields in the PostgreSQL binary format (the format of the {@code typsend}/{@code typreceive}
+ * functions, that is also used by the binary COPY).
+ * <p>Encoders are resolved once for every mapped field from its type, the same way as the {@link ParameterBinder} binders,
+ * including the OIDs of the composite types of the mapped classes, that are written into the binary ROW and ARRAY values.
+ * As the binary values are not converted by the database, the type of the target column should be exactly the type
+ * the Java type is written as:
+ * <ul>
+ * <li>short and byte as {@code int2}, int as {@code int4}, long as {@code int8}</li>
+ * <li>float as {@code float4}, double as {@code float8}, {@link BigDecimal} as {@code numeric}</li>
+ * <li>{@link String}, char and enums as {@code text} (also accepted by {@code varchar} columns)</li>
+ * <li>{@link java.sql.Date} as {@code date} and all the other {@link java.util.Date} values as {@code timestamptz}</li>
+ * <li>{@link UUID} as {@code uuid}, byte[] as {@code bytea} and maps as {@code hstore}</li>
+ * <li>arrays and collections as one dimensional ARRAY values, objects of the mapped classes as ROW values</li>
+ * </ul>
+ *
+ * @author valgog
+ *
+ */
+abstract class BinaryValueEncoder {
+
+	static final int INT2_ARRAY_OID = 1005;
+	static final int INT4_ARRAY_OID = 1007;
+	static final int INT8_ARRAY_OID = 1016;
+	static final int TEXT_ARRAY_OID = 1009;
+	static final int FLOAT4_ARRAY_OID = 1021;
+	static final int FLOAT8_ARRAY_OID = 1022;
+	static final int BOOL_ARRAY_OID = 1000;
+	static final int BYTEA_ARRAY_OID = 1001;
+	static final int NUMERIC_ARRAY_OID = 1231;
+	static final int DATE_ARRAY_OID = 1182;
+	static final int TIMESTAMPTZ_ARRAY_OID = 1185;
+	static final int UUID_ARRAY_OID = 2951;
+
+	private static final long POSTGRES_EPOCH_MILLIS = 946684800000L;
+	private static final long MILLIS_PER_DAY = 86400000L;
+	private static final int NUMERIC_POSITIVE = 0x0000;
+	private static final int NUMERIC_NEGATIVE = 0x4000;
+
+	/**
+	 * OID of the type the values are written as
+	 */
+	final int typeOid;
+
+	/**
+	 * OID of the array type of the type the values are written as
+	 */
+	final int arrayTypeOid;
+
+	BinaryValueEncoder(int typeOid, int arrayTypeOid) {
+		this.typeOid = typeOid;
+		this.arrayTypeOid = arrayTypeOid;
+	}
+
+	/**
+	 * Write the binary representation of the given not null value (without the length)
+	 */
+	abstract void write(Buffer buffer, Object value) throws SQLException;
+
+	/**
+	 * Write the given value as a field of a COPY tuple or an element of an ARRAY or a ROW: the length of the binary representation
+	 * (-1 for NULL values) followed by the representation itself
+	 */
+	final void writeField(Buffer buffer, Object value) throws SQLException {
+		if ( value == null ) {
+			buffer.writeInt(-1);
+		} else {
+			final int lengthPosition = buffer.reserveInt();
+			write(buffer, value);
+			buffer.patchInt(lengthPosition, buffer.length - lengthPosition - 4);
+		}
+	}
+
+	/**
+	 * Create the encoder of the values of the described type
+	 * @param typeDesc descriptor of the type of the encoded values
+	 * @param resolver resolver of the OIDs of the composite types and hstore
+	 * @throws FieldDescriptionException if the values of the described type cannot be written in the binary format
+	 */
+	static final BinaryValueEncoder forType(TypeDescriptor<?> typeDesc, TypeOidResolver resolver) throws SQLException {
+		return forType(typeDesc, resolver, new HashMap<Class<?>, RowEncoder>());
+	}
+
+	/**
+	 * @param rowEncoders encoders of the mapped classes, that are already created, so that the classes can reference each other
+	 */
+	private static final BinaryValueEncoder forType(TypeDescriptor<?> typeDesc, TypeOidResolver resolver, Map<Class<?>, RowEncoder> rowEncoders) throws SQLException {
+		final Class<?> type = typeDesc.getType();
+		if ( HStoreObjectConverter.isHStoreMapped(typeDesc) ) {
+			return new HStoreObjectEncoder(type, resolver.getTypeOid("hstore"), resolver.getTypeOid("hstore[]"));
+		}
+		if ( type == Short.class || type == short.class || type == Byte.class || type == byte.class ) {
+			return INT2_ENCODER;
+		}
+		if ( type == Integer.class || type == int.class ) {
+			return INT4_ENCODER;
+		}
+		if ( type == Long.class || type == long.class ) {
+			return INT8_ENCODER;
+		}
+		if ( type == Float.class || type == float.class ) {
+			return FLOAT4_ENCODER;
+		}
+		if ( type == Double.class || type == double.class ) {
+			return FLOAT8_ENCODER;
+		}
+		if ( type == Boolean.class || type == boolean.class ) {
+			return BOOL_ENCODER;
+		}
+		if ( type == String.class || type == Character.class || type == char.class || type.isEnum() ) {
+			return TEXT_ENCODER;
+		}
+		if ( type == BigDecimal.class ) {
+			return NUMERIC_ENCODER;
+		}
+		if ( java.util.Date.class.isAssignableFrom(type) ) {
+			return type == java.sql.Date.class ? DATE_ENCODER : TIMESTAMPTZ_ENCODER;
+		}
+		if ( type == UUID.class ) {
+			return UUID_ENCODER;
+		}
+		if ( type == byte[].class ) {
+			return BYTEA_ENCODER;
+		}
+		if ( Map.class.isAssignableFrom(type) ) {
+			return new HStoreEncoder(resolver.getTypeOid("hstore"), resolver.getTypeOid("hstore[]"));
+		}
+		final Class<Object> componentType = typeDesc.getComponentType();
+		if ( componentType != null ) {
+			final BinaryValueEncoder elementEncoder = forType(new TypeDescriptor<Object>(componentType), resolver, rowEncoders);
+			if ( elementEncoder instanceof ArrayEncoder ) {
+				throw new FieldDescriptionException("Nested arrays of " + typeDesc.getGenericType() + " cannot be written in the binary format");
+			}
+			return new ArrayEncoder(elementEncoder);
+		}
+		if ( NestedValueDecoder.isNested(typeDesc) ) {
+			RowEncoder encoder = rowEncoders.get(type);
+			if ( encoder == null ) {
+				final String typeName = getDatabaseTypeName(type);
+				encoder = new RowEncoder(resolver.getTypeOid(typeName), resolver.getTypeOid(typeName + "[]"));
+				rowEncoders.put(type, encoder);
+				final List<ParameterBinder.ColumnBinding> bindings = ParameterBinder.ColumnBinding.forClass(type);
+				final BinaryValueEncoder[] fieldEncoders = new BinaryValueEncoder[bindings.size()];
+				for (int i = 0; i < fieldEncoders.length; i++) {
+					fieldEncoders[i] = forType(bindings.get(i).getField(), resolver, rowEncoders);
+				}
+				encoder.init(bindings.toArray(new ParameterBinder.ColumnBinding[fieldEncoders.length]), fieldEncoders);
+			}
+			return encoder;
+		}
+		throw new FieldDescriptionException("Values of " + type.getName() + " cannot be written in the binary format");
+	}
+
+	/**
+	 * @return name of the composite type of the given mapped class
+	 */
+	static final String getDatabaseTypeName(Class<?> type) {
+		final DatabaseType databaseType = type.getAnnotation(DatabaseType.class);
+		return databaseType == null ? AnnotatedRowMapper.rewriteJavaPropertyNameToLowercaseUnderscoreName(type.getSimpleName()) : databaseType.value();
+	}
+
+	private static final BinaryValueEncoder INT2_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.INT2_OID, INT2_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			buffer.writeShort(((Number) value).shortValue());
+		}
+	};
+
+	private static final BinaryValueEncoder INT4_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.INT4_OID, INT4_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			buffer.writeInt(((Number) value).intValue());
+		}
+	};
+
+	private static final BinaryValueEncoder INT8_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.INT8_OID, INT8_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			buffer.writeLong(((Number) value).longValue());
+		}
+	};
+
+	private static final BinaryValueEncoder FLOAT4_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.FLOAT4_OID, FLOAT4_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			buffer.writeInt(Float.floatToIntBits(((Number) value).floatValue()));
+		}
+	};
+
+	private static final BinaryValueEncoder FLOAT8_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.FLOAT8_OID, FLOAT8_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			buffer.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+		}
+	};
+
+	private static final BinaryValueEncoder BOOL_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.BOOL_OID, BOOL_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			buffer.writeByte((Boolean) value ? 1 : 0);
+		}
+	};
+
+	private static final BinaryValueEncoder TEXT_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.TEXT_OID, TEXT_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			if ( value instanceof CharSequence ) {
+				buffer.writeUtf8((CharSequence) value);
+			} else {
+				buffer.writeUtf8(value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+			}
+		}
+	};
+
+	private static final BinaryValueEncoder BYTEA_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.BYTEA_OID, BYTEA_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			final byte[] bytes = (byte[]) value;
+			buffer.writeBytes(bytes, 0, bytes.length);
+		}
+	};
+
+	private static final BinaryValueEncoder UUID_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.UUID_OID, UUID_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			final UUID uuid = (UUID) value;
+			buffer.writeLong(uuid.getMostSignificantBits());
+			buffer.writeLong(uuid.getLeastSignificantBits());
+		}
+	};
+
+	/**
+	 * Dates are the midnights of the local time zone, written as the number of days since 2000-01-01
+	 */
+	private static final BinaryValueEncoder DATE_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.DATE_OID, DATE_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			final long millis = ((java.util.Date) value).getTime();
+			final long localMillis = millis + TimeZone.getDefault().getOffset(millis);
+			buffer.writeInt((int) Math.floorDiv(localMillis - POSTGRES_EPOCH_MILLIS, MILLIS_PER_DAY));
+		}
+	};
+
+	/**
+	 * Timestamps are written as the number of microseconds since 2000-01-01 00:00 UTC
+	 */
+	private static final BinaryValueEncoder TIMESTAMPTZ_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.TIMESTAMPTZ_OID, TIMESTAMPTZ_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			final long millis = ((java.util.Date) value).getTime();
+			final long micros;
+			if ( value instanceof Timestamp ) {
+				// milliseconds of the time are also a part of the nanoseconds
+				micros = Math.floorDiv(millis, 1000L) * 1000000L + ((Timestamp) value).getNanos() / 1000;
+			} else {
+				micros = millis * 1000L;
+			}
+			buffer.writeLong(micros - POSTGRES_EPOCH_MILLIS * 1000L);
+		}
+	};
+
+	/**
+	 * Numeric values are written as the number of base 10000 digits, weight of the first digit, sign, display scale and the digits
+	 * (leading and trailing zero digits are not written)
+	 */
+	private static final BinaryValueEncoder NUMERIC_ENCODER = new BinaryValueEncoder(PostgresBinaryReader.NUMERIC_OID, NUMERIC_ARRAY_OID) {
+		@Override
+		void write(Buffer buffer, Object value) {
+			BigDecimal decimal = (BigDecimal) value;
+			if ( decimal.scale() < 0 ) decimal = decimal.setScale(0);
+			final String plain = decimal.abs().toPlainString();
+			final int point = plain.indexOf('.');
+			final int integerLength = point < 0 ? plain.length() : point;
+			final int fractionLength = point < 0 ? 0 : plain.length() - point - 1;
+			// integer digits are aligned to the decimal point from the left, fraction digits from the right
+			final int integerGroups = ( integerLength + 3 ) / 4;
+			final int fractionGroups = ( fractionLength + 3 ) / 4;
+			final short[] digits = new short[integerGroups + fractionGroups];
+			for (int i = 0; i < integerLength; i++) {
+				final int group = integerGroups - 1 - ( integerLength - 1 - i ) / 4;
+				digits[group] = (short) ( digits[group] * 10 + ( plain.charAt(i) - '0' ) );
+			}
+			for (int i = 0; i < fractionGroups * 4; i++) {
+				final int group = integerGroups + i / 4;
+				digits[group] = (short) ( digits[group] * 10 + ( i < fractionLength ? plain.charAt(point + 1 + i) - '0' : 0 ) );
+			}
+			int first = 0;
+			while ( first < digits.length && digits[first] == 0 ) first++;
+			int last = digits.length;
+			while ( last > first && digits[last - 1] == 0 ) last--;
+			buffer.writeShort(last - first);
+			buffer.writeShort(first == last ? 0 : integerGroups - 1 - first);
+			buffer.writeShort(decimal.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE);
+			buffer.writeShort(decimal.scale());
+			for (int i = first; i < last; i++) {
+				buffer.writeShort(digits[i]);
+			}
+		}
+	};
+
+	/**
+	 * hstore values are written as the number of the pairs followed by the keys and the values with their lengths
+	 */
+	private static final class HStoreEncoder extends BinaryValueEncoder {
+		HStoreEncoder(int typeOid, int arrayTypeOid) {
+			super(typeOid, arrayTypeOid);
+		}
+
+		@Override
+		void write(Buffer buffer, Object value) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+			buffer.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeText(buffer, entry.getKey().toString());
+				writeText(buffer, entry.getValue() == null ? null : entry.getValue().toString());
+			}
+		}
+	}
+
+	private static final void writeText(Buffer buffer, CharSequence text) {
+		if ( text == null ) {
+			buffer.writeInt(-1);
+		} else {
+			final int lengthPosition = buffer.reserveInt();
+			buffer.writeUtf8(text);
+			buffer.patchInt(lengthPosition, buffer.length - lengthPosition - 4);
+		}
+	}
+
+	/**
+	 * Writes objects of the {@link org.valgog.spring.annotations.HStoreMapped} classes as hstore values
+	 */
+	private static final class HStoreObjectEncoder extends BinaryValueEncoder {
+		private final Class<?> type;
+		private volatile ParameterBinder.ColumnBinding[] bindings;
+
+		HStoreObjectEncoder(Class<?> type, int typeOid, int arrayTypeOid) {
+			super(typeOid, arrayTypeOid);
+			this.type = type;
+		}
+
+		@Override
+		void write(Buffer buffer, Object value) throws SQLException {
+			ParameterBinder.ColumnBinding[] bindings = this.bindings;
+			if ( bindings == null ) {
+				bindings = ParameterBinder.ColumnBinding.forClass(type).toArray(new ParameterBinder.ColumnBinding[0]);
+				this.bindings = bindings;
+			}
+			buffer.writeInt(bindings.length);
+			final StringBuilder fieldText = new StringBuilder();
+			for (ParameterBinder.ColumnBinding binding : bindings) {
+				writeText(buffer, binding.columnName);
+				final Object fieldValue = binding.getValue(value);
+				if ( fieldValue == null ) {
+					writeText(buffer, null);
+				} else {
+					fieldText.setLength(0);
+					binding.binder.appendText(fieldText, fieldValue);
+					writeText(buffer, fieldText);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes arrays and collections as one dimensional ARRAY values: number of dimensions, NULL flag, element type OID,
+	 * size and lower bound of the dimension and the elements with their lengths
+	 */
+	private static final class ArrayEncoder extends BinaryValueEncoder {
+		private final BinaryValueEncoder elementEncoder;
+
+		ArrayEncoder(BinaryValueEncoder elementEncoder) {
+			// arrays of arrays are the same type in PostgreSQL
+			super(elementEncoder.arrayTypeOid, elementEncoder.arrayTypeOid);
+			this.elementEncoder = elementEncoder;
+		}
+
+		@Override
+		void write(Buffer buffer, Object value) throws SQLException {
+			final int size = value instanceof Collection ? ((Collection<?>) value).size() : Array.getLength(value);
+			buffer.writeInt(size == 0 ? 0 : 1);
+			final int nullFlagPosition = buffer.reserveInt();
+			buffer.writeInt(elementEncoder.typeOid);
+			if ( size == 0 ) {
+				buffer.patchInt(nullFlagPosition, 0);
+				return;
+			}
+			buffer.writeInt(size);
+			buffer.writeInt(1);
+			boolean hasNulls = false;
+			if ( value instanceof int[] ) {
+				for (int element : (int[]) value) {
+					buffer.writeInt(4);
+					buffer.writeInt(element);
+				}
+			} else if ( value instanceof long[] ) {
+				for (long element : (long[]) value) {
+					buffer.writeInt(8);
+					buffer.writeLong(element);
+				}
+			} else if ( value instanceof Object[] ) {
+				for (Object element : (Object[]) value) {
+					if ( element == null ) hasNulls = true;
+					elementEncoder.writeField(buffer, element);
+				}
+			} else if ( value instanceof Collection ) {
+				for (Object element : (Collection<?>) value) {
+					if ( element == null ) hasNulls = true;
+					elementEncoder.writeField(buffer, element);
+				}
+			} else {
+				for (int i = 0; i < size; i++) {
+					elementEncoder.writeField(buffer, Array.get(value, i));
+				}
+			}
+			buffer.patchInt(nullFlagPosition, hasNulls ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Writes objects of the mapped classes as ROW values: number of the fields and the fields with their type OIDs and lengths
+	 * in the order of their declaration (fields of the embedded objects are written in place of the embedded objects)
+	 */
+	private static final class RowEncoder extends BinaryValueEncoder {
+		private ParameterBinder.ColumnBinding[] bindings;
+		private BinaryValueEncoder[] fieldEncoders;
+
+		RowEncoder(int typeOid, int arrayTypeOid) {
+			super(typeOid, arrayTypeOid);
+		}
+
+		void init(ParameterBinder.ColumnBinding[] bindings, BinaryValueEncoder[] fieldEncoders) {
+			this.bindings = bindings;
+			this.fieldEncoders = fieldEncoders;
+		}
+
+		@Override
+		void write(Buffer buffer, Object value) throws SQLException {
+			buffer.writeInt(bindings.length);
+			for (int i = 0; i < bindings.length; i++) {
+				buffer.writeInt(fieldEncoders[i].typeOid);
+				fieldEncoders[i].writeField(buffer, bindings[i].getValue(value));
+			}
+		}
+	}
+
+	/**
+	 * Growing byte buffer, the binary values are written into
+	 */
+	static final class Buffer {
+		byte[] data;
+		int length;
+
+		Buffer(int capacity) {
+			this.data = new byte[Math.max(capacity, 16)];
+		}
+
+		private void ensure(int additional) {
+			if ( length + additional > data.length ) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length + additional));
+			}
+		}
+
+		void clear() {
+			length = 0;
+		}
+
+		void writeByte(int b) {
+			ensure(1);
+			data[length++] = (byte) b;
+		}
+
+		void writeShort(int s) {
+			ensure(2);
+			data[length++] = (byte) ( s >>> 8 );
+			data[length++] = (byte) s;
+		}
+
+		void writeInt(int i) {
+			ensure(4);
+			data[length++] = (byte) ( i >>> 24 );
+			data[length++] = (byte) ( i >>> 16 );
+			data[length++] = (byte) ( i >>> 8 );
+			data[length++] = (byte) i;
+		}
+
+		void writeLong(long l) {
+			writeInt((int) ( l >>> 32 ));
+			writeInt((int) l);
+		}
+
+		void writeBytes(byte[] bytes, int offset, int count) {
+			ensure(count);
+			System.arraycopy(bytes, offset, data, length, count);
+			length += count;
+		}
+
+		/**
+		 * Reserve the space for an int, that is written later with {@link #patchInt(int, int)}
+		 * @return position of the reserved int
+		 */
+		int reserveInt() {
+			ensure(4);
+			length += 4;
+			return length - 4;
+		}
+
+		void patchInt(int position, int i) {
+			data[position] = (byte) ( i >>> 24 );
+			data[position + 1] = (byte) ( i >>> 16 );
+			data[position + 2] = (byte) ( i >>> 8 );
+			data[position + 3] = (byte) i;
+		}
+
+		/**
+		 * Write the text encoded in UTF-8, without creating an intermediate byte array
+		 */
+		void writeUtf8(CharSequence text) {
+			final int textLength = text.length();
+			ensure(textLength);
+			for (int i = 0; i < textLength; i++) {
+				final char ch = text.charAt(i);
+				if ( ch < 0x80 ) {
+					if ( length == data.length ) ensure(1);
+					data[length++] = (byte) ch;
+				} else if ( ch < 0x800 ) {
+					ensure(2);
+					data[length++] = (byte) ( 0xC0 | ( ch >> 6 ) );
+					data[length++] = (byte) ( 0x80 | ( ch & 0x3F ) );
+				} else if ( Character.isHighSurrogate(ch) && i + 1 < textLength && Character.isLowSurrogate(text.charAt(i + 1)) ) {
+					final int codePoint = Character.toCodePoint(ch, text.charAt(++i));
+					ensure(4);
+					data[length++] = (byte) ( 0xF0 | ( codePoint >> 18 ) );
+					data[length++] = (byte) ( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) );
+					data[length++] = (byte) ( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );
+					data[length++] = (byte) ( 0x80 | ( codePoint & 0x3F ) );
+				} else if ( Character.isSurrogate(ch) ) {
+					// unpaired surrogates are replaced, as they cannot be encoded
+					writeByte('?');
+				} else {
+					ensure(3);
+					data[length++] = (byte) ( 0xE0 | ( ch >> 12 ) );
+					data[length++] = (byte) ( 0x80 | ( ( ch >> 6 ) & 0x3F ) );
+					data[length++] = (byte) ( 0x80 | ( ch & 0x3F ) );
+				}
+			}
+		}
+	}
+}
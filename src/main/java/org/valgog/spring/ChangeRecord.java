@@ -0,0 +1,117 @@
+package org.valgog.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One decoded change of a table row, as it is produced by the logical decoding output plugins
+ * (like <code>test_decoding</code> or <code>wal2json</code>): the table, the operation and the name, type and value of the columns.
+ * <p>Values are the text representations of the column values (as they are returned by {@link java.sql.ResultSet#getString(int)}),
+ * or already typed values, like {@link Boolean} values of the JSON based formats. Columns, that are not part of the change
+ * (like unchanged TOAST values), are not in the record.
+ * <p>Records are immutable.
+ *
+ * @author valgog
+ */
+public final class ChangeRecord {
+
+	/**
+	 * Operations of the changes
+	 */
+	public static enum Operation {
+		INSERT,
+		UPDATE,
+		DELETE
+	}
+
+	/**
+	 * Column of a changed row
+	 */
+	public static final class Column {
+		private final String name;
+		private final String type;
+		private final Object value;
+
+		/**
+		 * @param name name of the column
+		 * @param type name of the database type of the column, can be {@code null}, if it is not known
+		 * @param value value of the column, {@code null} for NULL values
+		 */
+		public Column(String name, String type, Object value) {
+			if ( name == null ) throw new NullPointerException("name should be not null");
+			this.name = name;
+			this.type = type;
+			this.value = value;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return name + "[" + type + "]:" + value;
+		}
+	}
+
+	private final String table;
+	private final Operation operation;
+	private final List<Column> columns;
+	private final List<Column> oldKey;
+
+	/**
+	 * @param table name of the changed table, qualified with the schema name, if the output plugin provides it
+	 * @param operation operation of the change
+	 * @param columns columns of the new row for the inserts and updates and of the old row for the deletes
+	 * (only the key columns, unless the table has the full replica identity)
+	 * @param oldKey key columns of the old row for the updates, that change the key, an empty list otherwise
+	 */
+	public ChangeRecord(String table, Operation operation, List<Column> columns, List<Column> oldKey) {
+		if ( table == null ) throw new NullPointerException("table should be not null");
+		if ( operation == null ) throw new NullPointerException("operation should be not null");
+		this.table = table;
+		this.operation = operation;
+		this.columns = Collections.unmodifiableList(new ArrayList<Column>(columns));
+		this.oldKey = oldKey == null ? Collections.<Column>emptyList() : Collections.unmodifiableList(new ArrayList<Column>(oldKey));
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	public List<Column> getColumns() {
+		return columns;
+	}
+
+	public List<Column> getOldKey() {
+		return oldKey;
+	}
+
+	/**
+	 * @return column of the given name or {@code null}, if the record has no such column
+	 */
+	public Column getColumn(String name) {
+		for (Column column : columns) {
+			if ( column.name.equals(name) ) return column;
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "table " + table + ": " + operation + ": " + columns + ( oldKey.isEmpty() ? "" : " old-key: " + oldKey );
+	}
+}
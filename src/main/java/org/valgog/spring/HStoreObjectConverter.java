@@ -0,0 +1,257 @@
+package org.valgog.spring;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.postgresql.util.PGobject;
+import org.valgog.spring.annotations.HStoreMapped;
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.ClassMappingDescriptor;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingOption;
+import org.valgog.spring.helpers.MappingPath;
+import org.valgog.spring.helpers.MappingPathCounter;
+import org.valgog.spring.helpers.PathConverter;
+import org.valgog.spring.helpers.TextValueConverter;
+import org.valgog.spring.helpers.TypeDescriptor;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+import org.valgog.spring.helpers.exceptions.NotConvertable;
+import org.valgog.utils.exceptions.HStoreParseException;
+import org.valgog.utils.postgres.HStore;
+import org.valgog.utils.postgres.HStoreCursor;
+
+/**
+ * Field value converter, that fills the instances of the {@link HStoreMapped} classes from the keys of hstore values.
+ * <p>Keys of the mapped fields are kept in a table sorted by the key, that is built once per class,
+ * so that the hstore value is walked only once with an {@link HStoreCursor} and every key is dispatched to its field
+ * with a binary search, without creating the key strings or an intermediate map. Only the values of the mapped keys
+ * are extracted and converted with the converters of their fields.
+ *
+ * @author valgog
+ *
+ */
+final class HStoreObjectConverter<D> implements TextValueConverter<D>, PathConverter<D> {
+
+	/**
+	 * Key tables of the mapped classes, resolved when they are converted for the first time
+	 */
+	private static final ClassValue<KeyTable<?>> keyTables = new ClassValue<KeyTable<?>>() {
+		@Override
+		@SuppressWarnings("unchecked")
+		protected KeyTable<?> computeValue(Class<?> type) {
+			return new KeyTable<Object>((Class<Object>) type);
+		}
+	};
+
+	private final KeyTable<D> keyTable;
+
+	@SuppressWarnings("unchecked")
+	HStoreObjectConverter(Class<D> type) {
+		this.keyTable = (KeyTable<D>) keyTables.get(type);
+	}
+
+	/**
+	 * @return true if the values of the described type should be filled from hstore values
+	 */
+	static final boolean isHStoreMapped(TypeDescriptor<?> typeDesc) {
+		if ( typeDesc.getType().isAnnotationPresent(HStoreMapped.class) ) {
+			return true;
+		}
+		return typeDesc instanceof ClassFieldDescriptor && ((ClassFieldDescriptor<?, ?>) typeDesc).getField().isAnnotationPresent(HStoreMapped.class);
+	}
+
+	@Override
+	public D convertFrom(Object sourceValue) throws NotConvertable {
+		return convertFrom(sourceValue, MappingPathCounter.NONE);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public D convertFrom(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+		if ( sourceValue == null ) {
+			counter.countPath(MappingPath.NULL);
+			return null;
+		}
+		if ( keyTable.type.isInstance(sourceValue) ) {
+			counter.countPath(MappingPath.DIRECT);
+			return (D) sourceValue;
+		}
+		try {
+			if ( sourceValue instanceof Map ) {
+				// hstore value, that is already decoded into a map
+				counter.countPath(MappingPath.DIRECT);
+				return keyTable.createItem((Map<String, String>) sourceValue);
+			}
+			final HStore hstore;
+			if ( sourceValue instanceof HStore ) {
+				counter.countPath(MappingPath.PG_OBJECT);
+				hstore = (HStore) sourceValue;
+			} else if ( sourceValue instanceof PGobject ) {
+				counter.countPath(MappingPath.PG_OBJECT);
+				hstore = new HStore(((PGobject) sourceValue).getValue());
+			} else if ( sourceValue instanceof CharSequence ) {
+				counter.countPath(MappingPath.TEXT);
+				hstore = new HStore(sourceValue.toString());
+			} else {
+				throw new NotConvertable("Could not convert value of type " + sourceValue.getClass().getName() + " to expected type " + keyTable.type.getName());
+			}
+			return hstore.getValue() == null ? null : keyTable.createItem(hstore.cursor());
+		} catch (HStoreParseException e) {
+			throw new NotConvertable("Could not parse hstore value: " + e.getMessage(), e);
+		} catch (SQLException e) {
+			throw new NotConvertable(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Table of the mapped fields of a class, sorted by their keys
+	 */
+	private static final class KeyTable<T> {
+		private final Class<T> type;
+		private volatile ClassMappingDescriptor<T> classDesc;
+		private volatile String[] keys;
+		private int[] fieldIndexes;
+		private int requiredCount;
+
+		KeyTable(Class<T> type) {
+			this.type = type;
+		}
+
+		/**
+		 * Keys are resolved lazily, as computing a ClassValue cannot throw checked exceptions
+		 */
+		private String[] resolve() throws FieldDescriptionException {
+			String[] keys = this.keys;
+			if ( keys == null ) {
+				final ClassMappingDescriptor<T> desc = AnnotatedRowMapper.getClassMappingDescriptor(type);
+				final List<ClassFieldDescriptor<T, Object>> descList = desc.getFieldDescriptors();
+				final Integer[] order = new Integer[descList.size()];
+				int required = 0;
+				for (int i = 0; i < order.length; i++) {
+					if ( ! ( descList.get(i) instanceof DatabaseFieldDescriptor ) ) {
+						throw new FieldDescriptionException("Embedded field " + descList.get(i).getField() + " cannot be filled from an hstore value");
+					}
+					if ( ! database(descList, i).is(MappingOption.OPTIONAL) ) required++;
+					order[i] = i;
+				}
+				Arrays.sort(order, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer a, Integer b) {
+						return database(descList, a).getDatabaseFieldName().compareTo(database(descList, b).getDatabaseFieldName());
+					}
+				});
+				keys = new String[order.length];
+				final int[] indexes = new int[order.length];
+				for (int i = 0; i < order.length; i++) {
+					keys[i] = database(descList, order[i]).getDatabaseFieldName();
+					indexes[i] = order[i];
+					if ( i > 0 && keys[i].equals(keys[i - 1]) ) {
+						throw new FieldDescriptionException("Key " + keys[i] + " is mapped to more then one field of " + type.getName());
+					}
+				}
+				this.fieldIndexes = indexes;
+				this.requiredCount = required;
+				this.classDesc = desc;
+				this.keys = keys;
+			}
+			return keys;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> DatabaseFieldDescriptor<T, Object> database(List<ClassFieldDescriptor<T, Object>> descList, int index) {
+			return (DatabaseFieldDescriptor<T, Object>) descList.get(index);
+		}
+
+		/**
+		 * @return index of the key in the table or -1 if the key is not mapped
+		 */
+		private static int find(String[] keys, CharSequence key) {
+			int low = 0;
+			int high = keys.length - 1;
+			while ( low <= high ) {
+				final int middle = ( low + high ) >>> 1;
+				final int c = compare(keys[middle], key);
+				if ( c < 0 ) {
+					low = middle + 1;
+				} else if ( c > 0 ) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Compare the same way as {@link String#compareTo(String)}
+		 */
+		private static int compare(String s, CharSequence other) {
+			final int length = Math.min(s.length(), other.length());
+			for (int i = 0; i < length; i++) {
+				final int c = s.charAt(i) - other.charAt(i);
+				if ( c != 0 ) return c;
+			}
+			return s.length() - other.length();
+		}
+
+		T createItem(HStoreCursor cursor) throws HStoreParseException, SQLException, NotConvertable {
+			final String[] keys = resolve();
+			final Filler filler = new Filler();
+			while ( cursor.next() ) {
+				final int k = find(keys, cursor.key());
+				if ( k >= 0 ) {
+					filler.assign(fieldIndexes[k], cursor.valueString());
+				}
+			}
+			return filler.finish();
+		}
+
+		T createItem(Map<String, String> map) throws SQLException, NotConvertable {
+			final String[] keys = resolve();
+			final Filler filler = new Filler();
+			for (Map.Entry<String, String> entry : map.entrySet()) {
+				final int k = find(keys, entry.getKey());
+				if ( k >= 0 ) {
+					filler.assign(fieldIndexes[k], entry.getValue());
+				}
+			}
+			return filler.finish();
+		}
+
+		/**
+		 * Assigns the values of one item, either directly to the fields or to the constructor arguments
+		 */
+		private final class Filler {
+			private final ClassMappingDescriptor<T> desc = classDesc;
+			private final List<ClassFieldDescriptor<T, Object>> descList = desc.getFieldDescriptors();
+			private final Object[] arguments = desc.isConstructorBased() ? desc.newArguments() : null;
+			private final T item = arguments == null ? desc.newInstance() : null;
+			private int requiredAssigned;
+
+			Filler() throws SQLException {
+			}
+
+			void assign(int index, String value) throws SQLException, NotConvertable {
+				final DatabaseFieldDescriptor<T, Object> fieldDesc = database(descList, index);
+				final Object fieldValue = fieldDesc.getConverter().convertFrom(value);
+				if ( arguments == null ) {
+					fieldDesc.assignFieldValue(item, fieldValue);
+				} else {
+					arguments[index] = fieldValue;
+				}
+				// hstore keys are unique, so every required field is assigned only once
+				if ( ! fieldDesc.is(MappingOption.OPTIONAL) ) requiredAssigned++;
+			}
+
+			T finish() throws SQLException {
+				if ( requiredAssigned < requiredCount ) {
+					throw new SQLException("hstore value has no keys for some of the required fields of " + type.getName() + ", expected keys: " + Arrays.toString(keys));
+				}
+				return arguments == null ? item : desc.newInstance(arguments);
+			}
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package org.valgog.spring;
+
+import java.sql.SQLException;
+
+/**
+ * Receiver of the mapped items, that are passed one by one as soon as they are created,
+ * so that the whole result never has to be kept in memory.
+ *
+ * @author valgog
+ *
+ * @param <ITEM> type of the received items
+ */
+public interface ItemHandler<ITEM> {
+
+	/**
+	 * Process the next item
+	 * @throws SQLException to stop the processing, the exception is passed to the caller
+	 */
+	void handleItem(ITEM item) throws SQLException;
+}
@@ -0,0 +1,98 @@
+package org.valgog.spring;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.ClassMappingDescriptor;
+
+/**
+ * Base of the mapping plans, that create the items of a class from the values of a row collected into an array
+ * ({@link ResultSetMappingPlan} for the raw values of the result set rows, {@link TextRowPlan} for the values of the COPY
+ * and logical decoding rows).
+ * <p>Creating an item by the constructor or by filling a new instance, as well as counting and timing the mapped rows
+ * in the {@link MappingMetrics}, is done here, so that the plans only need to know where the value of a field is.
+ *
+ * @author valgog
+ *
+ * @param <T> type of the mapped items
+ */
+abstract class ItemMappingPlan<T> {
+
+	/**
+	 * Value of a field, that has no value in the row (an optional field without a column), the field is left unset
+	 */
+	static final Object NO_VALUE = new Object();
+
+	final ClassMappingDescriptor<T> classDesc;
+	final ClassFieldDescriptor<T, Object>[] descriptors;
+	final MappingMetrics metrics;
+
+	@SuppressWarnings("unchecked")
+	ItemMappingPlan(Class<T> itemClass, ClassMappingDescriptor<T> classDesc) {
+		this.classDesc = classDesc;
+		final List<ClassFieldDescriptor<T, Object>> descList = classDesc.getFieldDescriptors();
+		this.descriptors = descList.toArray((ClassFieldDescriptor<T, Object>[]) new ClassFieldDescriptor<?, ?>[descList.size()]);
+		this.metrics = MappingMetrics.forClass(itemClass);
+	}
+
+	/**
+	 * Get the value of a mapped field, converted into the type of the field
+	 * @param values values of the row
+	 * @param offset position of the first value of the row in the given array
+	 * @param fieldIndex index of the field in the {@link #descriptors}
+	 * @param timed if the conversion should be timed, see {@link MappingMetrics#isTimed()}
+	 * @return value of the field or {@link #NO_VALUE} if the field should be left unset
+	 * @throws SQLException thrown if the value cannot be converted into the field type
+	 */
+	abstract Object fieldValue(Object[] values, int offset, int fieldIndex, boolean timed) throws SQLException;
+
+	/**
+	 * Create a new item from the values of a row, counting the row in the metrics of the class
+	 * @param values values of the row
+	 * @param offset position of the first value of the row in the given array
+	 * @return new item
+	 * @throws SQLException thrown if the values cannot be converted into the field types
+	 */
+	final T createItem(Object[] values, int offset) throws SQLException {
+		final boolean timed = MappingMetrics.isTimed();
+		final long start = timed ? System.nanoTime() : 0;
+		final T item = newItem(values, offset, timed);
+		rowMapped(timed, start);
+		return item;
+	}
+
+	/**
+	 * Create a new item from the values of a row without counting the row (as the embedded items are a part of the row of their owner).
+	 * <p>Depending on the mapped class, the item is either created by the default constructor and filled,
+	 * or created by passing all the values to the constructor.
+	 */
+	final T newItem(Object[] values, int offset, boolean timed) throws SQLException {
+		final Object[] arguments = classDesc.isConstructorBased() ? classDesc.newArguments() : null;
+		final T item = arguments == null ? classDesc.newInstance() : null;
+		for (int i = 0, l = descriptors.length; i < l; i++) {
+			final Object value = fieldValue(values, offset, i, timed);
+			if ( value == NO_VALUE ) {
+				continue;
+			}
+			if ( arguments == null ) {
+				descriptors[i].assignFieldValue(item, value);
+			} else {
+				arguments[i] = value;
+			}
+		}
+		return arguments == null ? item : classDesc.newInstance(arguments);
+	}
+
+	/**
+	 * Count the mapped row, recording its time if it is timed
+	 * @param start {@link System#nanoTime()} at the start of the mapping of a timed row
+	 */
+	final void rowMapped(boolean timed, long start) {
+		if ( timed ) {
+			metrics.rowMapped(System.nanoTime() - start);
+		} else {
+			metrics.rowMapped();
+		}
+	}
+}
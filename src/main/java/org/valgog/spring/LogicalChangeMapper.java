@@ -0,0 +1,217 @@
+package org.valgog.spring;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+/**
+ * Maps the {@link ChangeRecord}s of the logical decoding into the objects of the classes annotated
+ * for the {@link AnnotatedRowMapper}, that are registered for the changed tables.
+ * <p>The values of the columns are converted with the same descriptors and converters, as the values of a result set.
+ * The mapping of a class onto the columns is resolved once per table and list of the columns, and is cached.
+ * Up to {@value #MAX_PLANS_PER_TABLE} column lists are cached per table, the oldest one is replaced by the next new one,
+ * so that a long running decoding of tables, which columns change, does not make the cache grow.
+ * Plans are only cached for the tables, that have registered classes.
+ * The change records do not always contain all the columns of a table (deletes contain only the key columns,
+ * updates do not contain the unchanged TOAST values), so the fields, that have no columns in a record, are left unset.
+ *
+ * <pre>
+ * final LogicalChangeMapper mapper = LogicalChangeMapper.create().withTable("public.simple_table", SimpleClass.class);
+ * LogicalDecodingReader.read(new File("changes.txt"), new ItemHandler&lt;ChangeRecord&gt;() {
+ *     public void handleItem(ChangeRecord change) throws SQLException {
+ *         final SimpleClass item = mapper.map(change, SimpleClass.class);
+ *         ...
+ *     }
+ * });
+ * </pre>
+ *
+ * Mappers are immutable and thread safe.
+ *
+ * @author valgog
+ */
+public final class LogicalChangeMapper {
+
+	static final Logger logger = Logger.getLogger(LogicalChangeMapper.class.getName());
+
+	private final Map<String, Class<?>> tableClasses;
+
+	/**
+	 * Maximal number of the column lists of a table, for which the mapping plans are cached
+	 */
+	static final int MAX_PLANS_PER_TABLE = 8;
+
+	private final ConcurrentMap<String, TablePlans> mappingPlanCache = new ConcurrentHashMap<String, TablePlans>();
+
+	private LogicalChangeMapper(Map<String, Class<?>> tableClasses) {
+		this.tableClasses = tableClasses;
+	}
+
+	/**
+	 * Create the mapper without any registered tables
+	 */
+	public static final LogicalChangeMapper create() {
+		return new LogicalChangeMapper(new HashMap<String, Class<?>>());
+	}
+
+	/**
+	 * Register the class of the rows of the given table
+	 * @param table name of the table, the changes of the tables of any schema are mapped,
+	 * if the name is not qualified with the schema name
+	 * @param itemClass class of the mapped objects
+	 * @return new mapper with the given table registered in addition to the tables of this mapper
+	 * @throws FieldDescriptionException if the given class cannot be mapped
+	 */
+	public LogicalChangeMapper withTable(String table, Class<?> itemClass) throws SQLException {
+		if ( table == null ) throw new NullPointerException("table should be not null");
+		// check the class at once, and not with the first change
+		AnnotatedRowMapper.getClassMappingDescriptor(itemClass);
+		final Map<String, Class<?>> classes = new HashMap<String, Class<?>>(tableClasses);
+		classes.put(table, itemClass);
+		return new LogicalChangeMapper(classes);
+	}
+
+	/**
+	 * @return class registered for the given table or {@code null}, if the table is not registered
+	 */
+	public Class<?> getTableClass(String table) {
+		final Class<?> itemClass = tableClasses.get(table);
+		if ( itemClass != null ) return itemClass;
+		final int dot = table.lastIndexOf('.');
+		return dot < 0 ? null : tableClasses.get(table.substring(dot + 1));
+	}
+
+	/**
+	 * Map the columns of the given change (the new row of the inserts and updates, the old row of the deletes)
+	 * @return new object of the class registered for the table of the change or {@code null}, if the table is not registered
+	 * @throws SQLException thrown if the values cannot be converted into the field types
+	 */
+	public Object map(ChangeRecord change) throws SQLException {
+		final Class<?> itemClass = getTableClass(change.getTable());
+		return itemClass == null ? null : map(change.getTable(), itemClass, change.getColumns());
+	}
+
+	/**
+	 * Map the columns of the given change into an object of the given class
+	 * @return new object or {@code null}, if the table of the change is not registered
+	 * @throws SQLException thrown if the given class is not the class of the table or the values cannot be converted into the field types
+	 */
+	public <T> T map(ChangeRecord change, Class<T> itemClass) throws SQLException {
+		final Class<?> tableClass = getTableClass(change.getTable());
+		if ( tableClass == null ) return null;
+		if ( ! itemClass.isAssignableFrom(tableClass) ) {
+			throw new SQLException("Changes of the table " + change.getTable() + " are mapped to " + tableClass.getName() + " and not to " + itemClass.getName());
+		}
+		return itemClass.cast(map(change.getTable(), tableClass, change.getColumns()));
+	}
+
+	/**
+	 * Map the old key columns of the given update
+	 * @return new object with only the key fields set or {@code null}, if the table is not registered or the update does not change the key
+	 * @throws SQLException thrown if the values cannot be converted into the field types
+	 */
+	public Object mapOldKey(ChangeRecord change) throws SQLException {
+		final Class<?> itemClass = getTableClass(change.getTable());
+		return itemClass == null || change.getOldKey().isEmpty() ? null : map(change.getTable(), itemClass, change.getOldKey());
+	}
+
+	private <T> T map(String table, Class<T> itemClass, List<ChangeRecord.Column> columns) throws SQLException {
+		final Object[] values = new Object[columns.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = columns.get(i).getValue();
+		}
+		return getMappingPlan(table, itemClass, columns).createItem(values);
+	}
+
+	private <T> TextRowPlan<T> getMappingPlan(String table, Class<T> itemClass, List<ChangeRecord.Column> columns) throws SQLException {
+		TablePlans tablePlans = mappingPlanCache.get(table);
+		if ( tablePlans == null ) {
+			tablePlans = new TablePlans();
+			final TablePlans competitorPlans = mappingPlanCache.putIfAbsent(table, tablePlans);
+			if ( competitorPlans != null ) {
+				tablePlans = competitorPlans;
+			}
+		}
+		TextRowPlan<T> plan = tablePlans.find(itemClass, columns);
+		if ( plan == null ) {
+			final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+			final String[] columnNames = new String[columns.size()];
+			for (int i = 0; i < columnNames.length; i++) {
+				columnNames[i] = columns.get(i).getName();
+				columnIndexes.put(columnNames[i], i);
+			}
+			plan = new TextRowPlan<T>(itemClass, columnIndexes, new boolean[columnNames.length], false);
+			tablePlans.add(new ColumnsPlan(itemClass, columnNames, plan));
+			if ( logger.isLoggable(Level.FINE) ) {
+				logger.fine("Resolved the mapping of " + itemClass.getName() + " for the changes of " + table + " with the columns " + columnIndexes.keySet());
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * @return number of the cached mapping plans of the given table
+	 */
+	int getCachedPlanCount(String table) {
+		final TablePlans tablePlans = mappingPlanCache.get(table);
+		int count = 0;
+		for (int i = 0; tablePlans != null && i < MAX_PLANS_PER_TABLE; i++) {
+			if ( tablePlans.plans.get(i) != null ) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Mapping plan of a class for the changes with the given list of the columns
+	 */
+	private static final class ColumnsPlan {
+		final Class<?> itemClass;
+		final String[] columnNames;
+		final TextRowPlan<?> plan;
+
+		ColumnsPlan(Class<?> itemClass, String[] columnNames, TextRowPlan<?> plan) {
+			this.itemClass = itemClass;
+			this.columnNames = columnNames;
+			this.plan = plan;
+		}
+
+		boolean matches(Class<?> itemClass, List<ChangeRecord.Column> columns) {
+			if ( this.itemClass != itemClass || columnNames.length != columns.size() ) return false;
+			for (int i = 0; i < columnNames.length; i++) {
+				if ( ! columnNames[i].equals(columns.get(i).getName()) ) return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Mapping plans of a table for the last {@value #MAX_PLANS_PER_TABLE} lists of the columns,
+	 * matched by comparing the names of the columns of a change, so that no key is built for every change
+	 */
+	private static final class TablePlans {
+		private final AtomicReferenceArray<ColumnsPlan> plans = new AtomicReferenceArray<ColumnsPlan>(MAX_PLANS_PER_TABLE);
+		private final AtomicInteger next = new AtomicInteger();
+
+		@SuppressWarnings("unchecked")
+		<T> TextRowPlan<T> find(Class<T> itemClass, List<ChangeRecord.Column> columns) {
+			for (int i = 0; i < MAX_PLANS_PER_TABLE; i++) {
+				final ColumnsPlan plan = plans.get(i);
+				if ( plan == null ) return null; // plans are added in order, till they are replaced
+				if ( plan.matches(itemClass, columns) ) return (TextRowPlan<T>) plan.plan;
+			}
+			return null;
+		}
+
+		void add(ColumnsPlan plan) {
+			plans.set(( next.getAndIncrement() & Integer.MAX_VALUE ) % MAX_PLANS_PER_TABLE, plan);
+		}
+	}
+}
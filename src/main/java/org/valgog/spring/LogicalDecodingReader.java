@@ -0,0 +1,504 @@
+package org.valgog.spring;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the recorded output of the logical decoding (for example written by <code>pg_recvlogical -f</code>) into {@link ChangeRecord}s,
+ * so that the consumers of the changes can be tested and measured without a replication slot.
+ * <p>Every line is either a line of the <code>test_decoding</code> output plugin:
+ * <pre>
+ * table public.simple_table: INSERT: id[integer]:1 name[text]:'it''s' last_marks[integer[]]:'{1,2}'
+ * table public.simple_table: UPDATE: old-key: id[integer]:1 new-tuple: id[integer]:2 name[text]:null
+ * </pre>
+ * or a JSON document of the <code>wal2json</code> output plugin, either of the format version 1
+ * (<code>{"change":[{"kind":"insert","schema":..,"table":..,"columnnames":[..],"columntypes":[..],"columnvalues":[..]}]}</code>,
+ * written without pretty printing) or of the format version 2 (<code>{"action":"I","schema":..,"table":..,"columns":[..]}</code>).
+ * Transaction boundaries, messages and truncates are skipped. Values of <code>test_decoding</code> are passed as text,
+ * JSON strings and numbers as text, JSON booleans as {@link Boolean}s, and JSON objects and arrays as JSON text.
+ *
+ * @author valgog
+ */
+public final class LogicalDecodingReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private LogicalDecodingReader() {
+	}
+
+	/**
+	 * Read all the changes of the given UTF-8 encoded file
+	 * @return number of the read changes
+	 */
+	public static long read(File file, ItemHandler<? super ChangeRecord> handler) throws SQLException, IOException {
+		final Reader reader = new InputStreamReader(new FileInputStream(file), UTF8);
+		try {
+			return read(reader, handler);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read all the changes of the given stream and pass them to the given handler
+	 * @return number of the read changes
+	 * @throws SQLException thrown if a line cannot be parsed or by the handler
+	 */
+	public static long read(Reader reader, ItemHandler<? super ChangeRecord> handler) throws SQLException, IOException {
+		final BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		long count = 0;
+		long lineNumber = 0;
+		final StringBuilder message = new StringBuilder();
+		for (String line; ( line = lines.readLine() ) != null;) {
+			lineNumber++;
+			if ( message.length() > 0 ) message.append('\n');
+			message.append(line);
+			if ( message.charAt(0) != '{' && TestDecodingParser.hasOpenQuote(message) ) {
+				// text value with a line break
+				continue;
+			}
+			final List<ChangeRecord> changes;
+			try {
+				changes = parse(message.toString());
+			} catch (SQLException e) {
+				throw new SQLException("Line " + lineNumber + " of the logical decoding output cannot be parsed: " + e.getMessage(), e);
+			}
+			message.setLength(0);
+			for (ChangeRecord change : changes) {
+				handler.handleItem(change);
+				count++;
+			}
+		}
+		if ( message.length() > 0 ) {
+			throw new SQLException("Logical decoding output ends in the middle of a value");
+		}
+		return count;
+	}
+
+	/**
+	 * Parse one message of the logical decoding output
+	 * @return changes of the message, an empty list for the transaction boundaries and the other not row changes
+	 * @throws SQLException thrown if the message cannot be parsed
+	 */
+	public static List<ChangeRecord> parse(String message) throws SQLException {
+		final String trimmed = message.trim();
+		if ( trimmed.startsWith("{") ) {
+			return parseJson(trimmed);
+		}
+		if ( trimmed.startsWith("table ") ) {
+			return Collections.singletonList(new TestDecodingParser(trimmed).parse());
+		}
+		// BEGIN, COMMIT, message and empty lines
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Parser of the <code>test_decoding</code> lines
+	 */
+	private static final class TestDecodingParser {
+		private final String line;
+		private int pos;
+
+		TestDecodingParser(String line) {
+			this.line = line;
+			this.pos = "table ".length();
+		}
+
+		ChangeRecord parse() throws SQLException {
+			final String table = readName(':');
+			expect(": ");
+			final int end = line.indexOf(':', pos);
+			if ( end < 0 ) throw new SQLException("Operation is missing");
+			final ChangeRecord.Operation operation;
+			try {
+				operation = ChangeRecord.Operation.valueOf(line.substring(pos, end));
+			} catch (IllegalArgumentException e) {
+				throw new SQLException("Unknown operation " + line.substring(pos, end));
+			}
+			pos = end + 1;
+			skipSpaces();
+			List<ChangeRecord.Column> oldKey = null;
+			if ( line.startsWith("(no-tuple data)", pos) ) {
+				return new ChangeRecord(table, operation, Collections.<ChangeRecord.Column>emptyList(), null);
+			}
+			if ( line.startsWith("old-key:", pos) ) {
+				pos += "old-key:".length();
+				oldKey = readColumns();
+				expect("new-tuple:");
+			}
+			return new ChangeRecord(table, operation, readColumns(), oldKey);
+		}
+
+		private List<ChangeRecord.Column> readColumns() throws SQLException {
+			final List<ChangeRecord.Column> columns = new ArrayList<ChangeRecord.Column>();
+			skipSpaces();
+			while ( pos < line.length() && ! line.startsWith("new-tuple:", pos) ) {
+				final String name = readName('[');
+				expect("[");
+				final int typeEnd = line.indexOf("]:", pos);
+				if ( typeEnd < 0 ) throw new SQLException("Type of the column " + name + " is not terminated");
+				final String type = line.substring(pos, typeEnd);
+				pos = typeEnd + 2;
+				final String value;
+				boolean unchanged = false;
+				if ( pos < line.length() && line.charAt(pos) == '\'' ) {
+					value = readQuoted();
+				} else {
+					int valueEnd = line.indexOf(' ', pos);
+					if ( valueEnd < 0 ) valueEnd = line.length();
+					final String token = line.substring(pos, valueEnd);
+					pos = valueEnd;
+					unchanged = token.equals("unchanged-toast-datum");
+					value = token.equals("null") ? null : token;
+				}
+				if ( ! unchanged ) {
+					columns.add(new ChangeRecord.Column(name, type, value));
+				}
+				skipSpaces();
+			}
+			return columns;
+		}
+
+		/**
+		 * Read a possibly quoted (and qualified) name up to the given terminator
+		 */
+		private String readName(char terminator) throws SQLException {
+			final StringBuilder name = new StringBuilder();
+			boolean quoted = false;
+			for (; pos < line.length(); pos++) {
+				final char ch = line.charAt(pos);
+				if ( ch == '"' ) {
+					if ( quoted && pos + 1 < line.length() && line.charAt(pos + 1) == '"' ) {
+						name.append(ch);
+						pos++;
+					} else {
+						quoted = ! quoted;
+					}
+				} else if ( ch == terminator && ! quoted ) {
+					return name.toString();
+				} else {
+					name.append(ch);
+				}
+			}
+			throw new SQLException("Name " + name + " is not terminated with " + terminator);
+		}
+
+		private String readQuoted() throws SQLException {
+			final StringBuilder value = new StringBuilder();
+			for (pos++; pos < line.length(); pos++) {
+				final char ch = line.charAt(pos);
+				if ( ch == '\'' ) {
+					if ( pos + 1 < line.length() && line.charAt(pos + 1) == '\'' ) {
+						value.append(ch);
+						pos++;
+					} else {
+						pos++;
+						return value.toString();
+					}
+				} else {
+					value.append(ch);
+				}
+			}
+			throw new SQLException("Quoted value is not terminated");
+		}
+
+		private void expect(String s) throws SQLException {
+			if ( ! line.startsWith(s, pos) ) {
+				throw new SQLException("Expected " + s + " at position " + pos);
+			}
+			pos += s.length();
+		}
+
+		private void skipSpaces() {
+			while ( pos < line.length() && line.charAt(pos) == ' ' ) pos++;
+		}
+
+		/**
+		 * Check, if the given line ends inside of a quoted value, quoting the values and the names the way they are read by the parser:
+		 * single quotes of the values are not looked at inside of the quoted names and double quotes are not looked at inside of the values,
+		 * doubled quotes (the escaped ones) close and open the quoting at once
+		 */
+		static boolean hasOpenQuote(CharSequence line) {
+			char quote = 0;
+			for (int i = 0, l = line.length(); i < l; i++) {
+				final char ch = line.charAt(i);
+				if ( quote == 0 ) {
+					if ( ch == '\'' || ch == '"' ) quote = ch;
+				} else if ( ch == quote ) {
+					quote = 0;
+				}
+			}
+			return quote == '\'';
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<ChangeRecord> parseJson(String message) throws SQLException {
+		final Object document = new JsonParser(message).parseDocument();
+		if ( ! ( document instanceof Map ) ) throw new SQLException("JSON object is expected");
+		final Map<String, Object> object = (Map<String, Object>) document;
+		final List<ChangeRecord> changes = new ArrayList<ChangeRecord>();
+		if ( object.containsKey("change") ) {
+			// format version 1, all the changes of a transaction
+			for (Object change : (List<Object>) object.get("change")) {
+				final Map<String, Object> c = (Map<String, Object>) change;
+				final ChangeRecord.Operation operation = operation(String.valueOf(c.get("kind")));
+				if ( operation == null ) continue;
+				final Map<String, Object> oldKeys = (Map<String, Object>) c.get("oldkeys");
+				final List<ChangeRecord.Column> oldKey = oldKeys == null ? null
+						: columns((List<Object>) oldKeys.get("keynames"), (List<Object>) oldKeys.get("keytypes"), (List<Object>) oldKeys.get("keyvalues"));
+				final List<ChangeRecord.Column> columns = operation == ChangeRecord.Operation.DELETE ? oldKey
+						: columns((List<Object>) c.get("columnnames"), (List<Object>) c.get("columntypes"), (List<Object>) c.get("columnvalues"));
+				changes.add(change(c, operation, columns, operation == ChangeRecord.Operation.UPDATE ? oldKey : null));
+			}
+		} else {
+			// format version 2, one change
+			final ChangeRecord.Operation operation = operation(String.valueOf(object.get("action")));
+			if ( operation != null ) {
+				final List<ChangeRecord.Column> identity = columns((List<Object>) object.get("identity"));
+				final List<ChangeRecord.Column> columns = operation == ChangeRecord.Operation.DELETE ? identity : columns((List<Object>) object.get("columns"));
+				changes.add(change(object, operation, columns, operation == ChangeRecord.Operation.UPDATE ? identity : null));
+			}
+		}
+		return changes;
+	}
+
+	private static ChangeRecord.Operation operation(String kind) {
+		if ( kind.equals("insert") || kind.equals("I") ) return ChangeRecord.Operation.INSERT;
+		if ( kind.equals("update") || kind.equals("U") ) return ChangeRecord.Operation.UPDATE;
+		if ( kind.equals("delete") || kind.equals("D") ) return ChangeRecord.Operation.DELETE;
+		// transaction boundaries, messages and truncates
+		return null;
+	}
+
+	private static ChangeRecord change(Map<String, Object> c, ChangeRecord.Operation operation, List<ChangeRecord.Column> columns, List<ChangeRecord.Column> oldKey) throws SQLException {
+		final Object schema = c.get("schema");
+		final Object table = c.get("table");
+		if ( table == null ) throw new SQLException("Table of the change is missing");
+		return new ChangeRecord(schema == null ? table.toString() : schema + "." + table, operation,
+				columns == null ? Collections.<ChangeRecord.Column>emptyList() : columns, oldKey);
+	}
+
+	private static List<ChangeRecord.Column> columns(List<Object> names, List<Object> types, List<Object> values) throws SQLException {
+		if ( names == null ) return null;
+		if ( values == null || values.size() != names.size() || ( types != null && types.size() != names.size() ) ) {
+			throw new SQLException("Column names, types and values do not match");
+		}
+		final List<ChangeRecord.Column> columns = new ArrayList<ChangeRecord.Column>(names.size());
+		for (int i = 0; i < names.size(); i++) {
+			columns.add(new ChangeRecord.Column(String.valueOf(names.get(i)), types == null ? null : String.valueOf(types.get(i)), columnValue(values.get(i))));
+		}
+		return columns;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<ChangeRecord.Column> columns(List<Object> list) {
+		if ( list == null ) return null;
+		final List<ChangeRecord.Column> columns = new ArrayList<ChangeRecord.Column>(list.size());
+		for (Object element : list) {
+			final Map<String, Object> c = (Map<String, Object>) element;
+			final Object type = c.get("type");
+			columns.add(new ChangeRecord.Column(String.valueOf(c.get("name")), type == null ? null : type.toString(), columnValue(c.get("value"))));
+		}
+		return columns;
+	}
+
+	private static Object columnValue(Object value) {
+		if ( value instanceof Map || value instanceof List ) {
+			// values of the json columns
+			final StringBuilder json = new StringBuilder();
+			JsonParser.write(json, value);
+			return json.toString();
+		}
+		if ( value instanceof BigDecimal ) {
+			// without the exponent, the way the numbers are written by PostgreSQL
+			return ( (BigDecimal) value ).toPlainString();
+		}
+		return value;
+	}
+
+	/**
+	 * Minimal JSON parser, that returns objects as {@link Map}s, arrays as {@link List}s, numbers as {@link BigDecimal}s,
+	 * and strings, booleans and nulls as the {@link String}s, {@link Boolean}s and {@code null}s
+	 */
+	private static final class JsonParser {
+		private final String text;
+		private int pos;
+
+		JsonParser(String text) {
+			this.text = text;
+		}
+
+		Object parseDocument() throws SQLException {
+			final Object value = parseValue();
+			skipWhitespace();
+			if ( pos != text.length() ) throw error("End of the document is expected");
+			return value;
+		}
+
+		private Object parseValue() throws SQLException {
+			skipWhitespace();
+			if ( pos >= text.length() ) throw error("Value is expected");
+			final char ch = text.charAt(pos);
+			switch ( ch ) {
+			case '{':
+				final Map<String, Object> object = new LinkedHashMap<String, Object>();
+				pos++;
+				skipWhitespace();
+				if ( peek() == '}' ) {
+					pos++;
+					return object;
+				}
+				while ( true ) {
+					skipWhitespace();
+					if ( peek() != '"' ) throw error("Name is expected");
+					final String name = parseString();
+					skipWhitespace();
+					if ( peek() != ':' ) throw error(": is expected");
+					pos++;
+					object.put(name, parseValue());
+					skipWhitespace();
+					final char next = peek();
+					pos++;
+					if ( next == '}' ) return object;
+					if ( next != ',' ) throw error(", or } is expected");
+				}
+			case '[':
+				final List<Object> array = new ArrayList<Object>();
+				pos++;
+				skipWhitespace();
+				if ( peek() == ']' ) {
+					pos++;
+					return array;
+				}
+				while ( true ) {
+					array.add(parseValue());
+					skipWhitespace();
+					final char next = peek();
+					pos++;
+					if ( next == ']' ) return array;
+					if ( next != ',' ) throw error(", or ] is expected");
+				}
+			case '"':
+				return parseString();
+			default:
+				final int start = pos;
+				while ( pos < text.length() && "{}[],: \t\r\n".indexOf(text.charAt(pos)) < 0 ) pos++;
+				final String token = text.substring(start, pos);
+				if ( token.equals("null") ) return null;
+				if ( token.equals("true") ) return Boolean.TRUE;
+				if ( token.equals("false") ) return Boolean.FALSE;
+				try {
+					return new BigDecimal(token);
+				} catch (NumberFormatException e) {
+					throw error("Unexpected " + token);
+				}
+			}
+		}
+
+		private String parseString() throws SQLException {
+			final StringBuilder s = new StringBuilder();
+			for (pos++; pos < text.length(); pos++) {
+				final char ch = text.charAt(pos);
+				if ( ch == '"' ) {
+					pos++;
+					return s.toString();
+				}
+				if ( ch != '\\' ) {
+					s.append(ch);
+					continue;
+				}
+				if ( ++pos >= text.length() ) break;
+				final char escaped = text.charAt(pos);
+				switch ( escaped ) {
+				case 'b': s.append('\b'); break;
+				case 'f': s.append('\f'); break;
+				case 'n': s.append('\n'); break;
+				case 'r': s.append('\r'); break;
+				case 't': s.append('\t'); break;
+				case 'u':
+					if ( pos + 4 >= text.length() ) throw error("Unicode escape is not complete");
+					try {
+						s.append((char) Integer.parseInt(text.substring(pos + 1, pos + 5), 16));
+					} catch (NumberFormatException e) {
+						throw error("Wrong unicode escape");
+					}
+					pos += 4;
+					break;
+				default:
+					s.append(escaped);
+				}
+			}
+			throw error("String is not terminated");
+		}
+
+		private char peek() throws SQLException {
+			if ( pos >= text.length() ) throw error("Unexpected end of the document");
+			return text.charAt(pos);
+		}
+
+		private void skipWhitespace() {
+			while ( pos < text.length() && Character.isWhitespace(text.charAt(pos)) ) pos++;
+		}
+
+		private SQLException error(String message) {
+			return new SQLException(message + " at position " + pos);
+		}
+
+		@SuppressWarnings("unchecked")
+		static void write(StringBuilder json, Object value) {
+			if ( value instanceof Map ) {
+				json.append('{');
+				boolean first = true;
+				for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+					if ( ! first ) json.append(',');
+					first = false;
+					writeString(json, entry.getKey());
+					json.append(':');
+					write(json, entry.getValue());
+				}
+				json.append('}');
+			} else if ( value instanceof List ) {
+				json.append('[');
+				boolean first = true;
+				for (Object element : (List<Object>) value) {
+					if ( ! first ) json.append(',');
+					first = false;
+					write(json, element);
+				}
+				json.append(']');
+			} else if ( value instanceof String ) {
+				writeString(json, (String) value);
+			} else {
+				json.append(value);
+			}
+		}
+
+		private static void writeString(StringBuilder json, String s) {
+			json.append('"');
+			for (int i = 0; i < s.length(); i++) {
+				final char ch = s.charAt(i);
+				if ( ch == '"' || ch == '\\' ) {
+					json.append('\\').append(ch);
+				} else if ( ch < 0x20 ) {
+					json.append(String.format("\\u%04x", (int) ch));
+				} else {
+					json.append(ch);
+				}
+			}
+			json.append('"');
+		}
+	}
+}
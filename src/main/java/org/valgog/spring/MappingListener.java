@@ -0,0 +1,31 @@
+package org.valgog.spring;
+
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingPath;
+
+/**
+ * Listener of the mapping of the rows, set with {@link MappingMetrics#setListener(MappingListener)}.
+ * <p>While a listener is set, every mapped row is timed and reported to it, so that the expensive columns can be found.
+ * Without a listener the mapping checks a single volatile field per row. Listeners are called from the mapping threads
+ * and should be thread safe and fast.
+ *
+ * @author valgog
+ */
+public interface MappingListener {
+
+	/**
+	 * Called after the value of a column is converted into the value of the mapped field
+	 * @param itemClass mapped class
+	 * @param field descriptor of the mapped field and its column
+	 * @param path path the conversion took
+	 * @param nanos time of the conversion
+	 */
+	void valueConverted(Class<?> itemClass, DatabaseFieldDescriptor<?, ?> field, MappingPath path, long nanos);
+
+	/**
+	 * Called after a row is mapped into an item (once per row, the embedded objects are a part of the row of their owner)
+	 * @param itemClass mapped class
+	 * @param nanos time of the mapping of the row
+	 */
+	void rowMapped(Class<?> itemClass, long nanos);
+}
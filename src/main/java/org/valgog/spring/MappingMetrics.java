@@ -0,0 +1,376 @@
+package org.valgog.spring;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingPath;
+import org.valgog.spring.helpers.MappingPathCounter;
+
+/**
+ * Metrics of the mapping of the column values into the fields of the mapped classes.
+ * <p>The number of the mapped rows and the number of the values converted by every {@link MappingPath}
+ * are always counted per mapped class with {@link LongAdder}s, so that the concurrent mapping threads do not contend.
+ * Timing is optional: with a sample rate of N (see {@link #setSampleRate(int)}) one of N rows on average is timed
+ * and the times of the row and of the conversions of its values are recorded into the histograms;
+ * while a {@link MappingListener} is set, every row is timed and reported to it.
+ * <p>The metrics are exposed through JMX with {@link #registerMBean()}:
+ *
+ * <pre>
+ * MappingMetrics.setSampleRate(100);
+ * MappingMetrics.registerMBean(); // org.valgog.spring:type=MappingMetrics
+ * </pre>
+ * <p>The metrics are held in a {@link ClassValue}, so that they do not keep the mapped classes from being unloaded.
+ * The MBean finds them by the class name in a registry of weak references; if classes of the same name are mapped
+ * from several class loaders, the MBean reports the one mapped last, that was not unloaded yet.
+ *
+ * @author valgog
+ */
+public final class MappingMetrics {
+
+	/**
+	 * Name of the MBean registered by {@link #registerMBean()}
+	 */
+	public static final String OBJECT_NAME = "org.valgog.spring:type=MappingMetrics";
+
+	private static final MappingPath[] PATHS = MappingPath.values();
+
+	private static final ClassValue<MappingMetrics> metricsByClass = new ClassValue<MappingMetrics>() {
+		@Override
+		protected MappingMetrics computeValue(Class<?> type) {
+			return new MappingMetrics(type);
+		}
+	};
+
+	private static final ConcurrentMap<String, MetricsReference> registry = new ConcurrentHashMap<String, MetricsReference>();
+	private static final ReferenceQueue<MappingMetrics> collectedMetrics = new ReferenceQueue<MappingMetrics>();
+
+	private static volatile int sampleRate;
+	private static volatile MappingListener listener;
+
+	private final Class<?> itemClass;
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder[] pathCounts = new LongAdder[PATHS.length];
+	private final TimingHistogram rowTimes = new TimingHistogram();
+	private final TimingHistogram[] pathTimes = new TimingHistogram[PATHS.length];
+
+	/**
+	 * Counter of the paths of the conversions of the values of the mapped class, passed to the field value converters
+	 */
+	final MappingPathCounter pathCounter = new MappingPathCounter() {
+		@Override
+		public void countPath(MappingPath path) {
+			pathCounts[path.ordinal()].increment();
+		}
+	};
+
+	private MappingMetrics(Class<?> itemClass) {
+		this.itemClass = itemClass;
+		for (int i = 0; i < PATHS.length; i++) {
+			pathCounts[i] = new LongAdder();
+			pathTimes[i] = new TimingHistogram();
+		}
+	}
+
+	/**
+	 * @return metrics of the given mapped class
+	 */
+	static MappingMetrics forClass(Class<?> itemClass) {
+		final MappingMetrics metrics = metricsByClass.get(itemClass);
+		// registered here and not when computed, as a computed value can lose the race to the value of another thread
+		if ( ! isRegistered(metrics) ) register(metrics);
+		return metrics;
+	}
+
+	private static boolean isRegistered(MappingMetrics metrics) {
+		for (MetricsReference reference = registry.get(metrics.itemClass.getName()); reference != null; reference = reference.next) {
+			if ( reference.get() == metrics ) return true;
+		}
+		return false;
+	}
+
+	private static synchronized void register(MappingMetrics metrics) {
+		// forget the metrics of the unloaded classes
+		for (MetricsReference collected; ( collected = (MetricsReference) collectedMetrics.poll() ) != null; ) {
+			final MetricsReference pruned = MetricsReference.pruned(registry.get(collected.className));
+			if ( pruned == null ) {
+				registry.remove(collected.className);
+			} else {
+				registry.put(collected.className, pruned);
+			}
+		}
+		if ( isRegistered(metrics) ) return;
+		final String className = metrics.itemClass.getName();
+		registry.put(className, new MetricsReference(className, metrics, MetricsReference.pruned(registry.get(className))));
+	}
+
+	/**
+	 * @return metrics of the class with the given name, mapped last, or {@code null} if no such class was mapped
+	 */
+	private static MappingMetrics lookup(String className) {
+		for (MetricsReference reference = registry.get(className); reference != null; reference = reference.next) {
+			final MappingMetrics metrics = reference.get();
+			if ( metrics != null ) return metrics;
+		}
+		return null;
+	}
+
+	/**
+	 * @return metrics of all the mapped classes, that were not unloaded yet
+	 */
+	private static List<MappingMetrics> registered() {
+		final List<MappingMetrics> metricsList = new ArrayList<MappingMetrics>(registry.size());
+		for (MetricsReference first : registry.values()) {
+			for (MetricsReference reference = first; reference != null; reference = reference.next) {
+				final MappingMetrics metrics = reference.get();
+				if ( metrics != null ) metricsList.add(metrics);
+			}
+		}
+		return metricsList;
+	}
+
+	/**
+	 * Time one of the given number of the rows on average, 0 disables the sampling
+	 */
+	public static void setSampleRate(int sampleRate) {
+		if ( sampleRate < 0 ) throw new IllegalArgumentException("Sample rate should be not negative: " + sampleRate);
+		MappingMetrics.sampleRate = sampleRate;
+	}
+
+	public static int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Set the listener to report every mapped row to, null removes the listener
+	 */
+	public static void setListener(MappingListener listener) {
+		MappingMetrics.listener = listener;
+	}
+
+	public static MappingListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return number of the rows mapped into the given class
+	 */
+	public static long getRowCount(Class<?> itemClass) {
+		return metricsByClass.get(itemClass).rows.sum();
+	}
+
+	/**
+	 * @return number of the column values of the given class converted by the given path
+	 */
+	public static long getPathCount(Class<?> itemClass, MappingPath path) {
+		return metricsByClass.get(itemClass).pathCounts[path.ordinal()].sum();
+	}
+
+	/**
+	 * @return number of the sampled rows of the given class
+	 */
+	public static long getSampledRowCount(Class<?> itemClass) {
+		return metricsByClass.get(itemClass).rowTimes.getCount();
+	}
+
+	/**
+	 * Reset all the counters and the histograms
+	 */
+	public static void reset() {
+		for (MappingMetrics metrics : registered()) {
+			metrics.rows.reset();
+			metrics.rowTimes.reset();
+			for (int i = 0; i < PATHS.length; i++) {
+				metrics.pathCounts[i].reset();
+				metrics.pathTimes[i].reset();
+			}
+		}
+	}
+
+	/**
+	 * Register the {@link MappingMetricsMXBean} with the platform MBean server under the {@link #OBJECT_NAME}, if it is not registered yet
+	 * @return name of the registered MBean
+	 */
+	public static ObjectName registerMBean() throws JMException {
+		final ObjectName name = objectName();
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), name);
+		} catch (InstanceAlreadyExistsException ignore) {
+			// registered already
+		}
+		return name;
+	}
+
+	/**
+	 * Unregister the {@link MappingMetricsMXBean} from the platform MBean server, if it is registered
+	 */
+	public static void unregisterMBean() throws JMException {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName());
+		} catch (InstanceNotFoundException ignore) {
+			// not registered
+		}
+	}
+
+	private static ObjectName objectName() throws MalformedObjectNameException {
+		return new ObjectName(OBJECT_NAME);
+	}
+
+	/**
+	 * @return if the row being mapped should be timed
+	 */
+	static boolean isTimed() {
+		if ( listener != null ) return true;
+		final int rate = sampleRate;
+		return rate != 0 && ( rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0 );
+	}
+
+	void valueConverted(DatabaseFieldDescriptor<?, ?> field, MappingPath path, long nanos) {
+		pathTimes[path.ordinal()].record(nanos);
+		final MappingListener listener = MappingMetrics.listener;
+		if ( listener != null ) listener.valueConverted(itemClass, field, path, nanos);
+	}
+
+	/**
+	 * Counter of the path of a single timed conversion, that remembers the path to record the time of the conversion by
+	 */
+	static final class TimedPathCounter implements MappingPathCounter {
+		private final MappingMetrics metrics;
+		private MappingPath path = MappingPath.DIRECT;
+
+		TimedPathCounter(MappingMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void countPath(MappingPath path) {
+			this.path = path;
+			metrics.pathCounter.countPath(path);
+		}
+
+		void valueConverted(DatabaseFieldDescriptor<?, ?> field, long nanos) {
+			metrics.valueConverted(field, path, nanos);
+		}
+	}
+
+	void rowMapped() {
+		rows.increment();
+	}
+
+	void rowMapped(long nanos) {
+		rows.increment();
+		rowTimes.record(nanos);
+		final MappingListener listener = MappingMetrics.listener;
+		if ( listener != null ) listener.rowMapped(itemClass, nanos);
+	}
+
+	private static Map<String, Long> times(TimingHistogram histogram) {
+		final Map<String, Long> times = new LinkedHashMap<String, Long>();
+		times.put("count", histogram.getCount());
+		times.put("p50", histogram.getPercentile(50));
+		times.put("p99", histogram.getPercentile(99));
+		times.put("p999", histogram.getPercentile(99.9));
+		return times;
+	}
+
+	private static final class MXBean implements MappingMetricsMXBean {
+
+		private static MappingMetrics metrics(String className) {
+			final MappingMetrics metrics = lookup(className);
+			if ( metrics == null ) throw new IllegalArgumentException("Class " + className + " was not mapped");
+			return metrics;
+		}
+
+		@Override
+		public String[] getMappedClasses() {
+			final Set<String> names = new LinkedHashSet<String>();
+			for (MappingMetrics metrics : registered()) {
+				names.add(metrics.itemClass.getName());
+			}
+			return names.toArray(new String[names.size()]);
+		}
+
+		@Override
+		public long getRowCount(String className) {
+			return metrics(className).rows.sum();
+		}
+
+		@Override
+		public Map<String, Long> getPathCounts(String className) {
+			final MappingMetrics metrics = metrics(className);
+			final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+			for (MappingPath path : PATHS) {
+				counts.put(path.name(), metrics.pathCounts[path.ordinal()].sum());
+			}
+			return counts;
+		}
+
+		@Override
+		public Map<String, Long> getRowTimes(String className) {
+			return times(metrics(className).rowTimes);
+		}
+
+		@Override
+		public Map<String, Long> getPathTimes(String className, String path) {
+			return times(metrics(className).pathTimes[MappingPath.valueOf(path).ordinal()]);
+		}
+
+		@Override
+		public int getSampleRate() {
+			return MappingMetrics.getSampleRate();
+		}
+
+		@Override
+		public void setSampleRate(int sampleRate) {
+			MappingMetrics.setSampleRate(sampleRate);
+		}
+
+		@Override
+		public void reset() {
+			MappingMetrics.reset();
+		}
+	}
+
+	/**
+	 * Registry entry, that does not keep the metrics (and so their class) from being collected.
+	 * Entries of the classes of the same name, loaded by different class loaders, are chained, the last mapped first.
+	 */
+	private static final class MetricsReference extends WeakReference<MappingMetrics> {
+		final String className;
+		final MetricsReference next;
+
+		MetricsReference(String className, MappingMetrics metrics, MetricsReference next) {
+			super(metrics, collectedMetrics);
+			this.className = className;
+			this.next = next;
+		}
+
+		/**
+		 * @return chain of the given entries without the collected ones
+		 */
+		static MetricsReference pruned(MetricsReference reference) {
+			if ( reference == null ) return null;
+			final MetricsReference next = pruned(reference.next);
+			final MappingMetrics metrics = reference.get();
+			if ( metrics == null ) return next;
+			return next == reference.next ? reference : new MetricsReference(reference.className, metrics, next);
+		}
+	}
+}
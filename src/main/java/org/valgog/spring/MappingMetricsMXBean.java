@@ -0,0 +1,51 @@
+package org.valgog.spring;
+
+import java.util.Map;
+
+import org.valgog.spring.helpers.MappingPath;
+
+/**
+ * JMX view of the {@link MappingMetrics}, registered with {@link MappingMetrics#registerMBean()}.
+ * Percentiles are the upper bounds of the power of two buckets in nanoseconds.
+ *
+ * @author valgog
+ */
+public interface MappingMetricsMXBean {
+
+	/**
+	 * @return names of the classes, that were mapped
+	 */
+	String[] getMappedClasses();
+
+	/**
+	 * @return number of the rows mapped into the given class
+	 */
+	long getRowCount(String className);
+
+	/**
+	 * @return number of the column values of the given class converted by every {@link MappingPath}
+	 */
+	Map<String, Long> getPathCounts(String className);
+
+	/**
+	 * @return count, p50, p99 and p999 of the sampled row mapping times of the given class
+	 */
+	Map<String, Long> getRowTimes(String className);
+
+	/**
+	 * @return count, p50, p99 and p999 of the sampled conversion times of the values of the given class taking the given path
+	 */
+	Map<String, Long> getPathTimes(String className, String path);
+
+	/**
+	 * @return every how many rows one is timed on average, 0 if the timing is disabled
+	 */
+	int getSampleRate();
+
+	void setSampleRate(int sampleRate);
+
+	/**
+	 * Reset all the counters and the histograms
+	 */
+	void reset();
+}
@@ -0,0 +1,110 @@
+package org.valgog.spring;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of the {@link ResultSetMappingPlan}s of a mapped class, shared by all the mappers of that class.
+ * <p>Plans are resolved once per {@link ResultSetShape}, only the plans of the last {@value #MAX_PLANS} shapes are kept,
+ * so that ad hoc queries do not grow the cache forever.
+ * <p>Result sets, that are mapped as a whole (by the {@link AnnotatedRowIterator} or the extractor of the {@link AnnotatedRowMapper}),
+ * resolve the plan with the first row and pass it down. Rows, that are mapped one by one, find the plan bound to their result set
+ * in the binding of the mapping thread, so that the threads mapping their own result sets do not replace each other's bindings
+ * and read the result set metadata only once per result set.
+ * <p>The caches are held in a {@link ClassValue}, so that they do not keep the mapped classes from being unloaded.
+ *
+ * @author valgog
+ *
+ * @param <ItemTYPE> type of the mapped items
+ */
+final class MappingPlanCache<ItemTYPE> {
+
+	/**
+	 * Maximal number of the result set shapes, for which the mapping plans of a class are cached
+	 */
+	static final int MAX_PLANS = 16;
+
+	private static final ClassValue<MappingPlanCache<?>> caches = new ClassValue<MappingPlanCache<?>>() {
+		@Override
+		protected MappingPlanCache<?> computeValue(Class<?> type) {
+			return new MappingPlanCache<Object>(type);
+		}
+	};
+
+	private final Class<ItemTYPE> itemClass;
+	private final AtomicReferenceArray<ResultSetMappingPlan<ItemTYPE>> plans = new AtomicReferenceArray<ResultSetMappingPlan<ItemTYPE>>(MAX_PLANS);
+	private final AtomicInteger nextPlan = new AtomicInteger();
+	private final ThreadLocal<BoundMappingPlan<ItemTYPE>> boundPlan = new ThreadLocal<BoundMappingPlan<ItemTYPE>>();
+
+	@SuppressWarnings("unchecked")
+	private MappingPlanCache(Class<?> itemClass) {
+		this.itemClass = (Class<ItemTYPE>) itemClass;
+	}
+
+	@SuppressWarnings("unchecked")
+	static final <ItemTYPE> MappingPlanCache<ItemTYPE> forClass(Class<ItemTYPE> itemClass) {
+		return (MappingPlanCache<ItemTYPE>) caches.get(itemClass);
+	}
+
+	/**
+	 * Get the mapping plan for the given {@link ResultSet}, binding it to the result set for the calling thread,
+	 * so that the next rows of the result set, mapped by the thread, are mapped without reading the result set metadata again
+	 * @param rs result set to be mapped
+	 * @return mapping plan of the given result set
+	 * @throws SQLException thrown if some not optional column cannot be found
+	 */
+	ResultSetMappingPlan<ItemTYPE> bind(ResultSet rs) throws SQLException {
+		final BoundMappingPlan<ItemTYPE> bound = boundPlan.get();
+		if ( bound != null && bound.get() == rs ) {
+			final ResultSetMappingPlan<ItemTYPE> plan = bound.plan.get();
+			if ( plan != null ) return plan;
+		}
+		final ResultSetMappingPlan<ItemTYPE> plan = resolve(rs);
+		boundPlan.set(new BoundMappingPlan<ItemTYPE>(rs, plan));
+		return plan;
+	}
+
+	/**
+	 * Get the mapping plan for the shape of the given {@link ResultSet}, resolving it if the shape is not cached
+	 * @throws SQLException thrown if some not optional column cannot be found
+	 */
+	ResultSetMappingPlan<ItemTYPE> resolve(ResultSet rs) throws SQLException {
+		final ResultSetShape shape = ResultSetShape.of(rs.getMetaData());
+		for (int i = 0; i < MAX_PLANS; i++) {
+			final ResultSetMappingPlan<ItemTYPE> plan = plans.get(i);
+			if ( plan == null ) break; // plans are added in order, till they are replaced
+			if ( plan.getShape().equals(shape) ) return plan;
+		}
+		final ResultSetMappingPlan<ItemTYPE> plan = ResultSetMappingPlan.resolve(itemClass, shape, rs);
+		plans.set(( nextPlan.getAndIncrement() & Integer.MAX_VALUE ) % MAX_PLANS, plan);
+		return plan;
+	}
+
+	/**
+	 * @return number of the cached mapping plans
+	 */
+	int getCachedPlanCount() {
+		int count = 0;
+		for (int i = 0; i < MAX_PLANS; i++) {
+			if ( plans.get(i) != null ) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * {@link ResultSetMappingPlan} bound to the {@link ResultSet} it is being used for.
+	 * <p>Both the result set and the plan are only weakly referenced, so that the bindings of the threads
+	 * do not keep the result sets (or the pooled connections) beyond their lifetime, nor the mapped classes from being unloaded.
+	 */
+	static final class BoundMappingPlan<ItemTYPE> extends WeakReference<ResultSet> {
+		final WeakReference<ResultSetMappingPlan<ItemTYPE>> plan;
+
+		BoundMappingPlan(ResultSet rs, ResultSetMappingPlan<ItemTYPE> plan) {
+			super(rs);
+			this.plan = new WeakReference<ResultSetMappingPlan<ItemTYPE>>(plan);
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package org.valgog.spring;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.postgresql.util.PGobject;
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.annotations.Embed;
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.ClassMappingDescriptor;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingOption;
+import org.valgog.spring.helpers.MappingPath;
+import org.valgog.spring.helpers.MappingPathCounter;
+import org.valgog.spring.helpers.PathConverter;
+import org.valgog.spring.helpers.TextValueConverter;
+import org.valgog.spring.helpers.TypeConverter;
+import org.valgog.spring.helpers.TypeConverterFactory;
+import org.valgog.spring.helpers.TypeDescriptor;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+import org.valgog.spring.helpers.exceptions.NotConvertable;
+import org.valgog.utils.NestedValueReader;
+import org.valgog.utils.PostgresBinaryReader;
+import org.valgog.utils.PostgresValueReader;
+import org.valgog.utils.exceptions.ParserException;
+
+/**
+ * Decodes the text or binary representation of nested ROW and ARRAY values (like {@code test.child_type[]} holding
+ * {@code child_child_type} ROWs) into the mapped objects in a single pass.
+ * <p>The whole value is walked only once with a {@link PostgresValueReader} or a {@link PostgresBinaryReader}, filling the mapped objects
+ * directly from their field descriptors, instead of splitting every nesting level into a list of strings
+ * and parsing these strings again on the next level.
+ * <p>ROW fields are assigned by their position, fields of the embedded objects are taken from the same ROW
+ * at the positions of the {@link Embed} annotated fields.
+ *
+ * @author valgog
+ *
+ */
+abstract class NestedValueDecoder {
+
+	/**
+	 * Decode the element, the reader is positioned on
+	 */
+	abstract Object decode(NestedValueReader reader) throws ParserException, SQLException, NotConvertable;
+
+	/**
+	 * Row decoders of the mapped classes, resolved when they are decoded for the first time
+	 */
+	private static final ClassValue<RowDecoder<?>> rowDecoders = new ClassValue<RowDecoder<?>>() {
+		@Override
+		protected RowDecoder<?> computeValue(Class<?> type) {
+			return newRowDecoder(type);
+		}
+	};
+
+	private static final <T> RowDecoder<T> newRowDecoder(Class<T> type) {
+		return new RowDecoder<T>(type);
+	}
+
+	/**
+	 * @return true if the values of the described type are ROW values or containers of ROW values,
+	 * that should be decoded with a {@link NestedValueDecoder}
+	 */
+	static final boolean isNested(TypeDescriptor<?> typeDesc) {
+		if ( HStoreObjectConverter.isHStoreMapped(typeDesc) ) {
+			return false;
+		}
+		final Class<Object> componentType = typeDesc.getComponentType();
+		if ( componentType != null ) {
+			return isNested(new TypeDescriptor<Object>(componentType));
+		}
+		return isMappedClass(typeDesc.getType());
+	}
+
+	/**
+	 * Mapped classes are recognized by the annotated fields, without creating their mapping descriptors,
+	 * as they can be referencing the classes, which mapping descriptors are being created
+	 */
+	private static final boolean isMappedClass(Class<?> type) {
+		if ( type.isPrimitive() || type.isArray() || type.isInterface() || type.getName().startsWith("java.") || Map.class.isAssignableFrom(type) ) {
+			return false;
+		}
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if ( field.isAnnotationPresent(DatabaseField.class) || field.isAnnotationPresent(Embed.class) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create the decoder of the values of the described type
+	 * @param typeDesc descriptor of the type of the decoded values
+	 * @param converter converter of the values of the described type, used for the scalar values and to create the containers
+	 * @param allowPrimitiveDefaults if true, use default primitive values instead of null values for the container elements
+	 */
+	@SuppressWarnings("unchecked")
+	static final NestedValueDecoder forType(TypeDescriptor<?> typeDesc, TypeConverter<Object, ?> converter, boolean allowPrimitiveDefaults) {
+		if ( converter instanceof NestedValueConverter ) {
+			return ((NestedValueConverter<?>) converter).decoder;
+		}
+		if ( isNested(typeDesc) ) {
+			final Class<Object> componentType = typeDesc.getComponentType();
+			if ( componentType == null ) {
+				return new RowElementDecoder(typeDesc.getType());
+			}
+			final TypeDescriptor<Object> componentDesc = new TypeDescriptor<Object>(componentType);
+			final NestedValueDecoder elementDecoder = forType(componentDesc, AnnotatedRowMapper.converterFactory.getFieldValueConverter(componentDesc, allowPrimitiveDefaults), allowPrimitiveDefaults);
+			return new ArrayElementDecoder(typeDesc.getType(), (TypeConverter<Object, Object>) converter, elementDecoder);
+		}
+		return new ScalarElementDecoder((TypeConverter<Object, Object>) converter);
+	}
+
+	/**
+	 * Decodes scalar elements with the converter of their type
+	 */
+	private static final class ScalarElementDecoder extends NestedValueDecoder {
+		private final TypeConverter<Object, Object> converter;
+
+		ScalarElementDecoder(TypeConverter<Object, Object> converter) {
+			this.converter = converter;
+		}
+
+		@Override
+		Object decode(NestedValueReader reader) throws ParserException, NotConvertable {
+			return converter.convertFrom(reader.readValue());
+		}
+	}
+
+	/**
+	 * Decodes ARRAY elements into arrays or collections
+	 */
+	private static final class ArrayElementDecoder extends NestedValueDecoder {
+		private final boolean listExpected;
+		private final TypeConverter<Object, Object> converter;
+		private final NestedValueDecoder elementDecoder;
+
+		ArrayElementDecoder(Class<?> expectedType, TypeConverter<Object, Object> converter, NestedValueDecoder elementDecoder) {
+			this.listExpected = expectedType.isAssignableFrom(ArrayList.class);
+			this.converter = converter;
+			this.elementDecoder = elementDecoder;
+		}
+
+		@Override
+		Object decode(NestedValueReader reader) throws ParserException, SQLException, NotConvertable {
+			if ( ! reader.beginArray() ) {
+				return converter.convertFrom(null);
+			}
+			final ArrayList<Object> elements = new ArrayList<Object>();
+			while ( reader.nextElement() ) {
+				elements.add(elementDecoder.decode(reader));
+			}
+			reader.endContainer();
+			// elements are already of the expected type, so that the converter is only creating the expected container
+			return converter.convertFrom(listExpected ? elements : elements.toArray());
+		}
+	}
+
+	/**
+	 * Decodes ROW elements into instances of the mapped classes
+	 */
+	private static final class RowElementDecoder extends NestedValueDecoder {
+		private final Class<?> type;
+
+		RowElementDecoder(Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		Object decode(NestedValueReader reader) throws ParserException, SQLException, NotConvertable {
+			if ( ! reader.beginRow() ) {
+				return null;
+			}
+			final Object item = rowDecoders.get(type).createItem(reader);
+			reader.endContainer();
+			return item;
+		}
+	}
+
+	/**
+	 * Creates instances of a mapped class from the fields of the ROW, the reader is positioned in
+	 */
+	private static final class RowDecoder<T> {
+		private final Class<T> type;
+		private volatile ClassMappingDescriptor<T> classDesc;
+		private volatile NestedValueDecoder[] fieldDecoders;
+
+		RowDecoder(Class<T> type) {
+			this.type = type;
+		}
+
+		/**
+		 * Field decoders are resolved lazily, as computing a ClassValue cannot throw checked exceptions
+		 */
+		@SuppressWarnings("unchecked")
+		private NestedValueDecoder[] resolve() throws FieldDescriptionException {
+			NestedValueDecoder[] decoders = fieldDecoders;
+			if ( decoders == null ) {
+				final ClassMappingDescriptor<T> desc = AnnotatedRowMapper.getClassMappingDescriptor(type);
+				final List<ClassFieldDescriptor<T, Object>> descList = desc.getFieldDescriptors();
+				decoders = new NestedValueDecoder[descList.size()];
+				for (int i = 0; i < decoders.length; i++) {
+					final ClassFieldDescriptor<T, Object> fieldDesc = descList.get(i);
+					if ( fieldDesc instanceof DatabaseFieldDescriptor ) {
+						final DatabaseFieldDescriptor<T, Object> dbFieldDesc = (DatabaseFieldDescriptor<T, Object>) fieldDesc;
+						decoders[i] = forType(dbFieldDesc, dbFieldDesc.getConverter(), dbFieldDesc.is(MappingOption.ALLOW_PRIMITIVE_DEFAULTS));
+					} else {
+						// embedded fields are taken from the same ROW
+						decoders[i] = null;
+					}
+				}
+				classDesc = desc;
+				fieldDecoders = decoders;
+			}
+			return decoders;
+		}
+
+		@SuppressWarnings("unchecked")
+		T createItem(NestedValueReader reader) throws ParserException, SQLException, NotConvertable {
+			final NestedValueDecoder[] decoders = resolve();
+			final ClassMappingDescriptor<T> classDesc = this.classDesc;
+			final List<ClassFieldDescriptor<T, Object>> descList = classDesc.getFieldDescriptors();
+			// when the item is created by the constructor, field values are collected into the constructor arguments
+			final Object[] arguments = classDesc.isConstructorBased() ? classDesc.newArguments() : null;
+			final T item = arguments == null ? classDesc.newInstance() : null;
+			for (int i = 0; i < decoders.length; i++) {
+				final ClassFieldDescriptor<T, Object> desc = descList.get(i);
+				final Object value;
+				if ( decoders[i] == null ) {
+					value = rowDecoders.get(desc.getType()).createItem(reader);
+				} else if ( reader.nextElement() ) {
+					value = decoders[i].decode(reader);
+				} else {
+					final DatabaseFieldDescriptor<T, Object> dbFieldDesc = (DatabaseFieldDescriptor<T, Object>) desc;
+					if ( dbFieldDesc.is(MappingOption.OPTIONAL) ) {
+						continue; // skip the optional field if not found in the ROW
+					}
+					throw new SQLException("ROW value has no field " + dbFieldDesc.getDatabaseFieldName() + " expected at position " + dbFieldDesc.getDatabaseFieldIndex());
+				}
+				if ( arguments == null ) {
+					desc.assignFieldValue(item, value);
+				} else {
+					arguments[i] = value;
+				}
+			}
+			return arguments == null ? item : classDesc.newInstance(arguments);
+		}
+	}
+
+	/**
+	 * Field value converter of the ROW values and of the containers of ROW values, decoding their text representation
+	 * or their binary representation (see {@link org.valgog.spring.annotations.DataType#BINARY}) in a single pass.
+	 * Values of all the other types are converted by the given converter.
+	 */
+	static final class NestedValueConverter<D> implements TextValueConverter<D>, PathConverter<D> {
+		private final TypeConverter<Object, D> converter;
+		private final NestedValueDecoder decoder;
+
+		NestedValueConverter(TypeDescriptor<D> typeDesc, TypeConverter<Object, D> converter, boolean allowPrimitiveDefaults) {
+			this.converter = converter;
+			this.decoder = forType(typeDesc, converter, allowPrimitiveDefaults);
+		}
+
+		@Override
+		public D convertFrom(Object sourceValue) throws NotConvertable {
+			return convertFrom(sourceValue, MappingPathCounter.NONE);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public D convertFrom(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			final NestedValueReader reader;
+			if ( sourceValue instanceof byte[] ) {
+				counter.countPath(MappingPath.BINARY);
+				reader = new PostgresBinaryReader((byte[]) sourceValue);
+			} else {
+				final CharSequence text;
+				if ( sourceValue instanceof CharSequence ) {
+					counter.countPath(MappingPath.TEXT);
+					text = (CharSequence) sourceValue;
+				} else if ( sourceValue instanceof PGobject ) {
+					counter.countPath(MappingPath.PG_OBJECT);
+					text = ((PGobject) sourceValue).getValue();
+				} else {
+					return TypeConverterFactory.convertFrom(converter, sourceValue, counter);
+				}
+				if ( text == null ) {
+					return converter.convertFrom(null);
+				}
+				reader = new PostgresValueReader(text);
+			}
+			try {
+				final D value = (D) decoder.decode(reader);
+				reader.finish();
+				return value;
+			} catch (ParserException e) {
+				throw new NotConvertable("Could not decode nested value: " + e.getMessage(), e);
+			} catch (SQLException e) {
+				throw new NotConvertable(e.getMessage(), e);
+			}
+		}
+	}
+}
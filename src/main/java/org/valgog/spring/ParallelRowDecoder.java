@@ -0,0 +1,233 @@
+package org.valgog.spring;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maps the rows of a {@link ResultSet} into the items of an annotated class, decoding the values in parallel.
+ * <p>When the rows carry big ROW and ARRAY values, most of the mapping time is spent converting their text representation,
+ * while the result set itself is read quickly. So the calling thread only reads the rows and extracts the raw values
+ * of the mapped columns, collecting them into batches, that are decoded and mapped by the tasks of the given executor.
+ * The mapped items are passed to the handler in the calling thread in the original order of the rows.
+ * At most the configured number of batches is being decoded at once: when the limit is reached, the calling thread waits
+ * for the oldest batch and hands its items over to the handler, before reading the next rows. A batch, that is not started
+ * by the executor yet, is decoded by the calling thread itself instead of waiting for it, so that a calling thread, that is
+ * a worker of the executor (like a task of the common {@link ForkJoinPool}), never waits for the tasks queued behind it.
+ * <p>Items are created with the same mapping plans, descriptors and converters as the {@link AnnotatedRowMapper} uses
+ * (overridden {@link AnnotatedRowMapper#fillItem(ResultSet, Object)} methods are not called), so the results are the same
+ * as the results of the row mapper.
+ *
+ * <pre>
+ * final ParallelRowDecoder&lt;ReportRow&gt; decoder = ParallelRowDecoder.forClass(ReportRow.class, workers).withBatchSize(128);
+ * decoder.forEach(rs, new ItemHandler&lt;ReportRow&gt;() {
+ *     public void handleItem(ReportRow row) { report.add(row); }
+ * });
+ * </pre>
+ *
+ * Decoders are immutable and thread safe.
+ *
+ * @author valgog
+ *
+ * @param <ITEM> type of the mapped items
+ */
+public final class ParallelRowDecoder<ITEM> {
+
+	static final Logger logger = Logger.getLogger(ParallelRowDecoder.class.getName());
+
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private final Class<ITEM> itemClass;
+	private final Executor executor;
+	private final int batchSize;
+	private final int maxPendingBatches;
+
+	private ParallelRowDecoder(Class<ITEM> itemClass, Executor executor, int batchSize, int maxPendingBatches) {
+		this.itemClass = itemClass;
+		this.executor = executor;
+		this.batchSize = batchSize;
+		this.maxPendingBatches = maxPendingBatches;
+	}
+
+	/**
+	 * Create the decoder, that uses the common {@link ForkJoinPool}
+	 * @param itemClass class of the mapped items
+	 */
+	public static final <ITEM> ParallelRowDecoder<ITEM> forClass(Class<ITEM> itemClass) {
+		return forClass(itemClass, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create the decoder, that uses the given executor to decode the batches of the rows.
+	 * By default up to two batches per available processor are decoded at once.
+	 * @param itemClass class of the mapped items
+	 * @param executor executor of the decoding tasks (a fixed or a fork join pool, or an executor of virtual threads)
+	 */
+	public static final <ITEM> ParallelRowDecoder<ITEM> forClass(Class<ITEM> itemClass, Executor executor) {
+		if ( executor == null ) throw new NullPointerException("executor should be not null");
+		return new ParallelRowDecoder<ITEM>(itemClass, executor, DEFAULT_BATCH_SIZE, 2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param batchSize number of the rows, that are decoded by one task
+	 * @return decoder with the given batch size
+	 */
+	public ParallelRowDecoder<ITEM> withBatchSize(int batchSize) {
+		if ( batchSize < 1 ) throw new IllegalArgumentException("Batch size should be positive");
+		return new ParallelRowDecoder<ITEM>(itemClass, executor, batchSize, maxPendingBatches);
+	}
+
+	/**
+	 * @param maxPendingBatches maximal number of the batches, that are read but not handed over to the handler yet
+	 * (limits the memory used for the rows read ahead)
+	 * @return decoder with the given limit
+	 */
+	public ParallelRowDecoder<ITEM> withMaxPendingBatches(int maxPendingBatches) {
+		if ( maxPendingBatches < 1 ) throw new IllegalArgumentException("Maximal number of the pending batches should be positive");
+		return new ParallelRowDecoder<ITEM>(itemClass, executor, batchSize, maxPendingBatches);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getMaxPendingBatches() {
+		return maxPendingBatches;
+	}
+
+	/**
+	 * Map all the remaining rows of the given result set
+	 * @return list of the mapped items in the order of the rows
+	 */
+	public List<ITEM> mapAll(ResultSet rs) throws SQLException {
+		final List<ITEM> items = new ArrayList<ITEM>();
+		forEach(rs, new ItemHandler<ITEM>() {
+			@Override
+			public void handleItem(ITEM item) {
+				items.add(item);
+			}
+		});
+		return items;
+	}
+
+	/**
+	 * Map all the remaining rows of the given result set, passing the items to the given handler in the order of the rows.
+	 * The handler is called in the calling thread.
+	 * @return number of the mapped rows
+	 * @throws SQLException thrown when data retrieving error happens or a value cannot be converted,
+	 * the batches, that are still being decoded, are cancelled in that case
+	 */
+	public long forEach(ResultSet rs, ItemHandler<? super ITEM> handler) throws SQLException {
+		final ResultSetMappingPlan<ITEM> plan = MappingPlanCache.forClass(itemClass).resolve(rs);
+		final int rowWidth = plan.getRawValueCount();
+		final ArrayDeque<FutureTask<Object[]>> pending = new ArrayDeque<FutureTask<Object[]>>(maxPendingBatches);
+		long count = 0;
+		boolean completed = false;
+		try {
+			Object[] rawValues = new Object[batchSize * rowWidth];
+			int rows = 0;
+			while ( rs.next() ) {
+				plan.extractRawValues(rs, rawValues, rows * rowWidth);
+				if ( ++rows == batchSize ) {
+					count += submit(pending, new BatchDecoder<ITEM>(plan, rawValues, rows, rowWidth), handler);
+					rawValues = new Object[batchSize * rowWidth];
+					rows = 0;
+				}
+			}
+			if ( rows > 0 ) {
+				count += submit(pending, new BatchDecoder<ITEM>(plan, rawValues, rows, rowWidth), handler);
+			}
+			while ( ! pending.isEmpty() ) {
+				count += deliver(pending.poll(), handler);
+			}
+			completed = true;
+		} finally {
+			if ( ! completed ) {
+				for (FutureTask<Object[]> task : pending) {
+					task.cancel(false);
+				}
+			}
+		}
+		if ( logger.isLoggable(Level.FINE) ) {
+			logger.fine(count + " rows of " + itemClass.getName() + " were decoded in batches of " + batchSize);
+		}
+		return count;
+	}
+
+	/**
+	 * Submit the batch, handing over the items of the oldest batch first, if the limit of the pending batches is reached
+	 * @return number of the handed over items
+	 */
+	private int submit(ArrayDeque<FutureTask<Object[]>> pending, BatchDecoder<ITEM> decoder, ItemHandler<? super ITEM> handler) throws SQLException {
+		int delivered = 0;
+		if ( pending.size() == maxPendingBatches ) {
+			delivered = deliver(pending.poll(), handler);
+		}
+		final FutureTask<Object[]> task = new FutureTask<Object[]>(decoder);
+		pending.add(task);
+		executor.execute(task);
+		return delivered;
+	}
+
+	/**
+	 * Wait for the given batch and hand its items over to the handler
+	 * @return number of the handed over items
+	 */
+	@SuppressWarnings("unchecked")
+	private int deliver(FutureTask<Object[]> task, ItemHandler<? super ITEM> handler) throws SQLException {
+		// decode the batch in this thread, if no worker has started it yet (the task is not run twice)
+		task.run();
+		final Object[] items;
+		try {
+			items = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for the decoded rows", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if ( cause instanceof SQLException ) throw (SQLException) cause;
+			if ( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+			if ( cause instanceof Error ) throw (Error) cause;
+			throw new SQLException(cause.getMessage(), cause);
+		}
+		for (Object item : items) {
+			handler.handleItem((ITEM) item);
+		}
+		return items.length;
+	}
+
+	/**
+	 * Creates the items of a batch of rows from their raw values
+	 */
+	private static final class BatchDecoder<ITEM> implements Callable<Object[]> {
+		private final ResultSetMappingPlan<ITEM> plan;
+		private final Object[] rawValues;
+		private final int rows;
+		private final int rowWidth;
+
+		BatchDecoder(ResultSetMappingPlan<ITEM> plan, Object[] rawValues, int rows, int rowWidth) {
+			this.plan = plan;
+			this.rawValues = rawValues;
+			this.rows = rows;
+			this.rowWidth = rowWidth;
+		}
+
+		@Override
+		public Object[] call() throws SQLException {
+			final Object[] items = new Object[rows];
+			for (int i = 0; i < rows; i++) {
+				items[i] = plan.createItem(rawValues, i * rowWidth);
+			}
+			return items;
+		}
+	}
+}
@@ -0,0 +1,439 @@
+package org.valgog.spring;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.TypeDescriptor;
+import org.valgog.utils.postgres.HStore;
+
+/**
+ * Binds the values of the mapped fields to {@link PreparedStatement} parameters.
+ * <p>Binders are resolved once for every mapped field from its type, so that binding a value is a single call
+ * of the right {@code setXXX} method. Values, that have no JDBC representation (ARRAY values, ROW values of
+ * the mapped classes and hstore values) are bound as their text representation with an unspecified type,
+ * so that the database converts them into the type of the target column.
+ *
+ * @author valgog
+ *
+ */
+abstract class ParameterBinder {
+
+	/**
+	 * Bind the given value to the parameter with the given index
+	 */
+	abstract void bind(PreparedStatement ps, int index, Object value) throws SQLException;
+
+	/**
+	 * Append the text representation of the given not null value (as it should appear as an element of an ARRAY or a ROW)
+	 */
+	abstract void appendText(StringBuilder sb, Object value) throws SQLException;
+
+	/**
+	 * Create the binder of the values of the described type
+	 * @param typeDesc descriptor of the type of the bound values
+	 */
+	static final ParameterBinder forType(TypeDescriptor<?> typeDesc) {
+		final Class<?> type = typeDesc.getType();
+		if ( HStoreObjectConverter.isHStoreMapped(typeDesc) ) {
+			return new HStoreObjectBinder(type);
+		}
+		if ( type == Integer.class || type == int.class || type == Short.class || type == short.class || type == Byte.class || type == byte.class ) {
+			return new ScalarBinder(Types.INTEGER);
+		}
+		if ( type == Long.class || type == long.class ) {
+			return new ScalarBinder(Types.BIGINT);
+		}
+		if ( type == Double.class || type == double.class ) {
+			return new ScalarBinder(Types.DOUBLE);
+		}
+		if ( type == Float.class || type == float.class ) {
+			return new ScalarBinder(Types.REAL);
+		}
+		if ( type == Boolean.class || type == boolean.class ) {
+			return BOOLEAN_BINDER;
+		}
+		if ( type == String.class || type == Character.class || type == char.class || type.isEnum() ) {
+			return new ScalarBinder(Types.VARCHAR);
+		}
+		if ( type == BigDecimal.class ) {
+			return new ScalarBinder(Types.NUMERIC);
+		}
+		if ( java.util.Date.class.isAssignableFrom(type) ) {
+			return type == java.sql.Date.class ? new ScalarBinder(Types.DATE) : TIMESTAMP_BINDER;
+		}
+		if ( type == byte[].class ) {
+			return BYTES_BINDER;
+		}
+		if ( Map.class.isAssignableFrom(type) ) {
+			return HSTORE_BINDER;
+		}
+		final Class<Object> componentType = typeDesc.getComponentType();
+		if ( componentType != null ) {
+			return new ArrayBinder(forType(new TypeDescriptor<Object>(componentType)));
+		}
+		if ( NestedValueDecoder.isNested(typeDesc) ) {
+			return new RowBinder(type);
+		}
+		return OBJECT_BINDER;
+	}
+
+	/**
+	 * Append the given text quoted, escaping the quotes and backslashes
+	 */
+	static final void appendQuoted(StringBuilder sb, CharSequence text) {
+		sb.append('"');
+		for (int i = 0, length = text.length(); i < length; i++) {
+			final char ch = text.charAt(i);
+			if ( ch == '"' || ch == '\\' ) sb.append('\\');
+			sb.append(ch);
+		}
+		sb.append('"');
+	}
+
+	/**
+	 * Binders of the values, that are converted into their text representation and bound with an unspecified type
+	 */
+	private static abstract class TextBinder extends ParameterBinder {
+		@Override
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			if ( value == null ) {
+				ps.setNull(index, Types.OTHER);
+			} else {
+				final StringBuilder sb = new StringBuilder();
+				appendText(sb, value);
+				ps.setObject(index, sb.toString(), Types.OTHER);
+			}
+		}
+	}
+
+	/**
+	 * Binds scalar values with the JDBC type resolved for the field
+	 */
+	private static final class ScalarBinder extends ParameterBinder {
+		private final int sqlType;
+
+		ScalarBinder(int sqlType) {
+			this.sqlType = sqlType;
+		}
+
+		@Override
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			if ( value == null ) {
+				ps.setNull(index, sqlType);
+				return;
+			}
+			switch ( sqlType ) {
+			case Types.INTEGER:
+				ps.setInt(index, ((Number) value).intValue());
+				break;
+			case Types.BIGINT:
+				ps.setLong(index, ((Number) value).longValue());
+				break;
+			case Types.DOUBLE:
+				ps.setDouble(index, ((Number) value).doubleValue());
+				break;
+			case Types.REAL:
+				ps.setFloat(index, ((Number) value).floatValue());
+				break;
+			case Types.NUMERIC:
+				ps.setBigDecimal(index, (BigDecimal) value);
+				break;
+			case Types.DATE:
+				ps.setDate(index, (java.sql.Date) value);
+				break;
+			default:
+				ps.setString(index, value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+			}
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) {
+			sb.append(value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+		}
+	}
+
+	private static final ParameterBinder BOOLEAN_BINDER = new ParameterBinder() {
+		@Override
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			if ( value == null ) {
+				ps.setNull(index, Types.BOOLEAN);
+			} else {
+				ps.setBoolean(index, (Boolean) value);
+			}
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) {
+			sb.append((Boolean) value ? 't' : 'f');
+		}
+	};
+
+	private static final ParameterBinder TIMESTAMP_BINDER = new ParameterBinder() {
+		@Override
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			if ( value == null ) {
+				ps.setNull(index, Types.TIMESTAMP);
+			} else {
+				ps.setTimestamp(index, toTimestamp(value));
+			}
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) {
+			sb.append(toTimestamp(value).toString());
+		}
+
+		private Timestamp toTimestamp(Object value) {
+			return value instanceof Timestamp ? (Timestamp) value : new Timestamp(((java.util.Date) value).getTime());
+		}
+	};
+
+	private static final ParameterBinder BYTES_BINDER = new ParameterBinder() {
+		@Override
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			if ( value == null ) {
+				ps.setNull(index, Types.BINARY);
+			} else {
+				ps.setBytes(index, (byte[]) value);
+			}
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) {
+			// bytea hex format
+			final byte[] bytes = (byte[]) value;
+			sb.append("\\x");
+			for (byte b : bytes) {
+				sb.append(Character.forDigit(( b >> 4 ) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+		}
+	};
+
+	private static final ParameterBinder HSTORE_BINDER = new ParameterBinder() {
+		@Override
+		@SuppressWarnings("unchecked")
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			if ( value == null ) {
+				ps.setNull(index, Types.OTHER);
+			} else {
+				ps.setObject(index, HStore.valueOf((Map<String, String>) value));
+			}
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		void appendText(StringBuilder sb, Object value) {
+			sb.append(HStore.toRawValue((Map<String, String>) value));
+		}
+	};
+
+	private static final ParameterBinder OBJECT_BINDER = new ParameterBinder() {
+		@Override
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			if ( value == null ) {
+				ps.setNull(index, Types.OTHER);
+			} else {
+				ps.setObject(index, value);
+			}
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) {
+			sb.append(value.toString());
+		}
+	};
+
+	/**
+	 * Binds arrays and collections as ARRAY values, nested arrays (like {@code int[][]}) are bound as the multidimensional ARRAY values
+	 */
+	private static final class ArrayBinder extends TextBinder {
+		private final ParameterBinder elementBinder;
+
+		ArrayBinder(ParameterBinder elementBinder) {
+			this.elementBinder = elementBinder;
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) throws SQLException {
+			sb.append('{');
+			if ( value instanceof Collection ) {
+				boolean first = true;
+				for (Object element : (Collection<?>) value) {
+					if ( ! first ) sb.append(',');
+					appendElement(sb, element);
+					first = false;
+				}
+			} else {
+				for (int i = 0, length = Array.getLength(value); i < length; i++) {
+					if ( i > 0 ) sb.append(',');
+					appendElement(sb, Array.get(value, i));
+				}
+			}
+			sb.append('}');
+		}
+
+		private void appendElement(StringBuilder sb, Object element) throws SQLException {
+			if ( elementBinder instanceof ArrayBinder ) {
+				// sub arrays of a multidimensional ARRAY are not quoted and cannot be NULL
+				if ( element == null ) throw new SQLException("NULL cannot be an element of a multidimensional ARRAY");
+				elementBinder.appendText(sb, element);
+			} else if ( element == null ) {
+				sb.append("NULL");
+			} else {
+				final StringBuilder elementText = new StringBuilder();
+				elementBinder.appendText(elementText, element);
+				appendQuoted(sb, elementText);
+			}
+		}
+	}
+
+	/**
+	 * Binds objects of the mapped classes as ROW values with the fields in the order of their declaration
+	 */
+	private static final class RowBinder extends TextBinder {
+		private final Class<?> type;
+		private volatile ColumnBinding[] bindings;
+
+		RowBinder(Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) throws SQLException {
+			ColumnBinding[] bindings = this.bindings;
+			if ( bindings == null ) {
+				// bindings are resolved lazily, as the mapped classes can be referencing each other
+				bindings = ColumnBinding.forClass(type).toArray(new ColumnBinding[0]);
+				this.bindings = bindings;
+			}
+			sb.append('(');
+			for (int i = 0; i < bindings.length; i++) {
+				if ( i > 0 ) sb.append(',');
+				final Object fieldValue = bindings[i].getValue(value);
+				if ( fieldValue != null ) {
+					final StringBuilder fieldText = new StringBuilder();
+					bindings[i].binder.appendText(fieldText, fieldValue);
+					appendQuoted(sb, fieldText);
+				}
+			}
+			sb.append(')');
+		}
+	}
+
+	/**
+	 * Binds objects of the {@link org.valgog.spring.annotations.HStoreMapped} classes as hstore values
+	 */
+	private static final class HStoreObjectBinder extends ParameterBinder {
+		private final Class<?> type;
+		private volatile ColumnBinding[] bindings;
+
+		HStoreObjectBinder(Class<?> type) {
+			this.type = type;
+		}
+
+		private Map<String, String> toMap(Object value) throws SQLException {
+			ColumnBinding[] bindings = this.bindings;
+			if ( bindings == null ) {
+				bindings = ColumnBinding.forClass(type).toArray(new ColumnBinding[0]);
+				this.bindings = bindings;
+			}
+			final Map<String, String> map = new LinkedHashMap<String, String>();
+			for (ColumnBinding binding : bindings) {
+				final Object fieldValue = binding.getValue(value);
+				if ( fieldValue == null ) {
+					map.put(binding.columnName, null);
+				} else {
+					final StringBuilder fieldText = new StringBuilder();
+					binding.binder.appendText(fieldText, fieldValue);
+					map.put(binding.columnName, fieldText.toString());
+				}
+			}
+			return map;
+		}
+
+		@Override
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			HSTORE_BINDER.bind(ps, index, value == null ? null : toMap(value));
+		}
+
+		@Override
+		void appendText(StringBuilder sb, Object value) throws SQLException {
+			HSTORE_BINDER.appendText(sb, toMap(value));
+		}
+	}
+
+	/**
+	 * Binding of a database column to a mapped field, that can be also a field of an embedded object
+	 */
+	static final class ColumnBinding {
+		final String columnName;
+		final ParameterBinder binder;
+		private final ClassFieldDescriptor<Object, Object>[] path;
+
+		ColumnBinding(String columnName, ParameterBinder binder, ClassFieldDescriptor<Object, Object>[] path) {
+			this.columnName = columnName;
+			this.binder = binder;
+			this.path = path;
+		}
+
+		/**
+		 * @return value of the bound field of the given item or {@code null} if some of the embedded objects on the path is null
+		 */
+		Object getValue(Object item) throws SQLException {
+			Object value = item;
+			for (int i = 0; i < path.length && value != null; i++) {
+				value = path[i].getFieldValue(value);
+			}
+			return value;
+		}
+
+		/**
+		 * @return descriptor of the bound field (the last field on the path)
+		 */
+		ClassFieldDescriptor<Object, Object> getField() {
+			return path[path.length - 1];
+		}
+
+		/**
+		 * @return bindings of all the mapped fields of the given class (including the fields of the embedded objects) in the order of their declaration
+		 */
+		static final List<ColumnBinding> forClass(Class<?> type) throws SQLException {
+			final List<ColumnBinding> bindings = new ArrayList<ColumnBinding>();
+			addBindings(type, emptyPath(), bindings);
+			return bindings;
+		}
+
+		/**
+		 * @return path of the fields of the top level object
+		 */
+		@SuppressWarnings("unchecked")
+		private static ClassFieldDescriptor<Object, Object>[] emptyPath() {
+			return (ClassFieldDescriptor<Object, Object>[]) new ClassFieldDescriptor<?, ?>[0];
+		}
+
+		@SuppressWarnings("unchecked")
+		private static void addBindings(Class<?> type, ClassFieldDescriptor<Object, Object>[] parentPath, List<ColumnBinding> bindings) throws SQLException {
+			for (ClassFieldDescriptor<?, Object> desc : AnnotatedRowMapper.getFieldMappingDescriptorList(type)) {
+				final ClassFieldDescriptor<Object, Object>[] path = Arrays.copyOf(parentPath, parentPath.length + 1);
+				path[parentPath.length] = (ClassFieldDescriptor<Object, Object>) desc;
+				if ( desc instanceof DatabaseFieldDescriptor ) {
+					bindings.add(new ColumnBinding(((DatabaseFieldDescriptor<?, ?>) desc).getDatabaseFieldName(), forType(desc), path));
+				} else {
+					addBindings(desc.getType(), path, bindings);
+				}
+			}
+		}
+	}
+}
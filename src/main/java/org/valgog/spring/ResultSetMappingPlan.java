@@ -0,0 +1,274 @@
+package org.valgog.spring;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.postgresql.util.PGobject;
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.ClassMappingDescriptor;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingOption;
+
+/**
+ * Mapping of a class onto the columns of a {@link ResultSet} of some known {@link ResultSetShape}.
+ * <p>All the column indexes of the mapped fields (also for the embedded fields) are resolved
+ * once when the plan is created, so that filling of the items for every next row
+ * does not need to lookup columns by name or to handle absent optional columns again.
+ *
+ * @author valgog
+ *
+ * @param <ItemTYPE> type of the item being filled by this plan
+ */
+final class ResultSetMappingPlan<ItemTYPE> extends ItemMappingPlan<ItemTYPE> {
+
+	static final Logger logger = Logger.getLogger(ResultSetMappingPlan.class.getName());
+
+	/**
+	 * Column index used for the fields, that have no corresponding column in the {@link ResultSet}
+	 */
+	private static final int NO_COLUMN = 0;
+
+	private final Class<ItemTYPE> itemClass;
+	private final ResultSetShape shape;
+	private final int[] columnIndexes;
+	private final ResultSetMappingPlan<Object>[] embeddedPlans;
+	private final List<String> missingOptionalColumns;
+
+	/**
+	 * Positions of the raw values of the fields relative to the first raw value of the row,
+	 * see {@link #extractRawValues(ResultSet, Object[], int)}
+	 */
+	private final int[] rawValuePositions;
+
+	/**
+	 * Number of the raw values extracted by {@link #extractRawValues(ResultSet, Object[], int)}, including the values of the embedded plans
+	 */
+	private final int rawValueCount;
+
+	@SuppressWarnings("unchecked")
+	private ResultSetMappingPlan(Class<ItemTYPE> itemClass, ResultSetShape shape, ClassMappingDescriptor<ItemTYPE> classDesc, ResultSet rs) throws SQLException {
+		super(itemClass, classDesc);
+		this.itemClass = itemClass;
+		this.shape = shape;
+		final int size = descriptors.length;
+		this.columnIndexes = new int[size];
+		this.embeddedPlans = (ResultSetMappingPlan<Object>[]) new ResultSetMappingPlan<?>[size];
+		final List<String> missingColumns = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			final ClassFieldDescriptor<ItemTYPE, Object> desc = descriptors[i];
+			if ( desc instanceof DatabaseFieldDescriptor ) {
+				final DatabaseFieldDescriptor<ItemTYPE, Object> dbFieldDesc = (DatabaseFieldDescriptor<ItemTYPE, Object>) desc;
+				final String fieldName = dbFieldDesc.getDatabaseFieldName();
+				int databaseFieldIndex = shape.findColumn(fieldName);
+				if ( databaseFieldIndex == NO_COLUMN ) {
+					if ( dbFieldDesc.is(MappingOption.OPTIONAL) ) {
+						// skip the optional field if not found in the result set
+						missingColumns.add(fieldName);
+					} else {
+						// let the driver report the missing column the way it usually does
+						databaseFieldIndex = rs.findColumn(fieldName);
+					}
+				}
+				columnIndexes[i] = databaseFieldIndex;
+			} else {
+				// if the class field descriptor is not of type DatabaseTypeDescriptor,
+				// we suppose, that it is an embedded field Descriptor
+				// so its fields are resolved as if they were the fields of itemClass
+				embeddedPlans[i] = resolve(desc.getType(), shape, rs);
+				columnIndexes[i] = NO_COLUMN;
+			}
+		}
+		this.rawValuePositions = new int[size];
+		int rawValues = 0;
+		for (int i = 0; i < size; i++) {
+			rawValuePositions[i] = rawValues;
+			rawValues += embeddedPlans[i] == null ? 1 : embeddedPlans[i].rawValueCount;
+		}
+		this.rawValueCount = rawValues;
+		this.missingOptionalColumns = Collections.unmodifiableList(missingColumns);
+		if ( logger.isLoggable(Level.FINE) && !missingColumns.isEmpty() ) {
+			logger.fine("Optional columns " + missingColumns + " of " + itemClass.getName() + " are not found in the result set " + shape);
+		}
+	}
+
+	/**
+	 * Resolve the mapping of the given class onto the columns of the given result set shape.
+	 * @param itemClass class of the items to be filled with this plan
+	 * @param shape shape of the result sets to be mapped
+	 * @param rs result set of the given shape, used to report columns, that could not be found
+	 * @return resolved mapping plan
+	 * @throws SQLException thrown if some not optional column cannot be found
+	 */
+	static final <ItemTYPE> ResultSetMappingPlan<ItemTYPE> resolve(Class<ItemTYPE> itemClass, ResultSetShape shape, ResultSet rs) throws SQLException {
+		return new ResultSetMappingPlan<ItemTYPE>(itemClass, shape, AnnotatedRowMapper.getClassMappingDescriptor(itemClass), rs);
+	}
+
+	/**
+	 * Fill the given item with the values of the current row of the given result set
+	 * @param rs result set positioned on the row to be extracted, that should be of the shape of this plan
+	 * @param item item to be filled
+	 * @throws SQLException thrown when data retrieving error happens
+	 */
+	void fillItem(ResultSet rs, ItemTYPE item) throws SQLException {
+		final boolean timed = MappingMetrics.isTimed();
+		final long start = timed ? System.nanoTime() : 0;
+		extractValues(rs, item, null, timed);
+		rowMapped(timed, start);
+	}
+
+	/**
+	 * Create a new item from the values of the current row of the given result set. 
+	 * <p>Depending on the mapped class, the item is either created by the default constructor and filled, 
+	 * or created by passing all the values to the constructor.
+	 * @param rs result set positioned on the row to be extracted, that should be of the shape of this plan
+	 * @return new item
+	 * @throws SQLException thrown when data retrieving error happens
+	 */
+	ItemTYPE createItem(ResultSet rs) throws SQLException {
+		final boolean timed = MappingMetrics.isTimed();
+		final long start = timed ? System.nanoTime() : 0;
+		final ItemTYPE item = newItem(rs, timed);
+		rowMapped(timed, start);
+		return item;
+	}
+
+	/**
+	 * Create a new item from the values of the current row, without counting the row (as embedded items are a part of the row of their owner)
+	 */
+	private ItemTYPE newItem(ResultSet rs, boolean timed) throws SQLException {
+		if ( classDesc.isConstructorBased() ) {
+			final Object[] arguments = classDesc.newArguments();
+			extractValues(rs, null, arguments, timed);
+			return classDesc.newInstance(arguments);
+		} else {
+			final ItemTYPE item = classDesc.newInstance();
+			extractValues(rs, item, null, timed);
+			return item;
+		}
+	}
+
+	/**
+	 * Extract the values of the mapped fields either assigning them to the given item 
+	 * or collecting them into the given constructor arguments
+	 */
+	private void extractValues(ResultSet rs, ItemTYPE item, Object[] arguments, boolean timed) throws SQLException {
+		final ClassFieldDescriptor<ItemTYPE, Object>[] descriptors = this.descriptors;
+		for (int i = 0, l = descriptors.length; i < l; i++) {
+			final ClassFieldDescriptor<ItemTYPE, Object> desc = descriptors[i];
+			final Object value;
+			final ResultSetMappingPlan<Object> embeddedPlan = embeddedPlans[i];
+			if ( embeddedPlan == null ) {
+				final int databaseFieldIndex = columnIndexes[i];
+				if ( databaseFieldIndex == NO_COLUMN ) {
+					continue; // optional field, that is not found in the result set
+				}
+				final DatabaseFieldDescriptor<ItemTYPE, Object> dbFieldDesc = (DatabaseFieldDescriptor<ItemTYPE, Object>) desc;
+				final Object rawValue = dbFieldDesc.getExtractionType().extractFieldValueRaw(rs, databaseFieldIndex);
+				value = AnnotatedRowMapper.makeAssignable(dbFieldDesc, rawValue, metrics, timed);
+			} else {
+				value = embeddedPlan.newItem(rs, timed);
+			}
+			if ( arguments == null ) {
+				desc.assignFieldValue(item, value);
+			} else {
+				arguments[i] = value;
+			}
+		}
+	}
+
+	/**
+	 * @return number of the raw values of a row, see {@link #extractRawValues(ResultSet, Object[], int)}
+	 */
+	int getRawValueCount() {
+		return rawValueCount;
+	}
+
+	/**
+	 * Extract the raw values of the mapped fields of the current row without converting them, so that the items can be created
+	 * from them later with {@link #createItem(Object[], int)}, possibly in another thread.
+	 * <p>Every mapped field (also an embedded one) takes one position, fields of the embedded objects take
+	 * the positions of the fields of their plans, values of the optional fields without columns are left {@code null}.
+	 * <p>Driver objects, that are bound to the connection or are not safe to be shared between threads, are detached
+	 * from it here (see {@link #detachRawValue(Object)}).
+	 * @param rs result set positioned on the row to be extracted, that should be of the shape of this plan
+	 * @param rawValues array the values are extracted into
+	 * @param offset position of the first value of the row in the array
+	 * @return position after the last value of the row
+	 * @throws SQLException thrown when data retrieving error happens
+	 */
+	int extractRawValues(ResultSet rs, Object[] rawValues, int offset) throws SQLException {
+		for (int i = 0, l = descriptors.length; i < l; i++) {
+			final ResultSetMappingPlan<Object> embeddedPlan = embeddedPlans[i];
+			if ( embeddedPlan == null ) {
+				final int databaseFieldIndex = columnIndexes[i];
+				if ( databaseFieldIndex != NO_COLUMN ) {
+					rawValues[offset] = detachRawValue(((DatabaseFieldDescriptor<ItemTYPE, Object>) descriptors[i]).getExtractionType().extractFieldValueRaw(rs, databaseFieldIndex));
+				}
+				offset++;
+			} else {
+				offset = embeddedPlan.extractRawValues(rs, rawValues, offset);
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Read the elements of a {@link java.sql.Array} and copy a {@link PGobject} in the thread of the result set,
+	 * as the converters may read the array through the connection ({@link java.sql.Array#getResultSet()})
+	 * and the driver objects are not thread safe
+	 * @param value raw value of a column
+	 * @return value, that can be converted in any thread
+	 * @throws SQLException thrown if the elements of an array cannot be read
+	 */
+	static Object detachRawValue(Object value) throws SQLException {
+		if ( value instanceof java.sql.Array ) {
+			return ((java.sql.Array) value).getArray();
+		}
+		if ( value instanceof PGobject ) {
+			try {
+				return ((PGobject) value).clone();
+			} catch (CloneNotSupportedException e) {
+				return ((PGobject) value).getValue();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Get the value of a field from the raw values extracted by {@link #extractRawValues(ResultSet, Object[], int)}.
+	 * Items are created from them with {@link #createItem(Object[], int)}, that does not access the result set,
+	 * so that it can be called after the result set is moved to the next rows.
+	 */
+	@Override
+	Object fieldValue(Object[] rawValues, int offset, int fieldIndex, boolean timed) throws SQLException {
+		final ResultSetMappingPlan<Object> embeddedPlan = embeddedPlans[fieldIndex];
+		final int position = offset + rawValuePositions[fieldIndex];
+		if ( embeddedPlan != null ) {
+			return embeddedPlan.newItem(rawValues, position, timed);
+		}
+		if ( columnIndexes[fieldIndex] == NO_COLUMN ) {
+			return NO_VALUE; // optional field, that is not found in the result set
+		}
+		return AnnotatedRowMapper.makeAssignable((DatabaseFieldDescriptor<ItemTYPE, Object>) descriptors[fieldIndex], rawValues[position], metrics, timed);
+	}
+
+	Class<ItemTYPE> getItemClass() {
+		return itemClass;
+	}
+
+	ResultSetShape getShape() {
+		return shape;
+	}
+
+	/**
+	 * @return names of the optional columns, that are not present in the result set shape of this plan
+	 */
+	List<String> getMissingOptionalColumns() {
+		return missingOptionalColumns;
+	}
+}
@@ -0,0 +1,81 @@
+package org.valgog.spring;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Describes the shape of a {@link java.sql.ResultSet} as the ordered list of its column labels.
+ * <p>Two result sets with the same column labels in the same order can be mapped
+ * using the same resolved {@link ResultSetMappingPlan}.
+ *
+ * @author valgog
+ *
+ */
+final class ResultSetShape {
+
+	private final String[] columnLabels;
+	private final int hashCode;
+	private Map<String, Integer> columnIndexMap;
+
+	private ResultSetShape(String[] columnLabels) {
+		this.columnLabels = columnLabels;
+		this.hashCode = Arrays.hashCode(columnLabels);
+	}
+
+	static final ResultSetShape of(ResultSetMetaData metaData) throws SQLException {
+		final int columnCount = metaData.getColumnCount();
+		final String[] columnLabels = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			columnLabels[i] = metaData.getColumnLabel(i + 1);
+		}
+		return new ResultSetShape(columnLabels);
+	}
+
+	/**
+	 * Find the index of the column with the given name the same way as the PostgreSQL JDBC driver is doing it:
+	 * column names are case insensitive and the first column with the given name wins.
+	 * @param columnName name of the column to be found
+	 * @return 1-based index of the column or 0 if the column could not be found
+	 */
+	int findColumn(String columnName) {
+		if ( columnIndexMap == null ) {
+			final Map<String, Integer> m = new HashMap<String, Integer>(columnLabels.length * 2);
+			// load the map in reverse order so the first columns will overwrite the later ones
+			for (int i = columnLabels.length - 1; i >= 0; i--) {
+				final String label = columnLabels[i];
+				if ( label != null ) {
+					m.put(label.toLowerCase(Locale.US), Integer.valueOf(i + 1));
+				}
+			}
+			columnIndexMap = m;
+		}
+		final Integer index = columnIndexMap.get(columnName.toLowerCase(Locale.US));
+		return index == null ? 0 : index.intValue();
+	}
+
+	int getColumnCount() {
+		return columnLabels.length;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if ( this == obj ) return true;
+		if ( !( obj instanceof ResultSetShape ) ) return false;
+		final ResultSetShape other = (ResultSetShape) obj;
+		return hashCode == other.hashCode && Arrays.equals(columnLabels, other.columnLabels);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(columnLabels);
+	}
+}
@@ -0,0 +1,77 @@
+package org.valgog.spring;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingOption;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+/**
+ * Mapping of a class onto the named columns of the rows, that are not read from a {@link java.sql.ResultSet}
+ * (COPY streams, logical decoding change records), resolved in the same way as the {@link ResultSetMappingPlan} resolves it
+ * for the result sets. Values of the rows are converted with the converters of the fields.
+ * <p>Plans are immutable and thread safe.
+ *
+ * @author valgog
+ *
+ * @param <T> type of the mapped objects
+ */
+final class TextRowPlan<T> extends ItemMappingPlan<T> {
+	private static final int NO_COLUMN = -1;
+
+	private final int[] columnIndexes;
+	private final TextRowPlan<Object>[] embeddedPlans;
+
+	/**
+	 * @param type class of the mapped objects
+	 * @param columns indexes of the values of the rows by the column names
+	 * @param mappedColumns flags of the columns, that are mapped to any field, are set in this array
+	 * @param requireColumns if the columns of the not optional fields should be in the given columns, otherwise
+	 * the fields without columns are left unset
+	 * @throws FieldDescriptionException if the given class cannot be mapped or a required column is missing
+	 */
+	@SuppressWarnings("unchecked")
+	TextRowPlan(Class<T> type, Map<String, Integer> columns, boolean[] mappedColumns, boolean requireColumns) throws SQLException {
+		super(type, AnnotatedRowMapper.getClassMappingDescriptor(type));
+		this.columnIndexes = new int[descriptors.length];
+		this.embeddedPlans = (TextRowPlan<Object>[]) new TextRowPlan<?>[descriptors.length];
+		for (int i = 0; i < descriptors.length; i++) {
+			final ClassFieldDescriptor<T, Object> desc = descriptors[i];
+			columnIndexes[i] = NO_COLUMN;
+			if ( desc instanceof DatabaseFieldDescriptor ) {
+				final DatabaseFieldDescriptor<T, Object> dbFieldDesc = (DatabaseFieldDescriptor<T, Object>) desc;
+				final Integer index = columns.get(dbFieldDesc.getDatabaseFieldName());
+				if ( index != null ) {
+					columnIndexes[i] = index;
+					mappedColumns[index] = true;
+				} else if ( requireColumns && ! dbFieldDesc.is(MappingOption.OPTIONAL) ) {
+					throw new FieldDescriptionException("Column " + dbFieldDesc.getDatabaseFieldName() + " of the field " + desc.getField() + " is not in the columns " + columns.keySet());
+				}
+			} else {
+				embeddedPlans[i] = new TextRowPlan<Object>(desc.getType(), columns, mappedColumns, requireColumns);
+			}
+		}
+	}
+
+	/**
+	 * Create a new object from the values of a row
+	 * @param values values of the row (text representations or the values of the field types) in the order of the columns
+	 * @throws SQLException thrown if the values cannot be converted into the field types
+	 */
+	T createItem(Object[] values) throws SQLException {
+		return createItem(values, 0);
+	}
+
+	@Override
+	Object fieldValue(Object[] values, int offset, int fieldIndex, boolean timed) throws SQLException {
+		if ( embeddedPlans[fieldIndex] != null ) {
+			return embeddedPlans[fieldIndex].newItem(values, offset, timed);
+		}
+		if ( columnIndexes[fieldIndex] == NO_COLUMN ) {
+			return NO_VALUE; // field, that has no column
+		}
+		return AnnotatedRowMapper.makeAssignable((DatabaseFieldDescriptor<T, Object>) descriptors[fieldIndex], values[offset + columnIndexes[fieldIndex]], metrics, timed);
+	}
+}
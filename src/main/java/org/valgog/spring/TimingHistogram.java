@@ -0,0 +1,59 @@
+package org.valgog.spring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of the times in nanoseconds with the power of two buckets, counted with {@link LongAdder}s,
+ * so that the concurrent recording does not contend on a single counter.
+ *
+ * @author valgog
+ */
+final class TimingHistogram {
+
+	private final LongAdder[] buckets = new LongAdder[64];
+
+	TimingHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	void record(long nanos) {
+		buckets[nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos) - 1].increment();
+	}
+
+	long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return upper bound of the bucket the given percentile of the recorded times falls in, 0 if nothing is recorded
+	 */
+	long getPercentile(double percentile) {
+		final long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if ( total == 0 ) return 0;
+		final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100d));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if ( seen >= rank ) return i == 63 ? Long.MAX_VALUE : ( 2L << i ) - 1;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+	}
+}
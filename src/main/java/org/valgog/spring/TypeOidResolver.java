@@ -0,0 +1,21 @@
+package org.valgog.spring;
+
+import java.sql.SQLException;
+
+/**
+ * Resolves the OIDs of the database types, that are not known in advance (composite types of the mapped classes,
+ * {@code hstore} and the arrays of them), when the values are written in the binary format.
+ *
+ * @author valgog
+ *
+ */
+public interface TypeOidResolver {
+
+	/**
+	 * @param typeName name of the type as it is written in SQL, like <code>child_class</code>,
+	 * <code>public.child_class[]</code> or <code>hstore</code>
+	 * @return OID of the type
+	 * @throws SQLException if the type does not exist or could not be resolved
+	 */
+	int getTypeOid(String typeName) throws SQLException;
+}
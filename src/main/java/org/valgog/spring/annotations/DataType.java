@@ -18,7 +18,7 @@ import java.util.Map;
  */
 public enum DataType {
 	
-	AUTOMATIC {
+	AUTOMATIC(true) {
 		@Override
 		public Object extractFieldValueRaw(ResultSet rs, int fieldIndex) throws SQLException {
 			Object value = rs.getObject( fieldIndex );
@@ -100,7 +100,18 @@ public enum DataType {
 		}
 	},
 
-	SQL_ARRAY_INT4 {
+	/**
+	 * Binary representation of ARRAY and ROW values, that are selected with {@code array_send(column)}
+	 * or {@code record_send(column)} and decoded by {@link org.valgog.utils.PostgresBinaryReader}.
+	 */
+	BINARY {
+		@Override
+		public Object extractFieldValueRaw(ResultSet rs, int fieldIndex) throws SQLException {
+			return rs.getBytes( fieldIndex );
+		}
+	},
+
+	SQL_ARRAY_INT4(true) {
 		@Override
 		public Object extractFieldValueRaw(ResultSet rs, int fieldIndex) throws SQLException {
 			Array integerSQLArray = rs.getArray(fieldIndex);
@@ -112,6 +123,42 @@ public enum DataType {
 		}
 	},
 	
+	SQL_ARRAY_INT8(true) {
+		@Override
+		public Object extractFieldValueRaw(ResultSet rs, int fieldIndex) throws SQLException {
+			Array longSQLArray = rs.getArray(fieldIndex);
+			if ( longSQLArray == null ) {
+				return null;
+			} else {
+				return (Long[]) longSQLArray.getArray();
+			}
+		}
+	},
+
+	SQL_ARRAY_FLOAT8(true) {
+		@Override
+		public Object extractFieldValueRaw(ResultSet rs, int fieldIndex) throws SQLException {
+			Array doubleSQLArray = rs.getArray(fieldIndex);
+			if ( doubleSQLArray == null ) {
+				return null;
+			} else {
+				return (Double[]) doubleSQLArray.getArray();
+			}
+		}
+	},
+
+	SQL_ARRAY_BOOL(true) {
+		@Override
+		public Object extractFieldValueRaw(ResultSet rs, int fieldIndex) throws SQLException {
+			Array booleanSQLArray = rs.getArray(fieldIndex);
+			if ( booleanSQLArray == null ) {
+				return null;
+			} else {
+				return (Boolean[]) booleanSQLArray.getArray();
+			}
+		}
+	},
+
 	SQL_ARRAY_TEXT {
 		@Override
 		public Object extractFieldValueRaw(ResultSet rs, int fieldIndex) throws SQLException {
@@ -124,6 +171,19 @@ public enum DataType {
 		}
 	};
 
+	/**
+	 * If true, values of this type can be also extracted as text
+	 */
+	private final boolean extractableAsText;
+
+	private DataType() {
+		this(false);
+	}
+
+	private DataType(boolean extractableAsText) {
+		this.extractableAsText = extractableAsText;
+	}
+
 	/**
 	 * This map holds default values for the primitive types (except Void.TYPE type)
 	 */
@@ -152,4 +212,15 @@ public enum DataType {
 		return extractFieldValueRaw(rs, rs.findColumn(fieldName));
 	}
 
+	/**
+	 * Get the data type, that should be used to extract the values of this type as text.
+	 * <p>It is used for the fields, that decode the text representation of the values directly 
+	 * (like primitive arrays or nested ROW values), as parsing the text is much cheaper, 
+	 * then getting the boxed elements out of an {@link Array} or parsing the same text twice.
+	 * @return {@link #TEXT} if the values of this type can be extracted as text, or this data type otherwise
+	 */
+	public DataType asText() {
+		return extractableAsText ? TEXT : this;
+	}
+
 }
@@ -0,0 +1,22 @@
+package org.valgog.spring.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * This annotation marks the constructor, that should be used by the {@link AnnotatedRowMapper} to create instances of the mapped class.
+ * <p>The constructor should accept one argument for every mapped field of the class (including the fields of the super classes 
+ * and the {@link Embed} fields) in the order of the field declaration, super class fields first. 
+ * So the mapped fields can be final and do not need setters.
+ * <p>Canonical constructors of the records are used in the same way without this annotation.
+ * @author valgog
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.CONSTRUCTOR)
+public @interface DatabaseConstructor { }
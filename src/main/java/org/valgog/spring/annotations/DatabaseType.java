@@ -0,0 +1,26 @@
+package org.valgog.spring.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * This annotation names the composite database type of a class, which instances are mapped from ROW values.
+ * <p>The name is needed only when the instances are written in the binary format (see {@link org.valgog.spring.BinaryCopyLoader}), 
+ * as the binary ROW and ARRAY values carry the OIDs of their element types. If the annotation is missing, 
+ * the class name rewritten into the lowercase underscore name is used (<code>ChildClass</code> -&gt; <code>child_class</code>).
+ * @author valgog
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DatabaseType {
+	/**
+	 * Name of the composite type (can be qualified with the schema name)
+	 */
+	String value();
+}
@@ -0,0 +1,23 @@
+package org.valgog.spring.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * This annotation marks a class (or a field of such a class type), which instances should be filled by the {@link AnnotatedRowMapper} 
+ * from the keys of an hstore value, instead of a ROW value.
+ * <p>Fields of the class, annotated with {@link DatabaseField}, are filled with the values of the hstore keys, 
+ * named as their database field names, and converted into the field types as usual. 
+ * Keys, that are not mapped, are ignored. If the key of a field, that is not annotated as {@link Optional}, is missing, 
+ * the value cannot be mapped.
+ * @author valgog
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.FIELD})
+public @interface HStoreMapped { }
@@ -1,5 +1,8 @@
 package org.valgog.spring.helpers;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -11,8 +14,20 @@ public class ClassFieldDescriptor<C, T> extends TypeDescriptor<T> {
 	
 	final private Field classField;
 	final private Method classFieldSetter;
+	final private FieldSetter<C, T> fieldSetter;
+	private volatile MethodHandle fieldGetter;
 	
 	public ClassFieldDescriptor(Field sourceField) throws FieldDescriptionException {
+		this(sourceField, false);
+	}
+
+	/**
+	 * @param sourceField field being described
+	 * @param assignedByConstructor if true, the field value is passed to the constructor of the declaring class, 
+	 * so the field does not need to have a setter
+	 * @throws FieldDescriptionException
+	 */
+	public ClassFieldDescriptor(Field sourceField, boolean assignedByConstructor) throws FieldDescriptionException {
 		super(sourceField);
 		this.classField = sourceField;
 		// find the setter 
@@ -26,29 +41,76 @@ public class ClassFieldDescriptor<C, T> extends TypeDescriptor<T> {
 		} catch (SecurityException securityException) {
 			throw new FieldDescriptionException( "Setter for the field " + declaringClass.getName() + '.' + fieldName + " could not be extracted: " + securityException.getMessage() );
 		} catch (NoSuchMethodException e) {
-			if ( ! Modifier.isPublic( classField.getModifiers() ) ) {
+			if ( ! Modifier.isPublic( classField.getModifiers() ) && ! assignedByConstructor ) {
 				throw new FieldDescriptionException("Setter for non-public field " + declaringClass.getName() + '.' + fieldName + " could not be found");
 			}
 		}
 		this.classFieldSetter = setter;
+		if ( assignedByConstructor && setter == null && ( Modifier.isFinal(classField.getModifiers()) || ! Modifier.isPublic(classField.getModifiers()) ) ) {
+			this.fieldSetter = null;
+		} else {
+			this.fieldSetter = FieldSetterFactory.getFieldSetter(sourceField, setter);
+		}
 	}
 	
 	public void assignFieldValue(C objectInstance, T fieldValue) throws FieldDescriptionException {
+		if ( this.fieldSetter == null ) {
+			throw new FieldDescriptionException("Field " + classField.getDeclaringClass().getName() + '.' + classField.getName() + " can only be assigned by the constructor");
+		}
 		try {
-			if ( this.classFieldSetter != null ) {
-				this.classFieldSetter.invoke(objectInstance, fieldValue);
-			} else {
-				this.classField.set(objectInstance, fieldValue);
-			}
-		} catch (IllegalArgumentException e) {
-			throw new FieldDescriptionException(e);
-		} catch (IllegalAccessException e) {
-			throw new FieldDescriptionException(e);
-		} catch (InvocationTargetException e) {
+			this.fieldSetter.setFieldValue(objectInstance, fieldValue);
+		} catch (FieldDescriptionException e) {
+			throw e;
+		} catch (RuntimeException e) {
 			throw new FieldDescriptionException(e);
 		}
 	}
 
+	/**
+	 * Read the value of the field of the given object (used when the objects are written to the database)
+	 * @param objectInstance object, which field should be read
+	 * @return value of the field
+	 * @throws FieldDescriptionException thrown if the field could not be read
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFieldValue(C objectInstance) throws FieldDescriptionException {
+		MethodHandle getter = this.fieldGetter;
+		if ( getter == null ) {
+			// getters are resolved lazily, as most of the classes are only read from the database
+			try {
+				if ( ! Modifier.isPublic(classField.getModifiers()) || ! Modifier.isPublic(classField.getDeclaringClass().getModifiers()) ) {
+					classField.setAccessible(true);
+				}
+				getter = MethodHandles.lookup().unreflectGetter(classField).asType(GET_FIELD_VALUE_TYPE);
+			} catch (Exception e) {
+				throw new FieldDescriptionException(e);
+			}
+			this.fieldGetter = getter;
+		}
+		try {
+			return (T) getter.invokeExact((Object) objectInstance);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new FieldDescriptionException(new InvocationTargetException(e));
+		}
+	}
+
+	private static final MethodType GET_FIELD_VALUE_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	public Field getField() {
+		return classField;
+	}
+
+	/**
+	 * @return setter method of the field or {@code null} if the field is assigned directly
+	 */
+	public Method getSetter() {
+		return classFieldSetter;
+	}
+
 	private static final String capitalize(String name) {
 		if (name == null || name.length() == 0) {
 			return name;
@@ -0,0 +1,159 @@
+package org.valgog.spring.helpers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.List;
+
+import org.valgog.spring.annotations.DataType;
+import org.valgog.spring.annotations.DatabaseConstructor;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+import org.valgog.spring.helpers.exceptions.TypeInstantiationException;
+
+/**
+ * Holds the mapping of a class: the list of its mapped field descriptors and the way its instances are created.
+ * <p>Instances of the mapped class are either created with the default constructor and filled using
+ * the setters of the mapped fields, or, if the class is a record or declares a constructor annotated
+ * with {@link DatabaseConstructor}, created by passing all the field values to that constructor at once.
+ * In the second case the mapped fields can be final.
+ *
+ * @author valgog
+ *
+ * @param <T> mapped class type
+ */
+public class ClassMappingDescriptor<T> extends TypeDescriptor<T> {
+
+	private final List<ClassFieldDescriptor<T, Object>> fieldDescriptors;
+	private final MethodHandle creatorConstructor;
+	private final Object[] defaultArguments;
+
+	public ClassMappingDescriptor(Class<T> type, List<ClassFieldDescriptor<T, Object>> fieldDescriptors, Constructor<T> creatorConstructor) throws FieldDescriptionException {
+		super(type);
+		this.fieldDescriptors = Collections.unmodifiableList(fieldDescriptors);
+		if ( creatorConstructor == null ) {
+			this.creatorConstructor = null;
+			this.defaultArguments = null;
+		} else {
+			final Class<?>[] parameterTypes = creatorConstructor.getParameterTypes();
+			final int size = fieldDescriptors.size();
+			if ( parameterTypes.length != size ) {
+				throw new FieldDescriptionException("Constructor " + creatorConstructor + " should accept " + size + " arguments, one for every mapped field of " + type.getName());
+			}
+			this.defaultArguments = new Object[size];
+			for (int i = 0; i < size; i++) {
+				final ClassFieldDescriptor<T, Object> desc = fieldDescriptors.get(i);
+				if ( ! parameterTypes[i].isAssignableFrom(desc.getType()) ) {
+					throw new FieldDescriptionException("Argument " + i + " of the constructor " + creatorConstructor + " cannot accept the value of the field " + desc.getField());
+				}
+				defaultArguments[i] = parameterTypes[i].isPrimitive() ? DataType.primitiveDefaults.get(parameterTypes[i]) : null;
+			}
+			try {
+				if ( ! Modifier.isPublic(creatorConstructor.getModifiers()) || ! Modifier.isPublic(type.getModifiers()) ) {
+					creatorConstructor.setAccessible(true);
+				}
+				this.creatorConstructor = MethodHandles.lookup().unreflectConstructor(creatorConstructor)
+						.asSpreader(Object[].class, size)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+			} catch (Exception e) {
+				throw new FieldDescriptionException(e);
+			}
+		}
+	}
+
+	/**
+	 * Find the constructor, that should be used to create instances of the given class from the mapped field values
+	 * @param type mapped class
+	 * @return the constructor annotated with {@link DatabaseConstructor}, the canonical constructor of a record
+	 * or {@code null} if the instances should be created with the default constructor and filled using setters
+	 * @throws FieldDescriptionException if more then one constructor is annotated
+	 */
+	@SuppressWarnings("unchecked")
+	public static final <T> Constructor<T> findCreatorConstructor(Class<T> type) throws FieldDescriptionException {
+		Constructor<T> found = null;
+		for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+			if ( constructor.isAnnotationPresent(DatabaseConstructor.class) ) {
+				if ( found != null ) {
+					throw new FieldDescriptionException("Only one constructor of " + type.getName() + " can be annotated with @DatabaseConstructor");
+				}
+				found = (Constructor<T>) constructor;
+			}
+		}
+		if ( found == null ) {
+			found = findCanonicalRecordConstructor(type);
+		}
+		return found;
+	}
+
+	/**
+	 * Records are only available since Java 16, so they are recognized with reflection
+	 */
+	private static final <T> Constructor<T> findCanonicalRecordConstructor(Class<T> type) throws FieldDescriptionException {
+		final Object[] recordComponents;
+		try {
+			final Method isRecord = Class.class.getMethod("isRecord");
+			if ( ! Boolean.TRUE.equals(isRecord.invoke(type)) ) {
+				return null;
+			}
+			recordComponents = (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+		} catch (NoSuchMethodException e) {
+			// running on a JVM without record support
+			return null;
+		} catch (Exception e) {
+			throw new FieldDescriptionException(e);
+		}
+		try {
+			final Class<?>[] parameterTypes = new Class<?>[recordComponents.length];
+			for (int i = 0; i < recordComponents.length; i++) {
+				parameterTypes[i] = (Class<?>) recordComponents[i].getClass().getMethod("getType").invoke(recordComponents[i]);
+			}
+			return type.getDeclaredConstructor(parameterTypes);
+		} catch (Exception e) {
+			throw new FieldDescriptionException(e);
+		}
+	}
+
+	public List<ClassFieldDescriptor<T, Object>> getFieldDescriptors() {
+		return fieldDescriptors;
+	}
+
+	/**
+	 * @return true if the instances are created by passing all the field values to the constructor
+	 */
+	public boolean isConstructorBased() {
+		return creatorConstructor != null;
+	}
+
+	/**
+	 * @return new array to collect the constructor arguments, filled with the values to be used for the absent optional fields
+	 */
+	public Object[] newArguments() {
+		return defaultArguments.clone();
+	}
+
+	/**
+	 * Create an instance passing the given field values to the constructor
+	 * @param arguments values of the mapped fields in the order of {@link #getFieldDescriptors()}
+	 * @return new instance of the mapped class
+	 * @throws TypeInstantiationException
+	 * is thrown if it is not possible to create an instance
+	 * of the expected type
+	 */
+	@SuppressWarnings("unchecked")
+	public T newInstance(Object[] arguments) throws TypeInstantiationException {
+		if ( creatorConstructor == null ) {
+			throw new TypeInstantiationException(getType(), "no constructor accepting the mapped field values is defined");
+		}
+		try {
+			return (T) creatorConstructor.invokeExact(arguments);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			// exceptions thrown by the constructor
+			throw new TypeInstantiationException(getType(), e);
+		}
+	}
+}
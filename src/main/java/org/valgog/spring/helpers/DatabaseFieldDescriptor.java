@@ -18,18 +18,38 @@ public class DatabaseFieldDescriptor<C, T> extends ClassFieldDescriptor<C, T> {
 	final private String databaseFieldName;
 	final private int databaseFieldIndex;
 	final private EnumSet<MappingOption> options;
+	final private TypeConverter<Object, T> converter;
+	final private DataType extractionType;
+
+	private static final TypeConverterFactory DEFAULT_CONVERTER_FACTORY = new TypeConverterFactory();
 	
 	public DatabaseFieldDescriptor(Field classField, DataType databaseFieldType, String databaseFieldName, int databaseFieldIndex, Set<MappingOption> options) throws FieldDescriptionException {
-		super(classField);
+		this(classField, databaseFieldType, databaseFieldName, databaseFieldIndex, options, false, DEFAULT_CONVERTER_FACTORY);
+	}
+
+	/**
+	 * @param assignedByConstructor if true, the field value is passed to the constructor of the declaring class
+	 * @param converterFactory factory, used to resolve the converter of the database values into the field type
+	 */
+	public DatabaseFieldDescriptor(Field classField, DataType databaseFieldType, String databaseFieldName, int databaseFieldIndex, Set<MappingOption> options, boolean assignedByConstructor, TypeConverterFactory converterFactory) throws FieldDescriptionException {
+		super(classField, assignedByConstructor);
 		this.databaseFieldType = databaseFieldType;
 		this.databaseFieldName = databaseFieldName;
 		this.databaseFieldIndex = databaseFieldIndex;
 		this.options = EnumSet.copyOf(options);
+		this.converter = converterFactory.getFieldValueConverter(this, is(MappingOption.ALLOW_PRIMITIVE_DEFAULTS));
+		this.extractionType = converter instanceof TextValueConverter ? databaseFieldType.asText() : databaseFieldType;
 	}
 
 	public DataType getDatabaseFieldType(){
 		return databaseFieldType;
 	}
+	/**
+	 * @return data type, that should be actually used to extract the values of the field from a result set
+	 */
+	public DataType getExtractionType() {
+		return extractionType;
+	}
 	public String getDatabaseFieldName() {
 		return databaseFieldName;
 	}
@@ -39,5 +59,11 @@ public class DatabaseFieldDescriptor<C, T> extends ClassFieldDescriptor<C, T> {
 	public boolean is(MappingOption option) {
 		return options.contains(option);
 	}
+	/**
+	 * @return converter of the raw database values into the values of the field type
+	 */
+	public TypeConverter<Object, T> getConverter() {
+		return converter;
+	}
 	
 }
\ No newline at end of file
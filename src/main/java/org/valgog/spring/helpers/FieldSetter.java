@@ -0,0 +1,20 @@
+package org.valgog.spring.helpers;
+
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+/**
+ * Assigns values to one field of the objects of type {@code C}.
+ * <p>Instances are created by the {@link FieldSetterFactory}.
+ *
+ * @param <C> type of the object, holding the field
+ * @param <T> type of the field
+ */
+public interface FieldSetter<C, T> {
+	/**
+	 * Assign the given value to the field of the given object
+	 * @param objectInstance object, which field should be assigned
+	 * @param fieldValue value to be assigned
+	 * @throws FieldDescriptionException thrown if the value could not be assigned
+	 */
+	public void setFieldValue(C objectInstance, T fieldValue) throws FieldDescriptionException;
+}
@@ -0,0 +1,261 @@
+package org.valgog.spring.helpers;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+/**
+ * Creates {@link FieldSetter} instances for the class fields.
+ * <p>For the public setters of the public classes a dedicated setter class is generated
+ * with the {@link LambdaMetafactory}, so that every assignment is a direct call of the setter method,
+ * that can be inlined by the JIT compiler. Generated setters of primitive parameters are strictly typed,
+ * so values of other wrapper classes are passed to the reflective setter, that widens them (e.g. a {@link Short} to an {@code int}).
+ * Fields, that have no setters, are assigned using method handles, as well as the setters of the classes,
+ * that are not visible from the class loader of this factory (like the classes of a web application),
+ * as the generated setter classes could not resolve them.
+ * If none of them can be used, assignment falls back to the usual reflection.
+ *
+ * @author valgog
+ *
+ */
+public class FieldSetterFactory {
+
+	static final Logger logger = Logger.getLogger(FieldSetterFactory.class.getName());
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType SET_FIELD_VALUE_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType FACTORY_TYPE = MethodType.methodType(FieldSetter.class);
+
+	private FieldSetterFactory() {}
+
+	/**
+	 * Get the fastest available setter for the given field
+	 * @param field field to be assigned
+	 * @param setter setter method of the field or {@code null} if the field should be assigned directly
+	 * @return setter for the given field
+	 */
+	public static final <C, T> FieldSetter<C, T> getFieldSetter(Field field, Method setter) {
+		FieldSetter<C, T> fieldSetter = null;
+		if ( setter != null ) {
+			fieldSetter = generatedSetter(setter);
+			if ( fieldSetter == null ) {
+				fieldSetter = methodHandleSetter(setter);
+			}
+			final Class<?> parameterType = setter.getParameterTypes()[0];
+			if ( fieldSetter != null && parameterType.isPrimitive() ) {
+				fieldSetter = new WideningFieldSetter<C, T>(fieldSetter, box(parameterType), FieldSetterFactory.<C, T>reflectiveSetter(field, setter));
+			}
+		} else {
+			fieldSetter = methodHandleSetter(field);
+		}
+		if ( fieldSetter == null ) {
+			fieldSetter = reflectiveSetter(field, setter);
+		}
+		return fieldSetter;
+	}
+
+	/**
+	 * Generate a setter class calling the given setter method directly.
+	 * Values of primitive parameters should be of the exact wrapper class, no widening is done.
+	 * @param setter public setter method of a public class
+	 * @return generated setter or {@code null} if the setter class could not be generated for the given setter
+	 */
+	@SuppressWarnings("unchecked")
+	public static final <C, T> FieldSetter<C, T> generatedSetter(Method setter) {
+		final Class<?> declaringClass = setter.getDeclaringClass();
+		if ( ! Modifier.isPublic(setter.getModifiers()) || ! isAccessible(declaringClass) ) {
+			return null;
+		}
+		if ( ! isVisible(declaringClass) ) {
+			if ( logger.isLoggable(Level.FINE) ) {
+				logger.fine("Setter class for " + declaringClass.getName() + '.' + setter.getName() + " is not generated, as the class is not visible from the class loader of " + FieldSetterFactory.class.getName());
+			}
+			return null;
+		}
+		try {
+			final MethodHandle setterHandle = LOOKUP.unreflect(setter);
+			final Class<?> parameterType = setter.getParameterTypes()[0];
+			final MethodType instantiatedType = MethodType.methodType(void.class, declaringClass, box(parameterType));
+			final CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "setFieldValue", FACTORY_TYPE, SET_FIELD_VALUE_TYPE, setterHandle, instantiatedType);
+			return (FieldSetter<C, T>) callSite.getTarget().invoke();
+		} catch (Throwable e) {
+			if ( logger.isLoggable(Level.FINE) ) {
+				logger.log(Level.FINE, "Could not generate setter class for " + declaringClass.getName() + '.' + setter.getName(), e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Create a setter calling the given setter method through a method handle.
+	 * Values of primitive parameters should be of the exact wrapper class, no widening is done.
+	 * @param setter public setter method of a public class
+	 * @return setter or {@code null} if the method handle could not be created for the given setter
+	 */
+	public static final <C, T> FieldSetter<C, T> methodHandleSetter(Method setter) {
+		if ( ! Modifier.isPublic(setter.getModifiers()) || ! isAccessible(setter.getDeclaringClass()) ) {
+			return null;
+		}
+		try {
+			final Class<?> parameterType = setter.getParameterTypes()[0];
+			final MethodType exactType = MethodType.methodType(void.class, Object.class, box(parameterType));
+			final MethodHandle setterHandle = LOOKUP.unreflect(setter).asType(exactType).asType(SET_FIELD_VALUE_TYPE);
+			return new MethodHandleFieldSetter<C, T>(setterHandle);
+		} catch (Exception e) {
+			if ( logger.isLoggable(Level.FINE) ) {
+				logger.log(Level.FINE, "Could not create method handle for " + setter.getDeclaringClass().getName() + '.' + setter.getName(), e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Create a setter assigning the given field through a method handle
+	 * @param field field to be assigned
+	 * @return setter or {@code null} if the method handle could not be created for the given field
+	 */
+	public static final <C, T> FieldSetter<C, T> methodHandleSetter(Field field) {
+		if ( Modifier.isFinal(field.getModifiers()) ) {
+			return null;
+		}
+		try {
+			if ( ! Modifier.isPublic(field.getModifiers()) || ! isAccessible(field.getDeclaringClass()) ) {
+				field.setAccessible(true);
+			}
+			final MethodHandle setterHandle = LOOKUP.unreflectSetter(field).asType(SET_FIELD_VALUE_TYPE);
+			return new MethodHandleFieldSetter<C, T>(setterHandle);
+		} catch (Exception e) {
+			if ( logger.isLoggable(Level.FINE) ) {
+				logger.log(Level.FINE, "Could not create method handle for " + field.getDeclaringClass().getName() + '.' + field.getName(), e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Create a setter assigning the given field with reflection
+	 * @param field field to be assigned
+	 * @param setter setter method of the field or {@code null} if the field should be assigned directly
+	 * @return reflective setter
+	 */
+	public static final <C, T> FieldSetter<C, T> reflectiveSetter(Field field, Method setter) {
+		return new ReflectiveFieldSetter<C, T>(field, setter);
+	}
+
+	private static final boolean isAccessible(Class<?> type) {
+		for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+			if ( ! Modifier.isPublic(c.getModifiers()) ) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Generated setter classes are resolving the mapped class by name,
+	 * so the mapped class should be visible from the class loader of this factory
+	 */
+	private static final boolean isVisible(Class<?> type) {
+		try {
+			return Class.forName(type.getName(), false, FieldSetterFactory.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	private static final Class<?> box(Class<?> type) {
+		if ( ! type.isPrimitive() ) return type;
+		if ( type == Integer.TYPE ) return Integer.class;
+		if ( type == Long.TYPE ) return Long.class;
+		if ( type == Boolean.TYPE ) return Boolean.class;
+		if ( type == Double.TYPE ) return Double.class;
+		if ( type == Float.TYPE ) return Float.class;
+		if ( type == Short.TYPE ) return Short.class;
+		if ( type == Byte.TYPE ) return Byte.class;
+		if ( type == Character.TYPE ) return Character.class;
+		throw new IllegalArgumentException("Unexpected primitive type " + type.getName());
+	}
+
+	private static final class MethodHandleFieldSetter<C, T> implements FieldSetter<C, T> {
+		private final MethodHandle setterHandle;
+
+		MethodHandleFieldSetter(MethodHandle setterHandle) {
+			this.setterHandle = setterHandle;
+		}
+
+		@Override
+		public void setFieldValue(C objectInstance, T fieldValue) throws FieldDescriptionException {
+			try {
+				setterHandle.invokeExact((Object) objectInstance, (Object) fieldValue);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new FieldDescriptionException(new InvocationTargetException(e));
+			}
+		}
+	}
+
+	/**
+	 * Passes the values of the exact wrapper class of the primitive parameter to the generated (or the method handle) setter 
+	 * and the values of the other classes to the reflective setter to be widened.
+	 */
+	private static final class WideningFieldSetter<C, T> implements FieldSetter<C, T> {
+		private final FieldSetter<C, T> generatedSetter;
+		private final Class<?> parameterWrapperType;
+		private final FieldSetter<C, T> reflectiveSetter;
+
+		WideningFieldSetter(FieldSetter<C, T> generatedSetter, Class<?> parameterWrapperType, FieldSetter<C, T> reflectiveSetter) {
+			this.generatedSetter = generatedSetter;
+			this.parameterWrapperType = parameterWrapperType;
+			this.reflectiveSetter = reflectiveSetter;
+		}
+
+		@Override
+		public void setFieldValue(C objectInstance, T fieldValue) throws FieldDescriptionException {
+			if ( fieldValue == null || fieldValue.getClass() == parameterWrapperType ) {
+				generatedSetter.setFieldValue(objectInstance, fieldValue);
+			} else {
+				reflectiveSetter.setFieldValue(objectInstance, fieldValue);
+			}
+		}
+	}
+
+	private static final class ReflectiveFieldSetter<C, T> implements FieldSetter<C, T> {
+		private final Field classField;
+		private final Method classFieldSetter;
+
+		ReflectiveFieldSetter(Field classField, Method classFieldSetter) {
+			this.classField = classField;
+			this.classFieldSetter = classFieldSetter;
+		}
+
+		@Override
+		public void setFieldValue(C objectInstance, T fieldValue) throws FieldDescriptionException {
+			try {
+				if ( this.classFieldSetter != null ) {
+					this.classFieldSetter.invoke(objectInstance, fieldValue);
+				} else {
+					this.classField.set(objectInstance, fieldValue);
+				}
+			} catch (IllegalArgumentException e) {
+				throw new FieldDescriptionException(e);
+			} catch (IllegalAccessException e) {
+				throw new FieldDescriptionException(e);
+			} catch (InvocationTargetException e) {
+				throw new FieldDescriptionException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package org.valgog.spring.helpers;
+
+import org.postgresql.util.PGobject;
+
+/**
+ * Path, that the conversion of a raw column value into the value of the mapped field takes.
+ * <p>The path is counted by the branch of the field value converter, that converts the value
+ * (see {@link PathConverter#convertFrom(Object, MappingPathCounter)}), so a field, that is read as an ARRAY from one
+ * result set and as text from another one, counts its values under both paths.
+ *
+ * @author valgog
+ */
+public enum MappingPath {
+	/**
+	 * NULL value
+	 */
+	NULL,
+	/**
+	 * Value of the field type, assigned as is (or its text, if the field is a String)
+	 */
+	DIRECT,
+	/**
+	 * Number of another class, converted into the field type if it is not truncated
+	 */
+	NUMBER,
+	/**
+	 * Text, parsed into the field type (numbers, ARRAYs, ROWs or hstore values sent as text)
+	 */
+	TEXT,
+	/**
+	 * {@link PGobject}, which text is parsed as an ARRAY, a ROW or an hstore value
+	 */
+	PG_OBJECT,
+	/**
+	 * {@link java.sql.Array} or object array, converted element by element
+	 */
+	ARRAY,
+	/**
+	 * ARRAY or ROW value, decoded from its binary representation
+	 */
+	BINARY,
+	/**
+	 * Value of any other class, converted by the reflective constructor fallback
+	 */
+	CONSTRUCTOR
+}
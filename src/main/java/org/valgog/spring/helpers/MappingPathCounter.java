@@ -0,0 +1,23 @@
+package org.valgog.spring.helpers;
+
+/**
+ * Counter of the {@link MappingPath}s, that the conversions of the field values take
+ *
+ * @author valgog
+ */
+public interface MappingPathCounter {
+
+	/**
+	 * Counter, that does not count anything
+	 */
+	MappingPathCounter NONE = new MappingPathCounter() {
+		@Override
+		public void countPath(MappingPath path) {
+		}
+	};
+
+	/**
+	 * Count a value converted by the given path
+	 */
+	void countPath(MappingPath path);
+}
@@ -0,0 +1,18 @@
+package org.valgog.spring.helpers;
+
+import org.valgog.spring.helpers.exceptions.NotConvertable;
+
+/**
+ * Field value converter, that counts the {@link MappingPath} every conversion takes.
+ * <p>Field values converted with other converters are counted as {@link MappingPath#NULL} or {@link MappingPath#DIRECT}
+ * (see {@link TypeConverterFactory#convertFrom(TypeConverter, Object, MappingPathCounter)}).
+ *
+ * @param <D> type of the converted values
+ */
+public interface PathConverter<D> extends TypeConverter<Object, D> {
+	/**
+	 * Convert the given value, counting the path of the conversion with the given counter.
+	 * Only the path of the value itself is counted, not the paths of its elements.
+	 */
+	D convertFrom(Object sourceValue, MappingPathCounter counter) throws NotConvertable;
+}
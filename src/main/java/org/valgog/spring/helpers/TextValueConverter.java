@@ -0,0 +1,12 @@
+package org.valgog.spring.helpers;
+
+/**
+ * Marker of the field value converters, that decode the text representation of the database values directly.
+ * <p>Values converted with such converters are better extracted from the result set as text,
+ * instead of letting the driver create {@link java.sql.Array} or {@link org.postgresql.util.PGobject} 
+ * instances for them first.
+ *
+ * @param <D> type of the converted values
+ */
+public interface TextValueConverter<D> extends TypeConverter<Object, D> {
+}
@@ -1,22 +1,586 @@
 package org.valgog.spring.helpers;
 
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
+import org.postgresql.util.PGobject;
+import org.valgog.spring.annotations.DataType;
 import org.valgog.spring.helpers.exceptions.NotConvertable;
+import org.valgog.utils.PostgresBinaryReader;
+import org.valgog.utils.PostgresElementCursor;
+import org.valgog.utils.PostgresUtils;
+import org.valgog.utils.PrimitiveArrayParser;
+import org.valgog.utils.exceptions.ArrayParserException;
+import org.valgog.utils.exceptions.ParserException;
+import org.valgog.utils.exceptions.RowParserException;
+import org.valgog.utils.postgres.HStore;
 
+/**
+ * Creates {@link TypeConverter} instances.
+ * <p>Field value converters, returned by {@link #getFieldValueConverter(TypeDescriptor, boolean)}, are resolved 
+ * once for every mapped field, so that the decision about how to convert a raw database value into the field type 
+ * is taken only once and converting a value is a single call.
+ * <p>The factory itself does not know how to create mapped objects from ROW values. 
+ * Subclasses should override {@link #getRowTypeConverter(Class)} to support that.
+ */
 public class TypeConverterFactory {
 
 	public <D> TypeConverter<String, D> getFromStringTypeConverter(Class<D> destinationType) {
 		return getTypeConverter(String.class, destinationType );
 	}
 	
+	/**
+	 * Get a simple converter between the given types
+	 * @param sourceType type of the source values
+	 * @param destinationType type of the converted values
+	 * @return converter or {@code null} if there is no registered converter for the given types
+	 */
+	@SuppressWarnings("unchecked")
 	public <S, D> TypeConverter<S, D> getTypeConverter(Class<S> sourceType, Class<D> destinationType) {
 		// lookup the converter in the simple converter registry
+		if ( String.class.equals(sourceType) ) {
+			final TypeConverter<String, ?> converter = prefilledFromStringConerterRegistry.get(destinationType);
+			if ( converter != null ) {
+				return (TypeConverter<S, D>) converter;
+			}
+		}
+		if ( boxed(destinationType).isAssignableFrom(sourceType) ) {
+			return (TypeConverter<S, D>) IDENTITY_CONVERTER;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the converter of the raw database values (as extracted from a ResultSet or from a ROW or ARRAY string representation)
+	 * into the values of the described type.
+	 * @param typeDesc descriptor of the expected type
+	 * @param allowPrimitiveDefaults if true, use default primitive values instead of null values
+	 * @return converter into the expected type
+	 */
+	@SuppressWarnings("unchecked")
+	public <D> TypeConverter<Object, D> getFieldValueConverter(TypeDescriptor<D> typeDesc, boolean allowPrimitiveDefaults) {
+		final Class<D> expectedType = typeDesc.getType();
+		final TypeConverter<String, D> fromStringConverter = (TypeConverter<String, D>) prefilledFromStringConerterRegistry.get(expectedType);
+		if ( fromStringConverter != null ) {
+			return new ScalarConverter<D>(expectedType, allowPrimitiveDefaults, fromStringConverter);
+		}
+		if ( expectedType.isAssignableFrom(String.class) && ! Object.class.equals(expectedType) ) {
+			return (TypeConverter<Object, D>) new StringConverter(expectedType);
+		}
+		final Class<Object> componentType = typeDesc.getComponentType();
+		if ( PrimitiveArrayConverter.isSupported(expectedType) ) {
+			final TypeConverter<Object, Object> elementConverter = getFieldValueConverter(new TypeDescriptor<Object>(componentType), allowPrimitiveDefaults);
+			return new PrimitiveArrayConverter<D>(expectedType, allowPrimitiveDefaults, elementConverter);
+		}
+		if ( componentType != null ) {
+			final TypeConverter<Object, Object> elementConverter = getFieldValueConverter(new TypeDescriptor<Object>(componentType), allowPrimitiveDefaults);
+			return new ContainerConverter<D>(typeDesc, componentType, elementConverter);
+		}
+		if ( Map.class.isAssignableFrom(expectedType) ) {
+			return new HStoreMapConverter<D>(typeDesc);
+		}
+		return new CompositeConverter<D>(expectedType, getRowTypeConverter(expectedType));
+	}
+
+	/**
+	 * Get the converter creating objects of the given type from the list of string representations of the ROW fields.
+	 * @param destinationType type of the objects to be created
+	 * @return converter or {@code null} if ROW values cannot be converted into the given type
+	 */
+	protected <D> TypeConverter<List<String>, D> getRowTypeConverter(Class<D> destinationType) {
 		return null;
 	}
 
+	private static final Class<?> boxed(Class<?> type) {
+		if ( type.isPrimitive() ) {
+			return DataType.primitiveDefaults.get(type).getClass();
+		}
+		return type;
+	}
+
+	/**
+	 * Convert the given value with the given field value converter, counting the path of the conversion with the given counter
+	 */
+	public static final <D> D convertFrom(TypeConverter<Object, D> converter, Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+		if ( converter instanceof PathConverter ) {
+			return ((PathConverter<D>) converter).convertFrom(sourceValue, counter);
+		}
+		counter.countPath(sourceValue == null ? MappingPath.NULL : MappingPath.DIRECT);
+		return converter.convertFrom(sourceValue);
+	}
+
+	private static final TypeConverter<Object, Object> IDENTITY_CONVERTER = new TypeConverter<Object, Object>() {
+		@Override
+		public Object convertFrom(Object sourceValue) throws NotConvertable {
+			return sourceValue;
+		}
+	};
+
+	// Field value converters
+
+	/**
+	 * Base class of the field value converters, taking care of the null values 
+	 * and of the values, that are already of the expected type.
+	 * <p>The subclasses count the path of the branch, that converts a value, with the counter passed to {@link #convertNotNull(Object, MappingPathCounter)}.
+	 */
+	static abstract class FieldValueConverter<D> implements PathConverter<D> {
+		protected final Class<D> expectedType;
+		protected final Class<?> instanceType;
+		private final boolean nullAllowed;
+		private final D nullValue;
+
+		@SuppressWarnings("unchecked")
+		FieldValueConverter(Class<D> expectedType, boolean allowPrimitiveDefaults) {
+			this.expectedType = expectedType;
+			this.instanceType = boxed(expectedType);
+			// primitive types cannot be null, we have to rewrite the value to it's default if allowed
+			this.nullAllowed = ! expectedType.isPrimitive() || allowPrimitiveDefaults;
+			this.nullValue = expectedType.isPrimitive() ? (D) DataType.primitiveDefaults.get(expectedType) : null;
+		}
+
+		@Override
+		public final D convertFrom(Object sourceValue) throws NotConvertable {
+			return convertFrom(sourceValue, MappingPathCounter.NONE);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public final D convertFrom(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			if ( sourceValue == null ) {
+				counter.countPath(MappingPath.NULL);
+				if ( nullAllowed ) {
+					return nullValue;
+				}
+				throw new NotConvertable("NULL value is not possible when filling a primitive type " + expectedType.getName() + ", if NULL values are needed, try to use not primitive wrapper classes as field types" );
+			}
+			if ( instanceType.isInstance(sourceValue) ) {
+				// in normal case we should always get here
+				counter.countPath(MappingPath.DIRECT);
+				return (D) sourceValue;
+			}
+			return convertNotNull(sourceValue, counter);
+		}
+
+		/**
+		 * Convert not null value, that is not an instance of the expected type, counting the path of the conversion
+		 */
+		abstract D convertNotNull(Object sourceValue, MappingPathCounter counter) throws NotConvertable;
+
+		/**
+		 * Last resort: try to find a constructor, that will accept the given value (for example Integer(int) )
+		 */
+		protected final D convertWithConstructor(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			counter.countPath(MappingPath.CONSTRUCTOR);
+			try {
+				Constructor<D> expectedTypeConstructor = expectedType.getDeclaredConstructor(sourceValue.getClass());
+				return expectedTypeConstructor.newInstance(sourceValue);
+			} catch (Exception ignore) {
+				throw new NotConvertable( String.format( "Can not map recieved object of type %s to expected type %s", sourceValue.getClass().getCanonicalName(), expectedType.getCanonicalName()));
+			}
+		}
+	}
+
+	/**
+	 * Converts into primitive types and their wrappers. Numbers of other types are only converted,
+	 * if their values are not truncated (see {@link TypeConverterFactory#exactLongValue(Number, long, long)})
+	 */
+	private static final class ScalarConverter<D> extends FieldValueConverter<D> {
+		private final TypeConverter<String, D> fromStringConverter;
+		private final boolean numeric;
+
+		ScalarConverter(Class<D> expectedType, boolean allowPrimitiveDefaults, TypeConverter<String, D> fromStringConverter) {
+			super(expectedType, allowPrimitiveDefaults);
+			this.fromStringConverter = fromStringConverter;
+			this.numeric = Number.class.isAssignableFrom(instanceType);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		D convertNotNull(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			if ( numeric && sourceValue instanceof Number ) {
+				counter.countPath(MappingPath.NUMBER);
+				final Number n = (Number) sourceValue;
+				if ( instanceType == Integer.class ) return (D) Integer.valueOf((int) exactLongValue(n, Integer.MIN_VALUE, Integer.MAX_VALUE));
+				if ( instanceType == Long.class ) return (D) Long.valueOf(exactLongValue(n, Long.MIN_VALUE, Long.MAX_VALUE));
+				if ( instanceType == Short.class ) return (D) Short.valueOf((short) exactLongValue(n, Short.MIN_VALUE, Short.MAX_VALUE));
+				if ( instanceType == Byte.class ) return (D) Byte.valueOf((byte) exactLongValue(n, Byte.MIN_VALUE, Byte.MAX_VALUE));
+				if ( instanceType == Double.class ) return (D) Double.valueOf(finiteDoubleValue(n));
+				if ( instanceType == Float.class ) return (D) Float.valueOf(finiteFloatValue(n));
+			}
+			if ( sourceValue instanceof CharSequence ) {
+				counter.countPath(MappingPath.TEXT);
+				return fromStringConverter.convertFrom(sourceValue.toString());
+			}
+			return convertWithConstructor(sourceValue, counter);
+		}
+	}
+
+	/**
+	 * Integral values are only converted into the integral types, if they fit into their range,
+	 * values with a fraction are not converted into the integral types at all
+	 * @return value of the given number, if it is an integral value between the given bounds
+	 * @throws NotConvertable if the value would be truncated or would overflow
+	 */
+	static final long exactLongValue(Number n, long min, long max) throws NotConvertable {
+		final long value;
+		if ( n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte ) {
+			value = n.longValue();
+		} else if ( n instanceof Double || n instanceof Float ) {
+			final double d = n.doubleValue();
+			if ( d != Math.rint(d) || d < -0x1p63 || d >= 0x1p63 ) {
+				throw notExact(n, min, max);
+			}
+			value = (long) d;
+		} else {
+			try {
+				final BigDecimal decimal = n instanceof BigDecimal ? (BigDecimal) n : n instanceof BigInteger ? new BigDecimal((BigInteger) n) : new BigDecimal(n.toString());
+				value = decimal.longValueExact();
+			} catch (ArithmeticException e) {
+				throw notExact(n, min, max);
+			} catch (NumberFormatException e) {
+				throw notExact(n, min, max);
+			}
+		}
+		if ( value < min || value > max ) {
+			throw notExact(n, min, max);
+		}
+		return value;
+	}
+
+	private static final NotConvertable notExact(Number n, long min, long max) {
+		return new NotConvertable(String.format("Could not convert %s value %s to an integral value between %d and %d without truncating it",
+				n.getClass().getSimpleName(), n, min, max));
+	}
+
+	/**
+	 * Values are rounded to the nearest floating point value, but not converted, if they are out of the range of the floating point type
+	 * @throws NotConvertable if the finite value would overflow into an infinity
+	 */
+	static final double finiteDoubleValue(Number n) throws NotConvertable {
+		final double value = n.doubleValue();
+		if ( Double.isInfinite(value) && ! isInfinite(n) ) {
+			throw new NotConvertable(String.format("Could not convert %s value %s to double, it is out of range", n.getClass().getSimpleName(), n));
+		}
+		return value;
+	}
+
+	/**
+	 * @see #finiteDoubleValue(Number)
+	 */
+	static final float finiteFloatValue(Number n) throws NotConvertable {
+		final float value = n.floatValue();
+		if ( Float.isInfinite(value) && ! isInfinite(n) ) {
+			throw new NotConvertable(String.format("Could not convert %s value %s to float, it is out of range", n.getClass().getSimpleName(), n));
+		}
+		return value;
+	}
+
+	private static final boolean isInfinite(Number n) {
+		return ( n instanceof Double || n instanceof Float ) && Double.isInfinite(n.doubleValue());
+	}
+
+	/**
+	 * Converts into String (or the types, String can be assigned to)
+	 */
+	private static final class StringConverter extends FieldValueConverter<Object> {
+		@SuppressWarnings("unchecked")
+		StringConverter(Class<?> expectedType) {
+			super((Class<Object>) expectedType, false);
+		}
+
+		@Override
+		Object convertNotNull(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			counter.countPath(MappingPath.DIRECT);
+			return sourceValue.toString();
+		}
+	}
+
+	/**
+	 * Converts into arrays and collections, converting every element with the element converter
+	 */
+	private static final class ContainerConverter<D> extends FieldValueConverter<D> {
+		private final TypeDescriptor<D> typeDesc;
+		private final Class<Object> componentType;
+		private final TypeConverter<Object, Object> elementConverter;
+
+		ContainerConverter(TypeDescriptor<D> typeDesc, Class<Object> componentType, TypeConverter<Object, Object> elementConverter) {
+			super(typeDesc.getType(), false);
+			this.typeDesc = typeDesc;
+			this.componentType = componentType;
+			this.elementConverter = elementConverter;
+		}
+
+		@Override
+		D convertNotNull(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			final ArrayList<Object> resultList;
+			if ( sourceValue instanceof Object[] ) {
+				counter.countPath(MappingPath.ARRAY);
+				// rewrite it's components into the expectedType components
+				final Object[] originalArray = (Object[]) sourceValue;
+				resultList = new ArrayList<Object>(originalArray.length);
+				for (int i = 0; i < originalArray.length; i++) {
+					resultList.add(elementConverter.convertFrom(originalArray[i]));
+				}
+			} else if ( sourceValue instanceof java.sql.Array ) {
+				counter.countPath(MappingPath.ARRAY);
+				// extract JDBC Array and convert it into the expected type
+				resultList = new ArrayList<Object>();
+				try {
+					final ResultSet ars = ((java.sql.Array) sourceValue).getResultSet();
+					try {
+						while( ars.next() ) {
+							resultList.add(elementConverter.convertFrom(ars.getObject(2)));
+						}
+					} finally {
+						ars.close();
+					}
+				} catch (SQLException e) {
+					throw new NotConvertable(e.getMessage(), e);
+				}
+			} else if ( sourceValue instanceof CharSequence || sourceValue instanceof PGobject ) {
+				counter.countPath(sourceValue instanceof PGobject ? MappingPath.PG_OBJECT : MappingPath.TEXT);
+				final CharSequence stringValue = sourceValue instanceof PGobject ? ((PGobject) sourceValue).getValue() : (CharSequence) sourceValue;
+				// try to extract the string value as if it were PostgreSQL serialized list
+				try {
+					// a new cursor is needed, as converting elements can parse nested values
+					final PostgresElementCursor<ArrayParserException> cursor = PostgresElementCursor.arrayCursor().reset(stringValue);
+					resultList = new ArrayList<Object>();
+					while ( cursor.next() ) {
+						resultList.add(elementConverter.convertFrom(cursor.stringValue()));
+					}
+				} catch (ArrayParserException e) {
+					throw new NotConvertable(
+							String.format("Could not convert string [%s] to expected array or collection of type %s",
+									stringValue, componentType.getCanonicalName()),
+							e);
+				}
+			} else {
+				throw new NotConvertable(
+						String.format("Could not convert value of type %s to expected array or collection of type %s",
+								sourceValue.getClass().getCanonicalName(), componentType.getCanonicalName())
+						);
+			}
+			return toExpectedContainer(resultList);
+		}
+
+		/**
+		 * we extracted the value, so if we need an array, return it, if we need a collection, populate it and return it
+		 */
+		@SuppressWarnings("unchecked")
+		private D toExpectedContainer(ArrayList<Object> resultList) throws NotConvertable {
+			if ( expectedType.isArray() ) {
+				final int size = resultList.size();
+				final Object newArray = java.lang.reflect.Array.newInstance(componentType, size);
+				for (int i = 0; i < size; i++ ) {
+					java.lang.reflect.Array.set(newArray, i, resultList.get(i));
+				}
+				return (D) newArray;
+			} else if ( expectedType.isAssignableFrom(ArrayList.class) ) {
+				// special case optimization here, probably covering most of the use-cases
+				return (D) resultList;
+			} else if ( expectedType.isAssignableFrom(HashSet.class) ) {
+				return (D) new HashSet<Object>(resultList);
+			} else {
+				// general use-case
+				try {
+					final Collection<Object> newExpectedList = (Collection<Object>) typeDesc.newInstance();
+					newExpectedList.addAll(resultList);
+					return (D) newExpectedList;
+				} catch (SQLException e) {
+					throw new NotConvertable(e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts into {@code int[]}, {@code long[]}, {@code double[]} and {@code boolean[]}. 
+	 * Array string representations are parsed directly into the primitive arrays, without boxing the elements.
+	 */
+	private static final class PrimitiveArrayConverter<D> extends FieldValueConverter<D> implements TextValueConverter<D> {
+		private final Class<?> componentType;
+		private final boolean nullsAsDefaults;
+		private final TypeConverter<Object, Object> elementConverter;
+
+		PrimitiveArrayConverter(Class<D> expectedType, boolean allowPrimitiveDefaults, TypeConverter<Object, Object> elementConverter) {
+			super(expectedType, false);
+			this.componentType = expectedType.getComponentType();
+			this.nullsAsDefaults = allowPrimitiveDefaults;
+			this.elementConverter = elementConverter;
+		}
+
+		static boolean isSupported(Class<?> type) {
+			return type == int[].class || type == long[].class || type == double[].class || type == boolean[].class;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		D convertNotNull(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			if ( sourceValue instanceof CharSequence || sourceValue instanceof PGobject ) {
+				counter.countPath(sourceValue instanceof PGobject ? MappingPath.PG_OBJECT : MappingPath.TEXT);
+				final CharSequence stringValue = sourceValue instanceof PGobject ? ((PGobject) sourceValue).getValue() : (CharSequence) sourceValue;
+				try {
+					if ( componentType == int.class ) return (D) PrimitiveArrayParser.parseIntArray(stringValue, nullsAsDefaults);
+					if ( componentType == long.class ) return (D) PrimitiveArrayParser.parseLongArray(stringValue, nullsAsDefaults);
+					if ( componentType == double.class ) return (D) PrimitiveArrayParser.parseDoubleArray(stringValue, nullsAsDefaults);
+					return (D) PrimitiveArrayParser.parseBooleanArray(stringValue, nullsAsDefaults);
+				} catch (ArrayParserException e) {
+					throw new NotConvertable(
+							String.format("Could not convert string [%s] to expected array of type %s",
+									stringValue, componentType.getName()),
+							e);
+				}
+			}
+			if ( sourceValue instanceof byte[] ) {
+				counter.countPath(MappingPath.BINARY);
+				// binary representation of the ARRAY value
+				final PostgresBinaryReader reader = new PostgresBinaryReader((byte[]) sourceValue);
+				try {
+					final Object array;
+					if ( componentType == int.class ) array = reader.readIntArray(nullsAsDefaults);
+					else if ( componentType == long.class ) array = reader.readLongArray(nullsAsDefaults);
+					else if ( componentType == double.class ) array = reader.readDoubleArray(nullsAsDefaults);
+					else array = reader.readBooleanArray(nullsAsDefaults);
+					reader.finish();
+					return (D) array;
+				} catch (ParserException e) {
+					throw new NotConvertable(
+							String.format("Could not convert binary value to expected array of type %s", componentType.getName()),
+							e);
+				}
+			}
+			if ( sourceValue instanceof java.sql.Array || sourceValue instanceof Object[] ) {
+				counter.countPath(MappingPath.ARRAY);
+			}
+			Object elements = sourceValue;
+			if ( sourceValue instanceof java.sql.Array ) {
+				try {
+					elements = ((java.sql.Array) sourceValue).getArray();
+				} catch (SQLException e) {
+					throw new NotConvertable(e.getMessage(), e);
+				}
+				if ( instanceType.isInstance(elements) ) {
+					return (D) elements;
+				}
+			}
+			if ( elements instanceof Object[] ) {
+				// the elements are already boxed, so just unbox them into the primitive array
+				final Object[] originalArray = (Object[]) elements;
+				final int size = originalArray.length;
+				final Object newArray = java.lang.reflect.Array.newInstance(componentType, size);
+				for (int i = 0; i < size; i++) {
+					final Object element = elementConverter.convertFrom(originalArray[i]);
+					if ( componentType == int.class ) {
+						((int[]) newArray)[i] = ((Integer) element).intValue();
+					} else if ( componentType == long.class ) {
+						((long[]) newArray)[i] = ((Long) element).longValue();
+					} else if ( componentType == double.class ) {
+						((double[]) newArray)[i] = ((Double) element).doubleValue();
+					} else {
+						((boolean[]) newArray)[i] = ((Boolean) element).booleanValue();
+					}
+				}
+				return (D) newArray;
+			}
+			throw new NotConvertable(
+					String.format("Could not convert value of type %s to expected array of type %s",
+							sourceValue.getClass().getCanonicalName(), componentType.getName())
+					);
+		}
+	}
+
+	/**
+	 * Converts hstore values into maps
+	 */
+	private static final class HStoreMapConverter<D> extends FieldValueConverter<D> {
+		private final TypeDescriptor<D> typeDesc;
+
+		HStoreMapConverter(TypeDescriptor<D> typeDesc) {
+			super(typeDesc.getType(), false);
+			this.typeDesc = typeDesc;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		D convertNotNull(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			if ( ! ( sourceValue instanceof CharSequence || sourceValue instanceof PGobject ) ) {
+				return convertWithConstructor(sourceValue, counter);
+			}
+			counter.countPath(sourceValue instanceof PGobject ? MappingPath.PG_OBJECT : MappingPath.TEXT);
+			final HStore hstore = sourceValue instanceof HStore ? (HStore) sourceValue : new HStore(sourceValue instanceof PGobject ? ((PGobject) sourceValue).getValue() : sourceValue.toString());
+			final Map<String, String> map;
+			try {
+				map = hstore.asMap();
+			} catch (IllegalStateException e) {
+				throw new NotConvertable("Could not parse hstore value: " + hstore.getValue(), e);
+			}
+			if ( expectedType.isInstance(map) ) {
+				return (D) map;
+			}
+			try {
+				final Map<String, String> newExpectedMap = (Map<String, String>) typeDesc.newInstance();
+				newExpectedMap.putAll(map);
+				return (D) newExpectedMap;
+			} catch (SQLException e) {
+				throw new NotConvertable(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Converts ROW values into mapped objects. As field names are not available for abstract ROWs,
+	 * the fields are mapped using field indexes.
+	 */
+	private static final class CompositeConverter<D> extends FieldValueConverter<D> {
+		private final TypeConverter<List<String>, D> rowConverter;
+
+		CompositeConverter(Class<D> expectedType, TypeConverter<List<String>, D> rowConverter) {
+			super(expectedType, false);
+			this.rowConverter = rowConverter;
+		}
+
+		@Override
+		D convertNotNull(Object sourceValue, MappingPathCounter counter) throws NotConvertable {
+			final String stringValue;
+			if ( sourceValue instanceof PGobject ) {
+				counter.countPath(MappingPath.PG_OBJECT);
+				// this should be probably a ROW type, that we will try to map to some expected type
+				stringValue = ((PGobject) sourceValue).getValue();
+			} else if ( sourceValue instanceof CharSequence ) {
+				counter.countPath(MappingPath.TEXT);
+				stringValue = sourceValue.toString();
+			} else {
+				return convertWithConstructor(sourceValue, counter);
+			}
+			if ( rowConverter == null ) {
+				throw new NotConvertable(String.format("Could not convert recieved string [%s] into expected class %s, as ROW values are not supported",
+						stringValue, expectedType.getCanonicalName()));
+			}
+			try {
+				// split the received ROW string to array of string representations of the field components
+				// and try to assign them to the expected type fields (using filed declaration index)
+				final List<String> elementList = PostgresUtils.postgresROW2StringList(stringValue, 128);
+				return rowConverter.convertFrom(elementList);
+			} catch (RowParserException e) {
+				throw new NotConvertable(
+						String.format("Could not convert recieved string [%s] into expected class %s",
+								stringValue, expectedType.getCanonicalName()), 
+						e);
+			}
+		}
+	}
+
 	// Helper classes
 	static class NullConverter<D> implements TypeConverter<Object, D> {
 		@Override
@@ -39,8 +603,14 @@ public class TypeConverterFactory {
 	private static class BooleanConverter implements TypeConverter<String, Boolean>, NeedsDefaultForNullValue<Boolean> {
 		@Override
 		public Boolean convertFrom(String sourceValue) throws NotConvertable {
-			// TODO implement more possibilities for boolean input values
-			return Boolean.valueOf(sourceValue);
+			final String b = sourceValue.trim().toLowerCase(Locale.US);
+			if ( b.equals("true") || b.equals("t") || b.equals("1") || b.equals("yes") || b.equals("y") || b.equals("on") ) {
+				return Boolean.TRUE;
+			} else if ( b.equals("false") || b.equals("f") || b.equals("0") || b.equals("no") || b.equals("n") || b.equals("off") ) {
+				return Boolean.FALSE;
+			} else {
+				throw new NotConvertable( String.format("Could not convert given string %s to Boolean", sourceValue) );
+			}
 		}
 
 		@Override
@@ -54,7 +624,7 @@ public class TypeConverterFactory {
 		@Override
 		public Character convertFrom(String sourceValue) throws NotConvertable {
 			if ( sourceValue == null ) return null;
-			if ( sourceValue.length() != 1 ) throw new NotConvertable("Source string for char should be 1 char long");
+			if ( sourceValue.length() == 0 ) throw new NotConvertable("Source string for char should not be empty");
 			return sourceValue.charAt(0);
 		}
 
@@ -3,7 +3,12 @@
  */
 package org.valgog.spring.helpers;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -14,6 +19,7 @@ public class TypeDescriptor<T> {
 	final private Class<T> type;
 	final private Type genericType;
 	final private Type[] actualGenericParameterTypes;
+	private volatile MethodHandle defaultConstructor;
 	
 	@SuppressWarnings("unchecked")
 	public TypeDescriptor(Field sourceField) {
@@ -52,9 +58,30 @@ public class TypeDescriptor<T> {
 	 * is thrown if it is not possible to create an instance 
 	 * of the expected type
 	 */
+	@SuppressWarnings("unchecked")
 	public T newInstance() throws TypeInstantiationException {
+		MethodHandle constructor = this.defaultConstructor;
+		if ( constructor == null ) {
+			constructor = findDefaultConstructor();
+			this.defaultConstructor = constructor;
+		}
+		try {
+			return (T) constructor.invokeExact();
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			// exceptions thrown by the constructor
+			throw new TypeInstantiationException(type, e);
+		}
+	}
+
+	private MethodHandle findDefaultConstructor() throws TypeInstantiationException {
 		try {
-			return type.newInstance();
+			final Constructor<T> constructor = type.getDeclaredConstructor();
+			if ( ! Modifier.isPublic(constructor.getModifiers()) || ! Modifier.isPublic(type.getModifiers()) ) {
+				constructor.setAccessible(true);
+			}
+			return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
 		} catch (Exception e) {
 			throw new TypeInstantiationException(type, e);
 		}
@@ -71,7 +98,11 @@ public class TypeDescriptor<T> {
 			return (Class<C>) type.getComponentType();
 		} else {
 			if ( Collection.class.isAssignableFrom(type) && actualGenericParameterTypes != null && actualGenericParameterTypes.length == 1 ) {
-				return (Class<C>) actualGenericParameterTypes[0];
+				Type componentType = actualGenericParameterTypes[0];
+				if ( componentType instanceof ParameterizedType ) {
+					componentType = ((ParameterizedType) componentType).getRawType();
+				}
+				return componentType instanceof Class ? (Class<C>) componentType : null;
 			} else {
 				return null;
 			}
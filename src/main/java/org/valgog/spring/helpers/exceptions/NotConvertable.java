@@ -21,4 +21,8 @@ public class NotConvertable extends Exception {
 		super(message);
 	}
 
+	public NotConvertable(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
@@ -6,8 +6,12 @@ public class TypeInstantiationException extends SQLException {
 
 	private static final long serialVersionUID = 4033561250858425990L;
 
-	public TypeInstantiationException(Class<?> problematicType, Exception e) {
+	public TypeInstantiationException(Class<?> problematicType, Throwable e) {
 		super("Could not create an instance of expected type " + problematicType.getSimpleName(), e);
 	}
 
+	public TypeInstantiationException(Class<?> problematicType, String message) {
+		super("Could not create an instance of expected type " + problematicType.getSimpleName() + ": " + message);
+	}
+
 }
@@ -0,0 +1,62 @@
+package org.valgog.utils;
+
+import org.valgog.utils.exceptions.ParserException;
+
+/**
+ * Reader of nested PostgreSQL ROW and ARRAY values, that walks the value only once.
+ * <p>A reader is always positioned on some element: at the beginning it is positioned on the whole value, 
+ * after {@link #nextElement()} on the next element of the container being read. The element can be read 
+ * either as a scalar value with {@link #readValue()}, or as a nested container with {@link #beginRow()} 
+ * or {@link #beginArray()}.
+ *
+ * @author valgog
+ *
+ */
+public interface NestedValueReader {
+
+	/**
+	 * Begin reading the current element as a ROW value
+	 * @return false if the element is NULL, otherwise the reader is positioned before the first field of the ROW
+	 * @throws ParserException if the element is not a ROW value
+	 */
+	public boolean beginRow() throws ParserException;
+
+	/**
+	 * Begin reading the current element as an ARRAY value
+	 * @return false if the element is NULL, otherwise the reader is positioned before the first element of the ARRAY
+	 * @throws ParserException if the element is not an ARRAY value
+	 */
+	public boolean beginArray() throws ParserException;
+
+	/**
+	 * Advance to the next element of the current container.
+	 * @return false if there are no more elements in the current container
+	 * @throws ParserException if the value cannot be parsed
+	 */
+	public boolean nextElement() throws ParserException;
+
+	/**
+	 * Skip the rest of the elements of the current container and continue with its parent container
+	 * @throws ParserException if the value cannot be parsed
+	 */
+	public void endContainer() throws ParserException;
+
+	/**
+	 * Read the current element as a scalar value
+	 * @return element value or {@code null} if the element is NULL
+	 * @throws ParserException if the value cannot be parsed
+	 */
+	public Object readValue() throws ParserException;
+
+	/**
+	 * Skip the current element
+	 * @throws ParserException if the value cannot be parsed
+	 */
+	public void skipElement() throws ParserException;
+
+	/**
+	 * Check, that the whole value was read
+	 * @throws ParserException if there is some unexpected data at the end of the value
+	 */
+	public void finish() throws ParserException;
+}
@@ -0,0 +1,480 @@
+package org.valgog.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.valgog.utils.exceptions.BinaryParserException;
+import org.valgog.utils.exceptions.ParserException;
+
+/**
+ * Reader of the PostgreSQL binary representation of ARRAY and ROW values, as they are produced by
+ * {@code array_send} and {@code record_send} (e.g. <code>SELECT array_send(children) AS children</code>)
+ * and extracted from a result set as bytes.
+ * <p>ARRAY values have the layout of {@code array_recv}: number of dimensions, NULL flag, element type OID,
+ * size and lower bound of every dimension, and then the elements, each with its length (-1 for NULL).
+ * Multidimensional arrays are read as a flat list of their elements.
+ * ROW values have the layout of {@code record_recv}: number of fields, and then every field with its type OID
+ * and length (-1 for NULL).
+ * <p>Scalar elements are decoded by their type OID (see {@link #readValue()}), integer, float and boolean
+ * elements can be also read without boxing. The data is never copied, as elements are addressed by their offsets.
+ * Readers are not thread safe.
+ *
+ * @author valgog
+ *
+ */
+public final class PostgresBinaryReader implements NestedValueReader {
+
+	// OIDs of the built in types
+	public static final int BOOL_OID = 16;
+	public static final int BYTEA_OID = 17;
+	public static final int CHAR_OID = 18;
+	public static final int NAME_OID = 19;
+	public static final int INT8_OID = 20;
+	public static final int INT2_OID = 21;
+	public static final int INT4_OID = 23;
+	public static final int TEXT_OID = 25;
+	public static final int OID_OID = 26;
+	public static final int JSON_OID = 114;
+	public static final int FLOAT4_OID = 700;
+	public static final int FLOAT8_OID = 701;
+	public static final int BPCHAR_OID = 1042;
+	public static final int VARCHAR_OID = 1043;
+	public static final int DATE_OID = 1082;
+	public static final int TIMESTAMP_OID = 1114;
+	public static final int TIMESTAMPTZ_OID = 1184;
+	public static final int NUMERIC_OID = 1700;
+	public static final int UUID_OID = 2950;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * 2000-01-01 00:00:00 UTC, the epoch of the PostgreSQL dates and timestamps, in milliseconds since the java epoch
+	 */
+	private static final long POSTGRES_EPOCH_MILLIS = 946684800000L;
+	private static final long POSTGRES_EPOCH_SECONDS = POSTGRES_EPOCH_MILLIS / 1000;
+	private static final long POSTGRES_EPOCH_DAYS = 10957;
+
+	/**
+	 * Maximal number of the ARRAY dimensions, as in PostgreSQL
+	 */
+	private static final int MAX_DIMENSIONS = 6;
+
+	// signs of the numeric values, infinities are sent by PostgreSQL 14 and later
+	private static final int NUMERIC_POSITIVE = 0x0000;
+	private static final int NUMERIC_NEGATIVE = 0x4000;
+	private static final int NUMERIC_NAN = 0xC000;
+	private static final int NUMERIC_PINF = 0xD000;
+	private static final int NUMERIC_NINF = 0xF000;
+
+	private final byte[] data;
+	private final int offset;
+	private final int limit;
+	private int position;
+
+	// current element
+	private int elementOid;
+	private int elementStart;
+	private int elementLength;
+
+	// containers being read
+	private int containers;
+	private int[] remaining = new int[8];
+	private boolean[] records = new boolean[8];
+	private int[] elementOids = new int[8];
+	private int[] ends = new int[8];
+
+	/**
+	 * @param data binary representation of an ARRAY or ROW value
+	 */
+	public PostgresBinaryReader(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	/**
+	 * @param data buffer holding a binary representation of an ARRAY or ROW value
+	 * @param offset offset of the value in the buffer
+	 * @param length length of the value
+	 */
+	public PostgresBinaryReader(byte[] data, int offset, int length) {
+		this.data = data;
+		this.offset = offset;
+		this.limit = offset + length;
+		reset();
+	}
+
+	/**
+	 * Start reading the value from the beginning again
+	 */
+	public void reset() {
+		position = offset;
+		elementStart = offset;
+		elementLength = limit - offset;
+		elementOid = 0;
+		containers = 0;
+	}
+
+	private int readInt(int at) throws BinaryParserException {
+		if ( at + 4 > limit ) throw error("unexpected end of data");
+		return ( data[at] << 24 ) | ( ( data[at + 1] & 0xFF ) << 16 ) | ( ( data[at + 2] & 0xFF ) << 8 ) | ( data[at + 3] & 0xFF );
+	}
+
+	private int readInt() throws BinaryParserException {
+		final int i = readInt(position);
+		position += 4;
+		return i;
+	}
+
+	private long readLong(int at) throws BinaryParserException {
+		return ( (long) readInt(at) << 32 ) | ( readInt(at + 4) & 0xFFFFFFFFL );
+	}
+
+	private int readShort(int at) throws BinaryParserException {
+		if ( at + 2 > limit ) throw error("unexpected end of data");
+		return (short) ( ( data[at] << 8 ) | ( data[at + 1] & 0xFF ) );
+	}
+
+	@Override
+	public boolean beginArray() throws ParserException {
+		if ( elementLength < 0 ) return false;
+		position = elementStart;
+		final int end = elementStart + elementLength;
+		final int dimensions = readInt();
+		readInt(); // NULL flag
+		final int oid = readInt();
+		if ( dimensions < 0 || dimensions > MAX_DIMENSIONS ) throw error("invalid number of dimensions " + dimensions);
+		long count = dimensions == 0 ? 0 : 1;
+		for (int i = 0; i < dimensions; i++) {
+			final int size = readInt();
+			if ( size < 0 ) throw error("negative number of elements");
+			// every element takes at least 4 bytes of its length, so the overflow is detected by pushContainer
+			count = Math.min(count * size, Integer.MAX_VALUE);
+			readInt(); // lower bound
+		}
+		pushContainer((int) count, false, oid, end);
+		return true;
+	}
+
+	@Override
+	public boolean beginRow() throws ParserException {
+		if ( elementLength < 0 ) return false;
+		position = elementStart;
+		final int end = elementStart + elementLength;
+		pushContainer(readInt(), true, 0, end);
+		return true;
+	}
+
+	/**
+	 * @param count number of the elements from the header, checked against the length of the container
+	 * before anything is allocated for the elements
+	 */
+	private void pushContainer(int count, boolean record, int oid, int end) throws BinaryParserException {
+		if ( count < 0 ) throw error("negative number of elements");
+		// every element has at least its length (and the type OID for the ROW fields)
+		if ( count > ( end - position ) / ( record ? 8 : 4 ) ) throw error(count + " elements cannot fit into " + ( end - position ) + " bytes");
+		if ( containers == remaining.length ) {
+			final int size = containers * 2;
+			remaining = Arrays.copyOf(remaining, size);
+			records = Arrays.copyOf(records, size);
+			elementOids = Arrays.copyOf(elementOids, size);
+			ends = Arrays.copyOf(ends, size);
+		}
+		remaining[containers] = count;
+		records[containers] = record;
+		elementOids[containers] = oid;
+		ends[containers] = end;
+		containers++;
+		// no element is current before the first call to nextElement()
+		elementStart = position;
+		elementLength = 0;
+	}
+
+	@Override
+	public boolean nextElement() throws ParserException {
+		if ( containers == 0 ) throw new IllegalStateException("no ROW or ARRAY is being read");
+		final int current = containers - 1;
+		// the previous element could have been read partially
+		position = elementStart + Math.max(elementLength, 0);
+		if ( remaining[current] == 0 ) return false;
+		remaining[current]--;
+		elementOid = records[current] ? readInt() : elementOids[current];
+		elementLength = readInt();
+		elementStart = position;
+		if ( elementLength > 0 && elementStart + elementLength > ends[current] ) throw error("element is longer then its container");
+		return true;
+	}
+
+	@Override
+	public void endContainer() throws ParserException {
+		if ( containers == 0 ) throw new IllegalStateException("no ROW or ARRAY is being read");
+		containers--;
+		if ( remaining[containers] == 0 ) {
+			// all the elements were read, so that they should be filling the whole container
+			position = elementStart + Math.max(elementLength, 0);
+			if ( position != ends[containers] ) throw error("unexpected data at the end of the container");
+		}
+		// the container itself becomes the current element, that is completely read
+		position = ends[containers];
+		elementStart = position;
+		elementLength = 0;
+	}
+
+	@Override
+	public void skipElement() {
+		// elements are skipped by nextElement() anyway
+	}
+
+	@Override
+	public void finish() throws ParserException {
+		if ( containers > 0 ) throw error("ROW or ARRAY is not completely read");
+		if ( position != limit ) throw error("unexpected data at the end");
+	}
+
+	/**
+	 * @return type OID of the current element
+	 */
+	public int getElementOid() {
+		return elementOid;
+	}
+
+	/**
+	 * @return true if the current element is NULL
+	 */
+	public boolean isNull() {
+		return elementLength < 0;
+	}
+
+	/**
+	 * Read the current element, converting it into a java object according to its type OID.
+	 * <ul>
+	 * <li>{@code int2}, {@code int4}, {@code int8}, {@code oid} into Short, Integer, Long and Long</li>
+	 * <li>{@code float4}, {@code float8} into Float and Double</li>
+	 * <li>{@code bool} into Boolean</li>
+	 * <li>{@code text}, {@code varchar}, {@code bpchar}, {@code name}, {@code char}, {@code json} into String</li>
+	 * <li>{@code numeric} into BigDecimal, NaN and infinite values cannot be read</li>
+	 * <li>{@code date} into {@link Date}, {@code timestamp} into {@link Timestamp} of the local time zone
+	 * and {@code timestamptz} into {@link Timestamp}</li>
+	 * <li>{@code uuid} into UUID</li>
+	 * <li>{@code bytea} and all the other types into byte[]</li>
+	 * </ul>
+	 * Elements of the fixed width types, that are not of that width, are not read.
+	 */
+	@Override
+	public Object readValue() throws ParserException {
+		if ( elementLength < 0 ) return null;
+		switch ( elementOid ) {
+		case INT2_OID:
+			return Short.valueOf((short) readShort(fixedWidth(2, "int2")));
+		case INT4_OID:
+			return Integer.valueOf(readInt(fixedWidth(4, "int4")));
+		case INT8_OID:
+			return Long.valueOf(readLong(fixedWidth(8, "int8")));
+		case OID_OID:
+			return Long.valueOf(readInt(fixedWidth(4, "oid")) & 0xFFFFFFFFL);
+		case FLOAT4_OID:
+			return Float.valueOf(Float.intBitsToFloat(readInt(fixedWidth(4, "float4"))));
+		case FLOAT8_OID:
+			return Double.valueOf(Double.longBitsToDouble(readLong(fixedWidth(8, "float8"))));
+		case BOOL_OID:
+			return Boolean.valueOf(readBoolean());
+		case TEXT_OID:
+		case VARCHAR_OID:
+		case BPCHAR_OID:
+		case NAME_OID:
+		case CHAR_OID:
+		case JSON_OID:
+			return new String(data, elementStart, elementLength, UTF8);
+		case NUMERIC_OID:
+			return readNumeric();
+		case DATE_OID:
+			return readDate();
+		case TIMESTAMP_OID:
+			return readTimestamp(false);
+		case TIMESTAMPTZ_OID:
+			return readTimestamp(true);
+		case UUID_OID:
+			final int uuidStart = fixedWidth(16, "uuid");
+			return new UUID(readLong(uuidStart), readLong(uuidStart + 8));
+		default:
+			return Arrays.copyOfRange(data, elementStart, elementStart + elementLength);
+		}
+	}
+
+	/**
+	 * Check the length of the current element of a type with the given fixed width, so that nothing is read beyond the element
+	 * @return offset of the element
+	 */
+	private int fixedWidth(int width, String type) throws BinaryParserException {
+		if ( elementLength != width ) throw error(type + " should be " + width + ( width == 1 ? " byte" : " bytes" ) + " long and not " + elementLength);
+		return elementStart;
+	}
+
+	private boolean readBoolean() throws BinaryParserException {
+		return data[fixedWidth(1, "boolean")] != 0;
+	}
+
+	/**
+	 * Numeric values are sent as the number of base 10000 digits, weight of the first digit, sign, display scale and the digits
+	 */
+	private BigDecimal readNumeric() throws BinaryParserException {
+		if ( elementLength < 8 ) throw error("numeric should be at least 8 bytes long");
+		final int digits = readShort(elementStart);
+		final int weight = readShort(elementStart + 2);
+		final int sign = readShort(elementStart + 4) & 0xFFFF;
+		final int scale = readShort(elementStart + 6);
+		switch ( sign ) {
+		case NUMERIC_POSITIVE:
+		case NUMERIC_NEGATIVE:
+			break;
+		case NUMERIC_NAN:
+			throw error("numeric NaN cannot be represented as a BigDecimal");
+		case NUMERIC_PINF:
+		case NUMERIC_NINF:
+			throw error("numeric Infinity cannot be represented as a BigDecimal");
+		default:
+			throw error("invalid numeric sign 0x" + Integer.toHexString(sign));
+		}
+		if ( digits < 0 || elementLength != 8 + digits * 2 ) throw error("numeric with " + digits + " digits cannot be " + elementLength + " bytes long");
+		BigInteger unscaled = BigInteger.ZERO;
+		final BigInteger base = BigInteger.valueOf(10000);
+		for (int i = 0; i < digits; i++) {
+			final int digit = readShort(elementStart + 8 + i * 2);
+			if ( digit < 0 || digit > 9999 ) throw error("invalid numeric digit " + digit);
+			unscaled = unscaled.multiply(base).add(BigInteger.valueOf(digit));
+		}
+		// the last digit has the weight (weight - digits + 1), every base 10000 digit is 4 decimal digits
+		BigDecimal result = new BigDecimal(unscaled, ( digits - weight - 1 ) * 4);
+		if ( sign == NUMERIC_NEGATIVE ) result = result.negate();
+		return result.setScale(scale, RoundingMode.DOWN);
+	}
+
+	private Date readDate() throws BinaryParserException {
+		final long days = readInt(fixedWidth(4, "date"));
+		try {
+			// dates are the midnights of the local time zone, the offset is the one in effect at that midnight
+			return new Date(LocalDate.ofEpochDay(POSTGRES_EPOCH_DAYS + days).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		} catch (DateTimeException e) {
+			throw error("date is out of range");
+		}
+	}
+
+	private Timestamp readTimestamp(boolean withTimeZone) throws BinaryParserException {
+		final long micros = readLong(fixedWidth(8, withTimeZone ? "timestamptz" : "timestamp"));
+		final long seconds = Math.floorDiv(micros, 1000000L);
+		final int nanos = (int) Math.floorMod(micros, 1000000L) * 1000;
+		if ( ! withTimeZone ) {
+			// timestamps without time zone are wall clock times of the local time zone, 
+			// so the offset is the one in effect at that wall clock time
+			try {
+				return Timestamp.from(LocalDateTime.ofEpochSecond(POSTGRES_EPOCH_SECONDS + seconds, nanos, ZoneOffset.UTC).atZone(ZoneId.systemDefault()).toInstant());
+			} catch (DateTimeException e) {
+				throw error("timestamp is out of range");
+			}
+		}
+		final Timestamp timestamp = new Timestamp(POSTGRES_EPOCH_MILLIS + seconds * 1000);
+		timestamp.setNanos(nanos);
+		return timestamp;
+	}
+
+	/**
+	 * Read the current ARRAY element of {@code int2[]} or {@code int4[]} type into an int array
+	 * @param nullsAsDefaults if true, NULL elements are set to 0, otherwise NULL elements are not allowed
+	 * @return int array or {@code null} if the element is NULL
+	 */
+	public int[] readIntArray(boolean nullsAsDefaults) throws ParserException {
+		if ( ! beginArray() ) return null;
+		final int[] result = new int[remaining[containers - 1]];
+		for (int i = 0; nextElement(); i++) {
+			if ( nullElement(nullsAsDefaults) ) continue;
+			switch ( elementOid ) {
+			case INT4_OID: result[i] = readInt(fixedWidth(4, "int4")); break;
+			case INT2_OID: result[i] = readShort(fixedWidth(2, "int2")); break;
+			default: throw unexpectedElementType("int");
+			}
+		}
+		endContainer();
+		return result;
+	}
+
+	/**
+	 * Read the current ARRAY element of {@code int2[]}, {@code int4[]} or {@code int8[]} type into a long array
+	 * @param nullsAsDefaults if true, NULL elements are set to 0, otherwise NULL elements are not allowed
+	 * @return long array or {@code null} if the element is NULL
+	 */
+	public long[] readLongArray(boolean nullsAsDefaults) throws ParserException {
+		if ( ! beginArray() ) return null;
+		final long[] result = new long[remaining[containers - 1]];
+		for (int i = 0; nextElement(); i++) {
+			if ( nullElement(nullsAsDefaults) ) continue;
+			switch ( elementOid ) {
+			case INT8_OID: result[i] = readLong(fixedWidth(8, "int8")); break;
+			case INT4_OID: result[i] = readInt(fixedWidth(4, "int4")); break;
+			case INT2_OID: result[i] = readShort(fixedWidth(2, "int2")); break;
+			default: throw unexpectedElementType("long");
+			}
+		}
+		endContainer();
+		return result;
+	}
+
+	/**
+	 * Read the current ARRAY element of {@code float4[]} or {@code float8[]} type into a double array
+	 * @param nullsAsDefaults if true, NULL elements are set to 0, otherwise NULL elements are not allowed
+	 * @return double array or {@code null} if the element is NULL
+	 */
+	public double[] readDoubleArray(boolean nullsAsDefaults) throws ParserException {
+		if ( ! beginArray() ) return null;
+		final double[] result = new double[remaining[containers - 1]];
+		for (int i = 0; nextElement(); i++) {
+			if ( nullElement(nullsAsDefaults) ) continue;
+			switch ( elementOid ) {
+			case FLOAT8_OID: result[i] = Double.longBitsToDouble(readLong(fixedWidth(8, "float8"))); break;
+			case FLOAT4_OID: result[i] = Float.intBitsToFloat(readInt(fixedWidth(4, "float4"))); break;
+			default: throw unexpectedElementType("double");
+			}
+		}
+		endContainer();
+		return result;
+	}
+
+	/**
+	 * Read the current ARRAY element of {@code bool[]} type into a boolean array
+	 * @param nullsAsDefaults if true, NULL elements are set to false, otherwise NULL elements are not allowed
+	 * @return boolean array or {@code null} if the element is NULL
+	 */
+	public boolean[] readBooleanArray(boolean nullsAsDefaults) throws ParserException {
+		if ( ! beginArray() ) return null;
+		final boolean[] result = new boolean[remaining[containers - 1]];
+		for (int i = 0; nextElement(); i++) {
+			if ( nullElement(nullsAsDefaults) ) continue;
+			if ( elementOid != BOOL_OID ) throw unexpectedElementType("boolean");
+			result[i] = readBoolean();
+		}
+		endContainer();
+		return result;
+	}
+
+	private boolean nullElement(boolean nullsAsDefaults) throws BinaryParserException {
+		if ( elementLength >= 0 ) return false;
+		if ( nullsAsDefaults ) return true;
+		throw error("NULL element cannot be stored in a primitive array");
+	}
+
+	private BinaryParserException unexpectedElementType(String type) {
+		return error("elements of type with OID " + elementOid + " cannot be stored in a " + type + " array");
+	}
+
+	private BinaryParserException error(String message) {
+		return new BinaryParserException("Could not read binary value at position " + position + ", " + message);
+	}
+}
@@ -0,0 +1,363 @@
+package org.valgog.utils;
+
+import org.valgog.utils.exceptions.ArrayParserException;
+import org.valgog.utils.exceptions.ParserException;
+import org.valgog.utils.exceptions.RowParserException;
+
+/**
+ * Tokenizer walking over the elements of the text representation of a PostgreSQL ARRAY (like <code>{a,"b c",NULL}</code>)
+ * or ROW (like <code>(1,"b c",)</code>) value without copying it.
+ * <p>After every call to {@link #next()} the cursor reports the start and end offsets of the current element
+ * in the parsed value, and is itself a {@link CharSequence} view of the current element value.
+ * Elements are only unescaped, if they contain escaped quotes or backslashes. Unescaped values are kept
+ * in a scratch buffer of the cursor, that is reused for all the elements, so the view of the current element
+ * is only valid until the next call to {@link #next()}. Use {@link #stringValue()} to get a String copy.
+ * <p>A cursor can be reused to parse many values by calling {@link #reset(CharSequence)}, cursors kept for reuse should be
+ * released with {@link #release()} after every value, so that they do not keep the parsed value. Cursors are not thread safe.
+ * <p>Whitespace around the elements and separators is ignored, unless it is quoted.
+ * Unquoted empty elements are NULL, also unquoted <code>NULL</code> array elements are NULL
+ * (for ROW values it is just a string). Nested arrays are returned as one element, as they are.
+ *
+ * @author valgog
+ *
+ * @param <E> type of the exception, thrown if the value cannot be parsed
+ */
+public abstract class PostgresElementCursor<E extends ParserException> implements CharSequence {
+
+	/**
+	 * Scratch buffers grown bigger then that are not kept for reuse
+	 */
+	private static final int MAX_RETAINED_SCRATCH_SIZE = 64 * 1024;
+
+	private final char open;
+	private final char close;
+	private final boolean array;
+
+	private CharSequence value;
+	private int position;
+	private int end;
+	private boolean exhausted;
+
+	private int elementStart;
+	private int elementEnd;
+	private boolean quoted;
+	private boolean escaped;
+	private boolean nullElement;
+
+	private StringBuilder scratch;
+	private boolean unescaped;
+
+	private PostgresElementCursor(char open, char close, boolean array) {
+		this.open = open;
+		this.close = close;
+		this.array = array;
+	}
+
+	/**
+	 * @return new cursor for ARRAY values, that should be bound to a value with {@link #reset(CharSequence)}
+	 */
+	public static final PostgresElementCursor<ArrayParserException> arrayCursor() {
+		return new ArrayCursor();
+	}
+
+	/**
+	 * @return new cursor for ROW values, that should be bound to a value with {@link #reset(CharSequence)}
+	 */
+	public static final PostgresElementCursor<RowParserException> rowCursor() {
+		return new RowCursor();
+	}
+
+	/**
+	 * Create exception of the type, thrown by this cursor
+	 */
+	abstract E newException(String message);
+
+	/**
+	 * Start parsing the given value
+	 * @param value ARRAY or ROW text representation
+	 * @return this cursor, positioned before the first element
+	 * @throws E if the value does not begin and end with the expected brackets
+	 */
+	public final PostgresElementCursor<E> reset(CharSequence value) throws E {
+		int start = 0;
+		int last = value.length() - 1;
+		while ( start <= last && Character.isWhitespace(value.charAt(start)) ) start++;
+		while ( last >= start && Character.isWhitespace(value.charAt(last)) ) last--;
+		if ( array && start <= last && value.charAt(start) == '[' ) {
+			// skip dimension decoration like [0:2]={1,2,3}
+			while ( start <= last && value.charAt(start) != '=' ) start++;
+			start++;
+		}
+		if ( start >= last || value.charAt(start) != open || value.charAt(last) != close ) {
+			throw newException(( array ? "ARRAY" : "ROW" ) + " must begin with '" + open + "' and ends with '" + close + "': " + value);
+		}
+		this.value = value;
+		this.position = start + 1;
+		this.end = last;
+		this.elementStart = this.elementEnd = position;
+		this.quoted = this.escaped = this.nullElement = this.unescaped = false;
+		skipWhitespace();
+		// empty brackets have no elements at all
+		this.exhausted = position >= end;
+		if ( scratch != null && scratch.capacity() > MAX_RETAINED_SCRATCH_SIZE ) {
+			scratch = null;
+		}
+		return this;
+	}
+
+	/**
+	 * Unbind the cursor from the parsed value, so that the value can be collected while the cursor is kept for reuse
+	 * (the scratch buffer is dropped as well, if it has grown too big). The cursor has no more elements after that.
+	 */
+	public final void release() {
+		this.value = null;
+		this.position = this.end = this.elementStart = this.elementEnd = 0;
+		this.quoted = this.escaped = this.nullElement = this.unescaped = false;
+		this.exhausted = true;
+		if ( scratch != null ) {
+			if ( scratch.capacity() > MAX_RETAINED_SCRATCH_SIZE ) {
+				scratch = null;
+			} else {
+				// the scratch buffer holds the last unescaped element
+				scratch.setLength(0);
+			}
+		}
+	}
+
+	/**
+	 * Advance to the next element
+	 * @return false if there are no more elements
+	 * @throws E if the value cannot be parsed
+	 */
+	public final boolean next() throws E {
+		if ( exhausted ) return false;
+		unescaped = false;
+		escaped = false;
+		skipWhitespace();
+		char ch = position < end ? value.charAt(position) : close;
+		if ( ch == '"' ) {
+			quoted = true;
+			nullElement = false;
+			elementStart = ++position;
+			for (;;) {
+				if ( position >= end ) throw error("quote is not closed");
+				ch = value.charAt(position);
+				if ( ch == '"' ) {
+					if ( position + 1 < end && value.charAt(position + 1) == '"' ) {
+						// doubled quote stands for a quote
+						escaped = true;
+						position += 2;
+						continue;
+					}
+					break;
+				}
+				if ( ch == '\\' ) {
+					escaped = true;
+					position++;
+				}
+				position++;
+			}
+			elementEnd = position++;
+			skipWhitespace();
+		} else if ( array && ch == '{' ) {
+			// nested array is returned as it is
+			quoted = false;
+			nullElement = false;
+			elementStart = position;
+			skipNestedArray();
+			elementEnd = position;
+			skipWhitespace();
+		} else {
+			quoted = false;
+			elementStart = position;
+			int lastEscaped = position;
+			while ( position < end && ( ch = value.charAt(position) ) != ',' ) {
+				if ( ch == '\\' ) {
+					escaped = true;
+					lastEscaped = position += 2;
+					continue;
+				}
+				if ( ch == '"' || ch == open || ch == close ) throw error("unexpected character '" + ch + "'");
+				position++;
+			}
+			if ( position > end ) throw error("nothing to escape at the end");
+			elementEnd = position;
+			// trailing whitespace of the unquoted elements is ignored
+			while ( elementEnd > lastEscaped && Character.isWhitespace(value.charAt(elementEnd - 1)) ) elementEnd--;
+			nullElement = elementEnd == elementStart || ( array && !escaped && isNullLiteral() );
+		}
+		if ( position < end ) {
+			if ( value.charAt(position) != ',' ) throw error("comma expected");
+			position++;
+		} else {
+			exhausted = true;
+		}
+		return true;
+	}
+
+	private void skipWhitespace() {
+		while ( position < end && Character.isWhitespace(value.charAt(position)) ) position++;
+	}
+
+	private void skipNestedArray() throws E {
+		int depth = 0;
+		boolean inQuotes = false;
+		while ( position < end ) {
+			final char ch = value.charAt(position++);
+			if ( ch == '\\' ) {
+				position++;
+			} else if ( ch == '"' ) {
+				inQuotes = !inQuotes;
+			} else if ( !inQuotes ) {
+				if ( ch == '{' ) {
+					depth++;
+				} else if ( ch == '}' && --depth == 0 ) {
+					return;
+				}
+			}
+		}
+		throw error("nested array is not closed");
+	}
+
+	private boolean isNullLiteral() {
+		return elementEnd - elementStart == 4
+				&& ( value.charAt(elementStart) | 0x20 ) == 'n'
+				&& ( value.charAt(elementStart + 1) | 0x20 ) == 'u'
+				&& ( value.charAt(elementStart + 2) | 0x20 ) == 'l'
+				&& ( value.charAt(elementStart + 3) | 0x20 ) == 'l';
+	}
+
+	private E error(String message) {
+		return newException("Could not parse " + ( array ? "ARRAY" : "ROW" ) + " at position " + position + ", " + message + ": " + value);
+	}
+
+	/**
+	 * @return offset of the first character of the current element in the parsed value (after the opening quote, if quoted)
+	 */
+	public final int start() {
+		return elementStart;
+	}
+
+	/**
+	 * @return offset after the last character of the current element in the parsed value (of the closing quote, if quoted)
+	 */
+	public final int end() {
+		return elementEnd;
+	}
+
+	/**
+	 * @return true if the current element is NULL
+	 */
+	public final boolean isNull() {
+		return nullElement;
+	}
+
+	/**
+	 * @return true if the current element was quoted
+	 */
+	public final boolean isQuoted() {
+		return quoted;
+	}
+
+	/**
+	 * @return true if the current element contains escaped characters, so that its value differs from the raw text between {@link #start()} and {@link #end()}
+	 */
+	public final boolean isEscaped() {
+		return escaped;
+	}
+
+	/**
+	 * @return value currently parsed
+	 */
+	public final CharSequence getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the current element as a new String or {@code null} if the element is NULL
+	 */
+	public final String stringValue() {
+		if ( nullElement ) return null;
+		return toString();
+	}
+
+	private void unescape() {
+		if ( unescaped ) return;
+		StringBuilder sb = scratch;
+		if ( sb == null ) {
+			sb = scratch = new StringBuilder(Math.max(16, elementEnd - elementStart));
+		} else {
+			sb.setLength(0);
+		}
+		for (int i = elementStart; i < elementEnd; i++) {
+			char ch = value.charAt(i);
+			if ( ch == '\\' || ( ch == '"' && quoted ) ) {
+				ch = value.charAt(++i);
+			}
+			sb.append(ch);
+		}
+		unescaped = true;
+	}
+
+	@Override
+	public final int length() {
+		if ( escaped ) {
+			unescape();
+			return scratch.length();
+		}
+		return elementEnd - elementStart;
+	}
+
+	@Override
+	public final char charAt(int index) {
+		if ( escaped ) {
+			unescape();
+			return scratch.charAt(index);
+		}
+		if ( index < 0 || index >= elementEnd - elementStart ) throw new IndexOutOfBoundsException("index " + index);
+		return value.charAt(elementStart + index);
+	}
+
+	@Override
+	public final CharSequence subSequence(int start, int end) {
+		if ( escaped ) {
+			unescape();
+			return scratch.substring(start, end);
+		}
+		return value.subSequence(elementStart + start, elementStart + end);
+	}
+
+	/**
+	 * @return the current element value (also for NULL elements, that have their raw text as value)
+	 */
+	@Override
+	public final String toString() {
+		if ( escaped ) {
+			unescape();
+			return scratch.toString();
+		}
+		return value.subSequence(elementStart, elementEnd).toString();
+	}
+
+	private static final class ArrayCursor extends PostgresElementCursor<ArrayParserException> {
+		ArrayCursor() {
+			super('{', '}', true);
+		}
+
+		@Override
+		ArrayParserException newException(String message) {
+			return new ArrayParserException(message);
+		}
+	}
+
+	private static final class RowCursor extends PostgresElementCursor<RowParserException> {
+		RowCursor() {
+			super('(', ')', false);
+		}
+
+		@Override
+		RowParserException newException(String message) {
+			return new RowParserException(message);
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.valgog.utils.exceptions.ArrayParserException;
+import org.valgog.utils.exceptions.ParserException;
 import org.valgog.utils.exceptions.RowParserException;
 
 /**
@@ -16,80 +17,45 @@ import org.valgog.utils.exceptions.RowParserException;
  */
 public class PostgresUtils {
 
+	/**
+	 * Cursors used by the List returning methods, so that every thread reuses its own cursors and scratch buffers,
+	 * they are released after every value
+	 */
+	private static final ThreadLocal<PostgresElementCursor<ArrayParserException>> arrayCursors = new ThreadLocal<PostgresElementCursor<ArrayParserException>>() {
+		@Override
+		protected PostgresElementCursor<ArrayParserException> initialValue() {
+			return PostgresElementCursor.arrayCursor();
+		}
+	};
+
+	private static final ThreadLocal<PostgresElementCursor<RowParserException>> rowCursors = new ThreadLocal<PostgresElementCursor<RowParserException>>() {
+		@Override
+		protected PostgresElementCursor<RowParserException> initialValue() {
+			return PostgresElementCursor.rowCursor();
+		}
+	};
+
 	public static final List<String> postgresArray2StringList(String value)
 			throws ArrayParserException {
 		return postgresArray2StringList(value, 16);
 	}
 
+	/**
+	 * Split the text representation of an ARRAY into the list of its elements. 
+	 * See {@link PostgresElementCursor} for the details.
+	 * @param value ARRAY text representation like <code>{a,"b c",NULL}</code>
+	 * @param appendStringSize not used any more
+	 * @return list of the element values, containing null for NULL elements
+	 * @throws ArrayParserException if the value cannot be parsed
+	 */
 	public static final List<String> postgresArray2StringList(String value,
 			int appendStringSize) throws ArrayParserException {
-		if (!(value.startsWith("{") && value.endsWith("}")))
-			throw new ArrayParserException(
-					String.format("postgresArray2StringList() ARRAY must begin with '{' and ends with '}': %s",
-									value));
-		if (value.length() == 2) {
-			return Collections.emptyList();
-		}
-		// This is a simple copy-paste from the ROW processing code, and
-		// strictly speaking is not quite correct for PostgreSQL ARRAYs
-		List<String> result = new ArrayList<String>();
-
-		char[] c = value.toCharArray();
-
-		StringBuilder element = new StringBuilder(appendStringSize);
-		// this processor will fail if value has spaces between ',' and '"' or
-		// ')'
-		int i = 1;
-		while (c[i] != '}') {
-			if (c[i] == ',') {
-				char nextChar = c[i + 1];
-				if (nextChar == ',' || nextChar == '}') {
-					// we have an empty position, that is we have a NULL value
-					result.add(null);
-				}
-				i++;
-			} else if (c[i] == '\"') {
-				i++;
-				boolean insideQuote = true;
-				while (insideQuote) {
-					char nextChar = c[i + 1];
-					if (c[i] == '\"') {
-						if (nextChar == ',' || nextChar == '}') {
-							result.add(element.toString());
-							element = new StringBuilder(appendStringSize);
-							insideQuote = false;
-						} else if (nextChar == '\"') {
-							i++;
-							element.append(c[i]);
-						} else {
-							throw new ArrayParserException(
-									"postgresArray2StringList() char after \" is not valid");
-						}
-					} else if (c[i] == '\\') {
-						if (nextChar == '\\' || nextChar == '\"') {
-							i++;
-							element.append(c[i]);
-						} else {
-							throw new ArrayParserException(
-									"postgresArray2StringList() char after \\ is not valid");
-						}
-					} else {
-						element.append(c[i]);
-					}
-					i++;
-				}
-			} else {
-				while (!(c[i] == ',' || c[i] == '}')) {
-					element.append(c[i]);
-					i++;
-				}
-				// if the element was not quoted and was empty, it is supposed
-				// to be NULL
-				result.add(element.length() > 0 ? element.toString() : null);
-				element = new StringBuilder(appendStringSize);
-			}
+		final PostgresElementCursor<ArrayParserException> cursor = arrayCursors.get();
+		try {
+			return toStringList(cursor.reset(value));
+		} finally {
+			cursor.release();
 		}
-		return result;
 	}
 
 	public static final List<String> postgresROW2StringList(String value)
@@ -97,71 +63,33 @@ public class PostgresUtils {
 		return postgresROW2StringList(value, 16);
 	}
 
+	/**
+	 * Split the text representation of a ROW into the list of its elements. 
+	 * See {@link PostgresElementCursor} for the details.
+	 * @param value ROW text representation like <code>(1,"b c",)</code>
+	 * @param appendStringSize not used any more
+	 * @return list of the element values, containing null for NULL elements
+	 * @throws RowParserException if the value cannot be parsed
+	 */
 	public static final List<String> postgresROW2StringList(String value,
 			int appendStringSize) throws RowParserException {
-		if (!(value.startsWith("(") && value.endsWith(")")))
-			throw new RowParserException(
-					"postgresROW2StringList() ROW must begin with '(' and ends with ')': "
-							+ value);
-
-		List<String> result = new ArrayList<String>();
-
-		char[] c = value.toCharArray();
+		final PostgresElementCursor<RowParserException> cursor = rowCursors.get();
+		try {
+			return toStringList(cursor.reset(value));
+		} finally {
+			cursor.release();
+		}
+	}
 
-		StringBuilder element = new StringBuilder(appendStringSize);
-		// this processor will fail if value has spaces between ',' and '"' or
-		// ')'
-		int i = 1;
-		while (c[i] != ')') {
-			if (c[i] == ',') {
-				char nextChar = c[i + 1];
-				if (nextChar == ',' || nextChar == ')') {
-					// we have an empty position, that is we have a NULL value
-					result.add(null);
-				}
-				i++;
-			} else if (c[i] == '\"') {
-				i++;
-				boolean insideQuote = true;
-				while (insideQuote) {
-					char nextChar = c[i + 1];
-					if (c[i] == '\"') {
-						if (nextChar == ',' || nextChar == ')') {
-							result.add(element.toString());
-							element = new StringBuilder(appendStringSize);
-							insideQuote = false;
-						} else if (nextChar == '\"') {
-							i++;
-							element.append(c[i]);
-						} else {
-							throw new RowParserException(
-									"postgresROW2StringList() char after \" is not valid");
-						}
-					} else if (c[i] == '\\') {
-						if (nextChar == '\\' || nextChar == '\"') {
-							i++;
-							element.append(c[i]);
-						} else {
-							throw new RowParserException(
-									"postgresROW2StringList() char after \\ is not valid");
-						}
-					} else {
-						element.append(c[i]);
-					}
-					i++;
-				}
-			} else {
-				while (!(c[i] == ',' || c[i] == ')')) {
-					element.append(c[i]);
-					i++;
-				}
-				// if the element was not quoted and was empty, it is supposed
-				// to be NULL
-				result.add(element.length() > 0 ? element.toString() : null);
-				element = new StringBuilder(appendStringSize);
-			}
+	private static final <E extends ParserException> List<String> toStringList(PostgresElementCursor<E> cursor) throws E {
+		if ( ! cursor.next() ) {
+			return Collections.emptyList();
 		}
+		final List<String> result = new ArrayList<String>();
+		do {
+			result.add(cursor.stringValue());
+		} while ( cursor.next() );
 		return result;
 	}
-	
+
 }
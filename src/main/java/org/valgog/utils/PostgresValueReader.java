@@ -0,0 +1,362 @@
+package org.valgog.utils;
+
+import java.util.Arrays;
+
+import org.valgog.utils.exceptions.ArrayParserException;
+import org.valgog.utils.exceptions.ParserException;
+import org.valgog.utils.exceptions.RowParserException;
+
+/**
+ * Reader of the text representation of nested PostgreSQL ROW and ARRAY values,
+ * like <code>{"(1,,)","(2,\"(1)\",\"{\"\"(1)\"\"}\")"}</code>, that walks the whole value only once.
+ * <p>Every nested value, that is quoted inside of its container, is read through one more quoting level.
+ * Quoting levels unescape the characters of their parent level on the fly, so that nested values
+ * are never copied or unescaped into intermediate strings. Only the scalar elements are copied,
+ * when they are read with {@link #readString()}.
+ * <p>Typical usage:
+ * <pre>
+ * if ( reader.beginArray() ) {
+ *     while ( reader.nextElement() ) {
+ *         if ( reader.beginRow() ) {
+ *             while ( reader.nextElement() ) {
+ *                 String s = reader.readString();
+ *             }
+ *             reader.endContainer();
+ *         }
+ *     }
+ *     reader.endContainer();
+ * }
+ * reader.finish();
+ * </pre>
+ * Whitespace around the elements and separators is ignored, unless it is quoted.
+ * Unquoted empty elements are NULL, also unquoted <code>NULL</code> array elements are NULL.
+ * Readers are not thread safe.
+ *
+ * @author valgog
+ *
+ */
+public final class PostgresValueReader implements NestedValueReader {
+
+	private static final int EOF = -1;
+	private static final int NONE = -2;
+
+	private CharSequence value;
+	private int position;
+	private int length;
+
+	// quoting levels, level 0 reads the value itself
+	private int level;
+	private int[] pushback = new int[8];
+	private boolean[] ended = new boolean[8];
+
+	// containers being read
+	private int containers;
+	private char[] closeChars = new char[8];
+	private boolean[] arrayContainers = new boolean[8];
+	private boolean[] quotedContainers = new boolean[8];
+	private boolean[] firstElements = new boolean[8];
+	private boolean[] closedContainers = new boolean[8];
+
+	private StringBuilder scratch;
+
+	public PostgresValueReader(CharSequence value) {
+		reset(value);
+	}
+
+	/**
+	 * Start reading of the given value
+	 * @param value ROW or ARRAY text representation
+	 * @return this reader
+	 */
+	public PostgresValueReader reset(CharSequence value) {
+		this.value = value;
+		this.position = 0;
+		this.length = value.length();
+		this.level = 0;
+		this.pushback[0] = NONE;
+		this.containers = 0;
+		return this;
+	}
+
+	/**
+	 * Read the next character of the given quoting level
+	 */
+	private int read(int level) throws ParserException {
+		int c = pushback[level];
+		if ( c != NONE ) {
+			pushback[level] = NONE;
+			return c;
+		}
+		if ( level == 0 ) {
+			return position < length ? value.charAt(position++) : EOF;
+		}
+		if ( ended[level] ) {
+			return EOF;
+		}
+		c = read(level - 1);
+		if ( c == '\\' ) {
+			c = read(level - 1);
+			if ( c == EOF ) throw error("nothing to escape at the end");
+			return c;
+		}
+		if ( c == '"' ) {
+			final int next = read(level - 1);
+			if ( next == '"' ) {
+				// doubled quote stands for a quote
+				return next;
+			}
+			pushback[level - 1] = next;
+			ended[level] = true;
+			return EOF;
+		}
+		if ( c == EOF ) throw error("quote is not closed");
+		return c;
+	}
+
+	private int peek(int level) throws ParserException {
+		final int c = read(level);
+		pushback[level] = c;
+		return c;
+	}
+
+	private void skipWhitespace() throws ParserException {
+		int c;
+		do {
+			c = read(level);
+		} while ( c != EOF && Character.isWhitespace(c) );
+		pushback[level] = c;
+	}
+
+	private void pushLevel() {
+		level++;
+		if ( level == pushback.length ) {
+			pushback = Arrays.copyOf(pushback, level * 2);
+			ended = Arrays.copyOf(ended, level * 2);
+		}
+		pushback[level] = NONE;
+		ended[level] = false;
+	}
+
+	@Override
+	public boolean beginRow() throws ParserException {
+		return beginContainer('(', ')', false);
+	}
+
+	@Override
+	public boolean beginArray() throws ParserException {
+		return beginContainer('{', '}', true);
+	}
+
+	private boolean beginContainer(char open, char close, boolean array) throws ParserException {
+		skipWhitespace();
+		int c = read(level);
+		boolean quoted = false;
+		if ( c == '"' ) {
+			pushLevel();
+			quoted = true;
+			skipWhitespace();
+			c = read(level);
+		} else if ( c == EOF || c == ',' || ( containers > 0 && c == closeChars[containers - 1] ) ) {
+			// empty element is NULL
+			pushback[level] = c;
+			return false;
+		} else if ( ( c | 0x20 ) == 'n' ) {
+			if ( ( read(level) | 0x20 ) == 'u' && ( read(level) | 0x20 ) == 'l' && ( read(level) | 0x20 ) == 'l' ) {
+				skipWhitespace();
+				return false;
+			}
+			throw error("NULL expected");
+		}
+		if ( array && c == '[' ) {
+			// skip dimension decoration like [0:2]={1,2,3}
+			while ( c != '=' && c != EOF ) {
+				c = read(level);
+			}
+			c = read(level);
+		}
+		if ( c != open ) {
+			throw error("'" + open + "' expected");
+		}
+		if ( containers == closeChars.length ) {
+			final int size = containers * 2;
+			closeChars = Arrays.copyOf(closeChars, size);
+			arrayContainers = Arrays.copyOf(arrayContainers, size);
+			quotedContainers = Arrays.copyOf(quotedContainers, size);
+			firstElements = Arrays.copyOf(firstElements, size);
+			closedContainers = Arrays.copyOf(closedContainers, size);
+		}
+		closeChars[containers] = close;
+		arrayContainers[containers] = array;
+		quotedContainers[containers] = quoted;
+		firstElements[containers] = true;
+		closedContainers[containers] = false;
+		containers++;
+		return true;
+	}
+
+	@Override
+	public boolean nextElement() throws ParserException {
+		if ( containers == 0 ) throw new IllegalStateException("no ROW or ARRAY is being read");
+		final int current = containers - 1;
+		if ( closedContainers[current] ) return false;
+		skipWhitespace();
+		final char close = closeChars[current];
+		if ( firstElements[current] ) {
+			firstElements[current] = false;
+			if ( peek(level) == close ) {
+				read(level);
+				closedContainers[current] = true;
+				return false;
+			}
+			return true;
+		}
+		final int c = read(level);
+		if ( c == ',' ) return true;
+		if ( c == close ) {
+			closedContainers[current] = true;
+			return false;
+		}
+		throw error("',' or '" + close + "' expected");
+	}
+
+	@Override
+	public void endContainer() throws ParserException {
+		while ( nextElement() ) {
+			skipElement();
+		}
+		containers--;
+		if ( quotedContainers[containers] ) {
+			skipWhitespace();
+			if ( read(level) != EOF ) throw error("unexpected characters after the end of the nested value");
+			level--;
+		}
+		skipWhitespace();
+	}
+
+	/**
+	 * Read the current element as a String, the text representation of the scalar elements
+	 * @return element value or {@code null} if the element is NULL
+	 * @throws ParserException if the value cannot be parsed
+	 */
+	@Override
+	public Object readValue() throws ParserException {
+		return readElement(true);
+	}
+
+	/**
+	 * Read the current element as a String
+	 * @return element value or {@code null} if the element is NULL
+	 * @throws ParserException if the value cannot be parsed
+	 */
+	public String readString() throws ParserException {
+		return readElement(true);
+	}
+
+	@Override
+	public void skipElement() throws ParserException {
+		readElement(false);
+	}
+
+	private String readElement(boolean keep) throws ParserException {
+		StringBuilder sb = scratch;
+		if ( sb == null ) {
+			sb = scratch = new StringBuilder(32);
+		} else {
+			sb.setLength(0);
+		}
+		skipWhitespace();
+		int c = read(level);
+		if ( c == '"' ) {
+			pushLevel();
+			while ( ( c = read(level) ) != EOF ) {
+				if ( keep ) sb.append((char) c);
+			}
+			level--;
+			skipWhitespace();
+			return keep ? sb.toString() : null;
+		}
+		final boolean array = containers > 0 && arrayContainers[containers - 1];
+		final int close = containers > 0 ? closeChars[containers - 1] : EOF;
+		final int open = array ? '{' : '(';
+		int lastEscaped = 0;
+		boolean escaped = false;
+		if ( array && c == '{' ) {
+			// nested array is returned as it is
+			readNestedArray(sb);
+			skipWhitespace();
+			return keep ? sb.toString() : null;
+		}
+		while ( c != EOF && c != ',' && c != close ) {
+			if ( c == '\\' ) {
+				c = read(level);
+				if ( c == EOF ) throw error("nothing to escape at the end");
+				sb.append((char) c);
+				lastEscaped = sb.length();
+				escaped = true;
+			} else if ( c == '"' || c == open ) {
+				throw error("unexpected character '" + (char) c + "'");
+			} else {
+				sb.append((char) c);
+			}
+			c = read(level);
+		}
+		pushback[level] = c;
+		int end = sb.length();
+		while ( end > lastEscaped && Character.isWhitespace(sb.charAt(end - 1)) ) end--;
+		if ( end == 0 || !keep ) return null;
+		if ( array && !escaped && end == 4
+				&& ( sb.charAt(0) | 0x20 ) == 'n' && ( sb.charAt(1) | 0x20 ) == 'u'
+				&& ( sb.charAt(2) | 0x20 ) == 'l' && ( sb.charAt(3) | 0x20 ) == 'l' ) {
+			return null;
+		}
+		sb.setLength(end);
+		return sb.toString();
+	}
+
+	private void readNestedArray(StringBuilder sb) throws ParserException {
+		int depth = 0;
+		boolean inQuotes = false;
+		int c = '{';
+		for (;;) {
+			sb.append((char) c);
+			if ( c == '\\' ) {
+				c = read(level);
+				if ( c == EOF ) break;
+				sb.append((char) c);
+			} else if ( c == '"' ) {
+				inQuotes = !inQuotes;
+			} else if ( !inQuotes ) {
+				if ( c == '{' ) {
+					depth++;
+				} else if ( c == '}' && --depth == 0 ) {
+					return;
+				}
+			}
+			c = read(level);
+			if ( c == EOF ) break;
+		}
+		throw error("nested array is not closed");
+	}
+
+	@Override
+	public void finish() throws ParserException {
+		if ( containers > 0 ) throw error("ROW or ARRAY is not completely read");
+		skipWhitespace();
+		if ( read(level) != EOF ) throw error("unexpected characters at the end");
+	}
+
+	/**
+	 * @return value being read
+	 */
+	public CharSequence getValue() {
+		return value;
+	}
+
+	private ParserException error(String message) {
+		final String text = "Could not parse value at position " + position + ", " + message + ": " + value;
+		if ( containers > 0 && arrayContainers[containers - 1] ) {
+			return new ArrayParserException(text);
+		}
+		return new RowParserException(text);
+	}
+}
@@ -0,0 +1,224 @@
+package org.valgog.utils;
+
+import java.util.Arrays;
+
+import org.valgog.utils.exceptions.ArrayParserException;
+
+/**
+ * Parses the text representation of one dimensional PostgreSQL arrays of numbers and booleans
+ * (like {@code int4[]}, {@code int8[]}, {@code float8[]} or {@code bool[]})
+ * directly into java primitive arrays, without boxing the elements and without creating intermediate lists.
+ * <p>Elements are read through a {@link PostgresElementCursor}, so that they are not copied, every thread reuses its own cursor.
+ *
+ * @author valgog
+ *
+ */
+public class PrimitiveArrayParser {
+
+	/**
+	 * Cursors of the parsers, so that every thread reuses its own cursor, they are released after every value
+	 */
+	private static final ThreadLocal<PostgresElementCursor<ArrayParserException>> cursors = new ThreadLocal<PostgresElementCursor<ArrayParserException>>() {
+		@Override
+		protected PostgresElementCursor<ArrayParserException> initialValue() {
+			return PostgresElementCursor.arrayCursor();
+		}
+	};
+
+	private PrimitiveArrayParser() {}
+
+	/**
+	 * Parse {@code int4[]} (or {@code int2[]}) array text representation
+	 * @param value array text representation like <code>{1,2,3}</code>
+	 * @param nullsAsDefaults if true, NULL elements are set to 0, otherwise NULL elements are not allowed
+	 * @return parsed array
+	 * @throws ArrayParserException if the value is not a valid array representation
+	 */
+	public static final int[] parseIntArray(CharSequence value, boolean nullsAsDefaults) throws ArrayParserException {
+		final PostgresElementCursor<ArrayParserException> c = cursors.get();
+		try {
+			c.reset(value);
+			int[] result = new int[estimateElementCount(value)];
+			int count = 0;
+			while (c.next()) {
+				if ( count == result.length ) result = Arrays.copyOf(result, count * 2 + 1);
+				if ( isNull(c, nullsAsDefaults) ) {
+					count++;
+					continue;
+				}
+				final long l = parseLong(c);
+				if ( l < Integer.MIN_VALUE || l > Integer.MAX_VALUE ) throw error(c, "integer out of range");
+				result[count++] = (int) l;
+			}
+			return count == result.length ? result : Arrays.copyOf(result, count);
+		} finally {
+			c.release();
+		}
+	}
+
+	/**
+	 * Parse {@code int8[]} array text representation
+	 * @param value array text representation like <code>{1,2,3}</code>
+	 * @param nullsAsDefaults if true, NULL elements are set to 0, otherwise NULL elements are not allowed
+	 * @return parsed array
+	 * @throws ArrayParserException if the value is not a valid array representation
+	 */
+	public static final long[] parseLongArray(CharSequence value, boolean nullsAsDefaults) throws ArrayParserException {
+		final PostgresElementCursor<ArrayParserException> c = cursors.get();
+		try {
+			c.reset(value);
+			long[] result = new long[estimateElementCount(value)];
+			int count = 0;
+			while (c.next()) {
+				if ( count == result.length ) result = Arrays.copyOf(result, count * 2 + 1);
+				if ( isNull(c, nullsAsDefaults) ) {
+					count++;
+					continue;
+				}
+				result[count++] = parseLong(c);
+			}
+			return count == result.length ? result : Arrays.copyOf(result, count);
+		} finally {
+			c.release();
+		}
+	}
+
+	/**
+	 * Parse {@code float8[]} (or {@code float4[]}, {@code numeric[]}) array text representation
+	 * @param value array text representation like <code>{1.5,2,NaN}</code>
+	 * @param nullsAsDefaults if true, NULL elements are set to 0, otherwise NULL elements are not allowed
+	 * @return parsed array
+	 * @throws ArrayParserException if the value is not a valid array representation
+	 */
+	public static final double[] parseDoubleArray(CharSequence value, boolean nullsAsDefaults) throws ArrayParserException {
+		final PostgresElementCursor<ArrayParserException> c = cursors.get();
+		try {
+			c.reset(value);
+			double[] result = new double[estimateElementCount(value)];
+			int count = 0;
+			while (c.next()) {
+				if ( count == result.length ) result = Arrays.copyOf(result, count * 2 + 1);
+				if ( isNull(c, nullsAsDefaults) ) {
+					count++;
+					continue;
+				}
+				result[count++] = parseDouble(c);
+			}
+			return count == result.length ? result : Arrays.copyOf(result, count);
+		} finally {
+			c.release();
+		}
+	}
+
+	/**
+	 * Parse {@code bool[]} array text representation
+	 * @param value array text representation like <code>{t,f,t}</code>
+	 * @param nullsAsDefaults if true, NULL elements are set to false, otherwise NULL elements are not allowed
+	 * @return parsed array
+	 * @throws ArrayParserException if the value is not a valid array representation
+	 */
+	public static final boolean[] parseBooleanArray(CharSequence value, boolean nullsAsDefaults) throws ArrayParserException {
+		final PostgresElementCursor<ArrayParserException> c = cursors.get();
+		try {
+			c.reset(value);
+			boolean[] result = new boolean[estimateElementCount(value)];
+			int count = 0;
+			while (c.next()) {
+				if ( count == result.length ) result = Arrays.copyOf(result, count * 2 + 1);
+				if ( isNull(c, nullsAsDefaults) ) {
+					count++;
+					continue;
+				}
+				result[count++] = parseBoolean(c);
+			}
+			return count == result.length ? result : Arrays.copyOf(result, count);
+		} finally {
+			c.release();
+		}
+	}
+
+	/**
+	 * Count of the elements, exact as long as elements contain no commas
+	 */
+	private static int estimateElementCount(CharSequence value) {
+		int count = 1;
+		for (int i = 0, l = value.length(); i < l; i++) {
+			if ( value.charAt(i) == ',' ) count++;
+		}
+		return count;
+	}
+
+	private static boolean isNull(PostgresElementCursor<ArrayParserException> c, boolean nullsAsDefaults) throws ArrayParserException {
+		if ( c.isNull() ) {
+			if ( c.start() == c.end() ) throw error(c, "empty element");
+			if ( nullsAsDefaults ) return true;
+			throw error(c, "NULL element cannot be stored in a primitive array");
+		}
+		if ( !c.isQuoted() && c.charAt(0) == '{' ) throw error(c, "multidimensional arrays are not supported");
+		return false;
+	}
+
+	/**
+	 * Parse the current element of the cursor as long, using the cursor as a view of the element
+	 */
+	private static long parseLong(PostgresElementCursor<ArrayParserException> element) throws ArrayParserException {
+		final int length = element.length();
+		int i = 0;
+		boolean negative = false;
+		char ch = element.charAt(i);
+		if ( ch == '-' || ch == '+' ) {
+			negative = ch == '-';
+			if ( ++i == length ) throw error(element, "invalid integer");
+		}
+		long result = 0;
+		for ( ; i < length; i++ ) {
+			final int digit = element.charAt(i) - '0';
+			if ( digit < 0 || digit > 9 ) throw error(element, "invalid integer");
+			// accumulate negatively to be able to represent Long.MIN_VALUE
+			if ( result < ( Long.MIN_VALUE + digit ) / 10 ) throw error(element, "integer out of range");
+			result = result * 10 - digit;
+		}
+		if ( negative ) return result;
+		if ( result == Long.MIN_VALUE ) throw error(element, "integer out of range");
+		return -result;
+	}
+
+	private static double parseDouble(PostgresElementCursor<ArrayParserException> element) throws ArrayParserException {
+		// fast path for the elements, that are small integers
+		final int length = element.length();
+		if ( length < 16 ) {
+			boolean digitsOnly = true;
+			for (int i = 0; i < length; i++) {
+				final char ch = element.charAt(i);
+				if ( ( ch < '0' || ch > '9' ) && !( i == 0 && ch == '-' && length > 1 ) ) {
+					digitsOnly = false;
+					break;
+				}
+			}
+			if ( digitsOnly ) return parseLong(element);
+		}
+		try {
+			return Double.parseDouble(element.toString());
+		} catch (NumberFormatException e) {
+			throw error(element, "invalid floating point number");
+		}
+	}
+
+	private static boolean parseBoolean(PostgresElementCursor<ArrayParserException> element) throws ArrayParserException {
+		final int length = element.length();
+		final char ch = element.charAt(0);
+		if ( length == 1 ) {
+			if ( ch == 't' || ch == 'T' ) return true;
+			if ( ch == 'f' || ch == 'F' ) return false;
+		} else {
+			final String s = element.toString();
+			if ( "true".equalsIgnoreCase(s) ) return true;
+			if ( "false".equalsIgnoreCase(s) ) return false;
+		}
+		throw error(element, "invalid boolean");
+	}
+
+	private static ArrayParserException error(PostgresElementCursor<ArrayParserException> c, String message) {
+		return new ArrayParserException("Could not parse array element at position " + c.start() + ", " + message + ": " + c.getValue());
+	}
+}
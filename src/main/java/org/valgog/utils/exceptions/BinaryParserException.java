@@ -0,0 +1,18 @@
+package org.valgog.utils.exceptions;
+
+/**
+ * @author valgog
+ *
+ */
+public class BinaryParserException extends ParserException {
+
+	private static final long serialVersionUID = -4127394612038776541L;
+
+	/**
+	 * @param message
+	 */
+	public BinaryParserException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,239 @@
+package org.valgog.utils.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import org.valgog.utils.PostgresUtils;
+import org.valgog.utils.exceptions.ArrayParserException;
+
+/**
+ * {@link Array} replayed from its text representation by the {@link RecordedResultSet}.
+ * <p>Like the PostgreSQL driver does, {@link #getArray()} returns the arrays of the Java types of the base type:
+ * {@link Boolean}, {@link Integer} (also for <code>int2</code>), {@link Long}, {@link Float}, {@link Double}, {@link BigDecimal},
+ * {@link java.sql.Date}, {@link Time}, {@link Timestamp} and {@link String} for the other base types.
+ * Multidimensional arrays are returned as the arrays of the arrays.
+ *
+ * @author valgog
+ */
+public final class RecordedArray implements Array {
+
+	private final String text;
+	private final int baseType;
+	private final String baseTypeName;
+
+	/**
+	 * @param text text representation of the array, like <code>{1,2,3}</code>
+	 * @param baseType JDBC type of the elements, see {@link Types}
+	 * @param baseTypeName database type name of the elements
+	 */
+	public RecordedArray(String text, int baseType, String baseTypeName) {
+		if ( text == null ) throw new NullPointerException("text should be not null");
+		this.text = text;
+		this.baseType = baseType;
+		this.baseTypeName = baseTypeName;
+	}
+
+	@Override
+	public String getBaseTypeName() {
+		return baseTypeName;
+	}
+
+	@Override
+	public int getBaseType() {
+		return baseType;
+	}
+
+	@Override
+	public Object getArray() throws SQLException {
+		final String value = unbounded();
+		int dimensions = 0;
+		while ( dimensions < value.length() && value.charAt(dimensions) == '{' ) dimensions++;
+		return parse(value, Math.max(dimensions, 1));
+	}
+
+	@Override
+	public Object getArray(Map<String, Class<?>> map) throws SQLException {
+		if ( map != null && ! map.isEmpty() ) throw new SQLFeatureNotSupportedException("Custom type maps are not supported");
+		return getArray();
+	}
+
+	@Override
+	public Object getArray(long index, int count) throws SQLException {
+		final Object[] array = (Object[]) getArray();
+		if ( index < 1 || count < 0 || index - 1 + count > array.length ) {
+			throw new SQLException("The array index is out of range: " + index + ", number of elements: " + array.length + ".", "22023");
+		}
+		final Object[] slice = (Object[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), count);
+		System.arraycopy(array, (int) index - 1, slice, 0, count);
+		return slice;
+	}
+
+	@Override
+	public Object getArray(long index, int count, Map<String, Class<?>> map) throws SQLException {
+		if ( map != null && ! map.isEmpty() ) throw new SQLFeatureNotSupportedException("Custom type maps are not supported");
+		return getArray(index, count);
+	}
+
+	/**
+	 * Like the PostgreSQL driver does, the result set has the <code>INDEX</code> and the <code>VALUE</code> columns,
+	 * elements of the multidimensional arrays are the arrays themselves
+	 */
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		final List<String> elements = elements();
+		return resultSet(elements, 1, elements.size());
+	}
+
+	@Override
+	public ResultSet getResultSet(Map<String, Class<?>> map) throws SQLException {
+		if ( map != null && ! map.isEmpty() ) throw new SQLFeatureNotSupportedException("Custom type maps are not supported");
+		return getResultSet();
+	}
+
+	@Override
+	public ResultSet getResultSet(long index, int count) throws SQLException {
+		final List<String> elements = elements();
+		if ( index < 1 || count < 0 || index - 1 + count > elements.size() ) {
+			throw new SQLException("The array index is out of range: " + index + ", number of elements: " + elements.size() + ".", "22023");
+		}
+		return resultSet(elements, (int) index, count);
+	}
+
+	@Override
+	public ResultSet getResultSet(long index, int count, Map<String, Class<?>> map) throws SQLException {
+		if ( map != null && ! map.isEmpty() ) throw new SQLFeatureNotSupportedException("Custom type maps are not supported");
+		return getResultSet(index, count);
+	}
+
+	@Override
+	public void free() {
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	private String unbounded() {
+		// explicit dimensions, like [0:1]={1,2}
+		return text.startsWith("[") ? text.substring(text.indexOf('=') + 1) : text;
+	}
+
+	private List<String> elements() throws SQLException {
+		try {
+			return PostgresUtils.postgresArray2StringList(unbounded());
+		} catch (ArrayParserException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+	}
+
+	private ResultSet resultSet(List<String> elements, int index, int size) throws SQLException {
+		final boolean nested = unbounded().startsWith("{{");
+		final RecordedResultSetMetaData metaData = new RecordedResultSetMetaData(2);
+		metaData.labels[0] = metaData.names[0] = "INDEX";
+		metaData.typeNames[0] = "int4";
+		metaData.classNames[0] = Integer.class.getName();
+		metaData.types[0] = Types.INTEGER;
+		metaData.labels[1] = metaData.names[1] = "VALUE";
+		metaData.typeNames[1] = nested ? "_" + baseTypeName : baseTypeName;
+		metaData.classNames[1] = nested ? Array.class.getName() : elementClass().getName();
+		metaData.types[1] = nested ? Types.ARRAY : baseType;
+		final Object[][] values = new Object[size][];
+		final String[][] texts = new String[size][];
+		for (int i = 0; i < size; i++) {
+			final String element = elements.get(index - 1 + i);
+			values[i] = new Object[] { Integer.valueOf(index + i), nested && element != null ? new RecordedArray(element, baseType, baseTypeName) : toElement(element) };
+			texts[i] = new String[] { String.valueOf(index + i), element };
+		}
+		return new RecordedResultSet(metaData, values, texts);
+	}
+
+	private Object parse(String value, int dimensions) throws SQLException {
+		final List<String> elements;
+		try {
+			elements = PostgresUtils.postgresArray2StringList(value);
+		} catch (ArrayParserException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+		final Class<?> elementClass = elementClass();
+		final int[] shape = new int[dimensions];
+		shape[0] = elements.size();
+		final Object[] array = (Object[]) java.lang.reflect.Array.newInstance(elementClass, shape);
+		for (int i = 0; i < array.length; i++) {
+			final String element = elements.get(i);
+			array[i] = dimensions > 1 ? ( element == null ? null : parse(element, dimensions - 1) ) : toElement(element);
+		}
+		return array;
+	}
+
+	private Class<?> elementClass() {
+		switch ( baseType ) {
+		case Types.BIT:
+		case Types.BOOLEAN:
+			return Boolean.class;
+		case Types.SMALLINT:
+		case Types.INTEGER:
+			return Integer.class;
+		case Types.BIGINT:
+			return Long.class;
+		case Types.REAL:
+			return Float.class;
+		case Types.DOUBLE:
+		case Types.FLOAT:
+			return Double.class;
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return BigDecimal.class;
+		case Types.DATE:
+			return java.sql.Date.class;
+		case Types.TIME:
+			return Time.class;
+		case Types.TIMESTAMP:
+			return Timestamp.class;
+		default:
+			return String.class;
+		}
+	}
+
+	private Object toElement(String element) throws SQLException {
+		if ( element == null ) return null;
+		try {
+			switch ( baseType ) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return Boolean.valueOf(RecordedResultSet.toBoolean(element));
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return Integer.valueOf(element.trim());
+			case Types.BIGINT:
+				return Long.valueOf(element.trim());
+			case Types.REAL:
+				return Float.valueOf(element.trim());
+			case Types.DOUBLE:
+			case Types.FLOAT:
+				return Double.valueOf(element.trim());
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return new BigDecimal(element.trim());
+			case Types.DATE:
+				return java.sql.Date.valueOf(element.trim());
+			case Types.TIME:
+				return Time.valueOf(element.trim());
+			case Types.TIMESTAMP:
+				return RecordedResultSet.parseTimestamp(element);
+			default:
+				return element;
+			}
+		} catch (IllegalArgumentException e) {
+			throw new SQLException("Bad value for type " + baseTypeName + " : " + element, "22003", e);
+		}
+	}
+}
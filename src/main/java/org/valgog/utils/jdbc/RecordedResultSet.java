@@ -0,0 +1,1496 @@
+package org.valgog.utils.jdbc;
+
+import static org.valgog.utils.jdbc.RecordingFormat.readBytes;
+import static org.valgog.utils.jdbc.RecordingFormat.readString;
+import static org.valgog.utils.jdbc.RecordingFormat.readVarInt;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import org.postgresql.util.PGobject;
+
+/**
+ * {@link ResultSet} replaying the rows recorded by the {@link ResultSetRecorder}, so that the mapping can be benchmarked
+ * and tested end to end against the recorded data without a database server.
+ * <p>The result set behaves like the result sets of the PostgreSQL driver: {@link #getString(int)} returns the recorded text,
+ * {@link #getObject(int)} returns the values of the recorded classes (new {@link PGobject}s and copies of the mutable values
+ * for every call), the numeric getters parse the text and return 0 for NULL values, columns are found by their labels
+ * case insensitively, and the same errors are thrown, when the result set is closed, not positioned on a row
+ * or a column index is out of range. The result set is read only and scrollable, {@link #beforeFirst()}
+ * can be used to replay the rows again.
+ * <p>All the rows are read into memory. Result sets are not thread safe.
+ *
+ * @author valgog
+ */
+public final class RecordedResultSet implements ResultSet {
+
+	private final RecordedResultSetMetaData metaData;
+	private final Object[][] values;
+	private final String[][] texts;
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+	private final Map<String, Integer> lowerCaseColumnIndexes = new HashMap<String, Integer>();
+
+	private int row = -1;
+	private boolean wasNull;
+	private boolean closed;
+	private int fetchSize;
+	private int fetchDirection = FETCH_FORWARD;
+
+	RecordedResultSet(RecordedResultSetMetaData metaData, Object[][] values, String[][] texts) {
+		this.metaData = metaData;
+		this.values = values;
+		this.texts = texts;
+		for (int i = metaData.labels.length - 1; i >= 0; i--) {
+			// the first of the columns with the same label is found
+			columnIndexes.put(metaData.labels[i], i + 1);
+			lowerCaseColumnIndexes.put(metaData.labels[i].toLowerCase(Locale.US), i + 1);
+		}
+	}
+
+	/**
+	 * Read the recording from the given file, that is decompressed with gzip, if its name ends with <code>.gz</code>
+	 */
+	public static RecordedResultSet read(File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return read(file.getName().endsWith(".gz") ? new GZIPInputStream(in) : in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the recording from the given stream, the stream is not closed
+	 */
+	public static RecordedResultSet read(InputStream stream) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		final byte[] magic = new byte[RecordingFormat.MAGIC.length];
+		in.readFully(magic);
+		if ( ! Arrays.equals(magic, RecordingFormat.MAGIC) ) {
+			throw new IOException("Stream is not a result set recording");
+		}
+		final int version = in.readUnsignedByte();
+		if ( version != RecordingFormat.VERSION ) {
+			throw new IOException("Version " + version + " of the result set recording is not supported");
+		}
+		final int columnCount = readVarInt(in);
+		final RecordedResultSetMetaData metaData = new RecordedResultSetMetaData(columnCount);
+		for (int i = 0; i < columnCount; i++) {
+			metaData.labels[i] = readString(in);
+			metaData.names[i] = readString(in);
+			metaData.typeNames[i] = readString(in);
+			metaData.classNames[i] = readString(in);
+			metaData.types[i] = readVarInt(in);
+			metaData.nullables[i] = readVarInt(in);
+			metaData.precisions[i] = readVarInt(in);
+			metaData.scales[i] = readVarInt(in);
+		}
+		final List<Object[]> values = new ArrayList<Object[]>();
+		final List<String[]> texts = new ArrayList<String[]>();
+		final Map<String, Class<? extends PGobject>> pgObjectClasses = new HashMap<String, Class<? extends PGobject>>();
+		for (int marker; ( marker = in.readUnsignedByte() ) != RecordingFormat.END;) {
+			if ( marker != RecordingFormat.ROW ) throw new IOException("Malformed result set recording, row " + values.size() + " is expected");
+			final Object[] rowValues = new Object[columnCount];
+			final String[] rowTexts = new String[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				readValue(in, rowValues, rowTexts, i, pgObjectClasses);
+			}
+			values.add(rowValues);
+			texts.add(rowTexts);
+		}
+		return new RecordedResultSet(metaData, values.toArray(new Object[values.size()][]), texts.toArray(new String[texts.size()][]));
+	}
+
+	private static void readValue(DataInputStream in, Object[] rowValues, String[] rowTexts, int i, Map<String, Class<? extends PGobject>> pgObjectClasses) throws IOException {
+		final int tag = in.readUnsignedByte();
+		if ( tag == RecordingFormat.NULL ) return;
+		final String text = readString(in);
+		rowTexts[i] = text;
+		try {
+			switch ( tag ) {
+			case RecordingFormat.STRING:
+			case RecordingFormat.OTHER:
+				rowValues[i] = text;
+				break;
+			case RecordingFormat.INTEGER:
+				rowValues[i] = Integer.valueOf(text.trim());
+				break;
+			case RecordingFormat.LONG:
+				rowValues[i] = Long.valueOf(text.trim());
+				break;
+			case RecordingFormat.SHORT:
+				rowValues[i] = Short.valueOf(text.trim());
+				break;
+			case RecordingFormat.FLOAT:
+				rowValues[i] = Float.valueOf(text.trim());
+				break;
+			case RecordingFormat.DOUBLE:
+				rowValues[i] = Double.valueOf(text.trim());
+				break;
+			case RecordingFormat.BIG_DECIMAL:
+				rowValues[i] = new BigDecimal(text.trim());
+				break;
+			case RecordingFormat.BOOLEAN:
+				rowValues[i] = Boolean.valueOf(toBoolean(text));
+				break;
+			case RecordingFormat.DATE:
+				rowValues[i] = new Date(in.readLong());
+				break;
+			case RecordingFormat.TIME:
+				rowValues[i] = new Time(in.readLong());
+				break;
+			case RecordingFormat.TIMESTAMP:
+				final Timestamp timestamp = new Timestamp(in.readLong());
+				timestamp.setNanos(readVarInt(in));
+				rowValues[i] = timestamp;
+				break;
+			case RecordingFormat.BYTES:
+				rowValues[i] = readBytes(in);
+				break;
+			case RecordingFormat.PG_OBJECT:
+				final String className = readString(in);
+				Class<? extends PGobject> pgObjectClass = pgObjectClasses.get(className);
+				if ( pgObjectClass == null ) {
+					pgObjectClass = pgObjectClass(className);
+					pgObjectClasses.put(className, pgObjectClass);
+				}
+				rowValues[i] = new PGobjectValue(pgObjectClass, readString(in), readString(in));
+				break;
+			case RecordingFormat.ARRAY:
+				rowValues[i] = new RecordedArray(text, readVarInt(in), readString(in));
+				break;
+			case RecordingFormat.UUID:
+				rowValues[i] = UUID.fromString(text);
+				break;
+			default:
+				throw new IOException("Unknown value tag " + tag + " in the result set recording");
+			}
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Malformed value " + text + " in the result set recording", e);
+		}
+	}
+
+	/**
+	 * @return class of the recorded {@link PGobject}s, that has a public default constructor, or {@link PGobject}.
+	 * The class is not initialized, unless it is a {@link PGobject}, so that recordings cannot run static initializers of other classes
+	 */
+	private static Class<? extends PGobject> pgObjectClass(String className) {
+		try {
+			final Class<? extends PGobject> type = Class.forName(className, false, RecordedResultSet.class.getClassLoader()).asSubclass(PGobject.class);
+			type.getConstructor();
+			return type;
+		} catch (ClassNotFoundException e) {
+			return PGobject.class;
+		} catch (LinkageError e) {
+			return PGobject.class;
+		} catch (ClassCastException e) {
+			return PGobject.class;
+		} catch (NoSuchMethodException e) {
+			return PGobject.class;
+		}
+	}
+
+	/**
+	 * Recorded {@link PGobject}, new objects are created for every {@link ResultSet#getObject(int)} call, as they are mutable
+	 */
+	private static final class PGobjectValue {
+		final Class<? extends PGobject> type;
+		final String typeName;
+		final String value;
+
+		PGobjectValue(Class<? extends PGobject> type, String typeName, String value) {
+			this.type = type;
+			this.typeName = typeName;
+			this.value = value;
+		}
+
+		PGobject newInstance() throws SQLException {
+			final PGobject object;
+			try {
+				object = type.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new SQLException("Cannot create " + type.getName(), e);
+			}
+			object.setType(typeName);
+			object.setValue(value);
+			return object;
+		}
+	}
+
+	/**
+	 * @return boolean value of the given text, the way the driver converts it
+	 */
+	static boolean toBoolean(String s) {
+		if ( s == null ) return false;
+		final String value = s.trim();
+		if ( value.equalsIgnoreCase("t") || value.equalsIgnoreCase("true") || value.equals("1") ) return true;
+		try {
+			return Double.parseDouble(value) == 1;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Parse the text of a timestamp, like <code>2010-05-06 07:08:09.123+02</code>, the timestamps without a time zone
+	 * are in the default time zone
+	 * @throws IllegalArgumentException if the text is not a timestamp
+	 */
+	static Timestamp parseTimestamp(String text) {
+		String s = text.trim();
+		int end = s.length();
+		while ( end > 0 && ( Character.isDigit(s.charAt(end - 1)) || s.charAt(end - 1) == ':' ) ) end--;
+		long offsetMillis = 0;
+		boolean hasOffset = false;
+		// the date part contains the minuses too
+		if ( end > 10 && end < s.length() && ( s.charAt(end - 1) == '+' || s.charAt(end - 1) == '-' ) ) {
+			final String[] parts = s.substring(end).split(":");
+			for (int i = 0; i < parts.length && i < 3; i++) {
+				offsetMillis = offsetMillis * 60 + Integer.parseInt(parts[i]);
+			}
+			for (int i = parts.length; i < 3; i++) {
+				offsetMillis *= 60;
+			}
+			offsetMillis *= 1000;
+			if ( s.charAt(end - 1) == '-' ) offsetMillis = -offsetMillis;
+			hasOffset = true;
+			s = s.substring(0, end - 1);
+		}
+		if ( s.length() == 10 ) s = s + " 00:00:00";
+		final Timestamp local = Timestamp.valueOf(s);
+		if ( ! hasOffset ) return local;
+		final int nanos = local.getNanos();
+		final long millis = local.getTime() + TimeZone.getDefault().getOffset(local.getTime()) - offsetMillis;
+		final Timestamp timestamp = new Timestamp(millis);
+		timestamp.setNanos(nanos);
+		return timestamp;
+	}
+
+	private void checkClosed() throws SQLException {
+		if ( closed ) throw new SQLException("This ResultSet is closed.", "55000");
+	}
+
+	private int checkColumn(int columnIndex) throws SQLException {
+		checkClosed();
+		if ( row < 0 || row >= values.length ) {
+			throw new SQLException("ResultSet not positioned properly, perhaps you need to call next.", "24000");
+		}
+		if ( columnIndex < 1 || columnIndex > metaData.labels.length ) {
+			throw new SQLException("The column index is out of range: " + columnIndex + ", number of columns: " + metaData.labels.length + ".", "22023");
+		}
+		return columnIndex - 1;
+	}
+
+	private Object value(int columnIndex) throws SQLException {
+		final int column = checkColumn(columnIndex);
+		final Object value = values[row][column];
+		wasNull = value == null;
+		return value;
+	}
+
+	private String text(int columnIndex) throws SQLException {
+		final int column = checkColumn(columnIndex);
+		final String text = texts[row][column];
+		wasNull = text == null;
+		return text;
+	}
+
+	private static SQLException badValue(String type, String text, Exception cause) {
+		return new SQLException("Bad value for type " + type + " : " + text, "22003", cause);
+	}
+
+	private static SQLException readOnly() {
+		return new SQLException("ResultSets with concurrency CONCUR_READ_ONLY cannot be updated.", "24000");
+	}
+
+	private static long toLong(String text, String type, long min, long max) throws SQLException {
+		if ( text == null ) return 0;
+		final String s = text.trim();
+		final long value;
+		try {
+			value = Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			// decimal values, like 1.0
+			try {
+				final BigDecimal decimal = new BigDecimal(s);
+				if ( decimal.compareTo(BigDecimal.valueOf(min)) >= 0 && decimal.compareTo(BigDecimal.valueOf(max)) <= 0 ) {
+					return decimal.longValue();
+				}
+			} catch (NumberFormatException ignored) {
+				// reported below
+			}
+			throw badValue(type, text, e);
+		}
+		if ( value < min || value > max ) throw badValue(type, text, null);
+		return value;
+	}
+
+	private static double toDouble(String text, String type) throws SQLException {
+		if ( text == null ) return 0;
+		try {
+			return Double.parseDouble(text.trim());
+		} catch (NumberFormatException e) {
+			throw badValue(type, text, e);
+		}
+	}
+
+	/*
+	 * Navigation
+	 */
+
+	@Override
+	public boolean next() throws SQLException {
+		checkClosed();
+		if ( row < values.length ) row++;
+		return row < values.length;
+	}
+
+	@Override
+	public boolean previous() throws SQLException {
+		checkClosed();
+		if ( row >= 0 ) row--;
+		return row >= 0;
+	}
+
+	@Override
+	public boolean absolute(int position) throws SQLException {
+		checkClosed();
+		if ( position > 0 ) {
+			row = Math.min(position - 1, values.length);
+		} else if ( position < 0 ) {
+			row = Math.max(values.length + position, -1);
+		} else {
+			row = -1;
+		}
+		return row >= 0 && row < values.length;
+	}
+
+	@Override
+	public boolean relative(int rows) throws SQLException {
+		checkClosed();
+		row = (int) Math.max(-1, Math.min(values.length, (long) row + rows));
+		return row >= 0 && row < values.length;
+	}
+
+	@Override
+	public boolean first() throws SQLException {
+		return absolute(1);
+	}
+
+	@Override
+	public boolean last() throws SQLException {
+		return absolute(-1);
+	}
+
+	@Override
+	public void beforeFirst() throws SQLException {
+		checkClosed();
+		row = -1;
+	}
+
+	@Override
+	public void afterLast() throws SQLException {
+		checkClosed();
+		row = values.length;
+	}
+
+	@Override
+	public boolean isBeforeFirst() throws SQLException {
+		checkClosed();
+		return row == -1 && values.length > 0;
+	}
+
+	@Override
+	public boolean isAfterLast() throws SQLException {
+		checkClosed();
+		return row == values.length && values.length > 0;
+	}
+
+	@Override
+	public boolean isFirst() throws SQLException {
+		checkClosed();
+		return row == 0 && values.length > 0;
+	}
+
+	@Override
+	public boolean isLast() throws SQLException {
+		checkClosed();
+		return row == values.length - 1 && values.length > 0;
+	}
+
+	@Override
+	public int getRow() throws SQLException {
+		checkClosed();
+		return row >= 0 && row < values.length ? row + 1 : 0;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public boolean wasNull() throws SQLException {
+		checkClosed();
+		return wasNull;
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		checkClosed();
+		return metaData;
+	}
+
+	@Override
+	public int findColumn(String columnLabel) throws SQLException {
+		checkClosed();
+		Integer index = columnIndexes.get(columnLabel);
+		if ( index == null ) {
+			index = lowerCaseColumnIndexes.get(columnLabel.toLowerCase(Locale.US));
+			if ( index == null ) {
+				throw new SQLException("The column name " + columnLabel + " was not found in this ResultSet.", "42703");
+			}
+		}
+		return index;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	@Override
+	public String getString(int columnIndex) throws SQLException {
+		return text(columnIndex);
+	}
+
+	@Override
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value instanceof Boolean ) return ((Boolean) value).booleanValue();
+		return toBoolean(texts[row][columnIndex - 1]);
+	}
+
+	@Override
+	public byte getByte(int columnIndex) throws SQLException {
+		return (byte) toLong(text(columnIndex), "byte", Byte.MIN_VALUE, Byte.MAX_VALUE);
+	}
+
+	@Override
+	public short getShort(int columnIndex) throws SQLException {
+		return (short) toLong(text(columnIndex), "short", Short.MIN_VALUE, Short.MAX_VALUE);
+	}
+
+	@Override
+	public int getInt(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value instanceof Integer ) return ((Integer) value).intValue();
+		return (int) toLong(texts[row][columnIndex - 1], "int", Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public long getLong(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value instanceof Long || value instanceof Integer ) return ((Number) value).longValue();
+		return toLong(texts[row][columnIndex - 1], "long", Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	@Override
+	public float getFloat(int columnIndex) throws SQLException {
+		return (float) toDouble(text(columnIndex), "float");
+	}
+
+	@Override
+	public double getDouble(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value instanceof Double ) return ((Double) value).doubleValue();
+		return toDouble(texts[row][columnIndex - 1], "double");
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value == null ) return null;
+		if ( value instanceof BigDecimal ) return (BigDecimal) value;
+		final String text = texts[row][columnIndex - 1];
+		try {
+			return new BigDecimal(text.trim());
+		} catch (NumberFormatException e) {
+			throw badValue("BigDecimal", text, e);
+		}
+	}
+
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		final BigDecimal value = getBigDecimal(columnIndex);
+		return value == null ? null : value.setScale(scale, RoundingMode.HALF_UP);
+	}
+
+	@Override
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value == null ) return null;
+		if ( value instanceof byte[] ) return ((byte[]) value).clone();
+		return texts[row][columnIndex - 1].getBytes(RecordingFormat.UTF8);
+	}
+
+	@Override
+	public Date getDate(int columnIndex) throws SQLException {
+		return getDate(columnIndex, null);
+	}
+
+	@Override
+	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value == null ) return null;
+		if ( value instanceof java.util.Date && cal == null ) return new Date(((java.util.Date) value).getTime());
+		return new Date(toTimestamp(columnIndex, cal).getTime());
+	}
+
+	@Override
+	public Time getTime(int columnIndex) throws SQLException {
+		return getTime(columnIndex, null);
+	}
+
+	@Override
+	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value == null ) return null;
+		if ( value instanceof java.util.Date && cal == null ) return new Time(((java.util.Date) value).getTime());
+		final String text = texts[row][columnIndex - 1];
+		try {
+			return new Time(shift(Time.valueOf(text.trim()).getTime(), cal));
+		} catch (IllegalArgumentException e) {
+			return new Time(toTimestamp(columnIndex, cal).getTime());
+		}
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		return getTimestamp(columnIndex, null);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value == null ) return null;
+		if ( value instanceof Timestamp && cal == null ) return (Timestamp) ((Timestamp) value).clone();
+		if ( value instanceof java.util.Date && cal == null ) return new Timestamp(((java.util.Date) value).getTime());
+		return toTimestamp(columnIndex, cal);
+	}
+
+	/**
+	 * Parse the text of the value as a timestamp, the timestamps without a time zone are in the time zone of the given calendar
+	 */
+	private Timestamp toTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		final String text = texts[row][columnIndex - 1];
+		try {
+			final Timestamp timestamp = parseTimestamp(text);
+			if ( cal != null && ! metaData.typeNames[columnIndex - 1].endsWith("tz") ) {
+				final int nanos = timestamp.getNanos();
+				timestamp.setTime(shift(timestamp.getTime(), cal));
+				timestamp.setNanos(nanos);
+			}
+			return timestamp;
+		} catch (IllegalArgumentException e) {
+			throw badValue("timestamp", text, e);
+		}
+	}
+
+	/**
+	 * Move the local time in the default time zone into the time zone of the given calendar
+	 */
+	private static long shift(long millis, Calendar cal) {
+		if ( cal == null ) return millis;
+		return millis + TimeZone.getDefault().getOffset(millis) - cal.getTimeZone().getOffset(millis);
+	}
+
+	@Override
+	public Object getObject(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value instanceof PGobjectValue ) return ((PGobjectValue) value).newInstance();
+		if ( value instanceof Timestamp ) return ((Timestamp) value).clone();
+		if ( value instanceof java.util.Date ) return ((java.util.Date) value).clone();
+		if ( value instanceof byte[] ) return ((byte[]) value).clone();
+		return value;
+	}
+
+	@Override
+	public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+		if ( map != null && ! map.isEmpty() ) throw new SQLFeatureNotSupportedException("Custom type maps are not supported");
+		return getObject(columnIndex);
+	}
+
+	@Override
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		if ( type == null ) throw new SQLException("Invalid class null", "22023");
+		final Object value;
+		if ( type == String.class ) value = getString(columnIndex);
+		else if ( type == Integer.class ) value = getInt(columnIndex);
+		else if ( type == Long.class ) value = getLong(columnIndex);
+		else if ( type == Short.class ) value = getShort(columnIndex);
+		else if ( type == Double.class ) value = getDouble(columnIndex);
+		else if ( type == Float.class ) value = getFloat(columnIndex);
+		else if ( type == Boolean.class ) value = getBoolean(columnIndex);
+		else if ( type == BigDecimal.class ) value = getBigDecimal(columnIndex);
+		else if ( type == Date.class ) value = getDate(columnIndex);
+		else if ( type == Time.class ) value = getTime(columnIndex);
+		else if ( type == Timestamp.class ) value = getTimestamp(columnIndex);
+		else if ( type == byte[].class ) value = getBytes(columnIndex);
+		else if ( type == Array.class ) value = getArray(columnIndex);
+		else {
+			final Object object = getObject(columnIndex);
+			if ( object != null && ! type.isInstance(object) ) {
+				throw new SQLException("conversion to " + type + " from " + metaData.typeNames[columnIndex - 1] + " not supported", "22023");
+			}
+			return type.cast(object);
+		}
+		return wasNull ? null : type.cast(value);
+	}
+
+	@Override
+	public Array getArray(int columnIndex) throws SQLException {
+		final Object value = value(columnIndex);
+		if ( value == null || value instanceof Array ) return (Array) value;
+		throw new SQLException("Cannot convert the column of type " + metaData.typeNames[columnIndex - 1] + " to requested type java.sql.Array.", "42804");
+	}
+
+	@Override
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		final String text = text(columnIndex);
+		return text == null ? null : new StringReader(text);
+	}
+
+	@Override
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		final byte[] bytes = getBytes(columnIndex);
+		return bytes == null ? null : new ByteArrayInputStream(bytes);
+	}
+
+	@Override
+	public InputStream getAsciiStream(int columnIndex) throws SQLException {
+		final String text = text(columnIndex);
+		return text == null ? null : new ByteArrayInputStream(text.getBytes(Charset.forName("US-ASCII")));
+	}
+
+	@Override
+	@Deprecated
+	public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+		final String text = text(columnIndex);
+		return text == null ? null : new ByteArrayInputStream(text.getBytes(RecordingFormat.UTF8));
+	}
+
+	@Override
+	public String getNString(int columnIndex) throws SQLException {
+		return getString(columnIndex);
+	}
+
+	@Override
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		return getCharacterStream(columnIndex);
+	}
+
+	@Override
+	public URL getURL(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("getURL is not supported");
+	}
+
+	@Override
+	public Ref getRef(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("getRef is not supported");
+	}
+
+	@Override
+	public Blob getBlob(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Large objects are not recorded");
+	}
+
+	@Override
+	public Clob getClob(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Large objects are not recorded");
+	}
+
+	@Override
+	public NClob getNClob(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Large objects are not recorded");
+	}
+
+	@Override
+	public RowId getRowId(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("getRowId is not supported");
+	}
+
+	@Override
+	public SQLXML getSQLXML(int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("getSQLXML is not supported");
+	}
+
+	/*
+	 * Getters by the column labels
+	 */
+
+	@Override
+	public String getString(String columnLabel) throws SQLException {
+		return getString(findColumn(columnLabel));
+	}
+
+	@Override
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return getBoolean(findColumn(columnLabel));
+	}
+
+	@Override
+	public byte getByte(String columnLabel) throws SQLException {
+		return getByte(findColumn(columnLabel));
+	}
+
+	@Override
+	public short getShort(String columnLabel) throws SQLException {
+		return getShort(findColumn(columnLabel));
+	}
+
+	@Override
+	public int getInt(String columnLabel) throws SQLException {
+		return getInt(findColumn(columnLabel));
+	}
+
+	@Override
+	public long getLong(String columnLabel) throws SQLException {
+		return getLong(findColumn(columnLabel));
+	}
+
+	@Override
+	public float getFloat(String columnLabel) throws SQLException {
+		return getFloat(findColumn(columnLabel));
+	}
+
+	@Override
+	public double getDouble(String columnLabel) throws SQLException {
+		return getDouble(findColumn(columnLabel));
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel));
+	}
+
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel), scale);
+	}
+
+	@Override
+	public byte[] getBytes(String columnLabel) throws SQLException {
+		return getBytes(findColumn(columnLabel));
+	}
+
+	@Override
+	public Date getDate(String columnLabel) throws SQLException {
+		return getDate(findColumn(columnLabel));
+	}
+
+	@Override
+	public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+		return getDate(findColumn(columnLabel), cal);
+	}
+
+	@Override
+	public Time getTime(String columnLabel) throws SQLException {
+		return getTime(findColumn(columnLabel));
+	}
+
+	@Override
+	public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+		return getTime(findColumn(columnLabel), cal);
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnLabel) throws SQLException {
+		return getTimestamp(findColumn(columnLabel));
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+		return getTimestamp(findColumn(columnLabel), cal);
+	}
+
+	@Override
+	public Object getObject(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel));
+	}
+
+	@Override
+	public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+		return getObject(findColumn(columnLabel), map);
+	}
+
+	@Override
+	public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+		return getObject(findColumn(columnLabel), type);
+	}
+
+	@Override
+	public Array getArray(String columnLabel) throws SQLException {
+		return getArray(findColumn(columnLabel));
+	}
+
+	@Override
+	public Reader getCharacterStream(String columnLabel) throws SQLException {
+		return getCharacterStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public InputStream getBinaryStream(String columnLabel) throws SQLException {
+		return getBinaryStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public InputStream getAsciiStream(String columnLabel) throws SQLException {
+		return getAsciiStream(findColumn(columnLabel));
+	}
+
+	@Override
+	@Deprecated
+	public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+		return getUnicodeStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public String getNString(String columnLabel) throws SQLException {
+		return getNString(findColumn(columnLabel));
+	}
+
+	@Override
+	public Reader getNCharacterStream(String columnLabel) throws SQLException {
+		return getNCharacterStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public URL getURL(String columnLabel) throws SQLException {
+		return getURL(findColumn(columnLabel));
+	}
+
+	@Override
+	public Ref getRef(String columnLabel) throws SQLException {
+		return getRef(findColumn(columnLabel));
+	}
+
+	@Override
+	public Blob getBlob(String columnLabel) throws SQLException {
+		return getBlob(findColumn(columnLabel));
+	}
+
+	@Override
+	public Clob getClob(String columnLabel) throws SQLException {
+		return getClob(findColumn(columnLabel));
+	}
+
+	@Override
+	public NClob getNClob(String columnLabel) throws SQLException {
+		return getNClob(findColumn(columnLabel));
+	}
+
+	@Override
+	public RowId getRowId(String columnLabel) throws SQLException {
+		return getRowId(findColumn(columnLabel));
+	}
+
+	@Override
+	public SQLXML getSQLXML(String columnLabel) throws SQLException {
+		return getSQLXML(findColumn(columnLabel));
+	}
+
+	/*
+	 * Properties of the result set
+	 */
+
+	@Override
+	public int getType() throws SQLException {
+		checkClosed();
+		return TYPE_SCROLL_INSENSITIVE;
+	}
+
+	@Override
+	public int getConcurrency() throws SQLException {
+		checkClosed();
+		return CONCUR_READ_ONLY;
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		checkClosed();
+		return HOLD_CURSORS_OVER_COMMIT;
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		checkClosed();
+		return fetchDirection;
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		checkClosed();
+		if ( direction != FETCH_FORWARD && direction != FETCH_REVERSE && direction != FETCH_UNKNOWN ) {
+			throw new SQLException("Invalid fetch direction constant: " + direction + ".", "22023");
+		}
+		fetchDirection = direction;
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		checkClosed();
+		return fetchSize;
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		checkClosed();
+		if ( rows < 0 ) throw new SQLException("Fetch size must be a value greater to or equal to 0.", "22023");
+		fetchSize = rows;
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		checkClosed();
+		return null;
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		checkClosed();
+	}
+
+	@Override
+	public String getCursorName() throws SQLException {
+		checkClosed();
+		return null;
+	}
+
+	@Override
+	public Statement getStatement() throws SQLException {
+		checkClosed();
+		return null;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if ( iface.isInstance(this) ) return iface.cast(this);
+		throw new SQLException("Cannot unwrap to " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) {
+		return iface.isInstance(this);
+	}
+
+	/*
+	 * Updates are not supported, the result set is read only
+	 */
+
+	@Override
+	public boolean rowUpdated() throws SQLException {
+		checkClosed();
+		return false;
+	}
+
+	@Override
+	public boolean rowInserted() throws SQLException {
+		checkClosed();
+		return false;
+	}
+
+	@Override
+	public boolean rowDeleted() throws SQLException {
+		checkClosed();
+		return false;
+	}
+
+	@Override
+	public void insertRow() throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateRow() throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void deleteRow() throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void refreshRow() throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void cancelRowUpdates() throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void moveToInsertRow() throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void moveToCurrentRow() throws SQLException {
+		throw readOnly();
+	}
+
+@Override
+	public void updateNull(int columnIndex) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateByte(int columnIndex, byte x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateShort(int columnIndex, short x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateInt(int columnIndex, int x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateLong(int columnIndex, long x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateFloat(int columnIndex, float x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateDouble(int columnIndex, double x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateString(int columnIndex, String x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateDate(int columnIndex, Date x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateTime(int columnIndex, Time x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateObject(int columnIndex, Object x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNull(String columnLabel) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateByte(String columnLabel, byte x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateShort(String columnLabel, short x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateInt(String columnLabel, int x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateLong(String columnLabel, long x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateFloat(String columnLabel, float x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateDouble(String columnLabel, double x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateString(String columnLabel, String x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateDate(String columnLabel, Date x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateTime(String columnLabel, Time x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader x, int length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateObject(String columnLabel, Object x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateRef(int columnIndex, Ref x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateRef(String columnLabel, Ref x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, Blob x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, Blob x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Clob x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Clob x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateArray(int columnIndex, Array x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateArray(String columnLabel, Array x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateRowId(int columnIndex, RowId x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateRowId(String columnLabel, RowId x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNString(int columnIndex, String x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNString(String columnLabel, String x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, NClob x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, NClob x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, InputStream x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, Reader x, long length) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, InputStream x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, Reader x) throws SQLException {
+		throw readOnly();
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, Reader x) throws SQLException {
+		throw readOnly();
+	}
+}
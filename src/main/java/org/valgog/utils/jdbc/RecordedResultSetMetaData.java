@@ -0,0 +1,184 @@
+package org.valgog.utils.jdbc;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Metadata of a {@link RecordedResultSet}, as it was recorded by the {@link ResultSetRecorder}
+ *
+ * @author valgog
+ */
+final class RecordedResultSetMetaData implements ResultSetMetaData {
+
+	final String[] labels;
+	final String[] names;
+	final String[] typeNames;
+	final String[] classNames;
+	final int[] types;
+	final int[] nullables;
+	final int[] precisions;
+	final int[] scales;
+
+	RecordedResultSetMetaData(int columnCount) {
+		labels = new String[columnCount];
+		names = new String[columnCount];
+		typeNames = new String[columnCount];
+		classNames = new String[columnCount];
+		types = new int[columnCount];
+		nullables = new int[columnCount];
+		precisions = new int[columnCount];
+		scales = new int[columnCount];
+	}
+
+	private int index(int column) throws SQLException {
+		if ( column < 1 || column > labels.length ) {
+			throw new SQLException("The column index is out of range: " + column + ", number of columns: " + labels.length + ".", "22023");
+		}
+		return column - 1;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return labels.length;
+	}
+
+	@Override
+	public String getColumnLabel(int column) throws SQLException {
+		return labels[index(column)];
+	}
+
+	@Override
+	public String getColumnName(int column) throws SQLException {
+		return names[index(column)];
+	}
+
+	@Override
+	public int getColumnType(int column) throws SQLException {
+		return types[index(column)];
+	}
+
+	@Override
+	public String getColumnTypeName(int column) throws SQLException {
+		return typeNames[index(column)];
+	}
+
+	@Override
+	public String getColumnClassName(int column) throws SQLException {
+		return classNames[index(column)];
+	}
+
+	@Override
+	public int isNullable(int column) throws SQLException {
+		return nullables[index(column)];
+	}
+
+	@Override
+	public int getPrecision(int column) throws SQLException {
+		return precisions[index(column)];
+	}
+
+	@Override
+	public int getScale(int column) throws SQLException {
+		return scales[index(column)];
+	}
+
+	@Override
+	public int getColumnDisplaySize(int column) throws SQLException {
+		return precisions[index(column)];
+	}
+
+	@Override
+	public boolean isAutoIncrement(int column) throws SQLException {
+		index(column);
+		return false;
+	}
+
+	@Override
+	public boolean isCaseSensitive(int column) throws SQLException {
+		switch ( types[index(column)] ) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.OTHER:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public boolean isSearchable(int column) throws SQLException {
+		index(column);
+		return true;
+	}
+
+	@Override
+	public boolean isCurrency(int column) throws SQLException {
+		return "money".equals(typeNames[index(column)]);
+	}
+
+	@Override
+	public boolean isSigned(int column) throws SQLException {
+		switch ( types[index(column)] ) {
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public String getSchemaName(int column) throws SQLException {
+		index(column);
+		return "";
+	}
+
+	@Override
+	public String getTableName(int column) throws SQLException {
+		index(column);
+		return "";
+	}
+
+	@Override
+	public String getCatalogName(int column) throws SQLException {
+		index(column);
+		return "";
+	}
+
+	@Override
+	public boolean isReadOnly(int column) throws SQLException {
+		index(column);
+		return false;
+	}
+
+	@Override
+	public boolean isWritable(int column) throws SQLException {
+		index(column);
+		return true;
+	}
+
+	@Override
+	public boolean isDefinitelyWritable(int column) throws SQLException {
+		index(column);
+		return false;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if ( iface.isInstance(this) ) return iface.cast(this);
+		throw new SQLException("Cannot unwrap to " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) {
+		return iface.isInstance(this);
+	}
+}
@@ -0,0 +1,137 @@
+package org.valgog.utils.jdbc;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Format of the result set recordings, written by the {@link ResultSetRecorder} and read by the {@link RecordedResultSet}:
+ * <pre>
+ * recording := "PGRS" version:byte columnCount:varint column* row* 0:byte
+ * column    := label:string name:string typeName:string className:string sqlType:varint nullable:varint precision:varint scale:varint
+ * row       := 1:byte value*
+ * value     := tag:byte ...  (see the tags)
+ * string    := -1:varint | length:varint utf8-bytes
+ * </pre>
+ * Varints are the zig-zag encoded integers written in 7 bit groups, so that the short strings and small numbers take a single byte.
+ *
+ * @author valgog
+ */
+final class RecordingFormat {
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static final byte[] MAGIC = { 'P', 'G', 'R', 'S' };
+	static final int VERSION = 1;
+
+	static final byte END = 0;
+	static final byte ROW = 1;
+
+	/**
+	 * NULL value
+	 */
+	static final byte NULL = 0;
+	/**
+	 * {@link String} value: text
+	 */
+	static final byte STRING = 1;
+	/**
+	 * Values of the number and boolean types, created from their text: text
+	 */
+	static final byte INTEGER = 2;
+	static final byte LONG = 3;
+	static final byte SHORT = 4;
+	static final byte FLOAT = 5;
+	static final byte DOUBLE = 6;
+	static final byte BIG_DECIMAL = 7;
+	static final byte BOOLEAN = 8;
+	/**
+	 * {@link java.sql.Date} value: text millis:long
+	 */
+	static final byte DATE = 9;
+	/**
+	 * {@link java.sql.Time} value: text millis:long
+	 */
+	static final byte TIME = 10;
+	/**
+	 * {@link java.sql.Timestamp} value: text millis:long nanos:varint
+	 */
+	static final byte TIMESTAMP = 11;
+	/**
+	 * byte[] value: text length:varint bytes
+	 */
+	static final byte BYTES = 12;
+	/**
+	 * {@link org.postgresql.util.PGobject} value: text className:string type:string value:string
+	 */
+	static final byte PG_OBJECT = 13;
+	/**
+	 * {@link java.sql.Array} value: text baseType:varint baseTypeName:string
+	 */
+	static final byte ARRAY = 14;
+	/**
+	 * {@link java.util.UUID} value: text
+	 */
+	static final byte UUID = 15;
+	/**
+	 * Value of any other class, replayed as its text: text
+	 */
+	static final byte OTHER = 16;
+
+	private RecordingFormat() {
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		int v = ( value << 1 ) ^ ( value >> 31 );
+		while ( ( v & ~0x7F ) != 0 ) {
+			out.writeByte(( v & 0x7F ) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final int b = in.readUnsignedByte();
+			v |= ( b & 0x7F ) << shift;
+			if ( ( b & 0x80 ) == 0 ) {
+				return ( v >>> 1 ) ^ -( v & 1 );
+			}
+		}
+		throw new IOException("Malformed varint in the recording");
+	}
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		if ( s == null ) {
+			writeVarInt(out, -1);
+		} else {
+			final byte[] bytes = s.getBytes(UTF8);
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		final int length = readVarInt(in);
+		if ( length < 0 ) return null;
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		final int length = readVarInt(in);
+		if ( length < 0 ) throw new EOFException("Negative length of the bytes in the recording");
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,160 @@
+package org.valgog.utils.jdbc;
+
+import static org.valgog.utils.jdbc.RecordingFormat.writeBytes;
+import static org.valgog.utils.jdbc.RecordingFormat.writeString;
+import static org.valgog.utils.jdbc.RecordingFormat.writeVarInt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import org.postgresql.util.PGobject;
+
+/**
+ * Records the rows of a real {@link ResultSet} into a compact stream, that can be replayed by the {@link RecordedResultSet}
+ * without a database server, to benchmark and test the mapping with the production shaped data.
+ * <p>The metadata of the columns, the text of every value (as returned by {@link ResultSet#getString(int)}) and the value
+ * returned by {@link ResultSet#getObject(int)} are recorded: numbers, booleans, dates and times, byte arrays,
+ * {@link PGobject}s (together with their class, like {@link org.valgog.utils.postgres.HStore}) and {@link Array}s.
+ * Values of the other classes are replayed as their text.
+ *
+ * <pre>
+ * final ResultSet rs = statement.executeQuery("SELECT * FROM simple_table LIMIT 10000");
+ * ResultSetRecorder.record(rs, new File("simple_table.pgrs.gz"));
+ * ...
+ * final ResultSet replayed = RecordedResultSet.read(new File("simple_table.pgrs.gz"));
+ * </pre>
+ *
+ * @author valgog
+ */
+public final class ResultSetRecorder {
+
+	private ResultSetRecorder() {
+	}
+
+	/**
+	 * Record all the remaining rows of the given result set into the given file,
+	 * the file is compressed with gzip, if its name ends with <code>.gz</code>
+	 * @return number of the recorded rows
+	 */
+	public static long record(ResultSet rs, File file) throws SQLException, IOException {
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			if ( file.getName().endsWith(".gz") ) {
+				final GZIPOutputStream gzip = new GZIPOutputStream(out);
+				final long rows = record(rs, gzip);
+				gzip.finish();
+				return rows;
+			}
+			return record(rs, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Record all the remaining rows of the given result set into the given stream, the stream is flushed but not closed
+	 * @return number of the recorded rows
+	 */
+	public static long record(ResultSet rs, OutputStream stream) throws SQLException, IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.write(RecordingFormat.MAGIC);
+		out.writeByte(RecordingFormat.VERSION);
+		final ResultSetMetaData metaData = rs.getMetaData();
+		final int columnCount = metaData.getColumnCount();
+		writeVarInt(out, columnCount);
+		for (int i = 1; i <= columnCount; i++) {
+			writeString(out, metaData.getColumnLabel(i));
+			writeString(out, metaData.getColumnName(i));
+			writeString(out, metaData.getColumnTypeName(i));
+			writeString(out, metaData.getColumnClassName(i));
+			writeVarInt(out, metaData.getColumnType(i));
+			writeVarInt(out, metaData.isNullable(i));
+			writeVarInt(out, metaData.getPrecision(i));
+			writeVarInt(out, metaData.getScale(i));
+		}
+		long rows = 0;
+		while ( rs.next() ) {
+			out.writeByte(RecordingFormat.ROW);
+			for (int i = 1; i <= columnCount; i++) {
+				writeValue(out, rs, i);
+			}
+			rows++;
+		}
+		out.writeByte(RecordingFormat.END);
+		out.flush();
+		return rows;
+	}
+
+	private static void writeValue(DataOutputStream out, ResultSet rs, int columnIndex) throws SQLException, IOException {
+		final Object value = rs.getObject(columnIndex);
+		if ( value == null ) {
+			out.writeByte(RecordingFormat.NULL);
+			return;
+		}
+		final String text = rs.getString(columnIndex);
+		if ( value instanceof String ) {
+			out.writeByte(RecordingFormat.STRING);
+			writeString(out, text);
+		} else if ( value instanceof Integer ) {
+			writeText(out, RecordingFormat.INTEGER, text);
+		} else if ( value instanceof Long ) {
+			writeText(out, RecordingFormat.LONG, text);
+		} else if ( value instanceof Short ) {
+			writeText(out, RecordingFormat.SHORT, text);
+		} else if ( value instanceof Float ) {
+			writeText(out, RecordingFormat.FLOAT, text);
+		} else if ( value instanceof Double ) {
+			writeText(out, RecordingFormat.DOUBLE, text);
+		} else if ( value instanceof BigDecimal ) {
+			writeText(out, RecordingFormat.BIG_DECIMAL, text);
+		} else if ( value instanceof Boolean ) {
+			writeText(out, RecordingFormat.BOOLEAN, text);
+		} else if ( value instanceof Timestamp ) {
+			writeText(out, RecordingFormat.TIMESTAMP, text);
+			out.writeLong(((Timestamp) value).getTime());
+			writeVarInt(out, ((Timestamp) value).getNanos());
+		} else if ( value instanceof Time ) {
+			writeText(out, RecordingFormat.TIME, text);
+			out.writeLong(((Time) value).getTime());
+		} else if ( value instanceof java.sql.Date ) {
+			writeText(out, RecordingFormat.DATE, text);
+			out.writeLong(((java.sql.Date) value).getTime());
+		} else if ( value instanceof byte[] ) {
+			writeText(out, RecordingFormat.BYTES, text);
+			writeBytes(out, (byte[]) value);
+		} else if ( value instanceof PGobject ) {
+			final PGobject object = (PGobject) value;
+			writeText(out, RecordingFormat.PG_OBJECT, text);
+			writeString(out, object.getClass().getName());
+			writeString(out, object.getType());
+			writeString(out, object.getValue());
+		} else if ( value instanceof Array ) {
+			final Array array = (Array) value;
+			writeText(out, RecordingFormat.ARRAY, text == null ? array.toString() : text);
+			writeVarInt(out, array.getBaseType());
+			writeString(out, array.getBaseTypeName());
+		} else if ( value instanceof UUID ) {
+			writeText(out, RecordingFormat.UUID, text);
+		} else {
+			writeText(out, RecordingFormat.OTHER, text == null ? value.toString() : text);
+		}
+	}
+
+	private static void writeText(DataOutputStream out, byte tag, String text) throws IOException {
+		out.writeByte(tag);
+		writeString(out, text);
+	}
+}
@@ -1,5 +1,6 @@
 package org.valgog.utils.postgres;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -14,6 +15,11 @@ public class HStore extends PGobject implements Iterable<Map.Entry<String, Strin
 	private static final long serialVersionUID = -2491617655490561600L;
 	
 	private int length;
+
+	/**
+	 * Offset index of the raw value, built on the first key lookup
+	 */
+	private transient HStoreIndex index;
 	
 	public HStore(String rawValue) {
 		this.type = "hstore";
@@ -30,8 +36,153 @@ public class HStore extends PGobject implements Iterable<Map.Entry<String, Strin
 		if ( ! "hstore".equals(this.type) ) throw new IllegalStateException("HStore database type name should be 'hstore'");
 		this.value = rawValue;
 		this.length = rawValue == null ? 0 : rawValue.length();
+		this.index = null;
 	}
 	
+	/**
+	 * Get the value of the given key without parsing the whole value into a map.
+	 * <p>The first lookup builds an index of the key and value offsets in the raw value,
+	 * the values themselves are extracted only when they are asked for.
+	 * @return value of the key or {@code null} if the value is NULL or the key is not present
+	 */
+	public String get(String key) {
+		final HStoreIndex index = getIndex();
+		final int entry = index.find(key);
+		return entry < 0 ? null : extract(index.entries[entry + VALUE_START], index.entries[entry + VALUE_END]);
+	}
+
+	/**
+	 * @return true if the raw value contains the given key
+	 */
+	public boolean containsKey(String key) {
+		return getIndex().find(key) >= 0;
+	}
+
+	/**
+	 * @return number of the keys in the raw value
+	 */
+	public int size() {
+		return getIndex().size;
+	}
+
+	private HStoreIndex getIndex() {
+		HStoreIndex index = this.index;
+		if ( index == null ) {
+			try {
+				index = new HStoreIndex();
+			} catch (HStoreParseException e) {
+				throw new IllegalStateException(e);
+			}
+			this.index = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Serialize the given map into an hstore literal.
+	 * <p>The size of the literal is computed before writing it, so that the literal is written into 
+	 * a buffer of the exact size, escaping quotes and backslashes on the way.
+	 * @param map map to be serialized, keys cannot be null
+	 * @return hstore literal like <code>"key"=>"value", "other key"=>NULL</code>
+	 */
+	public static String toRawValue(Map<String, String> map) {
+		int size = 0;
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			size += entryLength(entry.getKey(), entry.getValue());
+		}
+		final char[] buffer = new char[Math.max(size - ENTRY_SEPARATOR.length(), 0)];
+		int position = 0;
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			position = writeEntry(buffer, position, entry.getKey(), entry.getValue());
+		}
+		return new String(buffer);
+	}
+
+	/**
+	 * Serialize the given hstore value into the canonical hstore literal, escaping quotes and backslashes 
+	 * the same way as PostgreSQL does. Entries are written without extracting the keys and values as strings.
+	 * @param hstore value to be serialized
+	 * @return hstore literal or {@code null} if the value is {@code null}
+	 */
+	public static String toRawValue(HStore hstore) {
+		if ( hstore.getValue() == null ) return null;
+		try {
+			final HStoreCursor cursor = hstore.cursor();
+			int size = 0;
+			while ( cursor.next() ) {
+				size += entryLength(cursor.key(), cursor.value());
+			}
+			final char[] buffer = new char[Math.max(size - ENTRY_SEPARATOR.length(), 0)];
+			int position = 0;
+			for (cursor.reset(hstore); cursor.next(); ) {
+				position = writeEntry(buffer, position, cursor.key(), cursor.value());
+			}
+			return new String(buffer);
+		} catch (HStoreParseException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return new hstore value, holding the entries of the given map
+	 */
+	public static HStore valueOf(Map<String, String> map) {
+		return new HStore(toRawValue(map));
+	}
+
+	private static final String ENTRY_SEPARATOR = ", ";
+	private static final String KEY_VALUE_SEPARATOR = "=>";
+
+	/**
+	 * @return length of the serialized entry including the entry separator
+	 */
+	private static int entryLength(CharSequence key, CharSequence value) {
+		if ( key == null ) throw new IllegalArgumentException("hstore keys cannot be null");
+		return quotedLength(key) + KEY_VALUE_SEPARATOR.length() + ( value == null ? NULL.length() : quotedLength(value) ) + ENTRY_SEPARATOR.length();
+	}
+
+	private static int writeEntry(char[] buffer, int position, CharSequence key, CharSequence value) {
+		if ( position > 0 ) {
+			position = write(buffer, position, ENTRY_SEPARATOR);
+		}
+		position = writeQuoted(buffer, position, key);
+		position = write(buffer, position, KEY_VALUE_SEPARATOR);
+		return value == null ? write(buffer, position, NULL) : writeQuoted(buffer, position, value);
+	}
+
+	private static int write(char[] buffer, int position, String s) {
+		s.getChars(0, s.length(), buffer, position);
+		return position + s.length();
+	}
+
+	/**
+	 * @return length of the given string, when quoted and escaped
+	 */
+	static int quotedLength(CharSequence s) {
+		final int length = s.length();
+		int quotedLength = length + 2;
+		for (int i = 0; i < length; i++) {
+			final char ch = s.charAt(i);
+			if ( ch == QUOTE || ch == BACKSLASH ) quotedLength++;
+		}
+		return quotedLength;
+	}
+
+	/**
+	 * Write the given string quoted and with the quotes and backslashes escaped
+	 * @return position after the written string
+	 */
+	static int writeQuoted(char[] buffer, int position, CharSequence s) {
+		buffer[position++] = QUOTE;
+		for (int i = 0, length = s.length(); i < length; i++) {
+			final char ch = s.charAt(i);
+			if ( ch == QUOTE || ch == BACKSLASH ) buffer[position++] = BACKSLASH;
+			buffer[position++] = ch;
+		}
+		buffer[position++] = QUOTE;
+		return position;
+	}
+
 	public Map<String,String> asMap() {
 		HashMap<String, String> r = new HashMap<String, String>();
 		try {
@@ -73,11 +224,262 @@ public class HStore extends PGobject implements Iterable<Map.Entry<String, Strin
 		
 	}
 
-	private static enum ParseState {
-		WaitingForKey, WaitingForEquals, WaitingForGreater, WaitingForValue, WaitingForComma
+	// layout of the index entries
+	static final int KEY_HASH = 0;
+	static final int KEY_START = 1;
+	static final int KEY_END = 2;
+	static final int VALUE_START = 3;
+	static final int VALUE_END = 4;
+	static final int ENTRY_SIZE = 5;
+
+	/**
+	 * Index of the entries of the raw value, that keeps only the offsets of the keys and values.
+	 * Keys are looked up in an open addressing hash table of entry offsets (shifted by 1, as 0 marks an empty slot), 
+	 * hashes of the keys are the same as the hashes of their unescaped strings.
+	 */
+	private final class HStoreIndex {
+		private final int[] entries;
+		private final int[] slots;
+		private final int size;
+
+		HStoreIndex() throws HStoreParseException {
+			int[] entries = new int[ENTRY_SIZE * 8];
+			int count = 0;
+			for (int position = scanEntry(0, entries, 0); position >= 0; position = scanEntry(position, entries, count * ENTRY_SIZE)) {
+				final int entry = count * ENTRY_SIZE;
+				entries[entry + KEY_HASH] = hash(entries[entry + KEY_START], entries[entry + KEY_END]);
+				count++;
+				if ( entries.length < ( count + 1 ) * ENTRY_SIZE ) {
+					entries = Arrays.copyOf(entries, entries.length * 2);
+				}
+			}
+			// keep the load factor under 0.5, so that the probe sequences stay short
+			int capacity = 4;
+			while ( capacity < count * 2 ) capacity <<= 1;
+			final int[] slots = new int[capacity];
+			final int mask = capacity - 1;
+			int size = count;
+			for (int entry = 0; entry < count * ENTRY_SIZE; entry += ENTRY_SIZE) {
+				final int hash = entries[entry + KEY_HASH];
+				int slot = spread(hash) & mask;
+				while ( slots[slot] != 0 ) {
+					final int other = slots[slot] - 1;
+					if ( entries[other + KEY_HASH] == hash && keyEquals(entries[other + KEY_START], entries[other + KEY_END], entries[entry + KEY_START], entries[entry + KEY_END]) ) {
+						// duplicate keys are replaced by the last one as in asMap()
+						size--;
+						break;
+					}
+					slot = ( slot + 1 ) & mask;
+				}
+				slots[slot] = entry + 1;
+			}
+			this.entries = entries;
+			this.slots = slots;
+			this.size = size;
+		}
+
+		/**
+		 * @return offset of the entry with the given key or -1 if the key is not present
+		 */
+		int find(String key) {
+			final int hash = key.hashCode();
+			final int mask = slots.length - 1;
+			for (int slot = spread(hash) & mask; slots[slot] != 0; slot = ( slot + 1 ) & mask) {
+				final int entry = slots[slot] - 1;
+				if ( entries[entry + KEY_HASH] == hash && keyEquals(entries[entry + KEY_START], entries[entry + KEY_END], key) ) {
+					return entry;
+				}
+			}
+			return -1;
+		}
+	}
+
+	private static int spread(int hash) {
+		return hash ^ ( hash >>> 16 );
+	}
+
+	/*
+	 * Raw value regions are the quoted or unquoted strings without the surrounding quotes.
+	 * Characters are escaped with a backslash, as PostgreSQL does, quotes can be also escaped by doubling them
+	 * in the quoted strings. Unescaped quotes never appear in the unquoted strings.
+	 */
+
+	private int hash(int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			char ch = value.charAt(i);
+			if ( ch == BACKSLASH ) ch = value.charAt(++i);
+			else if ( ch == QUOTE ) i++;
+			hash = 31 * hash + ch;
+		}
+		return hash;
+	}
+
+	boolean keyEquals(int start, int end, CharSequence key) {
+		final int keyLength = key.length();
+		int k = 0;
+		for (int i = start; i < end; i++, k++) {
+			char ch = value.charAt(i);
+			if ( ch == BACKSLASH ) ch = value.charAt(++i);
+			else if ( ch == QUOTE ) i++;
+			if ( k == keyLength || key.charAt(k) != ch ) return false;
+		}
+		return k == keyLength;
+	}
+
+	/**
+	 * Keys are compared unescaped, as the same key can be escaped differently (like {@code a\"b} and {@code "a\"b"})
+	 */
+	private boolean keyEquals(int start, int end, int otherStart, int otherEnd) {
+		if ( end - start == otherEnd - otherStart && value.regionMatches(start, value, otherStart, end - start) ) {
+			return true;
+		}
+		int i = start;
+		int k = otherStart;
+		for (; i < end && k < otherEnd; i++, k++) {
+			char ch = value.charAt(i);
+			if ( ch == BACKSLASH ) ch = value.charAt(++i);
+			else if ( ch == QUOTE ) i++;
+			char otherCh = value.charAt(k);
+			if ( otherCh == BACKSLASH ) otherCh = value.charAt(++k);
+			else if ( otherCh == QUOTE ) k++;
+			if ( ch != otherCh ) return false;
+		}
+		return i >= end && k >= otherEnd;
+	}
+
+	/**
+	 * @return position of the first escaped character in the raw value region or its end if there are no escaped characters
+	 */
+	int findEscape(int start, int end) {
+		int i = start;
+		while ( i < end ) {
+			final char ch = value.charAt(i);
+			if ( ch == QUOTE || ch == BACKSLASH ) break;
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return unescaped string of the raw value region or {@code null} for the NULL values
+	 */
+	String extract(int start, int end) {
+		if ( start < 0 ) return null;
+		final int escape = findEscape(start, end);
+		if ( escape == end ) return value.substring(start, end);
+		final StringBuilder sb = new StringBuilder(end - start);
+		sb.append(value, start, escape);
+		for (int i = escape; i < end; i++) {
+			char ch = value.charAt(i);
+			if ( ch == BACKSLASH ) ch = value.charAt(++i);
+			else if ( ch == QUOTE ) i++;
+			sb.append(ch);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Scan the entry, starting at the given position of the raw value, storing the regions of its key and value 
+	 * into the given array at the given offset as KEY_START, KEY_END, VALUE_START and VALUE_END
+	 * (VALUE_START and VALUE_END are -1 for the NULL values).
+	 * @return position after the scanned entry or -1 if there are no more entries
+	 */
+	int scanEntry(int position, int[] bounds, int offset) throws HStoreParseException {
+		position = skipWhitespace(position);
+		if ( position >= length ) return -1;
+		// key
+		if ( value.charAt(position) == QUOTE ) {
+			bounds[offset + KEY_START] = position + 1;
+			position = scanQuoted(position);
+			bounds[offset + KEY_END] = position - 1;
+		} else {
+			// hstore does not support NULL keys, so NULLs are loaded as usual strings
+			bounds[offset + KEY_START] = position;
+			position = scanWord(position, EQUALS);
+			bounds[offset + KEY_END] = position;
+		}
+		// key-value separator
+		position = skipWhitespace(position);
+		if ( position + 1 >= length || value.charAt(position) != EQUALS || value.charAt(position + 1) != GREATER ) {
+			throw new HStoreParseException("Expected '=>' key-value separator", position);
+		}
+		position = skipWhitespace(position + 2);
+		if ( position >= length ) {
+			throw new HStoreParseException("Unexpected end of string", position);
+		}
+		// value
+		if ( value.charAt(position) == QUOTE ) {
+			bounds[offset + VALUE_START] = position + 1;
+			position = scanQuoted(position);
+			bounds[offset + VALUE_END] = position - 1;
+		} else {
+			final int start = position;
+			position = scanWord(position, COMMA);
+			// hstore supports NULL values, so if unquoted NULL is there, it is rewritten to null
+			final boolean isNull = position - start == NULL.length() && value.regionMatches(true, start, NULL, 0, NULL.length());
+			bounds[offset + VALUE_START] = isNull ? -1 : start;
+			bounds[offset + VALUE_END] = isNull ? -1 : position;
+		}
+		// entry separator
+		position = skipWhitespace(position);
+		if ( position < length ) {
+			if ( value.charAt(position) != COMMA ) {
+				throw new HStoreParseException("Cannot find comma as an end of the value", position);
+			}
+			position++;
+		}
+		return position;
+	}
+
+	private int skipWhitespace(int position) {
+		while ( position < length && Character.isWhitespace(value.charAt(position)) ) position++;
+		return position;
+	}
+
+	/**
+	 * @return position after the closing quote of the quoted string, starting at the given position
+	 */
+	private int scanQuoted(final int firstQuotePosition) throws HStoreParseException {
+		int position = firstQuotePosition + 1;
+		while ( position < length ) {
+			final char ch = value.charAt(position++);
+			if ( ch == BACKSLASH ) {
+				// escaped character
+				position++;
+			} else if ( ch == QUOTE ) {
+				if ( position < length && value.charAt(position) == QUOTE ) {
+					// it was a double quote
+					position++;
+				} else {
+					return position;
+				}
+			}
+		}
+		throw new HStoreParseException("Quote at string position " + firstQuotePosition + " is not closed", position);
+	}
+
+	/**
+	 * @return position after the end of the unquoted word, starting at the given position
+	 */
+	private int scanWord(int position, final char stopAtChar) throws HStoreParseException {
+		while ( position < length ) {
+			final char ch = value.charAt(position);
+			if ( ch == QUOTE ) {
+				throw new HStoreParseException("Unexpected quote in word", position);
+			} else if ( ch == BACKSLASH ) {
+				// escaped character
+				if ( ++position == length ) throw new HStoreParseException("Unexpected end of string after escape character", position);
+			} else if ( Character.isWhitespace(ch) || ch == stopAtChar ) {
+				break;
+			}
+			position++;
+		}
+		return position;
 	}
 
 	private static final char QUOTE = '"';
+	private static final char BACKSLASH = '\\';
 	private static final char EQUALS = '=';
 	private static final char GREATER = '>';
 	private static final char COMMA = ',';
@@ -85,13 +487,14 @@ public class HStore extends PGobject implements Iterable<Map.Entry<String, Strin
 	
 	private class HStoreIterator implements Iterator<Map.Entry<String, String>> {
 		
+		private final int[] bounds = new int[ENTRY_SIZE];
 		private int position;
 		private HStoreEntry lastReturned;
 		private HStoreEntry nextEntry;
 	
 	
 		public HStoreIterator() throws HStoreParseException {
-			this.position = -1;
+			this.position = 0;
 			advance();
 		}
 	
@@ -123,139 +526,12 @@ public class HStore extends PGobject implements Iterable<Map.Entry<String, Strin
 		 * @throws HStoreParseException 
 		 */
 		private void advance() throws HStoreParseException {
-			String elementKey = null;
-			String elementValue = null;
-			ParseState state = ParseState.WaitingForKey;
-			loop:
-			while( position < length - 1 ) {
-				final char ch = value.charAt(++position);
-				switch (state) {
-				case WaitingForKey:
-					if ( Character.isWhitespace(ch) ) continue;
-					if ( ch == QUOTE ) {
-						elementKey = advanceQuoted();
-					} else {
-						// we have non-quote char, so start loading the key
-						elementKey = advanceWord(EQUALS);
-						// hstore does not support NULL keys, so NULLs are loaded as usual strings
-					}
-					state = ParseState.WaitingForEquals;
-					continue;
-				case WaitingForEquals:
-					if ( Character.isWhitespace(ch) ) continue;
-					if ( ch == EQUALS ) {
-						state = ParseState.WaitingForGreater;
-						continue;
-					} else {
-						throw new HStoreParseException("Expected '=>' key-value separator", position);
-					}
-				case WaitingForGreater:
-					if ( ch == GREATER ) {
-						state = ParseState.WaitingForValue;
-						continue;
-					} else {
-						throw new HStoreParseException("Expected '=>' key-value separator", position);
-					}
-				case WaitingForValue:
-					if ( Character.isWhitespace(ch) ) continue;
-					if ( ch == QUOTE ) {
-						elementValue = advanceQuoted();
-					} else {
-						// we have non-quote char, so start loading the key
-						elementValue = advanceWord(COMMA);
-						// hstore supports NULL values, so if unquoted NULL is there, it is rewritten to null
-						if ( NULL.equalsIgnoreCase(elementValue) ) {
-							elementValue = null;
-						}
-					}
-					state = ParseState.WaitingForComma;
-					continue;
-				case WaitingForComma:
-					if ( Character.isWhitespace(ch) ) continue;
-					if ( ch == COMMA ) {
-						// we are done
-						break loop;
-					} else {
-						throw new HStoreParseException("Cannot find comma as an end of the value", position);
-					}
-				default:
-					throw new IllegalStateException("Unknown HStoreParser state");
-				}
-			} // loop
-			// here we either consumed whole string or we found a comma
-			if ( state == ParseState.WaitingForKey ) {
-				// string was consumed when waiting for key, so we are done with processing
+			position = position < 0 ? -1 : scanEntry(position, bounds, 0);
+			if ( position < 0 ) {
 				nextEntry = null;
 				return;
 			}
-			if ( state != ParseState.WaitingForComma ) {
-				throw new HStoreParseException("Unexpected end of string", position);
-			}
-			if ( elementKey == null ) {
-				throw new HStoreParseException("Internal parsing error", position);
-			}
-			// init nextValue
-			nextEntry = new HStoreEntry(elementKey, elementValue);
-		}
-	
-		private String advanceQuoted() throws HStoreParseException {
-			final int firstQuotePosition = position;
-			StringBuilder sb = null;
-			boolean insideQuote = true;
-			while( position < length - 1 ) {
-				char ch = value.charAt(++position);
-				if ( ch == QUOTE ) {
-					// we saw a quote, it is either a closing quote, or it is a quoted quote
-					final int nextPosition = position + 1;
-					if ( nextPosition < length ) {
-						final char nextCh = value.charAt(nextPosition);
-						if ( nextCh == QUOTE ) {
-							// it was a double quote, so we have to push a quote into the result
-							if ( sb == null ) { 
-								sb = new StringBuilder(value.substring(firstQuotePosition + 1, nextPosition));
-							} else {
-								sb.append(QUOTE);
-							}
-							position++;
-							continue;
-						}
-					}
-					// it was a closing quote as we either ware are at the end of the rawValue string
-					// or we could not find the next quote
-					insideQuote = false;
-					break;
-				} else {
-					if ( sb != null ) {
-						sb.append(ch);
-					}
-				}
-			}
-			if ( insideQuote ) throw new HStoreParseException("Quote at string position " + firstQuotePosition + " is not closed", position);
-			if ( sb == null ) {
-				// we consumed the last quote
-				String r = value.substring(firstQuotePosition + 1, position );
-				return r;
-			} else {
-				return sb.toString();
-			}
-		}
-		
-		private String advanceWord(final char stopAtChar) throws HStoreParseException {
-			final int firstWordPosition = position;
-			while( position < length ) {
-				final char ch = value.charAt(position);
-				if ( ch == QUOTE ) {
-					throw new HStoreParseException("Unexpected quote in word", position);
-				} else if ( Character.isWhitespace(ch) || ch == stopAtChar ) {
-					break;
-				}
-				position++;
-			}
-			// step back as we are already one char away
-			position--;
-			// substring is using quite a strange way of defining end position
-			final String r = value.substring(firstWordPosition, position + 1 );
-			return r;
+			nextEntry = new HStoreEntry(extract(bounds[KEY_START], bounds[KEY_END]), extract(bounds[VALUE_START], bounds[VALUE_END]));
 		}
 		
 		@Override
@@ -264,6 +540,13 @@ public class HStore extends PGobject implements Iterable<Map.Entry<String, Strin
 		}
 	}
 	
+	/**
+	 * @return new cursor over the entries of this value
+	 */
+	public HStoreCursor cursor() {
+		return new HStoreCursor(this);
+	}
+
 	@Override
 	public Iterator<Entry<String, String>> iterator() {
 		try {
@@ -0,0 +1,212 @@
+package org.valgog.utils.postgres;
+
+import org.valgog.utils.exceptions.HStoreParseException;
+
+/**
+ * Flyweight cursor over the entries of an {@link HStore} value.
+ * <p>Unlike the {@link HStore#iterator()}, the cursor does not create any objects per entry:
+ * current key and value are exposed as offsets into the raw value and as reused {@link CharSequence} views,
+ * keys can be compared without creating strings. Only the keys and values with escaped characters are unescaped
+ * into an internal buffer, that is reused as well. The cursor can be reused for another value with
+ * {@link #reset(HStore)}, so that scanning the hstore values of a whole result set costs no garbage in the common case.
+ * <p>Views are only valid until the cursor is advanced. Cursors are not thread safe.
+ *
+ * <pre>
+ * final HStoreCursor cursor = hstore.cursor();
+ * while ( cursor.next() ) {
+ *     if ( cursor.keyEquals("color") ) {
+ *         color = cursor.valueString();
+ *     }
+ * }
+ * </pre>
+ *
+ * @author valgog
+ *
+ */
+public final class HStoreCursor {
+
+	private HStore hstore;
+	private String rawValue;
+	private int position;
+	private final int[] bounds = new int[HStore.ENTRY_SIZE];
+	private final View key = new View();
+	private final View value = new View();
+
+	HStoreCursor(HStore hstore) {
+		reset(hstore);
+	}
+
+	/**
+	 * Start iterating over the entries of the given value
+	 * @return this cursor
+	 */
+	public HStoreCursor reset(HStore hstore) {
+		this.hstore = hstore;
+		this.rawValue = hstore.getValue();
+		this.position = rawValue == null ? -1 : 0;
+		key.set(-1, -1);
+		value.set(-1, -1);
+		return this;
+	}
+
+	/**
+	 * Advance to the next entry
+	 * @return false if there are no more entries
+	 * @throws HStoreParseException if the raw value cannot be parsed
+	 */
+	public boolean next() throws HStoreParseException {
+		if ( position >= 0 ) {
+			position = hstore.scanEntry(position, bounds, 0);
+		}
+		if ( position < 0 ) {
+			key.set(-1, -1);
+			value.set(-1, -1);
+			return false;
+		}
+		key.set(bounds[HStore.KEY_START], bounds[HStore.KEY_END]);
+		value.set(bounds[HStore.VALUE_START], bounds[HStore.VALUE_END]);
+		return true;
+	}
+
+	/**
+	 * @return start offset of the current key in the raw value (without the quotes)
+	 */
+	public int keyStart() {
+		return key.start;
+	}
+
+	/**
+	 * @return end offset of the current key in the raw value (without the quotes)
+	 */
+	public int keyEnd() {
+		return key.end;
+	}
+
+	/**
+	 * @return start offset of the current value in the raw value (without the quotes) or -1 if the value is NULL
+	 */
+	public int valueStart() {
+		return value.start;
+	}
+
+	/**
+	 * @return end offset of the current value in the raw value (without the quotes) or -1 if the value is NULL
+	 */
+	public int valueEnd() {
+		return value.end;
+	}
+
+	/**
+	 * @return true if the current value is NULL
+	 */
+	public boolean isValueNull() {
+		return value.start < 0;
+	}
+
+	/**
+	 * @return true if the current key is equal to the given one, compared without creating any objects
+	 */
+	public boolean keyEquals(CharSequence other) {
+		return key.start >= 0 && hstore.keyEquals(key.start, key.end, other);
+	}
+
+	/**
+	 * @return view of the current key, that is valid until the cursor is advanced
+	 */
+	public CharSequence key() {
+		return key;
+	}
+
+	/**
+	 * @return view of the current value, that is valid until the cursor is advanced, or {@code null} if the value is NULL
+	 */
+	public CharSequence value() {
+		return value.start < 0 ? null : value;
+	}
+
+	/**
+	 * @return current key as a new string
+	 */
+	public String keyString() {
+		return hstore.extract(key.start, key.end);
+	}
+
+	/**
+	 * @return current value as a new string or {@code null} if the value is NULL
+	 */
+	public String valueString() {
+		return hstore.extract(value.start, value.end);
+	}
+
+	/**
+	 * View of a region of the raw value, unescaping the escaped characters if needed
+	 */
+	private final class View implements CharSequence {
+		private int start;
+		private int end;
+		// -1 if it is not known yet, if the region contains escaped characters
+		private int escaped;
+		private StringBuilder unescaped;
+
+		void set(int start, int end) {
+			this.start = start;
+			this.end = end;
+			this.escaped = -1;
+		}
+
+		/**
+		 * @return unescaped region or {@code null} if the region has no escaped quotes and can be read directly
+		 */
+		private CharSequence unescaped() {
+			if ( escaped < 0 ) {
+				final int escape = hstore.findEscape(start, end);
+				escaped = escape < end ? 1 : 0;
+				if ( escaped == 1 ) {
+					if ( unescaped == null ) {
+						unescaped = new StringBuilder(end - start);
+					} else {
+						unescaped.setLength(0);
+					}
+					unescaped.append(rawValue, start, escape);
+					for (int i = escape; i < end; i++) {
+						char ch = rawValue.charAt(i);
+						if ( ch == '\\' ) ch = rawValue.charAt(++i);
+						else if ( ch == '"' ) i++;
+						unescaped.append(ch);
+					}
+				}
+			}
+			return escaped == 1 ? unescaped : null;
+		}
+
+		@Override
+		public int length() {
+			if ( start < 0 ) return 0;
+			final CharSequence s = unescaped();
+			return s == null ? end - start : s.length();
+		}
+
+		@Override
+		public char charAt(int index) {
+			final CharSequence s = unescaped();
+			if ( s != null ) return s.charAt(index);
+			if ( index < 0 || index >= end - start ) throw new IndexOutOfBoundsException("Index out of range: " + index);
+			return rawValue.charAt(start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			final CharSequence s = unescaped();
+			if ( s != null ) return s.subSequence(from, to);
+			if ( from < 0 || from > to || to > end - start ) throw new IndexOutOfBoundsException("Invalid range: " + from + ", " + to);
+			return rawValue.substring(start + from, start + to);
+		}
+
+		@Override
+		public String toString() {
+			if ( start < 0 ) return "";
+			final CharSequence s = unescaped();
+			return s == null ? rawValue.substring(start, end) : s.toString();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package org.valgog.utils.postgres;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Difference between two versions of an hstore value, that can be written as an update expression
+ * instead of rewriting the whole value.
+ * <p>For example the difference between <code>a=>1, b=>2, c=>3</code> and <code>a=>1, b=>4, d=>5</code> is written as
+ * <pre>
+ * UPDATE t SET attributes = delete(coalesce(attributes, ''::hstore), ?::text[]) || ?::hstore WHERE ...
+ * </pre>
+ * with the parameters <code>{"c"}</code> and <code>"b"=>"4", "d"=>"5"</code>. Only the changed entries are sent,
+ * so that the amount of the data sent to the database is proportional to the size of the change, and not to the size of the value.
+ * A NULL value of the column is updated as an empty hstore value, as <code>NULL || hstore</code> is NULL.
+ *
+ * <pre>
+ * final HStoreDelta delta = HStoreDelta.between(oldAttributes, newAttributes);
+ * if ( ! delta.isEmpty() ) {
+ *     jdbcTemplate.update("UPDATE t SET attributes = " + delta.getExpression("attributes") + " WHERE id = ?",
+ *         delta.getParameters(id));
+ * }
+ * </pre>
+ *
+ * @author valgog
+ *
+ */
+public final class HStoreDelta {
+
+	private final Map<String, String> changed;
+	private final List<String> removed;
+
+	private HStoreDelta(Map<String, String> changed, List<String> removed) {
+		this.changed = Collections.unmodifiableMap(changed);
+		this.removed = Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * Compute the difference between the old and the new version of an hstore value
+	 * @param oldMap entries of the old version of the value (as it is stored in the database)
+	 * @param newMap entries of the new version of the value
+	 * @return difference, that turns the old version into the new one
+	 */
+	public static HStoreDelta between(Map<String, String> oldMap, Map<String, String> newMap) {
+		final Map<String, String> changed = new LinkedHashMap<String, String>();
+		final List<String> removed = new ArrayList<String>();
+		for (Map.Entry<String, String> entry : newMap.entrySet()) {
+			final String key = entry.getKey();
+			final String value = entry.getValue();
+			final String oldValue = oldMap.get(key);
+			// NULL values have to be compared with containsKey, as they are different from the missing keys
+			if ( oldValue == null ? value != null || ! oldMap.containsKey(key) : ! oldValue.equals(value) ) {
+				changed.put(key, value);
+			}
+		}
+		for (String key : oldMap.keySet()) {
+			if ( ! newMap.containsKey(key) ) {
+				removed.add(key);
+			}
+		}
+		return new HStoreDelta(changed, removed);
+	}
+
+	/**
+	 * @return true if both versions are equal, so that nothing has to be updated
+	 */
+	public boolean isEmpty() {
+		return changed.isEmpty() && removed.isEmpty();
+	}
+
+	/**
+	 * @return entries, that are added or changed in the new version
+	 */
+	public Map<String, String> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return keys, that are removed in the new version
+	 */
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Get the update expression of the hstore column, that should be used with the parameters
+	 * returned by {@link #getParameters(Object...)}
+	 * @param columnName name of the hstore column
+	 * @return expression like <code>delete(coalesce(column, ''::hstore), ?::text[]) || ?::hstore</code>
+	 * or just the column name if nothing is changed
+	 */
+	public String getExpression(String columnName) {
+		if ( isEmpty() ) {
+			return columnName;
+		}
+		String expression = "coalesce(" + columnName + ", ''::hstore)";
+		if ( ! removed.isEmpty() ) {
+			expression = "delete(" + expression + ", ?::text[])";
+		}
+		if ( ! changed.isEmpty() ) {
+			expression = expression + " || ?::hstore";
+		}
+		return expression;
+	}
+
+	/**
+	 * Get the parameters of the update expression returned by {@link #getExpression(String)}: the text array literal of
+	 * the removed keys and the hstore literal of the changed entries (only the parameters, that are needed)
+	 * @param additionalParameters parameters of the rest of the statement, appended after the parameters of the expression
+	 * @return parameters of the update expression followed by the additional parameters
+	 */
+	public Object[] getParameters(Object... additionalParameters) {
+		final List<Object> parameters = new ArrayList<Object>(2 + additionalParameters.length);
+		if ( ! removed.isEmpty() ) {
+			parameters.add(toTextArrayLiteral(removed));
+		}
+		if ( ! changed.isEmpty() ) {
+			parameters.add(HStore.toRawValue(changed));
+		}
+		Collections.addAll(parameters, additionalParameters);
+		return parameters.toArray();
+	}
+
+	/**
+	 * @return text array literal like <code>{"a","b"}</code>
+	 */
+	static String toTextArrayLiteral(List<String> elements) {
+		int size = 2 + Math.max(elements.size() - 1, 0);
+		for (String element : elements) {
+			size += HStore.quotedLength(element);
+		}
+		final char[] buffer = new char[size];
+		int position = 0;
+		buffer[position++] = '{';
+		for (String element : elements) {
+			if ( position > 1 ) buffer[position++] = ',';
+			position = HStore.writeQuoted(buffer, position, element);
+		}
+		buffer[position] = '}';
+		return new String(buffer);
+	}
+}
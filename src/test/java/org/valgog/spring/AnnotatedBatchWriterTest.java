@@ -0,0 +1,174 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.postgresql.util.PGobject;
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.example.ChildChildClass;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.EmbededObject;
+import org.valgog.spring.example.HStoreAttributes;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.spring.example.WithHStoreObject;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+public class AnnotatedBatchWriterTest {
+
+	/**
+	 * Records the calls of a {@link PreparedStatement} as strings
+	 */
+	static final class RecordingStatement implements InvocationHandler {
+		final List<String> calls = new ArrayList<String>();
+		final PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class }, this);
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			final StringBuilder call = new StringBuilder(method.getName());
+			if ( args != null ) {
+				for (Object arg : args) {
+					call.append(' ').append(arg instanceof PGobject ? ((PGobject) arg).getType() + ":" + ((PGobject) arg).getValue() : String.valueOf(arg));
+				}
+			}
+			calls.add(call.toString());
+			return method.getName().equals("executeBatch") ? new int[0] : null;
+		}
+	}
+
+	private static WithEmbed withEmbed(int x, int y, int z) {
+		final WithEmbed item = new WithEmbed();
+		item.setEmbed(new EmbededObject());
+		item.getEmbed().setX(x);
+		item.getEmbed().setY(y);
+		item.setZ(z);
+		return item;
+	}
+
+	@Test
+	public void testStatements() throws SQLException {
+		assertThat(AnnotatedBatchWriter.insert(WithEmbed.class, "t").getSql(), is("INSERT INTO t (x, y, z) VALUES (?, ?, ?)"));
+		final AnnotatedBatchWriter<WithEmbed> update = AnnotatedBatchWriter.update(WithEmbed.class, "t", "z");
+		assertThat(update.getSql(), is("UPDATE t SET x = ?, y = ? WHERE z = ?"));
+		assertThat(update.getParameterColumns(), is(Arrays.asList("x", "y", "z")));
+		assertThat(AnnotatedBatchWriter.upsert(WithEmbed.class, "t", "z", "x").getSql(),
+				is("INSERT INTO t (x, y, z) VALUES (?, ?, ?) ON CONFLICT (z, x) DO UPDATE SET y = EXCLUDED.y"));
+		try {
+			AnnotatedBatchWriter.update(WithEmbed.class, "t", "unknown");
+			fail("not mapped key column should not be accepted");
+		} catch (SQLException e) {
+			// expected
+		}
+		try {
+			AnnotatedBatchWriter.update(WithEmbed.class, "t", "x", "y", "z");
+			fail("update without updated columns should not be accepted");
+		} catch (FieldDescriptionException e) {
+			// expected
+		}
+	}
+
+	public static class WithReal {
+		@DatabaseField
+		public float ratio;
+
+		@DatabaseField
+		public Float weight;
+	}
+
+	@Test
+	public void testRealValues() throws SQLException {
+		final WithReal item = new WithReal();
+		item.ratio = 0.1f;
+		final RecordingStatement recorder = new RecordingStatement();
+		AnnotatedBatchWriter.insert(WithReal.class, "t").bind(recorder.statement, item);
+		assertThat(recorder.calls, is(Arrays.asList("setFloat 1 0.1", "setNull 2 " + Types.REAL)));
+	}
+
+	public static class WithMatrix {
+		@DatabaseField
+		public int[][] matrix;
+
+		@DatabaseField
+		public String[][] words;
+	}
+
+	@Test
+	public void testMultidimensionalArrays() throws SQLException {
+		final WithMatrix item = new WithMatrix();
+		item.matrix = new int[][] { { 1, 2 }, { 3, 4 } };
+		item.words = new String[][] { { "a b", null }, { "\"c\"", "d" } };
+		final RecordingStatement recorder = new RecordingStatement();
+		final AnnotatedBatchWriter<WithMatrix> writer = AnnotatedBatchWriter.insert(WithMatrix.class, "t");
+		writer.bind(recorder.statement, item);
+		assertThat(recorder.calls, is(Arrays.asList(
+				"setObject 1 {{\"1\",\"2\"},{\"3\",\"4\"}} " + Types.OTHER,
+				"setObject 2 {{\"a b\",NULL},{\"\\\"c\\\"\",\"d\"}} " + Types.OTHER)));
+		item.matrix = new int[][] { { 1, 2 }, null };
+		try {
+			writer.bind(recorder.statement, item);
+			fail("NULL sub array should not be bound");
+		} catch (SQLException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testBatches() throws SQLException {
+		final RecordingStatement recorder = new RecordingStatement();
+		final AnnotatedBatchWriter<WithEmbed> writer = AnnotatedBatchWriter.update(WithEmbed.class, "t", "z").withBatchSize(2);
+		final int count = writer.write(recorder.statement, Arrays.asList(withEmbed(1, 2, 3), withEmbed(4, 5, 6), withEmbed(7, 8, 9)).iterator());
+		assertThat(count, is(3));
+		assertThat(recorder.calls, is(Arrays.asList(
+				"setInt 1 1", "setInt 2 2", "setInt 3 3", "addBatch",
+				"setInt 1 4", "setInt 2 5", "setInt 3 6", "addBatch", "executeBatch",
+				"setInt 1 7", "setInt 2 8", "setInt 3 9", "addBatch", "executeBatch")));
+
+		// embedded objects can be null
+		recorder.calls.clear();
+		final WithEmbed item = withEmbed(1, 2, 3);
+		item.setEmbed(null);
+		writer.bind(recorder.statement, item);
+		assertThat(recorder.calls, is(Arrays.asList("setNull 1 " + Types.INTEGER, "setNull 2 " + Types.INTEGER, "setInt 3 3")));
+	}
+
+	@Test
+	public void testNestedValues() throws SQLException {
+		final ChildChildClass child = new ChildChildClass();
+		child.setId(1);
+		final ChildClass item = new ChildClass();
+		item.setId(2);
+		item.setChild(child);
+		item.setChildren(Arrays.asList(child, null));
+		final RecordingStatement recorder = new RecordingStatement();
+		AnnotatedBatchWriter.insert(ChildClass.class, "t").bind(recorder.statement, item);
+		assertThat(recorder.calls, is(Arrays.asList(
+				"setInt 1 2",
+				"setObject 2 (\"1\") " + Types.OTHER,
+				"setObject 3 {\"(\\\"1\\\")\",NULL} " + Types.OTHER)));
+
+		final HStoreAttributes attributes = new HStoreAttributes();
+		attributes.setColor("dark \"red\"");
+		attributes.setSize(3);
+		final WithHStoreObject withHStore = new WithHStoreObject();
+		withHStore.setAttributes(attributes);
+		withHStore.setHistory(Collections.<HStoreAttributes>emptyList());
+		recorder.calls.clear();
+		AnnotatedBatchWriter.insert(WithHStoreObject.class, "t").bind(recorder.statement, withHStore);
+		assertThat(recorder.calls, is(Arrays.asList(
+				"setInt 1 0",
+				"setObject 2 hstore:\"color\"=>\"dark \\\"red\\\"\", \"size\"=>\"3\", \"weight_kg\"=>NULL",
+				"setObject 3 {} " + Types.OTHER)));
+	}
+}
@@ -0,0 +1,161 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.ImmutableClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.WithEmbed;
+
+public class AnnotatedCopyReaderTest {
+
+	private static <T> List<T> read(AnnotatedCopyReader<T> reader, String data) throws SQLException, IOException {
+		final List<T> items = new ArrayList<T>();
+		final long count = reader.read(new StringReader(data), new ItemHandler<T>() {
+			@Override
+			public void handleItem(T item) {
+				items.add(item);
+			}
+		});
+		assertThat(count, is((long) items.size()));
+		return items;
+	}
+
+	@Test
+	public void testSql() throws SQLException {
+		final AnnotatedCopyReader<WithEmbed> reader = AnnotatedCopyReader.forClass(WithEmbed.class, AnnotatedCopyReader.Format.TEXT);
+		assertThat(reader.getColumns(), is(Arrays.asList("x", "y", "z")));
+		assertThat(reader.getSql("t"), is("COPY t (x, y, z) TO STDOUT"));
+		assertThat(AnnotatedCopyReader.forClass(WithEmbed.class, AnnotatedCopyReader.Format.CSV).withHeader().getSql("(SELECT 1 AS x, 2 AS y, 3 AS z)"),
+				is("COPY (SELECT 1 AS x, 2 AS y, 3 AS z) TO STDOUT WITH CSV HEADER"));
+	}
+
+	@Test
+	public void testText() throws SQLException, IOException {
+		final AnnotatedCopyReader<SimpleClass> reader = AnnotatedCopyReader.forColumns(SimpleClass.class, AnnotatedCopyReader.Format.TEXT,
+				"id", "ignored", "name", "country_code", "last_marks");
+		final List<SimpleClass> items = read(reader, "1\tx\ta\\tb\\\\c\\001\\x41\\n\tDE\t{1,2,3}\n2\t\\N\t\\N\t\\N\t{}\n");
+		assertThat(items.size(), is(2));
+		assertThat(items.get(0).getId(), is(1));
+		assertThat(items.get(0).getName(), is("a\tb\\c\u0001A\n"));
+		assertThat(items.get(0).getCountryCode(), is("DE"));
+		assertArrayEquals(new int[] { 1, 2, 3 }, items.get(0).getLastMarks());
+		assertThat(items.get(1).getName(), nullValue());
+		assertThat(items.get(1).getCountryCode(), nullValue());
+		assertThat(items.get(1).getLastMarks().length, is(0));
+	}
+
+	@Test
+	public void testCsv() throws SQLException, IOException {
+		final AnnotatedCopyReader<SimpleClass> reader = AnnotatedCopyReader.forColumns(SimpleClass.class, AnnotatedCopyReader.Format.CSV,
+				"id", "name", "country_code", "last_marks").withHeader();
+		// the last line is not terminated
+		final List<SimpleClass> items = read(reader, "id,name,country_code,last_marks\r\n1,\"x \"\"y\"\"\nz\",,\"{1,2}\"\r\n2,\"\",DE,{}");
+		assertThat(items.size(), is(2));
+		assertThat(items.get(0).getName(), is("x \"y\"\nz"));
+		assertThat(items.get(0).getCountryCode(), nullValue());
+		assertArrayEquals(new int[] { 1, 2 }, items.get(0).getLastMarks());
+		assertThat(items.get(1).getId(), is(2));
+		assertThat(items.get(1).getName(), is(""));
+		assertThat(items.get(1).getCountryCode(), is("DE"));
+	}
+
+	@Test
+	public void testNestedValues() throws SQLException, IOException {
+		final List<ChildClass> items = read(AnnotatedCopyReader.forClass(ChildClass.class, AnnotatedCopyReader.Format.TEXT),
+				"1\t(2)\t{\"(3)\",\"(4)\"}\n5\t\\N\t{}\n");
+		assertThat(items.get(0).getId(), is(1));
+		assertThat(items.get(0).getChild().getId(), is(2));
+		assertThat(items.get(0).getChildren().size(), is(2));
+		assertThat(items.get(0).getChildren().get(1).getId(), is(4));
+		assertThat(items.get(1).getChild(), nullValue());
+		assertThat(items.get(1).getChildren().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testEmbeddedAndConstructorBased() throws SQLException, IOException {
+		final List<WithEmbed> embedded = read(AnnotatedCopyReader.forClass(WithEmbed.class, AnnotatedCopyReader.Format.CSV), "1,2,3\n");
+		assertThat(embedded.get(0).getEmbed().getX(), is(1));
+		assertThat(embedded.get(0).getEmbed().getY(), is(2));
+		assertThat(embedded.get(0).getZ(), is(3));
+
+		// optional child column is missing
+		final List<ImmutableClass> immutable = read(AnnotatedCopyReader.forColumns(ImmutableClass.class, AnnotatedCopyReader.Format.TEXT, "id", "name", "tags"),
+				"7\tseven\t{a,b}\n");
+		assertThat(immutable.get(0).getId(), is(7));
+		assertThat(immutable.get(0).getName(), is("seven"));
+		assertThat(immutable.get(0).getTags(), is(Arrays.asList("a", "b")));
+		assertThat(immutable.get(0).getChild(), nullValue());
+	}
+
+	@Test
+	public void testIterator() throws SQLException {
+		final StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			data.append(i).append('\t').append(i + 1).append('\t').append(i + 2).append('\n');
+		}
+		final int[] reads = new int[1];
+		final Reader reader = new StringReader(data.toString()) {
+			@Override
+			public int read(char[] cbuf) throws IOException {
+				reads[0]++;
+				return super.read(cbuf);
+			}
+		};
+		final Iterator<WithEmbed> iterator = AnnotatedCopyReader.forClass(WithEmbed.class, AnnotatedCopyReader.Format.TEXT).iterator(reader);
+		assertTrue(iterator.hasNext());
+		// the stream is read lazily
+		assertThat(reads[0], is(1));
+		int count = 0;
+		while ( iterator.hasNext() ) {
+			assertThat(iterator.next().getZ(), is(count + 2));
+			count++;
+		}
+		assertThat(count, is(10000));
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void testWrongColumnCount() throws SQLException, IOException {
+		final AnnotatedCopyReader<WithEmbed> reader = AnnotatedCopyReader.forClass(WithEmbed.class, AnnotatedCopyReader.Format.TEXT);
+		try {
+			read(reader, "1\t2\t3\n1\t2\n");
+			fail("short row should not be read");
+		} catch (SQLException e) {
+			assertThat(e.getMessage(), is("Line 2 of the COPY data has 2 columns, but 3 columns are expected"));
+		}
+		try {
+			reader.iterator(new StringReader("1\t2\t3\t4\n")).hasNext();
+			fail("long row should not be read");
+		} catch (UncategorizedSQLException e) {
+			assertThat(e.getSQLException().getMessage(), is("Line 1 of the COPY data has 4 columns, but 3 columns are expected"));
+		}
+	}
+
+	@Test
+	public void testMissingColumn() {
+		try {
+			AnnotatedCopyReader.forColumns(WithEmbed.class, AnnotatedCopyReader.Format.TEXT, "x", "z");
+			fail("required column y is missing");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().startsWith("Column y "));
+		}
+	}
+}
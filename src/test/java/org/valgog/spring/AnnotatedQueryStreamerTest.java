@@ -0,0 +1,159 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.valgog.spring.example.WithEmbed;
+
+public class AnnotatedQueryStreamerTest {
+
+	/**
+	 * Connection returning the given rows of the columns x, y and z (or of the given columns) for any query and recording the calls,
+	 * runtime exceptions in the rows are thrown when their values are read
+	 */
+	static final class FakeConnection implements InvocationHandler {
+		final List<String> calls = new ArrayList<String>();
+		final Object[][] rows;
+		String[] columns = { "x", "y", "z" };
+		int position = -1;
+		boolean autoCommit = true;
+		SQLException failure;
+		final Connection connection = proxy(Connection.class);
+
+		FakeConnection(Object[]... rows) {
+			this.rows = rows;
+		}
+
+		private <T> T proxy(Class<T> type) {
+			return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, this));
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+			final String name = method.getName();
+			if ( name.equals("getColumnCount") ) return columns.length;
+			if ( name.equals("getColumnLabel") || name.equals("getColumnName") ) return columns[(Integer) args[0] - 1];
+			if ( name.equals("getAutoCommit") ) return autoCommit;
+			if ( name.equals("getMetaData") ) return proxy(ResultSetMetaData.class);
+			if ( name.equals("getObject") || name.equals("getString") ) {
+				final Object value = rows[position][(Integer) args[0] - 1];
+				if ( value instanceof RuntimeException ) throw (RuntimeException) value;
+				return value == null || name.equals("getObject") ? value : value.toString();
+			}
+			if ( name.equals("wasNull") ) return false;
+			if ( name.equals("getConnection") ) return connection;
+			if ( name.equals("getStatement") ) return proxy(PreparedStatement.class);
+			if ( name.equals("hashCode") ) return System.identityHashCode(proxy);
+			if ( name.equals("equals") ) return proxy == args[0];
+			if ( name.equals("toString") ) return "fake";
+			calls.add(name + ( args != null && args.length > 0 && ! name.equals("prepareStatement") ? " " + Arrays.toString(args) : "" ));
+			if ( name.equals("setAutoCommit") ) autoCommit = (Boolean) args[0];
+			if ( name.equals("prepareStatement") ) return proxy(PreparedStatement.class);
+			if ( name.equals("executeQuery") ) return proxy(ResultSet.class);
+			if ( name.equals("next") ) {
+				if ( failure != null ) throw failure;
+				return ++position < rows.length;
+			}
+			return null;
+		}
+	}
+
+	private static final Object[] row(int x) {
+		return new Object[] { x, x + 1, x + 2 };
+	}
+
+	@Test
+	public void testLazyIteration() throws SQLException {
+		final FakeConnection db = new FakeConnection(row(1), row(2));
+		final AnnotatedRowIterator<WithEmbed> iterator = AnnotatedQueryStreamer.forClass(WithEmbed.class).withFetchSize(50)
+				.iterator(db.connection, "SELECT x, y, z FROM t WHERE a = ?", 7);
+		assertThat(db.calls, is(Arrays.asList("setAutoCommit [false]", "prepareStatement", "setFetchSize [50]", "setObject [1, 7]", "executeQuery")));
+		db.calls.clear();
+		assertThat(iterator.next().getEmbed().getX(), is(1));
+		// rows are read only as the iterator is advanced
+		assertThat(db.calls, is(Arrays.asList("next")));
+		assertThat(iterator.next().getZ(), is(4));
+		assertFalse(iterator.isClosed());
+		assertFalse(iterator.hasNext());
+		// everything is closed as soon as the last row is read
+		assertTrue(iterator.isClosed());
+		assertThat(db.calls, is(Arrays.asList("next", "next", "next", "close", "close", "commit", "setAutoCommit [true]")));
+	}
+
+	@Test
+	public void testTransactionIsKept() throws SQLException {
+		final FakeConnection db = new FakeConnection(row(1));
+		db.autoCommit = false;
+		final AnnotatedRowIterator<WithEmbed> iterator = AnnotatedQueryStreamer.forClass(WithEmbed.class).iterator(db.connection, "SELECT 1");
+		while ( iterator.hasNext() ) iterator.next();
+		assertThat(db.calls, is(Arrays.asList("prepareStatement", "setFetchSize [" + AnnotatedQueryStreamer.DEFAULT_FETCH_SIZE + "]", "executeQuery",
+				"next", "next", "close", "close")));
+		assertFalse(db.autoCommit);
+	}
+
+	@Test
+	public void testStream() throws SQLException {
+		final FakeConnection db = new FakeConnection(row(1), row(2), row(3));
+		final Stream<WithEmbed> stream = AnnotatedQueryStreamer.forClass(WithEmbed.class).stream(db.connection, "SELECT 1");
+		try {
+			final List<WithEmbed> items = stream.limit(2).collect(Collectors.<WithEmbed>toList());
+			assertThat(items.size(), is(2));
+			assertThat(items.get(1).getZ(), is(4));
+			assertFalse(db.calls.contains("close"));
+		} finally {
+			stream.close();
+		}
+		assertThat(db.calls.subList(db.calls.size() - 4, db.calls.size()), is(Arrays.asList("close", "close", "commit", "setAutoCommit [true]")));
+	}
+
+	@Test
+	public void testFailure() throws SQLException {
+		final FakeConnection db = new FakeConnection(row(1));
+		final Iterator<WithEmbed> iterator = AnnotatedQueryStreamer.forClass(WithEmbed.class).iterator(db.connection, "SELECT 1");
+		db.failure = new SQLException("connection lost", "08006");
+		try {
+			iterator.hasNext();
+			fail("failure should be reported");
+		} catch (DataAccessException e) {
+			assertThat(e.getCause().getMessage(), is("connection lost"));
+		}
+		assertThat(db.calls.subList(db.calls.size() - 4, db.calls.size()), is(Arrays.asList("close", "close", "rollback", "setAutoCommit [true]")));
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void testMappingFailure() throws SQLException {
+		final FakeConnection db = new FakeConnection(row(1), new Object[] { 2, 3, new ClassCastException("unexpected z") }, row(3));
+		final Iterator<WithEmbed> iterator = AnnotatedQueryStreamer.forClass(WithEmbed.class).iterator(db.connection, "SELECT 1");
+		assertThat(iterator.next().getZ(), is(3));
+		try {
+			iterator.hasNext();
+			fail("failure of the mapper should be reported");
+		} catch (ClassCastException e) {
+			assertThat(e.getMessage(), is("unexpected z"));
+		}
+		// the cursor is not left open
+		assertThat(db.calls.subList(db.calls.size() - 4, db.calls.size()), is(Arrays.asList("close", "close", "rollback", "setAutoCommit [true]")));
+		assertFalse(iterator.hasNext());
+	}
+}
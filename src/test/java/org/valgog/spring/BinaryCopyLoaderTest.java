@@ -0,0 +1,205 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.valgog.utils.PostgresBinaryReaderTest.bytes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.valgog.spring.example.ChildChildClass;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.SimpleWithMap;
+import org.valgog.spring.helpers.TypeDescriptor;
+import org.valgog.utils.PostgresBinaryReaderTest;
+
+public class BinaryCopyLoaderTest {
+
+	private static final String HEADER = "5047434f50590aff0d0a00 00000000 00000000";
+	private static final String TRAILER = "ffff";
+
+	private static final TypeOidResolver RESOLVER = new TypeOidResolver() {
+		@Override
+		public int getTypeOid(String typeName) throws SQLException {
+			if ( typeName.equals("child_child_class") ) return 0x4000;
+			if ( typeName.equals("child_child_class[]") ) return 0x4001;
+			if ( typeName.equals("hstore") ) return 0x5000;
+			if ( typeName.equals("hstore[]") ) return 0x5001;
+			throw new SQLException("Type " + typeName + " does not exist");
+		}
+	};
+
+	private static ChildChildClass childChild(int id) {
+		final ChildChildClass item = new ChildChildClass();
+		item.setId(id);
+		return item;
+	}
+
+	private static ChildClass child(int id) {
+		final ChildClass item = new ChildClass();
+		item.setId(id);
+		item.setChild(childChild(id + 1));
+		item.setChildren(Arrays.asList(childChild(id + 2), null));
+		return item;
+	}
+
+	private static <T> byte[] encode(Class<T> type, T value) throws SQLException {
+		final BinaryValueEncoder.Buffer buffer = new BinaryValueEncoder.Buffer(0);
+		BinaryValueEncoder.forType(new TypeDescriptor<T>(type), RESOLVER).write(buffer, value);
+		return Arrays.copyOf(buffer.data, buffer.length);
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(BinaryCopyLoaderTest.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	/**
+	 * Connection, whose COPY fails with the given failure, the cancelling of the COPY fails as well
+	 */
+	private static Connection failingCopyConnection(final SQLException failure) throws SQLException {
+		final CopyIn copyIn = proxy(CopyIn.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ( method.getName().equals("writeToCopy") ) throw failure;
+				if ( method.getName().equals("cancelCopy") ) throw new SQLException("COPY cannot be cancelled");
+				if ( method.getName().equals("isActive") ) return Boolean.TRUE;
+				return null;
+			}
+		});
+		final CopyManager copyManager = new CopyManager(proxy(BaseConnection.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return null;
+			}
+		})) {
+			@Override
+			public CopyIn copyIn(String sql) {
+				return copyIn;
+			}
+		};
+		return (Connection) Proxy.newProxyInstance(BinaryCopyLoaderTest.class.getClassLoader(), new Class<?>[] { Connection.class, PGConnection.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return method.getName().equals("getCopyAPI") ? copyManager : null;
+			}
+		});
+	}
+
+	@Test
+	public void testCancelFailureIsSuppressed() throws SQLException {
+		final SQLException failure = new SQLException("Connection is lost");
+		try {
+			BinaryCopyLoader.forTable(ChildClass.class, "t", RESOLVER).load(failingCopyConnection(failure), Collections.singletonList(child(1)));
+			fail("failed COPY should not be loaded");
+		} catch (SQLException e) {
+			assertThat(e, is(failure));
+			assertThat(e.getSuppressed().length, is(1));
+			assertThat(e.getSuppressed()[0].getMessage(), is("COPY cannot be cancelled"));
+		}
+	}
+
+	@Test
+	public void testStatement() throws SQLException {
+		final BinaryCopyLoader<ChildClass> loader = BinaryCopyLoader.forTable(ChildClass.class, "t", RESOLVER);
+		assertThat(loader.getSql(), is("COPY t (id, child, children) FROM STDIN WITH BINARY"));
+		assertThat(loader.getColumns(), is(Arrays.asList("id", "child", "children")));
+	}
+
+	@Test
+	public void testStream() throws SQLException, IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final long rows = BinaryCopyLoader.forTable(ChildClass.class, "t", RESOLVER).write(out, Collections.singletonList(child(1)).iterator());
+		assertThat(rows, is(1L));
+		assertArrayEquals(bytes(HEADER
+				+ " 0003"
+				+ " 00000004 00000001"
+				+ " 00000010 00000001 00000017 00000004 00000002"
+				+ " 0000002c 00000001 00000001 00004000 00000002 00000001"
+				+ " 00000010 00000001 00000017 00000004 00000003 ffffffff"
+				+ TRAILER), out.toByteArray());
+	}
+
+	@Test
+	public void testEmptyStream() throws SQLException, IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final long rows = BinaryCopyLoader.forTable(ChildClass.class, "t", RESOLVER).write(out, Collections.<ChildClass>emptyList().iterator());
+		assertThat(rows, is(0L));
+		assertArrayEquals(bytes(HEADER + TRAILER), out.toByteArray());
+	}
+
+	@Test
+	public void testHStore() throws SQLException, IOException {
+		final Map<String, String> map = new LinkedHashMap<String, String>();
+		map.put("a", "1");
+		map.put("b", null);
+		final SimpleWithMap item = new SimpleWithMap();
+		item.setSimpleMap(map);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryCopyLoader.forTable(SimpleWithMap.class, "t", RESOLVER).write(out, Arrays.asList(item, new SimpleWithMap()).iterator());
+		assertArrayEquals(bytes(HEADER
+				+ " 0001 00000017 00000002 00000001 61 00000001 31 00000001 62 ffffffff"
+				+ " 0001 ffffffff"
+				+ TRAILER), out.toByteArray());
+	}
+
+	@Test
+	public void testScalars() throws SQLException {
+		assertArrayEquals(bytes("0003 0001 0000 0003 0001 0929 1a7c"), encode(BigDecimal.class, new BigDecimal("12345.678")));
+		assertArrayEquals(bytes("0001 ffff 4000 0004 0001"), encode(BigDecimal.class, new BigDecimal("-0.0001")));
+		assertArrayEquals(bytes("0001 0001 0000 0000 0001"), encode(BigDecimal.class, new BigDecimal("1E+4")));
+		assertArrayEquals(bytes("0000 0000 0000 0002"), encode(BigDecimal.class, new BigDecimal("0.00")));
+		assertArrayEquals(bytes("00000000 000f4240"), encode(Timestamp.class, new Timestamp(946684801000L)));
+		assertArrayEquals(bytes("61 c3a4 e282ac f09f9880"), encode(String.class, "aä€😀"));
+		assertArrayEquals(bytes(PostgresBinaryReaderTest.INT4_ARRAY), encode(int[].class, new int[] { 1, 2, 3 }));
+		assertArrayEquals(bytes("00000000 00000000 00000017"), encode(int[].class, new int[0]));
+		assertArrayEquals(bytes("00000001 00000001 00000019 00000002 00000001 00000001 78 ffffffff"), encode(String[].class, new String[] { "x", null }));
+	}
+
+	@Test
+	public void testChunks() throws SQLException, IOException {
+		final List<ChildClass> items = new ArrayList<ChildClass>();
+		for (int i = 0; i < 1000; i++) {
+			items.add(child(i));
+		}
+		final BinaryCopyLoader<ChildClass> loader = BinaryCopyLoader.forTable(ChildClass.class, "t", RESOLVER);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		loader.write(expected, items.iterator());
+
+		final List<Integer> chunks = new ArrayList<Integer>();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(byte[] b, int off, int len) {
+				chunks.add(len);
+				super.write(b, off, len);
+			}
+		};
+		loader.withChunkSize(1024).write(out, items.iterator());
+		assertArrayEquals(expected.toByteArray(), out.toByteArray());
+		assertTrue(chunks.size() > 50);
+		for (int length : chunks) {
+			// chunks are flushed at the first row, that does not fit
+			assertTrue(length < 1024 + 100);
+		}
+	}
+}
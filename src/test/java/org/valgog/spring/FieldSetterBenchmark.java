@@ -0,0 +1,88 @@
+package org.valgog.spring;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.valgog.spring.example.ExtendedClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.FieldSetter;
+import org.valgog.spring.helpers.FieldSetterFactory;
+
+/**
+ * Compares the per row cost of assigning all the mapped fields of the example classes
+ * with reflective setters and with the setters generated by {@link FieldSetterFactory}.
+ * <p>Run it with {@code java -cp ... org.valgog.spring.FieldSetterBenchmark [rows]}
+ */
+public class FieldSetterBenchmark {
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws Exception {
+		final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		run(SimpleClass.class, rows);
+		run(ExtendedClass.class, rows);
+	}
+
+	private static <T> void run(Class<T> itemClass, int rows) throws Exception {
+		final List<ClassFieldDescriptor<T, Object>> descList = AnnotatedRowMapper.getFieldMappingDescriptorList(itemClass);
+		final int size = descList.size();
+		final Object[] values = new Object[size];
+		final List<FieldSetter<T, Object>> reflective = new ArrayList<FieldSetter<T, Object>>(size);
+		final List<FieldSetter<T, Object>> generated = new ArrayList<FieldSetter<T, Object>>(size);
+		for (int i = 0; i < size; i++) {
+			final ClassFieldDescriptor<T, Object> desc = descList.get(i);
+			values[i] = sampleValue(desc.getField());
+			reflective.add(FieldSetterFactory.<T, Object>reflectiveSetter(desc.getField(), desc.getSetter()));
+			generated.add(FieldSetterFactory.<T, Object>getFieldSetter(desc.getField(), desc.getSetter()));
+		}
+		long reflectiveBest = Long.MAX_VALUE;
+		long generatedBest = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			reflectiveBest = Math.min(reflectiveBest, measure(itemClass, reflective, values, rows));
+			generatedBest = Math.min(generatedBest, measure(itemClass, generated, values, rows));
+		}
+		System.out.println(String.format("%-14s %2d fields: reflective %6.1f ns/row, generated %6.1f ns/row",
+				itemClass.getSimpleName(), size, (double) reflectiveBest / rows, (double) generatedBest / rows));
+	}
+
+	private static <T> long measure(Class<T> itemClass, List<FieldSetter<T, Object>> setters, Object[] values, int rows) throws Exception {
+		@SuppressWarnings("unchecked")
+		final FieldSetter<T, Object>[] s = setters.toArray((FieldSetter<T, Object>[]) new FieldSetter<?, ?>[setters.size()]);
+		final T[] items = newItems(itemClass, 1024);
+		int check = 0;
+		final long start = System.nanoTime();
+		for (int row = 0; row < rows; row++) {
+			final T item = items[row & 1023];
+			for (int i = 0; i < s.length; i++) {
+				s[i].setFieldValue(item, values[i]);
+			}
+			check += item.hashCode() & 1;
+		}
+		final long elapsed = System.nanoTime() - start;
+		if ( check < 0 ) System.out.println(check);
+		return elapsed;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T[] newItems(Class<T> itemClass, int count) throws Exception {
+		final T[] items = (T[]) java.lang.reflect.Array.newInstance(itemClass, count);
+		for (int i = 0; i < count; i++) {
+			items[i] = itemClass.getDeclaredConstructor().newInstance();
+		}
+		return items;
+	}
+
+	private static Object sampleValue(Field field) throws SQLException {
+		final Class<?> type = field.getType();
+		if ( type == Integer.class || type == Integer.TYPE ) return Integer.valueOf(42);
+		if ( type == String.class ) return "name42";
+		if ( type == int[].class ) return new int[] { 1, 1, 3, 1, 5 };
+		if ( type == String[].class ) return new String[] { "a", "b", "c" };
+		if ( type == List.class ) return Arrays.asList("a", "b");
+		throw new SQLException("No sample value for the field " + field);
+	}
+}
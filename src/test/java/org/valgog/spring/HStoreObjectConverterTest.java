@@ -0,0 +1,68 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.valgog.spring.annotations.DataType;
+import org.valgog.spring.example.HStoreAttributes;
+import org.valgog.spring.example.WithHStoreObject;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.exceptions.NotConvertable;
+import org.valgog.utils.postgres.HStore;
+
+public class HStoreObjectConverterTest {
+
+	@Test
+	public void testHStoreObject() throws Exception {
+		final DatabaseFieldDescriptor<WithHStoreObject, Object> desc = NestedValueDecoderTest.descriptor(WithHStoreObject.class, "attributes");
+		assertThat(desc.getExtractionType(), is(DataType.TEXT));
+		HStoreAttributes attributes = (HStoreAttributes) desc.getConverter().convertFrom("other=>x, color=>\"dark \"\"red\"\"\", size=>42, weight_kg=>NULL");
+		assertThat(attributes.getColor(), is("dark \"red\""));
+		assertThat(attributes.getSize(), is(42));
+		assertNull(attributes.getWeightKg());
+
+		attributes = (HStoreAttributes) desc.getConverter().convertFrom(new HStore("weight_kg=>1.5, size=>1, color=>blue"));
+		assertThat(attributes.getColor(), is("blue"));
+		assertThat(attributes.getSize(), is(1));
+		assertThat(attributes.getWeightKg(), is(1.5));
+
+		final Map<String, String> map = new HashMap<String, String>();
+		map.put("color", "green");
+		map.put("size", "3");
+		attributes = (HStoreAttributes) desc.getConverter().convertFrom(map);
+		assertThat(attributes.getColor(), is("green"));
+		assertThat(attributes.getSize(), is(3));
+
+		assertNull(desc.getConverter().convertFrom(null));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testHStoreObjectArray() throws Exception {
+		final DatabaseFieldDescriptor<WithHStoreObject, Object> desc = NestedValueDecoderTest.descriptor(WithHStoreObject.class, "history");
+		final List<HStoreAttributes> history = (List<HStoreAttributes>) desc.getConverter().convertFrom("{\"color=>red, size=>1\",\"color=>blue, size=>2\"}");
+		assertThat(history.size(), is(2));
+		assertThat(history.get(0).getColor(), is("red"));
+		assertThat(history.get(1).getSize(), is(2));
+	}
+
+	@Test
+	public void testMissingKeys() throws Exception {
+		final DatabaseFieldDescriptor<WithHStoreObject, Object> desc = NestedValueDecoderTest.descriptor(WithHStoreObject.class, "attributes");
+		for (String s : new String[] { "color=>red", "color=>red, size=>x", "color=>\"red" }) {
+			try {
+				desc.getConverter().convertFrom(s);
+				fail("hstore value should not be converted: " + s);
+			} catch (NotConvertable e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.WithEmbed;
+
+public class LogicalChangeMapperTest {
+
+	private static final String TEST_DECODING =
+			"BEGIN 529\n" +
+			"table public.simple_table: INSERT: id[integer]:1 name[text]:'it''s\n" +
+			"two lines' country_code[character varying]:'DE' last_marks[integer[]]:'{1,2,3}'\n" +
+			"table public.simple_table: UPDATE: old-key: id[integer]:1 new-tuple: id[integer]:2 name[text]:null country_code[character varying]:unchanged-toast-datum last_marks[integer[]]:'{}'\n" +
+			"table public.\"Child Table\": INSERT: id[integer]:3 child[child_child_type]:'(4)' children[child_child_type[]]:'{\"(5)\",\"(6)\"}'\n" +
+			"table public.simple_table: DELETE: id[integer]:2\n" +
+			"table public.other: DELETE: (no-tuple data)\n" +
+			"COMMIT 529\n";
+
+	private static List<ChangeRecord> read(String data) throws SQLException, IOException {
+		final List<ChangeRecord> changes = new ArrayList<ChangeRecord>();
+		final long count = LogicalDecodingReader.read(new StringReader(data), new ItemHandler<ChangeRecord>() {
+			@Override
+			public void handleItem(ChangeRecord change) {
+				changes.add(change);
+			}
+		});
+		assertThat(count, is((long) changes.size()));
+		return changes;
+	}
+
+	@Test
+	public void testTestDecoding() throws SQLException, IOException {
+		final List<ChangeRecord> changes = read(TEST_DECODING);
+		assertThat(changes.size(), is(5));
+		assertThat(changes.get(0).getTable(), is("public.simple_table"));
+		assertThat(changes.get(0).getOperation(), is(ChangeRecord.Operation.INSERT));
+		assertThat(changes.get(0).getColumn("name").getValue(), is((Object) "it's\ntwo lines"));
+		assertThat(changes.get(0).getColumn("last_marks").getType(), is("integer[]"));
+		assertThat(changes.get(1).getOldKey().size(), is(1));
+		// unchanged TOAST values are not in the record
+		assertThat(changes.get(1).getColumn("country_code"), nullValue());
+		assertThat(changes.get(2).getTable(), is("public.Child Table"));
+		assertThat(changes.get(3).getOperation(), is(ChangeRecord.Operation.DELETE));
+		assertThat(changes.get(4).getColumns().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testMapping() throws SQLException, IOException {
+		final LogicalChangeMapper mapper = LogicalChangeMapper.create().withTable("simple_table", SimpleClass.class)
+				.withTable("public.Child Table", ChildClass.class);
+		final List<ChangeRecord> changes = read(TEST_DECODING);
+
+		final SimpleClass inserted = mapper.map(changes.get(0), SimpleClass.class);
+		assertThat(inserted.getId(), is(1));
+		assertThat(inserted.getName(), is("it's\ntwo lines"));
+		assertThat(inserted.getCountryCode(), is("DE"));
+		assertArrayEquals(new int[] { 1, 2, 3 }, inserted.getLastMarks());
+
+		final SimpleClass updated = (SimpleClass) mapper.map(changes.get(1));
+		assertThat(updated.getId(), is(2));
+		assertThat(updated.getName(), nullValue());
+		assertThat(updated.getCountryCode(), nullValue());
+		assertThat(((SimpleClass) mapper.mapOldKey(changes.get(1))).getId(), is(1));
+
+		final ChildClass child = mapper.map(changes.get(2), ChildClass.class);
+		assertThat(child.getChild().getId(), is(4));
+		assertThat(child.getChildren().get(1).getId(), is(6));
+
+		// only the key of the deleted row
+		final SimpleClass deleted = mapper.map(changes.get(3), SimpleClass.class);
+		assertThat(deleted.getId(), is(2));
+		assertThat(deleted.getName(), nullValue());
+
+		// not registered table
+		assertThat(mapper.map(changes.get(4)), nullValue());
+		try {
+			mapper.map(changes.get(0), ChildClass.class);
+			fail("changes of simple_table are not mapped to ChildClass");
+		} catch (SQLException e) {
+			assertThat(e.getMessage().startsWith("Changes of the table public.simple_table "), is(true));
+		}
+	}
+
+	@Test
+	public void testWal2Json() throws SQLException, IOException {
+		final String data =
+				"{\"xid\":530,\"change\":[" +
+				"{\"kind\":\"insert\",\"schema\":\"public\",\"table\":\"t\",\"columnnames\":[\"x\",\"y\",\"z\"],\"columntypes\":[\"integer\",\"integer\",\"integer\"],\"columnvalues\":[1,2,3]}," +
+				"{\"kind\":\"delete\",\"schema\":\"public\",\"table\":\"t\",\"oldkeys\":{\"keynames\":[\"x\"],\"keytypes\":[\"integer\"],\"keyvalues\":[1]}}]}\n" +
+				"{\"action\":\"B\"}\n" +
+				"{\"action\":\"U\",\"schema\":\"public\",\"table\":\"t\",\"columns\":[{\"name\":\"x\",\"type\":\"integer\",\"value\":7},{\"name\":\"y\",\"type\":\"integer\",\"value\":8}," +
+				"{\"name\":\"z\",\"type\":\"integer\",\"value\":9},{\"name\":\"doc\",\"type\":\"jsonb\",\"value\":{\"a\":[1,\"2\"],\"b\":\"\\u0041\\\"\"}}],\"identity\":[{\"name\":\"x\",\"type\":\"integer\",\"value\":6}]}\n" +
+				"{\"action\":\"C\"}\n";
+		final List<ChangeRecord> changes = read(data);
+		assertThat(changes.size(), is(3));
+		assertThat(changes.get(1).getOperation(), is(ChangeRecord.Operation.DELETE));
+		assertThat(changes.get(1).getColumns().size(), is(1));
+		assertThat(changes.get(2).getColumn("x").getValue(), is((Object) "7"));
+		assertThat(changes.get(2).getColumn("doc").getValue(), is((Object) "{\"a\":[1,\"2\"],\"b\":\"A\\\"\"}"));
+
+		final LogicalChangeMapper mapper = LogicalChangeMapper.create().withTable("public.t", WithEmbed.class);
+		final WithEmbed inserted = mapper.map(changes.get(0), WithEmbed.class);
+		assertThat(inserted.getEmbed().getX(), is(1));
+		assertThat(inserted.getZ(), is(3));
+		final WithEmbed updated = mapper.map(changes.get(2), WithEmbed.class);
+		assertThat(updated.getEmbed().getY(), is(8));
+		assertThat(((WithEmbed) mapper.mapOldKey(changes.get(2))).getEmbed().getX(), is(6));
+	}
+
+	@Test
+	public void testWal2JsonNumbers() throws SQLException, IOException {
+		final List<ChangeRecord> changes = read("{\"action\":\"I\",\"schema\":\"public\",\"table\":\"t\",\"columns\":[" +
+				"{\"name\":\"small\",\"type\":\"numeric\",\"value\":0.00000001},{\"name\":\"large\",\"type\":\"numeric\",\"value\":1e3}," +
+				"{\"name\":\"scaled\",\"type\":\"numeric\",\"value\":1.50}]}\n");
+		assertThat(changes.get(0).getColumn("small").getValue(), is((Object) "0.00000001"));
+		assertThat(changes.get(0).getColumn("large").getValue(), is((Object) "1000"));
+		assertThat(changes.get(0).getColumn("scaled").getValue(), is((Object) "1.50"));
+	}
+
+	@Test
+	public void testQuotesInNames() throws SQLException, IOException {
+		final List<ChangeRecord> changes = read(
+				"table public.\"it's\": DELETE: id[integer]:1\n" +
+				"table public.\"it's\": INSERT: \"a'b\"[text]:'say \"hi\"' \"c\"\"d\"[text]:'two\n" +
+				"lines'\n");
+		assertThat(changes.size(), is(2));
+		assertThat(changes.get(0).getTable(), is("public.it's"));
+		assertThat(changes.get(0).getOperation(), is(ChangeRecord.Operation.DELETE));
+		assertThat(changes.get(1).getColumn("a'b").getValue(), is((Object) "say \"hi\""));
+		assertThat(changes.get(1).getColumn("c\"d").getValue(), is((Object) "two\nlines"));
+	}
+
+	@Test
+	public void testPlanCacheIsBounded() throws SQLException {
+		final LogicalChangeMapper mapper = LogicalChangeMapper.create().withTable("public.simple_table", SimpleClass.class);
+		final int lists = LogicalChangeMapper.MAX_PLANS_PER_TABLE * 2;
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < lists; i++) {
+				// every change has another list of the columns: the id and a different number of unknown columns
+				final List<ChangeRecord.Column> columns = new ArrayList<ChangeRecord.Column>();
+				columns.add(new ChangeRecord.Column("id", "integer", String.valueOf(i)));
+				for (int c = 0; c < i; c++) {
+					columns.add(new ChangeRecord.Column("added_" + c, "text", "x"));
+				}
+				columns.add(new ChangeRecord.Column("name", "text", "name " + i));
+				final SimpleClass item = mapper.map(new ChangeRecord("public.simple_table", ChangeRecord.Operation.INSERT, columns, null), SimpleClass.class);
+				assertThat(item.getId(), is(i));
+				assertThat(item.getName(), is("name " + i));
+			}
+		}
+		assertThat(mapper.getCachedPlanCount("public.simple_table"), is(LogicalChangeMapper.MAX_PLANS_PER_TABLE));
+	}
+
+	@Test
+	public void testReplayFromFile() throws SQLException, IOException {
+		final File file = File.createTempFile("changes", ".txt");
+		try {
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				writer.write(TEST_DECODING);
+			} finally {
+				writer.close();
+			}
+			final LogicalChangeMapper mapper = LogicalChangeMapper.create().withTable("simple_table", SimpleClass.class);
+			final List<Integer> ids = new ArrayList<Integer>();
+			LogicalDecodingReader.read(file, new ItemHandler<ChangeRecord>() {
+				@Override
+				public void handleItem(ChangeRecord change) throws SQLException {
+					final SimpleClass item = mapper.map(change, SimpleClass.class);
+					if ( item != null ) ids.add(item.getId());
+				}
+			});
+			assertThat(ids, is(Arrays.asList(1, 2, 2)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testWrongLine() throws IOException {
+		try {
+			read("BEGIN 1\ntable public.t: MERGE: x[integer]:1\n");
+			fail("unknown operation should not be read");
+		} catch (SQLException e) {
+			assertThat(e.getMessage(), is("Line 2 of the logical decoding output cannot be parsed: Unknown operation MERGE"));
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.valgog.spring;
+
+import static org.valgog.utils.AllocationMeter.assertBudget;
+
+import java.sql.ResultSet;
+
+import org.junit.Test;
+import org.valgog.spring.example.ComplexEmbed;
+import org.valgog.spring.example.ExtendedClass;
+import org.valgog.spring.example.ImmutableClass;
+import org.valgog.spring.example.ListWithEmbed;
+import org.valgog.spring.example.ParentClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.SimpleRowClass;
+import org.valgog.spring.example.SimpleWithMap;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.spring.example.WithHStoreObject;
+import org.valgog.utils.AllocationMeter;
+import org.valgog.utils.jdbc.DriverResultSet;
+
+/**
+ * Bytes allocated per {@link AnnotatedRowMapper#mapRow(ResultSet, int)} call for the example classes, mapped from
+ * the text values the way the server sends them. The budgets include the mapped objects themselves,
+ * a class that goes over its budget fails the build.
+ *
+ * @author valgog
+ */
+public class MappingAllocationBudgetTest {
+
+	static final int ROWS = 10;
+
+	/**
+	 * Recording of the given text values, replayed without a database
+	 */
+	static ResultSet rows(String[] columns, String... values) throws Exception {
+		return DriverResultSet.replay(DriverResultSet.text(columns, ROWS, values));
+	}
+
+	private static <T> void assertRowBudget(Class<T> itemClass, long budget, final ResultSet rs) throws Exception {
+		final AnnotatedRowMapper<T> mapper = AnnotatedRowMapper.getMapperForClass(itemClass);
+		assertBudget(itemClass.getSimpleName() + " mapRow", budget, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				T item = null;
+				rs.beforeFirst();
+				for (int rowNum = 0; rs.next(); rowNum++) {
+					item = mapper.mapRow(rs, rowNum);
+				}
+				return item;
+			}
+		}, ROWS);
+	}
+
+	@Test
+	public void testSimpleClass() throws Exception {
+		assertRowBudget(SimpleClass.class, 576,
+				rows(new String[] { "id", "name", "country_code", "last_marks", "tags", "generic_tags" },
+						"1", "Muster", "DE", "{1,1,3,1,5}", "{a,b,c,NULL,e}", null));
+	}
+
+	@Test
+	public void testExtendedClass() throws Exception {
+		assertRowBudget(ExtendedClass.class, 592,
+				rows(new String[] { "id", "name", "country_code", "last_marks", "tags", "e_full_name", "e_option_count" },
+						"1", "Muster", "DE", "{1,1,3,1,5}", "{a,b,c,NULL,e}", "Muster as full name", "3"));
+	}
+
+	@Test
+	public void testSimpleRowClass() throws Exception {
+		assertRowBudget(SimpleRowClass.class, 672, rows(new String[] { "st" }, "(1,a,DE,)"));
+	}
+
+	@Test
+	public void testParentClass() throws Exception {
+		final String children = "{\"(1,,)\",\"(2,(1),)\",\"(2,(1),\\\"{\\\"\\\"(1)\\\"\\\"}\\\")\"}";
+		assertRowBudget(ParentClass.class, 2816, rows(new String[] { "children", "set" }, children, children));
+	}
+
+	@Test
+	public void testImmutableClass() throws Exception {
+		assertRowBudget(ImmutableClass.class, 864, rows(new String[] { "id", "name", "tags", "child" }, "1", "Muster", "{a,b}", "(2)"));
+	}
+
+	@Test
+	public void testWithEmbed() throws Exception {
+		assertRowBudget(WithEmbed.class, 64, rows(new String[] { "x", "y", "z" }, "1", "2", "3"));
+	}
+
+	@Test
+	public void testComplexEmbed() throws Exception {
+		assertRowBudget(ComplexEmbed.class, 704, rows(new String[] { "x", "embed" }, "1", "(1,2,3)"));
+	}
+
+	@Test
+	public void testListWithEmbed() throws Exception {
+		assertRowBudget(ListWithEmbed.class, 1056, rows(new String[] { "embeds" }, "{\"(1,2,3)\",\"(1,2,3)\"}"));
+	}
+
+	@Test
+	public void testSimpleWithMap() throws Exception {
+		assertRowBudget(SimpleWithMap.class, 640, rows(new String[] { "simple_map" }, "\"key1\"=>\"value1\", \"key2\"=>NULL"));
+	}
+
+	@Test
+	public void testWithHStoreObject() throws Exception {
+		final String attributes = "\"color\"=>\"red\", \"size\"=>\"3\", \"weight_kg\"=>\"1.5\"";
+		assertRowBudget(WithHStoreObject.class, 1280, rows(new String[] { "id", "attributes", "history" },
+				"1", attributes, "{\"\\\"color\\\"=>\\\"blue\\\", \\\"size\\\"=>\\\"2\\\"\"}"));
+	}
+}
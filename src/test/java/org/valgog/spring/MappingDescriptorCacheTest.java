@@ -0,0 +1,192 @@
+package org.valgog.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.valgog.spring.annotations.DatabaseConstructor;
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.example.ChildChildClass;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.ExtendedClass;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.spring.helpers.ClassMappingDescriptor;
+import org.valgog.spring.helpers.FieldSetter;
+import org.valgog.spring.helpers.FieldSetterFactory;
+import org.valgog.spring.helpers.exceptions.TypeInstantiationException;
+
+public class MappingDescriptorCacheTest {
+
+	private static final Class<?>[] CLASSES = { SimpleClass.class, ExtendedClass.class, ChildClass.class, ChildChildClass.class, WithEmbed.class };
+	private static final int LOOKUPS = 10000;
+
+	/**
+	 * Class, whose constructor fails with an exception for the negative ids and with an error for 0
+	 */
+	public static class FailingConstructor {
+		@DatabaseField(name = "id")
+		private final int id;
+
+		@DatabaseConstructor
+		public FailingConstructor(int id) {
+			if ( id < 0 ) throw new IllegalArgumentException("negative id");
+			if ( id == 0 ) throw new AssertionError("id 0");
+			this.id = id;
+		}
+
+		public int getId() {
+			return id;
+		}
+	}
+
+	@Test
+	public void testConstructorFailures() throws Exception {
+		final ClassMappingDescriptor<FailingConstructor> descriptor = AnnotatedRowMapper.getClassMappingDescriptor(FailingConstructor.class);
+		assertEquals(1, descriptor.newInstance(new Object[] { 1 }).getId());
+		try {
+			descriptor.newInstance(new Object[] { -1 });
+			fail("negative id should not be accepted");
+		} catch (TypeInstantiationException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		try {
+			descriptor.newInstance(new Object[] { 0 });
+			fail("error of the constructor should be thrown");
+		} catch (AssertionError e) {
+			// errors are not wrapped
+			assertEquals("id 0", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testConcurrentLookupsReturnSameDescriptor() throws Exception {
+		final int threads = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<ClassMappingDescriptor<?>[]>> futures = new ArrayList<Future<ClassMappingDescriptor<?>[]>>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(new Callable<ClassMappingDescriptor<?>[]>() {
+					@Override
+					public ClassMappingDescriptor<?>[] call() throws Exception {
+						start.await();
+						final ClassMappingDescriptor<?>[] r = new ClassMappingDescriptor<?>[CLASSES.length];
+						for (int i = 0; i < CLASSES.length; i++) {
+							r[i] = AnnotatedRowMapper.getClassMappingDescriptor(CLASSES[i]);
+						}
+						// keep looking up while the other threads do the same
+						for (int i = 0; i < LOOKUPS; i++) {
+							assertSame(r[i % CLASSES.length], AnnotatedRowMapper.getClassMappingDescriptor(CLASSES[i % CLASSES.length]));
+						}
+						return r;
+					}
+				}));
+			}
+			start.countDown();
+			final ClassMappingDescriptor<?>[] first = futures.get(0).get();
+			for (Future<ClassMappingDescriptor<?>[]> f : futures) {
+				final ClassMappingDescriptor<?>[] r = f.get();
+				for (int i = 0; i < CLASSES.length; i++) {
+					assertNotNull(r[i]);
+					assertSame(first[i], r[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCacheDoesNotPinClassLoaders() throws Exception {
+		WeakReference<ClassLoader> loaderReference = mapInIsolatedClassLoader();
+		for (int i = 0; i < 20 && loaderReference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		assertNull("class loader of the mapped class was not collected", loaderReference.get());
+	}
+
+	private static WeakReference<ClassLoader> mapInIsolatedClassLoader() throws Exception {
+		final ClassLoader loader = new IsolatingClassLoader(ChildChildClass.class.getName());
+		final Class<?> isolatedClass = loader.loadClass(ChildChildClass.class.getName());
+		assertTrue(isolatedClass != ChildChildClass.class);
+		assertNotNull(AnnotatedRowMapper.getClassMappingDescriptor(isolatedClass).newInstance());
+		return new WeakReference<ClassLoader>(loader);
+	}
+
+	@Test
+	public void testSetterOfIsolatedClassIsCalledThroughMethodHandle() throws Exception {
+		final ClassLoader loader = new IsolatingClassLoader(ChildChildClass.class.getName());
+		final Class<?> isolatedClass = loader.loadClass(ChildChildClass.class.getName());
+		final Method setterMethod = isolatedClass.getMethod("setId", Integer.class);
+		// the setter class could not resolve the isolated class
+		assertNull(FieldSetterFactory.generatedSetter(setterMethod));
+		final FieldSetter<Object, Object> setter = FieldSetterFactory.methodHandleSetter(setterMethod);
+		assertNotNull(setter);
+		final Object item = isolatedClass.newInstance();
+		setter.setFieldValue(item, Integer.valueOf(42));
+		assertEquals(Integer.valueOf(42), isolatedClass.getMethod("getId").invoke(item));
+	}
+
+	/**
+	 * Loads the given class itself instead of delegating to the parent, like web application class loaders do
+	 */
+	static final class IsolatingClassLoader extends ClassLoader {
+		private final String isolatedClassName;
+
+		IsolatingClassLoader(String isolatedClassName) {
+			super(MappingDescriptorCacheTest.class.getClassLoader());
+			this.isolatedClassName = isolatedClassName;
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if ( !isolatedClassName.equals(name) ) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> c = findLoadedClass(name);
+				if ( c == null ) {
+					final byte[] bytes = readClassBytes(name);
+					c = defineClass(name, bytes, 0, bytes.length);
+				}
+				return c;
+			}
+		}
+
+		private byte[] readClassBytes(String name) throws ClassNotFoundException {
+			final InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+			if ( in == null ) throw new ClassNotFoundException(name);
+			try {
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				final byte[] buffer = new byte[4096];
+				for (int n; ( n = in.read(buffer) ) > 0; ) {
+					out.write(buffer, 0, n);
+				}
+				return out.toByteArray();
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			} finally {
+				try { in.close(); } catch (IOException ignore) { }
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.postgresql.util.PGobject;
+import org.valgog.spring.AnnotatedQueryStreamerTest.FakeConnection;
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.example.EmbededObject;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingPath;
+import org.valgog.utils.jdbc.RecordedArray;
+
+public class MappingMetricsTest {
+
+	@Before
+	public void setUp() {
+		MappingMetrics.reset();
+	}
+
+	@After
+	public void tearDown() {
+		MappingMetrics.setSampleRate(0);
+		MappingMetrics.setListener(null);
+	}
+
+	/**
+	 * {@link MappingAllocationBudgetTest#ROWS} rows with the id, the ARRAYs and the name as text and the country code NULL
+	 */
+	private static ResultSet simpleRows() throws Exception {
+		return MappingAllocationBudgetTest.rows(new String[] { "id", "name", "country_code", "last_marks", "tags" },
+				"1", "Muster", null, "{1,2,3}", "{a,b}");
+	}
+
+	private static void mapAll(ResultSet rs) throws SQLException {
+		final AnnotatedRowMapper<SimpleClass> mapper = AnnotatedRowMapper.getMapperForClass(SimpleClass.class);
+		for (int rowNum = 0; rs.next(); rowNum++) {
+			final SimpleClass item = mapper.mapRow(rs, rowNum);
+			assertArrayEquals(new int[] { 1, 2, 3 }, item.getLastMarks());
+		}
+	}
+
+	@Test
+	public void testPathCounts() throws Exception {
+		mapAll(simpleRows());
+		assertThat(MappingMetrics.getRowCount(SimpleClass.class), is(10L));
+		// the name
+		assertThat(MappingMetrics.getPathCount(SimpleClass.class, MappingPath.DIRECT), is(10L));
+		assertThat(MappingMetrics.getPathCount(SimpleClass.class, MappingPath.NULL), is(10L));
+		// the id and the ARRAYs are parsed from the text
+		assertThat(MappingMetrics.getPathCount(SimpleClass.class, MappingPath.TEXT), is(30L));
+		assertThat(MappingMetrics.getPathCount(SimpleClass.class, MappingPath.ARRAY), is(0L));
+		assertThat(MappingMetrics.getSampledRowCount(SimpleClass.class), is(0L));
+	}
+
+	public static class PathClass {
+		@DatabaseField
+		public Integer count;
+
+		@DatabaseField
+		public List<String> tags;
+
+		@DatabaseField
+		public Map<String, String> attributes;
+	}
+
+	private static long[] pathCounts(Class<?> itemClass) {
+		final long[] counts = new long[MappingPath.values().length];
+		for (MappingPath path : MappingPath.values()) {
+			counts[path.ordinal()] = MappingMetrics.getPathCount(itemClass, path);
+		}
+		return counts;
+	}
+
+	/**
+	 * Map a single row with the given values of the count, tags and attributes columns
+	 * @return paths, that were counted for the row, in the order of the paths
+	 */
+	private static List<MappingPath> mapPaths(Object count, Object tags, Object attributes) throws Exception {
+		final FakeConnection db = new FakeConnection(new Object[] { count, tags, attributes });
+		db.columns = new String[] { "count", "tags", "attributes" };
+		final ResultSet rs = db.connection.prepareStatement("SELECT 1").executeQuery();
+		final long[] before = pathCounts(PathClass.class);
+		final AnnotatedRowMapper<PathClass> mapper = AnnotatedRowMapper.getMapperForClass(PathClass.class);
+		assertTrue(rs.next());
+		mapper.mapRow(rs, 0);
+		final long[] after = pathCounts(PathClass.class);
+		final List<MappingPath> paths = new ArrayList<MappingPath>();
+		for (MappingPath path : MappingPath.values()) {
+			for (long i = before[path.ordinal()]; i < after[path.ordinal()]; i++) {
+				paths.add(path);
+			}
+		}
+		return paths;
+	}
+
+	@Test
+	public void testPathOfEveryValue() throws Exception {
+		final PGobject hstore = new PGobject();
+		hstore.setType("hstore");
+		hstore.setValue("a=>1");
+		// the same fields, read as the driver values and as text
+		assertThat(mapPaths(Integer.valueOf(1), new RecordedArray("{a,b}", Types.VARCHAR, "text"), hstore),
+				is(Arrays.asList(MappingPath.DIRECT, MappingPath.PG_OBJECT, MappingPath.ARRAY)));
+		assertThat(mapPaths("1", "{a,b}", "a=>1"), is(Arrays.asList(MappingPath.TEXT, MappingPath.TEXT, MappingPath.TEXT)));
+		assertThat(mapPaths(Long.valueOf(1), new Object[] { "a", "b" }, null), is(Arrays.asList(MappingPath.NULL, MappingPath.NUMBER, MappingPath.ARRAY)));
+		assertThat(mapPaths(new StringBuilder("1"), null, null), is(Arrays.asList(MappingPath.NULL, MappingPath.NULL, MappingPath.TEXT)));
+	}
+
+	@Test
+	public void testSampling() throws Exception {
+		MappingMetrics.setSampleRate(1);
+		mapAll(simpleRows());
+		assertThat(MappingMetrics.getSampledRowCount(SimpleClass.class), is(10L));
+		MappingMetrics.setSampleRate(0);
+		mapAll(simpleRows());
+		assertThat(MappingMetrics.getSampledRowCount(SimpleClass.class), is(10L));
+		assertThat(MappingMetrics.getRowCount(SimpleClass.class), is(20L));
+	}
+
+	@Test
+	public void testListener() throws Exception {
+		final List<String> events = new ArrayList<String>();
+		MappingMetrics.setListener(new MappingListener() {
+			@Override
+			public void valueConverted(Class<?> itemClass, DatabaseFieldDescriptor<?, ?> field, MappingPath path, long nanos) {
+				assertTrue(nanos >= 0);
+				events.add(field.getDatabaseFieldName() + ":" + path);
+			}
+
+			@Override
+			public void rowMapped(Class<?> itemClass, long nanos) {
+				events.add("row:" + itemClass.getSimpleName());
+			}
+		});
+		mapAll(simpleRows());
+		assertThat(events.size(), is(6 * MappingAllocationBudgetTest.ROWS));
+		assertThat(events.subList(0, 6), is(Arrays.asList("id:TEXT", "name:DIRECT", "country_code:NULL", "last_marks:TEXT", "tags:TEXT", "row:SimpleClass")));
+	}
+
+	@Test
+	public void testEmbeddedRowsAreCountedOnce() throws Exception {
+		final List<String> rows = new ArrayList<String>();
+		MappingMetrics.setListener(new MappingListener() {
+			@Override
+			public void valueConverted(Class<?> itemClass, DatabaseFieldDescriptor<?, ?> field, MappingPath path, long nanos) {
+			}
+
+			@Override
+			public void rowMapped(Class<?> itemClass, long nanos) {
+				rows.add(itemClass.getSimpleName());
+			}
+		});
+		final ResultSet rs = MappingAllocationBudgetTest.rows(new String[] { "x", "y", "z" }, "1", "2", "3");
+		final AnnotatedRowMapper<WithEmbed> mapper = AnnotatedRowMapper.getMapperForClass(WithEmbed.class);
+		for (int rowNum = 0; rs.next(); rowNum++) {
+			assertThat(mapper.mapRow(rs, rowNum).getEmbed().getY(), is(2));
+		}
+		assertThat(rows.size(), is(MappingAllocationBudgetTest.ROWS));
+		assertThat(rows.get(0), is("WithEmbed"));
+		assertThat(MappingMetrics.getRowCount(WithEmbed.class), is(10L));
+		assertThat(MappingMetrics.getRowCount(EmbededObject.class), is(0L));
+	}
+
+	@Test
+	public void testMetricsDoNotPinClassLoaders() throws Exception {
+		mapAll(simpleRows());
+		final WeakReference<ClassLoader> loaderReference = mapInIsolatedClassLoader();
+		for (int i = 0; i < 20 && loaderReference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		assertNull("class loader of the mapped class was not collected", loaderReference.get());
+		// the metrics of the class of the same name, that is still loaded, are found again
+		final ObjectName name = MappingMetrics.registerMBean();
+		try {
+			final Object[] arguments = { SimpleClass.class.getName() };
+			final String[] signature = { String.class.getName() };
+			assertThat((Long) ManagementFactory.getPlatformMBeanServer().invoke(name, "getRowCount", arguments, signature), is(10L));
+		} finally {
+			MappingMetrics.unregisterMBean();
+		}
+	}
+
+	private static WeakReference<ClassLoader> mapInIsolatedClassLoader() throws Exception {
+		final ClassLoader loader = new MappingDescriptorCacheTest.IsolatingClassLoader(SimpleClass.class.getName());
+		final Class<?> isolatedClass = loader.loadClass(SimpleClass.class.getName());
+		assertTrue(isolatedClass != SimpleClass.class);
+		final AnnotatedRowMapper<?> mapper = AnnotatedRowMapper.getMapperForClass(isolatedClass);
+		final ResultSet rs = simpleRows();
+		for (int rowNum = 0; rs.next(); rowNum++) {
+			mapper.mapRow(rs, rowNum);
+		}
+		assertThat(MappingMetrics.getRowCount(isolatedClass), is(10L));
+		assertThat(MappingMetrics.getRowCount(SimpleClass.class), is(10L));
+		return new WeakReference<ClassLoader>(loader);
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		final ObjectName name = MappingMetrics.registerMBean();
+		try {
+			MappingMetrics.registerMBean();
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.setAttribute(name, new javax.management.Attribute("SampleRate", 1));
+			mapAll(simpleRows());
+			assertTrue(Arrays.asList((String[]) server.getAttribute(name, "MappedClasses")).contains(SimpleClass.class.getName()));
+			final Object[] arguments = { SimpleClass.class.getName() };
+			final String[] signature = { String.class.getName() };
+			assertThat((Long) server.invoke(name, "getRowCount", arguments, signature), is(10L));
+			final TabularData counts = (TabularData) server.invoke(name, "getPathCounts", arguments, signature);
+			assertThat((Long) counts.get(new Object[] { "DIRECT" }).get("value"), is(10L));
+			assertThat((Long) counts.get(new Object[] { "TEXT" }).get("value"), is(30L));
+			final TabularData times = (TabularData) server.invoke(name, "getRowTimes", arguments, signature);
+			final CompositeData count = times.get(new Object[] { "count" });
+			assertThat((Long) count.get("value"), is(10L));
+			server.invoke(name, "reset", new Object[0], new String[0]);
+			assertThat(MappingMetrics.getRowCount(SimpleClass.class), is(0L));
+		} finally {
+			MappingMetrics.unregisterMBean();
+		}
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(false));
+	}
+}
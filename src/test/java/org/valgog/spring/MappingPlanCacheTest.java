@@ -0,0 +1,177 @@
+package org.valgog.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.valgog.spring.example.SimpleClass;
+
+public class MappingPlanCacheTest {
+
+	/**
+	 * Result set, that counts the calls of {@link ResultSet#getMetaData()}
+	 */
+	private static ResultSet counting(final ResultSet rs, final AtomicInteger metaDataCalls) {
+		return (ResultSet) Proxy.newProxyInstance(MappingPlanCacheTest.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ( method.getName().equals("getMetaData") ) metaDataCalls.incrementAndGet();
+				try {
+					return method.invoke(rs, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Class mapped only by {@link #testInterleavedResultSets()}, so that its plans are not resolved by the result sets of other tests
+	 */
+	public static class InterleavedItem extends SimpleClass {
+	}
+
+	/**
+	 * Class mapped only by {@link #testPlansAreCapped()}
+	 */
+	public static class AdHocItem extends SimpleClass {
+	}
+
+	private static ResultSet first(AtomicInteger metaDataCalls) throws Exception {
+		return counting(MappingAllocationBudgetTest.rows(new String[] { "id", "name", "country_code", "last_marks", "tags" },
+				"1", "first", "DE", "{1,2}", "{a}"), metaDataCalls);
+	}
+
+	private static ResultSet second(AtomicInteger metaDataCalls) throws Exception {
+		// the other shape, with the columns in another order
+		return counting(MappingAllocationBudgetTest.rows(new String[] { "tags", "last_marks", "country_code", "name", "id" },
+				"{b,c}", "{3}", "FR", "second", "2"), metaDataCalls);
+	}
+
+	private static void assertFirst(SimpleClass a) {
+		assertEquals(Integer.valueOf(1), a.getId());
+		assertEquals("first", a.getName());
+		assertEquals("DE", a.getCountryCode());
+		assertEquals(2, a.getLastMarks().length);
+	}
+
+	private static void assertSecond(SimpleClass b) {
+		assertEquals(Integer.valueOf(2), b.getId());
+		assertEquals("second", b.getName());
+		assertEquals("FR", b.getCountryCode());
+		assertEquals(2, b.getTags().length);
+	}
+
+	@Test
+	public void testInterleavedResultSets() throws Exception {
+		final AtomicInteger firstCalls = new AtomicInteger();
+		final AtomicInteger secondCalls = new AtomicInteger();
+		final AnnotatedRowMapper<InterleavedItem> mapper = AnnotatedRowMapper.getMapperForClass(InterleavedItem.class);
+		final AnnotatedRowIterator<InterleavedItem> first = new AnnotatedRowIterator<InterleavedItem>(mapper, "first", null, null, null, false, null, first(firstCalls));
+		final AnnotatedRowIterator<InterleavedItem> second = new AnnotatedRowIterator<InterleavedItem>(mapper, "second", null, null, null, false, null, second(secondCalls));
+		int rowNum = 0;
+		while ( first.hasNext() && second.hasNext() ) {
+			assertFirst(first.next());
+			assertSecond(second.next());
+			rowNum++;
+		}
+		assertEquals(MappingAllocationBudgetTest.ROWS, rowNum);
+		assertEquals(1, firstCalls.get());
+		assertEquals(1, secondCalls.get());
+	}
+
+	@Test
+	public void testResultSetsOfConcurrentThreads() throws Exception {
+		final AnnotatedRowMapper<InterleavedItem> mapper = AnnotatedRowMapper.getMapperForClass(InterleavedItem.class);
+		final AtomicInteger firstCalls = new AtomicInteger();
+		final AtomicInteger secondCalls = new AtomicInteger();
+		final ResultSet first = first(firstCalls);
+		final ResultSet second = second(secondCalls);
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final Future<Integer> firstRows = executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int rowNum = 0;
+					while ( first.next() ) {
+						barrier.await(5, TimeUnit.SECONDS);
+						assertFirst(mapper.mapRow(first, rowNum++));
+					}
+					return rowNum;
+				}
+			});
+			final Future<Integer> secondRows = executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int rowNum = 0;
+					while ( second.next() ) {
+						barrier.await(5, TimeUnit.SECONDS);
+						assertSecond(mapper.mapRow(second, rowNum++));
+					}
+					return rowNum;
+				}
+			});
+			assertEquals(Integer.valueOf(MappingAllocationBudgetTest.ROWS), firstRows.get());
+			assertEquals(Integer.valueOf(MappingAllocationBudgetTest.ROWS), secondRows.get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, firstCalls.get());
+		assertEquals(1, secondCalls.get());
+	}
+
+	@Test
+	public void testListExtractor() throws Exception {
+		final AtomicInteger metaDataCalls = new AtomicInteger();
+		final List<SimpleClass> items = AnnotatedRowMapper.getMapperForClass(SimpleClass.class).listExtractor().extractData(first(metaDataCalls));
+		assertEquals(MappingAllocationBudgetTest.ROWS, items.size());
+		for (SimpleClass item : items) {
+			assertFirst(item);
+		}
+		assertEquals(1, metaDataCalls.get());
+	}
+
+	@Test
+	public void testPlansAreCapped() throws Exception {
+		final MappingPlanCache<AdHocItem> cache = MappingPlanCache.forClass(AdHocItem.class);
+		for (int i = 0; i < MappingPlanCache.MAX_PLANS * 2; i++) {
+			// every query has its own alias of an additional column
+			cache.resolve(MappingAllocationBudgetTest.rows(new String[] { "id", "name", "country_code", "last_marks", "column_" + i },
+					"1", "first", "DE", "{1,2}", "x"));
+		}
+		assertEquals(MappingPlanCache.MAX_PLANS, cache.getCachedPlanCount());
+		final ResultSet rs = MappingAllocationBudgetTest.rows(new String[] { "id", "name", "country_code", "last_marks", "column_0" },
+				"1", "first", "DE", "{1,2}", "x");
+		final ResultSetMappingPlan<AdHocItem> plan = cache.resolve(rs);
+		assertSame(plan, cache.resolve(rs));
+		assertEquals(MappingPlanCache.MAX_PLANS, cache.getCachedPlanCount());
+	}
+
+	@Test
+	public void testPlansAreSharedByMappers() throws Exception {
+		final ResultSet rs = MappingAllocationBudgetTest.rows(new String[] { "id", "name", "country_code", "last_marks", "tags" },
+				"1", "Muster", "DE", "{1,2}", "{a}");
+		final MappingPlanCache<SimpleClass> cache = MappingPlanCache.forClass(SimpleClass.class);
+		assertSame(cache, MappingPlanCache.forClass(SimpleClass.class));
+		final ResultSetMappingPlan<SimpleClass> plan = cache.resolve(rs);
+		assertSame(plan, cache.resolve(rs));
+		assertSame(plan, cache.bind(rs));
+		assertFalse(plan.getMissingOptionalColumns().contains("id"));
+	}
+}
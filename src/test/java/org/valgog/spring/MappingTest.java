@@ -12,6 +12,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
@@ -23,6 +24,7 @@ import org.valgog.spring.example.ListWithEmbed;
 import org.valgog.spring.example.ParentClass;
 import org.valgog.spring.example.SimpleClass;
 import org.valgog.spring.example.ExtendedClass;
+import org.valgog.spring.example.ImmutableClass;
 import org.valgog.spring.example.SimpleRowClass;
 import org.valgog.spring.example.SimpleWithMap;
 import org.valgog.spring.example.WithEmbed;
@@ -204,6 +206,23 @@ public class MappingTest {
 		}
 	}		
 	
+	@Test
+	public void testImmutableMapRow() throws SQLException {
+		
+		PreparedStatement ps = conn.prepareStatement("SELECT 1 as id, 'Muster' as name, '{a,b}'::text[] as tags, ROW(2)::test.child_child_type as child");
+		ResultSet rs = ps.executeQuery();
+		AnnotatedRowMapper<ImmutableClass> mapper = AnnotatedRowMapper.getMapperForClass(ImmutableClass.class);
+		int i = 0;
+		while( rs.next() ) {
+			ImmutableClass result = mapper.mapRow(rs, i++);
+			assertNotNull(result);
+			assertThat(result.getId(), is(1));
+			assertThat(result.getName(), is("Muster"));
+			assertThat(result.getTags(), is(Arrays.asList("a", "b")));
+			assertThat(result.getChild().getId(), is(2));
+		}
+	}
+	
 	@Test
 	public void testEmbedWithNameNoRow() throws SQLException {
 		
@@ -0,0 +1,146 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.postgresql.util.PGobject;
+import org.valgog.spring.annotations.DataType;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.ListWithEmbed;
+import org.valgog.spring.example.ParentClass;
+import org.valgog.spring.example.WithEmbed;
+import org.valgog.spring.helpers.ClassFieldDescriptor;
+import org.valgog.spring.helpers.DatabaseFieldDescriptor;
+import org.valgog.spring.helpers.MappingPath;
+import org.valgog.spring.helpers.MappingPathCounter;
+import org.valgog.utils.PostgresBinaryReaderTest;
+import org.valgog.utils.jdbc.RecordedArray;
+
+public class NestedValueDecoderTest {
+
+	/**
+	 * Text representation of
+	 * <code>ARRAY[ROW(1, null, null)::test.child_type, ROW(2, ROW(1), null)::test.child_type,
+	 * ROW(2, ROW(1), ARRAY[ROW(1)]::test.child_child_type[])::test.child_type]::test.child_type[]</code>
+	 */
+	static final String CHILDREN = "{\"(1,,)\",\"(2,\\\"(1)\\\",)\",\"(2,\\\"(1)\\\",\\\"{(1)}\\\")\"}";
+
+	/**
+	 * Text representation of <code>ARRAY[ROW(1,2,3)::test.with_embed, ROW(1,2,3)::test.with_embed]::test.with_embed[]</code>
+	 */
+	static final String EMBEDS = "{\"(1,2,3)\",\"(1,2,3)\"}";
+
+	/**
+	 * Binary representation of the {@link #CHILDREN} value, as returned by <code>array_send(...)</code>,
+	 * with the OIDs 0x4001, 0x4002 and 0x4003 of the {@code test.child_type}, {@code test.child_child_type}
+	 * and {@code test.child_child_type[]} types
+	 */
+	static final String BINARY_CHILDREN =
+		"00000001 00000000 00004001 00000003 00000001" +
+		" 00000020 00000003 00000017 00000004 00000001 00004002 ffffffff 00004003 ffffffff" +
+		" 00000030 00000003 00000017 00000004 00000002 00004002 00000010 00000001 00000017 00000004" +
+		" 00000001 00004003 ffffffff" +
+		" 00000058 00000003 00000017 00000004 00000002 00004002 00000010 00000001 00000017 00000004" +
+		" 00000001 00004003 00000028 00000001 00000000 00004002 00000001 00000001 00000010 00000001" +
+		" 00000017 00000004 00000001";
+
+	@SuppressWarnings("unchecked")
+	static <T> DatabaseFieldDescriptor<T, Object> descriptor(Class<T> type, String databaseFieldName) throws Exception {
+		for (ClassFieldDescriptor<T, Object> desc : AnnotatedRowMapper.getFieldMappingDescriptorList(type)) {
+			if ( desc instanceof DatabaseFieldDescriptor && ((DatabaseFieldDescriptor<T, Object>) desc).getDatabaseFieldName().equals(databaseFieldName) ) {
+				return (DatabaseFieldDescriptor<T, Object>) desc;
+			}
+		}
+		throw new AssertionError("no field " + databaseFieldName);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRowMapRowComplexShape() throws Exception {
+		final DatabaseFieldDescriptor<ParentClass, Object> desc = descriptor(ParentClass.class, "children");
+		assertThat(desc.getExtractionType(), is(DataType.TEXT));
+		final List<ChildClass> children = (List<ChildClass>) desc.getConverter().convertFrom(CHILDREN);
+		assertThat(children.size(), is(3));
+		assertThat(children.get(0).getId(), is(1));
+		assertNull(children.get(0).getChild());
+		assertNull(children.get(0).getChildren());
+		assertThat(children.get(1).getId(), is(2));
+		assertThat(children.get(1).getChild().getId(), is(1));
+		assertNull(children.get(1).getChildren());
+		assertThat(children.get(2).getChild().getId(), is(1));
+		assertThat(children.get(2).getChildren().size(), is(1));
+		assertThat(children.get(2).getChildren().get(0).getId(), is(1));
+
+		final Set<ChildClass> childrenSet = (Set<ChildClass>) descriptor(ParentClass.class, "set").getConverter().convertFrom(CHILDREN);
+		assertThat(childrenSet.size(), is(3));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBinaryRowMapRowComplexShape() throws Exception {
+		final List<ChildClass> children = (List<ChildClass>) descriptor(ParentClass.class, "children").getConverter()
+				.convertFrom(PostgresBinaryReaderTest.bytes(BINARY_CHILDREN));
+		assertThat(children.size(), is(3));
+		assertThat(children.get(0).getId(), is(1));
+		assertNull(children.get(0).getChild());
+		assertNull(children.get(0).getChildren());
+		assertThat(children.get(1).getId(), is(2));
+		assertThat(children.get(1).getChild().getId(), is(1));
+		assertNull(children.get(1).getChildren());
+		assertThat(children.get(2).getChild().getId(), is(1));
+		assertThat(children.get(2).getChildren().size(), is(1));
+		assertThat(children.get(2).getChildren().get(0).getId(), is(1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testComplexArrayEmbedShape() throws Exception {
+		final List<WithEmbed> list = (List<WithEmbed>) descriptor(ListWithEmbed.class, "embeds").getConverter().convertFrom(EMBEDS);
+		assertThat(list.size(), is(2));
+		for (WithEmbed item : list) {
+			assertNotNull(item.getEmbed());
+			assertThat(item.getEmbed().getX(), is(1));
+			assertThat(item.getEmbed().getY(), is(2));
+			assertThat(item.getZ(), is(3));
+		}
+	}
+
+	@Test
+	public void testNullValues() throws Exception {
+		final DatabaseFieldDescriptor<ParentClass, Object> desc = descriptor(ParentClass.class, "children");
+		assertNull(desc.getConverter().convertFrom(null));
+		assertThat(((List<?>) desc.getConverter().convertFrom("{NULL,\"(1,,)\"}")).size(), is(2));
+		assertNull(((List<?>) desc.getConverter().convertFrom("{NULL,\"(1,,)\"}")).get(0));
+	}
+
+	@Test
+	public void testPaths() throws Exception {
+		final DatabaseFieldDescriptor<ParentClass, Object> desc = descriptor(ParentClass.class, "children");
+		final List<MappingPath> paths = new ArrayList<MappingPath>();
+		final MappingPathCounter counter = new MappingPathCounter() {
+			@Override
+			public void countPath(MappingPath path) {
+				paths.add(path);
+			}
+		};
+		final PGobject children = new PGobject();
+		children.setType("test.child_type[]");
+		children.setValue(CHILDREN);
+		// only the path of the value is counted, not the paths of its elements
+		assertThat(((List<?>) AnnotatedRowMapper.makeAssignable(desc, CHILDREN, counter)).size(), is(3));
+		assertThat(((List<?>) AnnotatedRowMapper.makeAssignable(desc, children, counter)).size(), is(3));
+		assertThat(((List<?>) AnnotatedRowMapper.makeAssignable(desc, PostgresBinaryReaderTest.bytes(BINARY_CHILDREN), counter)).size(), is(3));
+		assertThat(((List<?>) AnnotatedRowMapper.makeAssignable(desc, new RecordedArray(CHILDREN, Types.OTHER, "test.child_type"), counter)).size(), is(3));
+		assertNull(AnnotatedRowMapper.makeAssignable(desc, null, counter));
+		assertThat(paths, is(Arrays.asList(MappingPath.TEXT, MappingPath.PG_OBJECT, MappingPath.BINARY, MappingPath.ARRAY, MappingPath.NULL)));
+	}
+}
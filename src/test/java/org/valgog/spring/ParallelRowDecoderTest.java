@@ -0,0 +1,176 @@
+package org.valgog.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.valgog.spring.AnnotatedQueryStreamerTest.FakeConnection;
+import org.valgog.spring.example.ChildClass;
+import org.valgog.spring.example.ImmutableClass;
+import org.valgog.spring.example.WithEmbed;
+
+public class ParallelRowDecoderTest {
+
+	private final ExecutorService workers = Executors.newFixedThreadPool(4);
+
+	@After
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Array of the driver, that may be used only in the thread, that created it (the thread reading the result set)
+	 */
+	private static Array driverArray(final Object... elements) {
+		final Thread owner = Thread.currentThread();
+		return (Array) Proxy.newProxyInstance(ParallelRowDecoderTest.class.getClassLoader(), new Class<?>[] { Array.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+				if ( Thread.currentThread() != owner ) {
+					throw new SQLException("Array." + method.getName() + " is called outside of the thread of the result set");
+				}
+				if ( method.getName().equals("getArray") ) return elements.clone();
+				if ( method.getName().equals("getBaseTypeName") ) return "text";
+				throw new SQLException("Array." + method.getName() + " is not supported");
+			}
+		});
+	}
+
+	private static ResultSet query(FakeConnection db) throws SQLException {
+		final Connection connection = db.connection;
+		return connection.prepareStatement("SELECT 1").executeQuery();
+	}
+
+	@Test
+	public void testOrderIsKept() throws SQLException {
+		final Object[][] rows = new Object[10000][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new Object[] { String.valueOf(i), i % 3 == 0 ? null : "(" + ( i + 1 ) + ")", "{\"(" + ( i + 2 ) + ")\",\"(" + ( i + 3 ) + ")\"}" };
+		}
+		final FakeConnection db = new FakeConnection(rows);
+		db.columns = new String[] { "id", "child", "children" };
+		final List<ChildClass> items = ParallelRowDecoder.forClass(ChildClass.class, workers).withBatchSize(17).withMaxPendingBatches(3).mapAll(query(db));
+		assertThat(items.size(), is(rows.length));
+		for (int i = 0; i < rows.length; i++) {
+			final ChildClass item = items.get(i);
+			assertThat(item.getId(), is(i));
+			if ( i % 3 == 0 ) {
+				assertThat(item.getChild(), nullValue());
+			} else {
+				assertThat(item.getChild().getId(), is(i + 1));
+			}
+			assertThat(item.getChildren().size(), is(2));
+			assertThat(item.getChildren().get(1).getId(), is(i + 3));
+		}
+	}
+
+	@Test
+	public void testPendingBatchesAreBounded() throws SQLException {
+		final Object[][] rows = new Object[1000][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new Object[] { i, i + 1, i + 2 };
+		}
+		final int[] submitted = new int[1];
+		final int[] handled = new int[1];
+		final Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				submitted[0]++;
+				// batches of 10 rows, that are not handed over yet
+				assertTrue(submitted[0] - handled[0] / 10 <= 4);
+				workers.execute(command);
+			}
+		};
+		final long count = ParallelRowDecoder.forClass(WithEmbed.class, executor).withBatchSize(10).withMaxPendingBatches(4)
+				.forEach(query(new FakeConnection(rows)), new ItemHandler<WithEmbed>() {
+					@Override
+					public void handleItem(WithEmbed item) {
+						assertThat(item.getEmbed().getX(), is(handled[0]));
+						handled[0]++;
+					}
+				});
+		assertThat(count, is(1000L));
+		assertThat(submitted[0], is(100));
+	}
+
+	@Test
+	public void testCallerIsWorkerOfTheExecutor() throws Exception {
+		final Object[][] rows = new Object[1000][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new Object[] { i, i + 1, i + 2 };
+		}
+		// the only worker of the pool maps the result set, so the batches queued to the pool can be only decoded by the caller
+		final ForkJoinPool pool = new ForkJoinPool(1);
+		try {
+			final long count = pool.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws SQLException {
+					return (long) ParallelRowDecoder.forClass(WithEmbed.class, pool).withBatchSize(10).withMaxPendingBatches(2).mapAll(query(new FakeConnection(rows))).size();
+				}
+			}).get(10, TimeUnit.SECONDS);
+			assertThat(count, is(1000L));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConversionFailure() throws SQLException {
+		final Object[][] rows = new Object[100][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new Object[] { String.valueOf(i), null, "{}" };
+		}
+		rows[42][0] = "forty two";
+		final FakeConnection db = new FakeConnection(rows);
+		db.columns = new String[] { "id", "child", "children" };
+		final int[] handled = new int[1];
+		try {
+			ParallelRowDecoder.forClass(ChildClass.class, workers).withBatchSize(8).forEach(query(db), new ItemHandler<ChildClass>() {
+				@Override
+				public void handleItem(ChildClass item) {
+					handled[0]++;
+				}
+			});
+			fail("row 42 should not be converted");
+		} catch (SQLException e) {
+			// all the rows before the batch of the failed row are handed over
+			assertThat(handled[0], is(40));
+		}
+	}
+
+	@Test
+	public void testArraysAreReadInTheThreadOfTheResultSet() throws SQLException {
+		final Object[][] rows = new Object[100][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new Object[] { i, "name " + i, driverArray("a" + i, "b" + i) };
+		}
+		final FakeConnection db = new FakeConnection(rows);
+		db.columns = new String[] { "id", "name", "tags" };
+		final List<ImmutableClass> items = ParallelRowDecoder.forClass(ImmutableClass.class, workers).withBatchSize(8).mapAll(query(db));
+		assertThat(items.size(), is(rows.length));
+		for (int i = 0; i < rows.length; i++) {
+			assertThat(items.get(i).getId(), is(i));
+			assertThat(items.get(i).getTags(), is(Arrays.asList("a" + i, "b" + i)));
+		}
+	}
+}
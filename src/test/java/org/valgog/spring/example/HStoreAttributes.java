@@ -0,0 +1,43 @@
+package org.valgog.spring.example;
+
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.annotations.HStoreMapped;
+import org.valgog.spring.annotations.Optional;
+
+@HStoreMapped
+public class HStoreAttributes {
+
+	@DatabaseField
+	private String color;
+
+	@DatabaseField(name = "size")
+	private int size;
+
+	@DatabaseField
+	@Optional
+	private Double weightKg;
+
+	public String getColor() {
+		return color;
+	}
+
+	public void setColor(String color) {
+		this.color = color;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public Double getWeightKg() {
+		return weightKg;
+	}
+
+	public void setWeightKg(Double weightKg) {
+		this.weightKg = weightKg;
+	}
+}
@@ -0,0 +1,47 @@
+package org.valgog.spring.example;
+
+import java.util.List;
+
+import org.valgog.spring.annotations.DatabaseConstructor;
+import org.valgog.spring.annotations.DatabaseField;
+import org.valgog.spring.annotations.Optional;
+
+public class ImmutableClass {
+	
+	@DatabaseField(name = "id")
+	private final int id;
+
+	@DatabaseField(name = "name")
+	private final String name;
+
+	@DatabaseField(name = "tags")
+	private final List<String> tags;
+
+	@DatabaseField(name = "child")
+	@Optional
+	private final ChildChildClass child;
+
+	@DatabaseConstructor
+	public ImmutableClass(int id, String name, List<String> tags, ChildChildClass child) {
+		this.id = id;
+		this.name = name;
+		this.tags = tags;
+		this.child = child;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public ChildChildClass getChild() {
+		return child;
+	}
+}
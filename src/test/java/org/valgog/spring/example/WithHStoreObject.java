@@ -0,0 +1,41 @@
+package org.valgog.spring.example;
+
+import java.util.List;
+
+import org.valgog.spring.annotations.DatabaseField;
+
+public class WithHStoreObject {
+
+	@DatabaseField
+	private int id;
+
+	@DatabaseField
+	private HStoreAttributes attributes;
+
+	@DatabaseField
+	private List<HStoreAttributes> history;
+
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public HStoreAttributes getAttributes() {
+		return attributes;
+	}
+
+	public void setAttributes(HStoreAttributes attributes) {
+		this.attributes = attributes;
+	}
+
+	public List<HStoreAttributes> getHistory() {
+		return history;
+	}
+
+	public void setHistory(List<HStoreAttributes> history) {
+		this.history = history;
+	}
+}
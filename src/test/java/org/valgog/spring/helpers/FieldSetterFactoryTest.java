@@ -0,0 +1,67 @@
+package org.valgog.spring.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.valgog.spring.helpers.exceptions.FieldDescriptionException;
+
+public class FieldSetterFactoryTest {
+
+	public static class Item {
+		private int count;
+		private String name;
+		public int setterCalls;
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			setterCalls++;
+			this.count = count;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			setterCalls++;
+			// fails inside the setter body
+			this.name = (String) (Object) Integer.valueOf(name.length());
+		}
+	}
+
+	@Test
+	public void testPrimitiveSetterWidensValues() throws Exception {
+		final ClassFieldDescriptor<Item, Object> desc = new ClassFieldDescriptor<Item, Object>(Item.class.getDeclaredField("count"));
+		final Item item = new Item();
+		desc.assignFieldValue(item, Integer.valueOf(3));
+		assertEquals(3, item.getCount());
+		desc.assignFieldValue(item, Short.valueOf((short) 4));
+		assertEquals(4, item.getCount());
+		desc.assignFieldValue(item, Byte.valueOf((byte) 5));
+		assertEquals(5, item.getCount());
+		assertEquals(3, item.setterCalls);
+		try {
+			desc.assignFieldValue(item, Long.valueOf(6));
+			fail("long value should not be narrowed to int");
+		} catch (FieldDescriptionException e) {
+			assertEquals(5, item.getCount());
+		}
+	}
+
+	@Test
+	public void testSetterIsNotCalledAgainAfterItFailed() throws Exception {
+		final ClassFieldDescriptor<Item, Object> desc = new ClassFieldDescriptor<Item, Object>(Item.class.getDeclaredField("name"));
+		final Item item = new Item();
+		try {
+			desc.assignFieldValue(item, "name");
+			fail("setter should have failed");
+		} catch (FieldDescriptionException e) {
+			assertEquals(ClassCastException.class, e.getCause().getClass());
+		}
+		assertEquals(1, item.setterCalls);
+	}
+}
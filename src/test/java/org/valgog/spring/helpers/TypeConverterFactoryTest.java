@@ -0,0 +1,127 @@
+package org.valgog.spring.helpers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.postgresql.util.PGobject;
+import org.valgog.spring.helpers.exceptions.NotConvertable;
+import org.valgog.utils.PostgresBinaryReaderTest;
+
+public class TypeConverterFactoryTest {
+
+	private final TypeConverterFactory factory = new TypeConverterFactory();
+
+	// fields used as sources of the generic type descriptors
+	List<String> stringList;
+	Set<Integer> integerSet;
+	Map<String, String> stringMap;
+
+	private <T> TypeConverter<Object, T> converter(Class<T> type, boolean allowPrimitiveDefaults) {
+		return factory.getFieldValueConverter(new TypeDescriptor<T>(type), allowPrimitiveDefaults);
+	}
+
+	private TypeConverter<Object, Object> fieldConverter(String fieldName) throws Exception {
+		return factory.getFieldValueConverter(new TypeDescriptor<Object>(getClass().getDeclaredField(fieldName)), false);
+	}
+
+	@Test
+	public void testRegisteredFromStringConverters() throws NotConvertable {
+		assertThat(factory.getFromStringTypeConverter(int.class).convertFrom("42"), is(42));
+		assertThat(factory.getFromStringTypeConverter(Long.class).convertFrom("42"), is(42L));
+		assertThat(factory.getFromStringTypeConverter(Boolean.class).convertFrom("t"), is(true));
+		assertThat(factory.getTypeConverter(Integer.class, Number.class).convertFrom(42), is((Number) 42));
+		assertThat(factory.getTypeConverter(String.class, List.class), nullValue());
+	}
+
+	@Test
+	public void testScalarConversions() throws NotConvertable {
+		assertThat(converter(int.class, false).convertFrom("42"), is(42));
+		assertThat(converter(int.class, false).convertFrom(42L), is(42));
+		assertThat(converter(Long.class, false).convertFrom(42), is(42L));
+		assertThat(converter(double.class, false).convertFrom("1.5"), is(1.5d));
+		assertThat(converter(boolean.class, false).convertFrom("f"), is(false));
+		assertThat(converter(char.class, false).convertFrom("x"), is('x'));
+		assertThat(converter(String.class, false).convertFrom(42), is("42"));
+	}
+
+	@Test
+	public void testNumbersAreNotTruncated() throws NotConvertable {
+		assertThat(converter(int.class, false).convertFrom(new BigDecimal("42.000")), is(42));
+		assertThat(converter(short.class, false).convertFrom(Integer.valueOf(Short.MIN_VALUE)), is(Short.MIN_VALUE));
+		assertThat(converter(long.class, false).convertFrom(BigInteger.valueOf(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+		assertThat(converter(long.class, false).convertFrom(2.0d), is(2L));
+		assertThat(converter(double.class, false).convertFrom(new BigDecimal("0.1")), is(0.1d));
+		assertThat(converter(float.class, false).convertFrom(Double.NEGATIVE_INFINITY), is(Float.NEGATIVE_INFINITY));
+		assertNotConvertable(int.class, Long.valueOf(1L << 31));
+		assertNotConvertable(int.class, new BigDecimal("1.5"));
+		assertNotConvertable(Integer.class, 1.5d);
+		assertNotConvertable(byte.class, Integer.valueOf(128));
+		assertNotConvertable(long.class, BigInteger.ONE.shiftLeft(63));
+		assertNotConvertable(long.class, 0x1p63);
+		assertNotConvertable(float.class, Double.MAX_VALUE);
+		assertNotConvertable(double.class, BigDecimal.TEN.pow(400));
+	}
+
+	private void assertNotConvertable(Class<?> type, Number value) {
+		try {
+			converter(type, false).convertFrom(value);
+			fail(value.getClass().getSimpleName() + " value " + value + " should not be converted into " + type.getName());
+		} catch (NotConvertable e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testNullValues() throws NotConvertable {
+		assertThat(converter(Integer.class, false).convertFrom(null), nullValue());
+		assertThat(converter(int.class, true).convertFrom(null), is(0));
+		try {
+			converter(int.class, false).convertFrom(null);
+			fail("NULL should not be converted into a primitive type");
+		} catch (NotConvertable e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testArrayConversions() throws Exception {
+		assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, converter(int[].class, false).convertFrom("{1,2,3}")));
+		assertTrue(Arrays.equals(new int[] { 1, 0 }, converter(int[].class, true).convertFrom(new Integer[] { 1, null })));
+		assertTrue(Arrays.equals(new long[] { 1, 2, 3 }, converter(long[].class, false).convertFrom(PostgresBinaryReaderTest.bytes(PostgresBinaryReaderTest.INT4_ARRAY))));
+		assertTrue(Arrays.equals(new long[] { 1, 0 }, converter(long[].class, true).convertFrom("{1,NULL}")));
+		assertTrue(Arrays.equals(new double[] { 1.5 }, converter(double[].class, false).convertFrom(new Double[] { 1.5 })));
+		assertTrue(Arrays.equals(new boolean[] { true, false }, converter(boolean[].class, false).convertFrom("{t,f}")));
+		assertTrue(Arrays.equals(new String[] { "a", "b c" }, converter(String[].class, false).convertFrom("{a,\"b c\"}")));
+		assertTrue(Arrays.equals(new String[] { "a", null, "NULL" }, converter(String[].class, false).convertFrom("{a, NULL, \"NULL\"}")));
+		assertThat(fieldConverter("stringList").convertFrom("{a,b}"), is((Object) Arrays.asList("a", "b")));
+		assertThat(fieldConverter("integerSet").convertFrom(new String[] { "1", "2", "1" }), is((Object) new HashSet<Integer>(Arrays.asList(1, 2))));
+	}
+
+	@Test
+	public void testHStoreConversion() throws Exception {
+		final PGobject hstore = new PGobject();
+		hstore.setType("hstore");
+		hstore.setValue("key1=>value1, key2=>NULL");
+		@SuppressWarnings("unchecked")
+		final Map<String, String> map = (Map<String, String>) fieldConverter("stringMap").convertFrom(hstore);
+		assertThat(map.get("key1"), is("value1"));
+		assertTrue(map.containsKey("key2"));
+	}
+
+	@Test(expected = NotConvertable.class)
+	public void testRowValuesNeedRowConverter() throws NotConvertable {
+		converter(TypeConverterFactoryTest.class, false).convertFrom("(1,2)");
+	}
+}
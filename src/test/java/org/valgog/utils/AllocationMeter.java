@@ -0,0 +1,96 @@
+package org.valgog.utils;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import org.junit.Assume;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Measures the bytes, allocated by the current thread per operation, with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}.
+ * <p>The operation is first run long enough to get compiled, then measured in several rounds, the smallest
+ * of the rounds is taken, so that the allocations of the JIT and of the first class loading do not count.
+ * The tests using the meter are skipped on the JVMs without the allocation accounting.
+ * <p>The budgets of {@link #assertBudget(String, long, Operation, int)} are calibrated for the object layout with compressed
+ * references, the budget tests are skipped if they are off (HotSpot switches them off by itself for the heaps of 32 GB and more).
+ *
+ * @author valgog
+ */
+public final class AllocationMeter {
+
+	private static final Logger logger = Logger.getLogger(AllocationMeter.class.getName());
+
+	static final int WARMUP_CALLS = 20000;
+	static final int CALLS_PER_ROUND = 2000;
+	static final int ROUNDS = 5;
+
+	/**
+	 * Operation to measure, its result is kept, so that the JIT does not optimize the allocations away
+	 */
+	public interface Operation {
+		Object run() throws Exception;
+	}
+
+	static volatile Object sink;
+
+	private AllocationMeter() {
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		if ( ! threadBean.isThreadAllocatedMemoryEnabled() ) threadBean.setThreadAllocatedMemoryEnabled(true);
+		return threadBean;
+	}
+
+	/**
+	 * @param unitsPerCall number of the units (rows, elements, entries) every call of the operation processes
+	 * @return bytes allocated per unit
+	 */
+	public static double bytesPerUnit(Operation operation, int unitsPerCall) throws Exception {
+		final com.sun.management.ThreadMXBean threadBean = threadBean();
+		final long threadId = Thread.currentThread().getId();
+		for (int i = 0; i < WARMUP_CALLS; i++) {
+			sink = operation.run();
+		}
+		long smallest = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			final long before = threadBean.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < CALLS_PER_ROUND; i++) {
+				sink = operation.run();
+			}
+			smallest = Math.min(smallest, threadBean.getThreadAllocatedBytes(threadId) - before);
+		}
+		return (double) smallest / CALLS_PER_ROUND / unitsPerCall;
+	}
+
+	/**
+	 * @return true if the JVM is known to use compressed references (false if it is not a HotSpot JVM)
+	 */
+	static boolean usesCompressedOops() {
+		final HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+		if ( bean == null ) return false;
+		try {
+			return Boolean.parseBoolean(bean.getVMOption("UseCompressedOops").getValue());
+		} catch (IllegalArgumentException e) {
+			// not a 64 bit JVM
+			return false;
+		}
+	}
+
+	/**
+	 * Fail, if the operation allocates more than the given budget of the bytes per unit
+	 */
+	public static void assertBudget(String path, long budget, Operation operation, int unitsPerCall) throws Exception {
+		Assume.assumeTrue(usesCompressedOops());
+		final double allocated = bytesPerUnit(operation, unitsPerCall);
+		logger.fine(String.format("%s allocates %.1f bytes per unit, budget is %d", path, allocated, budget));
+		assertTrue(String.format("%s allocates %.1f bytes per unit, that is over its budget of %d bytes", path, allocated, budget), allocated <= budget);
+	}
+}
@@ -6,12 +6,17 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.valgog.utils.exceptions.HStoreParseException;
 import org.valgog.utils.postgres.HStore;
+import org.valgog.utils.postgres.HStoreCursor;
+import org.valgog.utils.postgres.HStoreDelta;
 
 public class HStoreTest {
 
@@ -113,4 +118,143 @@ public class HStoreTest {
 		assertTrue(m.containsKey("null"));
 		assertThat(m.get("null"), is("Null value"));
 	}		
+
+	@Test
+	public void testKeyLookup() {
+		for( String s : validHStoreStrings ) {
+			HStore hs = new HStore(s);
+			Map<String,String> m = hs.asMap();
+			assertThat(hs.size(), is(m.size()));
+			for( Map.Entry<String, String> e : m.entrySet() ) {
+				assertTrue(hs.containsKey(e.getKey()));
+				assertThat(hs.get(e.getKey()), is(e.getValue()));
+			}
+		}
+		HStore hs = new HStore("a=>\"NULL\", b=>NULL, \"Quoted \"\"Key\"\"\"=>\"Three \"\"word\"\" value\", a=>c");
+		assertThat(hs.size(), is(3));
+		assertThat(hs.get("a"), is("c"));
+		assertTrue(hs.containsKey("b"));
+		assertThat(hs.get("b"), nullValue());
+		assertThat(hs.get("Quoted \"Key\""), is("Three \"word\" value"));
+		assertThat(hs.containsKey("Quoted"), is(false));
+		assertThat(hs.get("c"), nullValue());
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append(i == 0 ? "" : ", ").append("key").append(i).append("=>").append(i);
+		}
+		hs = new HStore(sb.toString());
+		assertThat(hs.size(), is(200));
+		for (int i = 0; i < 200; i++) {
+			assertThat(hs.get("key" + i), is(String.valueOf(i)));
+		}
+		hs.setValue("key1=>x");
+		assertThat(hs.size(), is(1));
+		assertThat(hs.get("key1"), is("x"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testInvalidKeyLookup() {
+		new HStore("a=>\"b").get("a");
+	}
+
+	@Test
+	public void testCursor() throws HStoreParseException {
+		HStore hs = new HStore("a=>\"two words\", b=>NULL, \"Quoted \"\"Key\"\"\"=>\"Three \"\"word\"\" value\"");
+		HStoreCursor cursor = hs.cursor();
+		assertTrue(cursor.next());
+		assertTrue(cursor.keyEquals("a"));
+		assertThat(cursor.keyEquals("ab"), is(false));
+		assertThat(cursor.key().length(), is(1));
+		assertThat(cursor.value().toString(), is("two words"));
+		assertThat(hs.getValue().substring(cursor.valueStart(), cursor.valueEnd()), is("two words"));
+		assertTrue(cursor.next());
+		assertThat(cursor.keyString(), is("b"));
+		assertTrue(cursor.isValueNull());
+		assertThat(cursor.value(), nullValue());
+		assertThat(cursor.valueString(), nullValue());
+		assertTrue(cursor.next());
+		assertTrue(cursor.keyEquals("Quoted \"Key\""));
+		assertThat(cursor.key().toString(), is("Quoted \"Key\""));
+		assertThat(cursor.value().length(), is("Three \"word\" value".length()));
+		assertThat(cursor.value().charAt(6), is('"'));
+		assertThat(cursor.valueString(), is("Three \"word\" value"));
+		assertThat(cursor.next(), is(false));
+		assertThat(cursor.next(), is(false));
+
+		// cursor can be reused for the next value
+		cursor.reset(new HStore("x=>y"));
+		assertTrue(cursor.next());
+		assertThat(cursor.value().subSequence(0, 1).toString(), is("y"));
+		assertThat(cursor.next(), is(false));
+		assertThat(cursor.reset(new HStore()).next(), is(false));
+	}
+
+	@Test
+	public void testBackslashEscapes() {
+		HStore hs = new HStore("\"a\\\"b\"=>\"c\\\\d\", e\\ f=>g");
+		Map<String,String> m = hs.asMap();
+		assertThat(m.get("a\"b"), is("c\\d"));
+		assertThat(m.get("e f"), is("g"));
+		assertThat(hs.get("a\"b"), is("c\\d"));
+		assertThat(hs.get("e f"), is("g"));
+	}
+
+	@Test
+	public void testDifferentlyEscapedDuplicateKeys() {
+		// the same key a"b escaped with a backslash, with a doubled quote and unquoted
+		HStore hs = new HStore("\"a\\\"b\"=>1, \"a\"\"b\"=>2, a\\\"b=>3, \"e f\"=>4, e\\ f=>5");
+		assertThat(hs.size(), is(2));
+		assertThat(hs.size(), is(hs.asMap().size()));
+		assertThat(hs.get("a\"b"), is("3"));
+		assertThat(hs.get("e f"), is("5"));
+	}
+
+	@Test
+	public void testSerializer() {
+		Map<String,String> m = new LinkedHashMap<String, String>();
+		m.put("a", "two words");
+		m.put("quoted \"key\"", "back\\slash");
+		m.put("null", null);
+		String rawValue = HStore.toRawValue(m);
+		assertThat(rawValue, is("\"a\"=>\"two words\", \"quoted \\\"key\\\"\"=>\"back\\\\slash\", \"null\"=>NULL"));
+		assertThat(new HStore(rawValue).asMap(), is(m));
+		assertThat(HStore.valueOf(m).get("quoted \"key\""), is("back\\slash"));
+		assertThat(HStore.toRawValue(new HStore("a=>b, \"c\"\"d\"=>NULL")), is("\"a\"=>\"b\", \"c\\\"d\"=>NULL"));
+		assertThat(HStore.toRawValue(new HashMap<String, String>()), is(""));
+		assertThat(HStore.toRawValue(new HStore()), nullValue());
+	}
+
+	@Test
+	public void testDelta() {
+		HStore oldValue = new HStore("a=>1, b=>2, c=>3, n=>NULL, m=>NULL");
+		Map<String,String> m = new HashMap<String, String>(oldValue.asMap());
+		assertTrue(HStoreDelta.between(oldValue.asMap(), m).isEmpty());
+		assertThat(HStoreDelta.between(oldValue.asMap(), m).getExpression("attributes"), is("attributes"));
+
+		m.remove("c");
+		m.put("b", "4");
+		m.put("d", "5");
+		m.put("n", "6");
+		m.remove("m");
+		m.put("m", null);
+		HStoreDelta delta = HStoreDelta.between(oldValue.asMap(), m);
+		assertThat(delta.getRemoved(), is(Arrays.asList("c")));
+		assertThat(delta.getChanged().size(), is(3));
+		assertThat(delta.getExpression("attributes"), is("delete(coalesce(attributes, ''::hstore), ?::text[]) || ?::hstore"));
+		Object[] parameters = delta.getParameters(1);
+		assertThat(parameters.length, is(3));
+		assertThat((String) parameters[0], is("{\"c\"}"));
+		assertThat(new HStore((String) parameters[1]).asMap(), is(delta.getChanged()));
+		assertThat((Integer) parameters[2], is(1));
+
+		delta = HStoreDelta.between(oldValue.asMap(), new HashMap<String, String>());
+		assertThat(delta.getExpression("attributes"), is("delete(coalesce(attributes, ''::hstore), ?::text[])"));
+		assertThat(delta.getParameters().length, is(1));
+
+		// entries are added to a NULL value as well
+		delta = HStoreDelta.between(new HashMap<String, String>(), oldValue.asMap());
+		assertThat(delta.getExpression("attributes"), is("coalesce(attributes, ''::hstore) || ?::hstore"));
+		assertThat(delta.getParameters().length, is(1));
+	}
 }
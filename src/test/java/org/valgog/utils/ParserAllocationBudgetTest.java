@@ -0,0 +1,132 @@
+package org.valgog.utils;
+
+import static org.valgog.utils.AllocationMeter.assertBudget;
+
+import org.junit.Test;
+import org.valgog.utils.postgres.HStore;
+import org.valgog.utils.postgres.HStoreCursor;
+
+/**
+ * Bytes allocated per parsed ARRAY element, ROW field and hstore entry. The budgets include the extracted
+ * element strings themselves (some 48 bytes for a short string), a path that goes over its budget fails the build.
+ *
+ * @author valgog
+ */
+public class ParserAllocationBudgetTest {
+
+	static final int ELEMENTS = 100;
+	static final int FIELDS = 10;
+	static final int ENTRIES = 20;
+
+	static final String TEXT_ARRAY;
+	static final String INT_ARRAY;
+	static final String ROW;
+	static final String HSTORE;
+	static {
+		final StringBuilder text = new StringBuilder("{");
+		final StringBuilder ints = new StringBuilder("{");
+		for (int i = 0; i < ELEMENTS; i++) {
+			if ( i > 0 ) {
+				text.append(',');
+				ints.append(',');
+			}
+			text.append(i % 4 == 3 ? "\"element " + i + " with \\\"quotes\\\"\"" : "element" + i);
+			ints.append(i * 31);
+		}
+		TEXT_ARRAY = text.append('}').toString();
+		INT_ARRAY = ints.append('}').toString();
+		final StringBuilder row = new StringBuilder("(");
+		for (int i = 0; i < FIELDS; i++) {
+			if ( i > 0 ) row.append(',');
+			row.append(i % 3 == 2 ? "\"field " + i + "\"" : "f" + i);
+		}
+		ROW = row.append(')').toString();
+		final StringBuilder hstore = new StringBuilder();
+		for (int i = 0; i < ENTRIES; i++) {
+			if ( i > 0 ) hstore.append(", ");
+			hstore.append("\"key").append(i).append("\"=>\"value ").append(i).append('"');
+		}
+		HSTORE = hstore.toString();
+	}
+
+	@Test
+	public void testTextArrayElements() throws Exception {
+		assertBudget("PostgresUtils.postgresArray2StringList", 96, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return PostgresUtils.postgresArray2StringList(TEXT_ARRAY);
+			}
+		}, ELEMENTS);
+	}
+
+	@Test
+	public void testRowFields() throws Exception {
+		assertBudget("PostgresUtils.postgresROW2StringList", 80, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return PostgresUtils.postgresROW2StringList(ROW);
+			}
+		}, FIELDS);
+	}
+
+	@Test
+	public void testArrayCursor() throws Exception {
+		final PostgresElementCursor<?> cursor = PostgresElementCursor.arrayCursor();
+		assertBudget("PostgresElementCursor", 0, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				cursor.reset(TEXT_ARRAY);
+				while ( cursor.next() ) {
+					cursor.length();
+				}
+				return cursor;
+			}
+		}, ELEMENTS);
+	}
+
+	@Test
+	public void testIntArrayElements() throws Exception {
+		assertBudget("PrimitiveArrayParser.parseIntArray", 8, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return PrimitiveArrayParser.parseIntArray(INT_ARRAY, false);
+			}
+		}, ELEMENTS);
+	}
+
+	@Test
+	public void testHStoreAsMap() throws Exception {
+		assertBudget("HStore.asMap", 224, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return new HStore(HSTORE).asMap();
+			}
+		}, ENTRIES);
+	}
+
+	@Test
+	public void testHStoreLookup() throws Exception {
+		assertBudget("HStore.get", 112, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return new HStore(HSTORE).get("key7");
+			}
+		}, ENTRIES);
+	}
+
+	@Test
+	public void testHStoreCursor() throws Exception {
+		final HStore hstore = new HStore(HSTORE);
+		final HStoreCursor cursor = hstore.cursor();
+		assertBudget("HStoreCursor", 0, new AllocationMeter.Operation() {
+			@Override
+			public Object run() throws Exception {
+				cursor.reset(hstore);
+				while ( cursor.next() ) {
+					cursor.keyEquals("key7");
+				}
+				return cursor;
+			}
+		}, ENTRIES);
+	}
+}
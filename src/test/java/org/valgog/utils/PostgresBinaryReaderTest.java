@@ -0,0 +1,246 @@
+package org.valgog.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.valgog.utils.exceptions.BinaryParserException;
+import org.valgog.utils.exceptions.ParserException;
+
+public class PostgresBinaryReaderTest {
+
+	/**
+	 * <code>array_send(ARRAY[1,2,3])</code>
+	 */
+	public static final String INT4_ARRAY = "00000001 00000000 00000017 00000003 00000001 00000004 00000001 00000004 00000002 00000004 00000003";
+
+	/**
+	 * <code>array_send(ARRAY[1.5,NULL]::float8[])</code>
+	 */
+	static final String FLOAT8_ARRAY = "00000001 00000001 000002bd 00000002 00000001 00000008 3ff80000 00000000 ffffffff";
+
+	/**
+	 * <code>array_send(ARRAY[true,false])</code>
+	 */
+	static final String BOOL_ARRAY = "00000001 00000000 00000010 00000002 00000001 00000001 01 00000001 00";
+
+	/**
+	 * <code>record_send(ROW(12345.678, 'a b', '2000-01-01 00:00:01+00'::timestamptz, NULL::int8, -5::int8,
+	 * '00000000-0000-0001-0000-000000000002'::uuid))</code>
+	 */
+	static final String RECORD = "00000006"
+			+ " 000006a4 0000000e 0003 0001 0000 0003 0001 0929 1a7c"
+			+ " 00000019 00000003 612062"
+			+ " 000004a0 00000008 00000000 000f4240"
+			+ " 00000014 ffffffff"
+			+ " 00000014 00000008 ffffffff fffffffb"
+			+ " 00000b86 00000010 00000000 00000001 00000000 00000002";
+
+	static final String[] invalidValues = {
+		// truncated header
+		"00000001 00000000",
+		// element is longer then the array
+		"00000001 00000000 00000017 00000001 00000001 00000008 00000001",
+		// unexpected data at the end
+		"00000001 00000000 00000017 00000001 00000001 00000004 00000001 00",
+		// more elements than the data can hold
+		"00000001 00000000 00000017 7fffffff 00000001 00000004 00000001",
+		// number of elements overflows an int
+		"00000002 00000000 00000017 00010000 00000001 00010000 00000001 00000004 00000001",
+		// too many dimensions
+		"00000007 00000000 00000017",
+		// int4 element of 2 bytes, followed by the length of the next element
+		"00000001 00000000 00000017 00000002 00000001 00000002 0001 00000004 00000002",
+		// int4 element of 8 bytes
+		"00000001 00000000 00000017 00000001 00000001 00000008 00000001 00000002",
+	};
+
+	/**
+	 * <code>record_send(ROW('2021-04-04'::date, '2021-03-28 01:30'::timestamp))</code>, near the daylight saving time changes
+	 */
+	static final String LOCAL_RECORD = "00000002 0000043a 00000004 00001e54 0000045a 00000008 0002618d 78e55600";
+
+	public static byte[] bytes(String hex) {
+		hex = hex.replace(" ", "");
+		final byte[] result = new byte[hex.length() / 2];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		}
+		return result;
+	}
+
+	@Test
+	public void testPrimitiveArrays() throws ParserException {
+		assertArrayEquals(new int[] { 1, 2, 3 }, new PostgresBinaryReader(bytes(INT4_ARRAY)).readIntArray(false));
+		assertArrayEquals(new long[] { 1, 2, 3 }, new PostgresBinaryReader(bytes(INT4_ARRAY)).readLongArray(false));
+		assertArrayEquals(new double[] { 1.5, 0 }, new PostgresBinaryReader(bytes(FLOAT8_ARRAY)).readDoubleArray(true), 0);
+		final boolean[] booleans = new PostgresBinaryReader(bytes(BOOL_ARRAY)).readBooleanArray(false);
+		assertThat(booleans.length, is(2));
+		assertTrue(booleans[0]);
+		assertThat(booleans[1], is(false));
+		try {
+			new PostgresBinaryReader(bytes(FLOAT8_ARRAY)).readDoubleArray(false);
+			fail("NULL element should not be stored in a primitive array");
+		} catch (ParserException e) {
+			// expected
+		}
+		try {
+			new PostgresBinaryReader(bytes(FLOAT8_ARRAY)).readIntArray(true);
+			fail("float8 elements should not be stored in an int array");
+		} catch (ParserException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRecordValues() throws ParserException {
+		final PostgresBinaryReader reader = new PostgresBinaryReader(bytes(RECORD));
+		assertTrue(reader.beginRow());
+		assertTrue(reader.nextElement());
+		assertThat(reader.getElementOid(), is(PostgresBinaryReader.NUMERIC_OID));
+		assertThat(reader.readValue(), is((Object) new BigDecimal("12345.678")));
+		assertTrue(reader.nextElement());
+		assertThat(reader.readValue(), is((Object) "a b"));
+		assertTrue(reader.nextElement());
+		assertThat(reader.readValue(), is((Object) new Timestamp(946684801000L)));
+		assertTrue(reader.nextElement());
+		assertTrue(reader.isNull());
+		assertThat(reader.readValue(), nullValue());
+		assertTrue(reader.nextElement());
+		assertThat(reader.readValue(), is((Object) Long.valueOf(-5)));
+		assertTrue(reader.nextElement());
+		assertThat(reader.readValue(), is((Object) new UUID(1, 2)));
+		assertThat(reader.nextElement(), is(false));
+		reader.endContainer();
+		reader.finish();
+
+		// fields can be skipped
+		reader.reset();
+		assertTrue(reader.beginRow());
+		assertTrue(reader.nextElement());
+		assertTrue(reader.nextElement());
+		assertThat(reader.readValue(), is((Object) "a b"));
+		reader.endContainer();
+		reader.finish();
+	}
+
+	@Test
+	public void testLocalDateAndTimestamp() throws ParserException {
+		final TimeZone defaultTimeZone = TimeZone.getDefault();
+		try {
+			// the offset changes from +13 to +12 at 3 o'clock of that date
+			TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Auckland"));
+			PostgresBinaryReader reader = new PostgresBinaryReader(bytes(LOCAL_RECORD));
+			assertTrue(reader.beginRow());
+			assertTrue(reader.nextElement());
+			assertThat(reader.readValue(), is((Object) Date.valueOf("2021-04-04")));
+			// the offset changes from +1 to +2 at 2 o'clock of that date
+			TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+			reader = new PostgresBinaryReader(bytes(LOCAL_RECORD));
+			assertTrue(reader.beginRow());
+			assertTrue(reader.nextElement());
+			assertTrue(reader.nextElement());
+			assertThat(reader.readValue(), is((Object) Timestamp.valueOf("2021-03-28 01:30:00")));
+			reader.endContainer();
+			reader.finish();
+		} finally {
+			TimeZone.setDefault(defaultTimeZone);
+		}
+	}
+
+	@Test
+	public void testNumericNaN() throws ParserException {
+		final PostgresBinaryReader reader = new PostgresBinaryReader(bytes("00000001 000006a4 00000008 0000 0000 c000 0000"));
+		assertTrue(reader.beginRow());
+		assertTrue(reader.nextElement());
+		try {
+			reader.readValue();
+			fail("NaN should not be read as a BigDecimal");
+		} catch (BinaryParserException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testNumericInfinity() throws ParserException {
+		// +Infinity and -Infinity, as sent by PostgreSQL 14
+		for (String sign : new String[] { "d000", "f000" }) {
+			final PostgresBinaryReader reader = new PostgresBinaryReader(bytes("00000001 000006a4 00000008 0000 0000 " + sign + " 0000"));
+			assertTrue(reader.beginRow());
+			assertTrue(reader.nextElement());
+			try {
+				reader.readValue();
+				fail("Infinity should not be read as a BigDecimal");
+			} catch (BinaryParserException e) {
+				assertThat(e.getMessage().endsWith("numeric Infinity cannot be represented as a BigDecimal"), is(true));
+			}
+		}
+	}
+
+	@Test
+	public void testElementLengthsAreChecked() {
+		final String[] invalidRecords = {
+			// numeric with 2 digits, having only one
+			"00000001 000006a4 0000000a 0002 0000 0000 0000 0001",
+			// numeric shorter than its header
+			"00000001 000006a4 00000004 0001 0000",
+			// numeric with an invalid sign
+			"00000001 000006a4 00000008 0000 0000 8000 0000",
+			// numeric digit out of range
+			"00000001 000006a4 0000000a 0001 0000 0000 0000 2710",
+			// int8 of 4 bytes
+			"00000001 00000014 00000004 00000001",
+			// uuid of 8 bytes
+			"00000001 00000b86 00000008 00000000 00000001",
+			// date of 8 bytes
+			"00000001 0000043a 00000008 00000000 00000001",
+			// timestamptz of 4 bytes
+			"00000001 000004a0 00000004 00000001",
+		};
+		for (String s : invalidRecords) {
+			try {
+				final PostgresBinaryReader reader = new PostgresBinaryReader(bytes(s));
+				assertTrue(reader.beginRow());
+				assertTrue(reader.nextElement());
+				reader.readValue();
+				fail("Element of invalid length should not be read: " + s);
+			} catch (ParserException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testRowFieldCountIsChecked() {
+		try {
+			new PostgresBinaryReader(bytes("7fffffff 00000017 00000004 00000001")).beginRow();
+			fail("more fields than the data can hold should not be accepted");
+		} catch (ParserException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInvalidValues() {
+		for (String s : invalidValues) {
+			try {
+				final PostgresBinaryReader reader = new PostgresBinaryReader(bytes(s));
+				reader.readIntArray(false);
+				reader.finish();
+				fail("Invalid value should not be read: " + s);
+			} catch (ParserException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package org.valgog.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.valgog.utils.exceptions.ArrayParserException;
+import org.valgog.utils.exceptions.RowParserException;
+
+public class PostgresUtilsTest {
+
+	static final String[] invalidArrayStrings = {
+		"",
+		"a,b",
+		"{a,b",
+		"{\"a}",
+		"{a\"b}",
+		"{\"a\" b}",
+		"{{a,b}",
+		"{a\\}",
+	};
+
+	static final String[] invalidRowStrings = {
+		"",
+		"(a,b",
+		"(\"a)",
+		"(a(b)",
+	};
+
+	/**
+	 * @return true if the referenced object is collected after a few garbage collections
+	 */
+	static boolean isCollected(WeakReference<?> reference) throws InterruptedException {
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		return reference.get() == null;
+	}
+
+	@Test
+	public void testParsedValuesAreNotRetained() throws Exception {
+		String array = new String("{a,\"b \\\"c\\\"\"}");
+		final WeakReference<String> arrayReference = new WeakReference<String>(array);
+		assertThat(PostgresUtils.postgresArray2StringList(array), is(Arrays.asList("a", "b \"c\"")));
+		array = null;
+		String row = new String("(a,\"b");
+		final WeakReference<String> rowReference = new WeakReference<String>(row);
+		try {
+			PostgresUtils.postgresROW2StringList(row);
+			fail("ROW with not closed quote should not be parsed");
+		} catch (RowParserException e) {
+			// expected
+		}
+		row = null;
+		assertTrue(isCollected(arrayReference));
+		assertTrue(isCollected(rowReference));
+	}
+
+	@Test
+	public void testArrays() throws ArrayParserException {
+		assertThat(PostgresUtils.postgresArray2StringList("{}"), is(Collections.<String>emptyList()));
+		assertThat(PostgresUtils.postgresArray2StringList("{a}"), is(Arrays.asList("a")));
+		assertThat(PostgresUtils.postgresArray2StringList("{a,\"b c\",NULL,\"NULL\"}"), is(Arrays.asList("a", "b c", null, "NULL")));
+		assertThat(PostgresUtils.postgresArray2StringList("{\"a\\\"b\",\"c\\\\d\",e\\,f}"), is(Arrays.asList("a\"b", "c\\d", "e,f")));
+		assertThat(PostgresUtils.postgresArray2StringList("{\"\",\"(1,\\\"x y\\\")\"}"), is(Arrays.asList("", "(1,\"x y\")")));
+		assertThat(PostgresUtils.postgresArray2StringList("{{1,2},{\"}\",4}}"), is(Arrays.asList("{1,2}", "{\"}\",4}")));
+	}
+
+	@Test
+	public void testArraysWithSpaces() throws ArrayParserException {
+		assertThat(PostgresUtils.postgresArray2StringList(" { a , \"b c\" ,NULL } "), is(Arrays.asList("a", "b c", null)));
+		assertThat(PostgresUtils.postgresArray2StringList("{ }"), is(Collections.<String>emptyList()));
+	}
+
+	@Test
+	public void testRows() throws RowParserException {
+		assertThat(PostgresUtils.postgresROW2StringList("(1,a)"), is(Arrays.asList("1", "a")));
+		assertThat(PostgresUtils.postgresROW2StringList("(,1,)"), is(Arrays.asList(null, "1", null)));
+		assertThat(PostgresUtils.postgresROW2StringList("(1,\"\",NULL)"), is(Arrays.asList("1", "", "NULL")));
+		assertThat(PostgresUtils.postgresROW2StringList("(2,\"(1)\",\"{\"\"(1)\"\"}\")"), is(Arrays.asList("2", "(1)", "{\"(1)\"}")));
+		assertThat(PostgresUtils.postgresROW2StringList("( 1 , \"a \"\"b\"\"\" )"), is(Arrays.asList("1", "a \"b\"")));
+	}
+
+	@Test
+	public void testCursorOffsets() throws ArrayParserException {
+		final String value = "{12,\"a b\",\"c\\\"d\"}";
+		final PostgresElementCursor<ArrayParserException> cursor = PostgresElementCursor.arrayCursor().reset(value);
+		assertTrue(cursor.next());
+		assertThat(value.substring(cursor.start(), cursor.end()), is("12"));
+		assertThat(cursor.isEscaped(), is(false));
+		assertTrue(cursor.next());
+		assertThat(value.substring(cursor.start(), cursor.end()), is("a b"));
+		assertThat(cursor.isQuoted(), is(true));
+		assertThat(cursor.length(), is(3));
+		assertTrue(cursor.next());
+		assertThat(cursor.isEscaped(), is(true));
+		assertThat(cursor.length(), is(3));
+		assertThat(cursor.charAt(1), is('"'));
+		assertThat(cursor.next(), is(false));
+		// cursors can be reused
+		cursor.reset("{x}");
+		assertTrue(cursor.next());
+		assertThat(cursor.stringValue(), is("x"));
+		assertThat(cursor.next(), is(false));
+	}
+
+	@Test
+	public void testInvalidValues() {
+		for (String s : invalidArrayStrings) {
+			try {
+				PostgresUtils.postgresArray2StringList(s);
+				fail("Invalid array string should not be parsed: " + s);
+			} catch (ArrayParserException e) {
+				// expected
+			}
+		}
+		for (String s : invalidRowStrings) {
+			try {
+				PostgresUtils.postgresROW2StringList(s);
+				fail("Invalid row string should not be parsed: " + s);
+			} catch (RowParserException e) {
+				// expected
+			}
+		}
+	}
+}
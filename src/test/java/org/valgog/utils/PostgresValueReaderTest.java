@@ -0,0 +1,89 @@
+package org.valgog.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.valgog.utils.exceptions.ParserException;
+
+public class PostgresValueReaderTest {
+
+	static final String[] invalidValues = {
+		"{\"(1,2)\"",
+		"{\"(1,2\"}",
+		"{\"(1,2)\" x}",
+		"{(1,2)} x",
+	};
+
+	@Test
+	public void testNestedValues() throws ParserException {
+		// ARRAY of ROWs having a quoted string and an ARRAY of strings
+		final PostgresValueReader reader = new PostgresValueReader("{\"(1,\\\"a \\\"\\\"b\\\"\\\"\\\",\\\"{\\\"\\\"x y\\\"\\\",z}\\\")\",NULL}");
+		assertTrue(reader.beginArray());
+		assertTrue(reader.nextElement());
+		assertTrue(reader.beginRow());
+		assertTrue(reader.nextElement());
+		assertThat(reader.readString(), is("1"));
+		assertTrue(reader.nextElement());
+		assertThat(reader.readString(), is("a \"b\""));
+		assertTrue(reader.nextElement());
+		assertTrue(reader.beginArray());
+		assertTrue(reader.nextElement());
+		assertThat(reader.readString(), is("x y"));
+		assertTrue(reader.nextElement());
+		assertThat(reader.readString(), is("z"));
+		assertThat(reader.nextElement(), is(false));
+		reader.endContainer();
+		assertThat(reader.nextElement(), is(false));
+		reader.endContainer();
+		assertTrue(reader.nextElement());
+		assertThat(reader.beginRow(), is(false));
+		assertThat(reader.nextElement(), is(false));
+		reader.endContainer();
+		reader.finish();
+	}
+
+	@Test
+	public void testEmptyAndSkippedElements() throws ParserException {
+		final PostgresValueReader reader = new PostgresValueReader(" ( , \"(1,2)\" , 3 , ) ");
+		assertTrue(reader.beginRow());
+		assertTrue(reader.nextElement());
+		assertThat(reader.readString(), nullValue());
+		assertTrue(reader.nextElement());
+		reader.skipElement();
+		assertTrue(reader.nextElement());
+		assertThat(reader.readString(), is("3"));
+		// the rest of the ROW is skipped
+		reader.endContainer();
+		reader.finish();
+
+		reader.reset("{}");
+		assertTrue(reader.beginArray());
+		assertThat(reader.nextElement(), is(false));
+		reader.endContainer();
+		reader.finish();
+	}
+
+	@Test
+	public void testInvalidValues() {
+		for (String s : invalidValues) {
+			try {
+				final PostgresValueReader reader = new PostgresValueReader(s);
+				reader.beginArray();
+				while ( reader.nextElement() ) {
+					if ( reader.beginRow() ) {
+						reader.endContainer();
+					}
+				}
+				reader.endContainer();
+				reader.finish();
+				fail("Invalid value should not be parsed: " + s);
+			} catch (ParserException e) {
+				// expected
+			}
+		}
+	}
+}
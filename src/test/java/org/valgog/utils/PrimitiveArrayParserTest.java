@@ -0,0 +1,103 @@
+package org.valgog.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.valgog.utils.exceptions.ArrayParserException;
+
+public class PrimitiveArrayParserTest {
+
+	static final String[] invalidArrayStrings = {
+		"",
+		"1,2",
+		"{1,2",
+		"{1,,2}",
+		"{1,2,}",
+		"{{1,2},{3,4}}",
+		"{1,a}",
+		"{1 2}",
+	};
+
+	@Test
+	public void testParsedValuesAreNotRetained() throws Exception {
+		String value = new String("{1,2}");
+		final WeakReference<String> reference = new WeakReference<String>(value);
+		assertEquals(2, PrimitiveArrayParser.parseLongArray(value, false).length);
+		value = null;
+		String invalid = new String("{1,a}");
+		final WeakReference<String> invalidReference = new WeakReference<String>(invalid);
+		try {
+			PrimitiveArrayParser.parseIntArray(invalid, false);
+			fail("invalid array should not be parsed");
+		} catch (ArrayParserException e) {
+			// expected
+		}
+		invalid = null;
+		assertTrue(PostgresUtilsTest.isCollected(reference));
+		assertTrue(PostgresUtilsTest.isCollected(invalidReference));
+	}
+
+	@Test
+	public void testIntArrays() throws ArrayParserException {
+		assertTrue(Arrays.equals(new int[] { 1, -2, 3 }, PrimitiveArrayParser.parseIntArray("{1,-2,3}", false)));
+		assertTrue(Arrays.equals(new int[] { 1, 2 }, PrimitiveArrayParser.parseIntArray(" { 1 , \"2\" } ", false)));
+		assertTrue(Arrays.equals(new int[] { 7, 8 }, PrimitiveArrayParser.parseIntArray("[0:1]={7,8}", false)));
+		assertTrue(Arrays.equals(new int[0], PrimitiveArrayParser.parseIntArray("{}", false)));
+		assertTrue(Arrays.equals(new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE }, PrimitiveArrayParser.parseIntArray("{-2147483648,2147483647}", false)));
+	}
+
+	@Test(expected = ArrayParserException.class)
+	public void testIntOverflow() throws ArrayParserException {
+		PrimitiveArrayParser.parseIntArray("{2147483648}", false);
+	}
+
+	@Test
+	public void testLongArrays() throws ArrayParserException {
+		assertTrue(Arrays.equals(new long[] { Long.MIN_VALUE, 0, Long.MAX_VALUE }, PrimitiveArrayParser.parseLongArray("{-9223372036854775808,0,9223372036854775807}", false)));
+	}
+
+	@Test
+	public void testDoubleArrays() throws ArrayParserException {
+		final double[] result = PrimitiveArrayParser.parseDoubleArray("{1.5,-2,1e3,NaN,-Infinity}", false);
+		assertEquals(5, result.length);
+		assertEquals(1.5d, result[0], 0);
+		assertEquals(-2d, result[1], 0);
+		assertEquals(1000d, result[2], 0);
+		assertTrue(Double.isNaN(result[3]));
+		assertEquals(Double.NEGATIVE_INFINITY, result[4], 0);
+	}
+
+	@Test
+	public void testBooleanArrays() throws ArrayParserException {
+		assertTrue(Arrays.equals(new boolean[] { true, false, true }, PrimitiveArrayParser.parseBooleanArray("{t,f,true}", false)));
+	}
+
+	@Test
+	public void testNullElements() throws ArrayParserException {
+		assertTrue(Arrays.equals(new int[] { 1, 0, 3 }, PrimitiveArrayParser.parseIntArray("{1,NULL,3}", true)));
+		assertTrue(Arrays.equals(new boolean[] { false, true }, PrimitiveArrayParser.parseBooleanArray("{null,t}", true)));
+		try {
+			PrimitiveArrayParser.parseLongArray("{1,NULL}", false);
+			fail("NULL elements should not be accepted");
+		} catch (ArrayParserException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInvalidArrays() {
+		for (String s : invalidArrayStrings) {
+			try {
+				PrimitiveArrayParser.parseIntArray(s, true);
+				fail("Invalid array string should not be parsed: " + s);
+			} catch (ArrayParserException e) {
+				// expected
+			}
+		}
+	}
+}
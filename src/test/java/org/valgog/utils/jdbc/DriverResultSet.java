@@ -0,0 +1,89 @@
+package org.valgog.utils.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Result set (and its metadata) returning the given values the way the PostgreSQL driver returns them,
+ * so that the tests can record it with the {@link ResultSetRecorder} and replay it with a {@link RecordedResultSet}
+ * without a database.
+ *
+ * @author valgog
+ */
+public final class DriverResultSet implements InvocationHandler {
+
+	private final String[] labels;
+	private final String[] typeNames;
+	private final int[] types;
+	private final Object[][] rows;
+	private final String[][] texts;
+	private int position = -1;
+
+	private DriverResultSet(String[] labels, String[] typeNames, int[] types, Object[][] rows, String[][] texts) {
+		this.labels = labels;
+		this.typeNames = typeNames;
+		this.types = types;
+		this.rows = rows;
+		this.texts = texts;
+	}
+
+	/**
+	 * @param labels labels of the columns
+	 * @param typeNames database type names of the columns
+	 * @param types SQL types of the columns
+	 * @param rows values of the rows returned by {@link ResultSet#getObject(int)}
+	 * @param texts values of the rows returned by {@link ResultSet#getString(int)}
+	 */
+	public static ResultSet create(String[] labels, String[] typeNames, int[] types, Object[][] rows, String[][] texts) {
+		return (ResultSet) Proxy.newProxyInstance(DriverResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class, ResultSetMetaData.class },
+				new DriverResultSet(labels, typeNames, types, rows, texts));
+	}
+
+	/**
+	 * @return result set of the given number of the rows with the given values of the text columns
+	 */
+	public static ResultSet text(String[] labels, int rowCount, String... values) {
+		final String[] typeNames = new String[labels.length];
+		Arrays.fill(typeNames, "text");
+		final int[] types = new int[labels.length];
+		Arrays.fill(types, Types.VARCHAR);
+		final String[][] rows = new String[rowCount][];
+		Arrays.fill(rows, values);
+		return create(labels, typeNames, types, rows, rows);
+	}
+
+	/**
+	 * Record the given result set and replay the recording
+	 */
+	public static RecordedResultSet replay(ResultSet rs) throws SQLException, IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultSetRecorder.record(rs, out);
+		return RecordedResultSet.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		final String name = method.getName();
+		if ( name.equals("next") ) return ++position < rows.length;
+		if ( name.equals("getMetaData") ) return proxy;
+		if ( name.equals("getColumnCount") ) return labels.length;
+		if ( name.equals("getColumnLabel") || name.equals("getColumnName") ) return labels[(Integer) args[0] - 1];
+		if ( name.equals("getColumnTypeName") ) return typeNames[(Integer) args[0] - 1];
+		if ( name.equals("getColumnType") ) return types[(Integer) args[0] - 1];
+		if ( name.equals("getColumnClassName") ) return "java.lang.Object";
+		if ( name.equals("isNullable") ) return ResultSetMetaData.columnNullable;
+		if ( name.equals("getPrecision") || name.equals("getScale") ) return 0;
+		if ( name.equals("getObject") ) return rows[position][(Integer) args[0] - 1];
+		if ( name.equals("getString") ) return texts[position][(Integer) args[0] - 1];
+		throw new UnsupportedOperationException(name);
+	}
+}
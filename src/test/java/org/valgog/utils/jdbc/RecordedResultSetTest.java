@@ -0,0 +1,228 @@
+package org.valgog.utils.jdbc;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.postgresql.util.PGobject;
+import org.valgog.spring.AnnotatedRowMapper;
+import org.valgog.spring.example.SimpleClass;
+import org.valgog.utils.postgres.HStore;
+
+public class RecordedResultSetTest {
+
+	private static final String[] LABELS = { "id", "name", "country_code", "last_marks", "tags", "created", "attributes", "active", "amount", "data" };
+	private static final String[] TYPE_NAMES = { "int4", "text", "varchar", "_int4", "_text", "timestamptz", "hstore", "bool", "numeric", "bytea" };
+	private static final int[] TYPES = { Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.ARRAY, Types.ARRAY, Types.TIMESTAMP, Types.OTHER, Types.BIT, Types.NUMERIC, Types.BINARY };
+
+	private static final Timestamp CREATED = new Timestamp(1273123689123L);
+
+	private static RecordedResultSet recordAndReplay() throws SQLException, IOException {
+		final PGobject attributes = new PGobject();
+		attributes.setType("hstore");
+		attributes.setValue("\"a\"=>\"1\"");
+		final Object[][] rows = {
+				{ 1, "first", "DE", new RecordedArray("{1,2,3}", Types.INTEGER, "int4"), new RecordedArray("{a,\"b c\",NULL}", Types.VARCHAR, "text"),
+						CREATED, attributes, Boolean.TRUE, new BigDecimal("12.50"), new byte[] { 1, 2, (byte) 0xff } },
+				new Object[LABELS.length]
+		};
+		final String[][] texts = {
+				{ "1", "first", "DE", "{1,2,3}", "{a,\"b c\",NULL}", "2010-05-06 07:28:09.123+02", "\"a\"=>\"1\"", "t", "12.50", "\\001\\002\\377" },
+				new String[LABELS.length]
+		};
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertThat(ResultSetRecorder.record(DriverResultSet.create(LABELS, TYPE_NAMES, TYPES, rows, texts), out), is(2L));
+		return RecordedResultSet.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void testValues() throws SQLException, IOException {
+		final RecordedResultSet rs = recordAndReplay();
+		assertThat(rs.getMetaData().getColumnCount(), is(LABELS.length));
+		assertThat(rs.getMetaData().getColumnTypeName(7), is("hstore"));
+		assertThat(rs.getMetaData().getColumnType(4), is(Types.ARRAY));
+		assertTrue(rs.next());
+		assertThat(rs.getObject(1), is((Object) 1));
+		assertThat(rs.getLong("ID"), is(1L));
+		assertThat(rs.getString("name"), is("first"));
+		assertThat(rs.getTimestamp("created"), is(CREATED));
+		assertThat(rs.getObject("created"), not(sameInstance(rs.getObject("created"))));
+		final PGobject attributes = (PGobject) rs.getObject("attributes");
+		assertThat(attributes.getType(), is("hstore"));
+		assertThat(attributes.getValue(), is("\"a\"=>\"1\""));
+		assertThat(rs.getObject("attributes"), not(sameInstance((Object) attributes)));
+		assertThat(rs.getBoolean("active"), is(true));
+		assertThat(rs.getString("active"), is("t"));
+		assertThat(rs.getBigDecimal("amount"), is(new BigDecimal("12.50")));
+		assertThat(rs.getInt("amount"), is(12));
+		assertArrayEquals(new byte[] { 1, 2, (byte) 0xff }, rs.getBytes("data"));
+		final Array marks = rs.getArray("last_marks");
+		assertThat(marks.getBaseTypeName(), is("int4"));
+		assertArrayEquals(new Integer[] { 1, 2, 3 }, (Integer[]) marks.getArray());
+		assertArrayEquals(new Integer[] { 2, 3 }, (Integer[]) marks.getArray(2, 2));
+		assertArrayEquals(new String[] { "a", "b c", null }, (String[]) rs.getArray("tags").getArray());
+		final ResultSet elements = marks.getResultSet(2, 2);
+		assertTrue(elements.next());
+		assertThat(elements.getInt("INDEX"), is(2));
+		assertThat(elements.getObject("VALUE"), is((Object) 2));
+		assertTrue(elements.next());
+		assertThat(elements.getString(2), is("3"));
+		assertFalse(elements.next());
+		assertFalse(rs.wasNull());
+
+		assertTrue(rs.next());
+		assertThat(rs.getInt(1), is(0));
+		assertTrue(rs.wasNull());
+		assertThat(rs.getObject("attributes"), nullValue());
+		assertThat(rs.getArray("tags"), nullValue());
+		assertFalse(rs.getBoolean("active"));
+		assertFalse(rs.next());
+		assertTrue(rs.isAfterLast());
+
+		rs.beforeFirst();
+		assertTrue(rs.next());
+		assertThat(rs.getRow(), is(1));
+	}
+
+	@Test
+	public void testErrors() throws SQLException, IOException {
+		final RecordedResultSet rs = recordAndReplay();
+		try {
+			rs.getString(1);
+			fail("result set is not positioned");
+		} catch (SQLException e) {
+			assertThat(e.getSQLState(), is("24000"));
+		}
+		rs.next();
+		try {
+			rs.getString(LABELS.length + 1);
+			fail("column index is out of range");
+		} catch (SQLException e) {
+			assertThat(e.getMessage(), is("The column index is out of range: 11, number of columns: 10."));
+		}
+		try {
+			rs.getInt("name");
+			fail("text is not a number");
+		} catch (SQLException e) {
+			assertThat(e.getMessage(), is("Bad value for type int : first"));
+		}
+		try {
+			rs.findColumn("missing");
+			fail("column does not exist");
+		} catch (SQLException e) {
+			assertThat(e.getSQLState(), is("42703"));
+		}
+		try {
+			rs.updateInt(1, 2);
+			fail("result set is read only");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("CONCUR_READ_ONLY"));
+		}
+		rs.close();
+		try {
+			rs.next();
+			fail("result set is closed");
+		} catch (SQLException e) {
+			assertThat(e.getMessage(), is("This ResultSet is closed."));
+		}
+	}
+
+	@Test
+	public void testMapping() throws SQLException, IOException {
+		final File file = File.createTempFile("simple", ".pgrs.gz");
+		try {
+			final RecordedResultSet recorded = recordAndReplay();
+			ResultSetRecorder.record(recorded, file);
+			final ResultSet rs = RecordedResultSet.read(file);
+			final AnnotatedRowMapper<SimpleClass> mapper = AnnotatedRowMapper.getMapperForClass(SimpleClass.class);
+			assertTrue(rs.next());
+			final SimpleClass item = mapper.mapRow(rs, 0);
+			assertThat(item.getId(), is(1));
+			assertThat(item.getName(), is("first"));
+			assertThat(item.getCountryCode(), is("DE"));
+			assertArrayEquals(new int[] { 1, 2, 3 }, item.getLastMarks());
+			assertThat(Arrays.asList(item.getTags()), is(Arrays.asList("a", "b c", null)));
+			assertTrue(rs.next());
+			final SimpleClass empty = mapper.mapRow(rs, 1);
+			assertThat(empty.getId(), nullValue());
+			assertThat(empty.getName(), nullValue());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testHStoreClassIsKept() throws SQLException, IOException {
+		final HStore hstore = new HStore("\"k\"=>\"v\"");
+		final Object[][] rows = { new Object[LABELS.length] };
+		final String[][] texts = { new String[LABELS.length] };
+		rows[0][6] = hstore;
+		texts[0][6] = hstore.getValue();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultSetRecorder.record(DriverResultSet.create(LABELS, TYPE_NAMES, TYPES, rows, texts), out);
+		final RecordedResultSet rs = RecordedResultSet.read(new ByteArrayInputStream(out.toByteArray()));
+		rs.next();
+		final List<Object> values = Arrays.asList(rs.getObject(7));
+		assertTrue(values.get(0) instanceof HStore);
+		assertThat(((HStore) values.get(0)).get("k"), is("v"));
+	}
+
+	public static class SubObject extends PGobject {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Not a {@link PGobject}, with the name of the same length as {@link SubObject}
+	 */
+	public static class Initiated {
+		static {
+			initiatedClassInitialized = true;
+		}
+	}
+
+	static boolean initiatedClassInitialized;
+
+	@Test
+	public void testRecordedClassIsNotInitialized() throws SQLException, IOException {
+		final SubObject object = new SubObject();
+		object.setType("hstore");
+		object.setValue("\"k\"=>\"v\"");
+		final Object[][] rows = { new Object[LABELS.length] };
+		final String[][] texts = { new String[LABELS.length] };
+		rows[0][6] = object;
+		texts[0][6] = object.getValue();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultSetRecorder.record(DriverResultSet.create(LABELS, TYPE_NAMES, TYPES, rows, texts), out);
+		// the recording names another class instead of the PGobject subclass
+		final byte[] recording = new String(out.toByteArray(), "ISO-8859-1").replace(SubObject.class.getName(), "org.valgog.utils.jdbc.RecordedResultSetTest$Initiated").getBytes("ISO-8859-1");
+		final RecordedResultSet rs = RecordedResultSet.read(new ByteArrayInputStream(recording));
+		rs.next();
+		assertThat(rs.getObject(7).getClass(), is((Object) PGobject.class));
+		assertThat(((PGobject) rs.getObject(7)).getValue(), is("\"k\"=>\"v\""));
+		assertFalse("class named by the recording was initialized", initiatedClassInitialized);
+
+		final RecordedResultSet original = RecordedResultSet.read(new ByteArrayInputStream(out.toByteArray()));
+		original.next();
+		assertThat(original.getObject(7).getClass(), is((Object) SubObject.class));
+	}
+}